@@ -0,0 +1,92 @@
+package org.example.parking.benchmark;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.GatePipeline;
+import org.example.parking.service.ParkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JMH latency benchmark of the gates: each benchmark thread is a gate that
+ * parks then unparks its car, either calling the GLOBAL_LOCK service directly
+ * or going through a GatePipeline. Sample mode reports the latency
+ * percentiles of each variant:
+ *
+ *   mvn -Pbenchmark package
+ *   java -jar target/benchmarks.jar GatePipelineLatencyBenchmark
+ *   java -jar target/benchmarks.jar GatePipelineLatencyBenchmark -t 256
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class GatePipelineLatencyBenchmark {
+
+    // Enough spots for every gate to hold its car at once
+    static final int MAX_GATES = 4096;
+
+    @Param({"false", "true"})
+    private boolean pipelined;
+
+    private Parking parking;
+    private ParkingService service;
+    private GatePipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parking = new Parking(0, MAX_GATES, 0);
+        service = new ParkingService();
+        pipeline = pipelined ? new GatePipeline(service) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * One gate and the car going through it.
+     */
+    @State(Scope.Thread)
+    public static class Gate {
+
+        private static final AtomicInteger NEXT = new AtomicInteger();
+
+        Vehicle vehicle;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            vehicle = new Car("CAR-" + NEXT.getAndIncrement());
+        }
+    }
+
+    @Benchmark
+    public boolean parkThenUnpark(Gate gate) {
+        if (pipelined) {
+            return pipeline.parkAsync(parking, gate.vehicle).join() && pipeline.unparkAsync(gate.vehicle).join();
+        }
+        return service.parkVehicle(parking, gate.vehicle) && service.unparkByPlate(gate.vehicle.getPlateNumber());
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.parking.benchmark;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.persistence.ParkingPersistence;
+import org.example.parking.service.ParkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * JMH benchmark of the time to recover a full lot after a restart, from a
+ * snapshot or from the journal alone.
+ *
+ * Single-shot, as a gate controller recovers once:
+ *
+ *   mvn -Pbenchmark package
+ *   java -jar target/benchmarks.jar ParkingRecoveryBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParkingRecoveryBenchmark {
+
+    @Param({"1000000"})
+    private int spots;
+
+    @Param({"true", "false"})
+    private boolean fromSnapshot;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("parking-recovery");
+        Parking parking = new Parking(0, spots, 0);
+        ParkingService service = new ParkingService();
+        try (ParkingPersistence persistence = ParkingPersistence.open(directory, parking, service)) {
+            for (int i = 0; i < spots; i++) {
+                service.parkVehicle(parking, new Car("CAR-" + i));
+            }
+            if (fromSnapshot) {
+                persistence.snapshot();
+            } else {
+                persistence.sync();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int recover() throws IOException {
+        try (ParkingPersistence persistence = ParkingPersistence.open(directory, new Parking(0, spots, 0),
+                new ParkingService())) {
+            return persistence.getRecoveredVehicles();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.example.parking.benchmark;
+
+import org.example.parking.domain.OccupancySnapshot;
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.Van;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingService;
+import org.example.parking.service.VehicleTypeOccupancy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JMH benchmarks for the ParkingService hot paths.
+ *
+ * Parameterized by lot size, fill ratio, vehicle mix and concurrency mode;
+ * the thread count is set on the command line (-t), and the allocation
+ * rate is reported by the gc profiler (-prof gc):
+ *
+ *   mvn -Pbenchmark package
+ *   java -jar target/benchmarks.jar ParkingServiceBenchmark -prof gc -t 1
+ *   java -jar target/benchmarks.jar ParkingServiceBenchmark -prof gc -t 8 -p lotSize=1000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParkingServiceBenchmark {
+
+    // Vehicles arriving together in the burst benchmarks
+    static final int BURST_SIZE = 256;
+
+    /**
+     * Vehicle arrival mix, in percent of motos / cars (the rest are vans).
+     */
+    public enum VehicleMix {
+        BALANCED(30, 50),
+        CAR_HEAVY(10, 80),
+        VAN_HEAVY(10, 50);
+
+        private final int motoPercent;
+        private final int carPercent;
+
+        VehicleMix(int motoPercent, int carPercent) {
+            this.motoPercent = motoPercent;
+            this.carPercent = carPercent;
+        }
+
+        Vehicle newVehicle(SplittableRandom random, String plate) {
+            int roll = random.nextInt(100);
+            if (roll < motoPercent) {
+                return new Moto("MOTO-" + plate);
+            }
+            if (roll < motoPercent + carPercent) {
+                return new Car("CAR-" + plate);
+            }
+            return new Van("VAN-" + plate);
+        }
+    }
+
+    // Total number of spots, split 20% moto / 70% car / 10% big
+    @Param({"100", "10000", "1000000"})
+    public int lotSize;
+
+    // Share of the spots occupied before measuring
+    @Param({"0.0", "0.5", "0.9"})
+    public double fillRatio;
+
+    @Param({"BALANCED", "CAR_HEAVY", "VAN_HEAVY"})
+    public VehicleMix mix;
+
+    @Param({"GLOBAL_LOCK", "STRIPED", "LOCK_FREE"})
+    public ConcurrencyMode mode;
+
+    // Latency histograms and counters on or off, to measure their cost
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    Parking parking;
+    ParkingService service;
+
+    // Gives every benchmark thread its own plate prefix
+    final AtomicInteger threadIds = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int motoSpots = lotSize / 5;
+        int bigSpots = lotSize / 10;
+        parking = new Parking(motoSpots, lotSize - motoSpots - bigSpots, bigSpots);
+        service = new ParkingService(mode);
+        if (metrics) {
+            service.enableMetrics();
+        }
+
+        // Pre-fill the lot with the same mix as the measured arrivals
+        SplittableRandom random = new SplittableRandom(42);
+        int target = (int) (parking.getTotalSpots() * fillRatio);
+        int misses = 0;
+        for (int i = 0; parking.getTotalSpots() - parking.getFreeSpotsCount() < target && misses < 1000; i++) {
+            if (!service.parkVehicle(parking, mix.newVehicle(random, "FILL-" + i))) {
+                misses++;
+            }
+        }
+    }
+
+    /**
+     * Arrivals of one benchmark thread (one gate): a fixed pool of vehicles
+     * built up-front, so the measured code does not include their allocation.
+     */
+    @State(Scope.Thread)
+    public static class Gate {
+
+        Vehicle[] arrivals;
+        List<Vehicle> burst;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(ParkingServiceBenchmark benchmark) {
+            int gate = benchmark.threadIds.getAndIncrement();
+            SplittableRandom random = new SplittableRandom(gate);
+            arrivals = new Vehicle[1024];
+            for (int i = 0; i < arrivals.length; i++) {
+                arrivals[i] = benchmark.mix.newVehicle(random, "G" + gate + "-" + i);
+            }
+            burst = Arrays.asList(arrivals).subList(0, BURST_SIZE);
+        }
+
+        Vehicle nextArrival() {
+            Vehicle vehicle = arrivals[next];
+            next = (next + 1) & (arrivals.length - 1);
+            return vehicle;
+        }
+    }
+
+    /**
+     * One arrival followed by its departure, so the fill ratio stays constant.
+     */
+    @Benchmark
+    public boolean parkThenUnpark(Gate gate) {
+        Vehicle vehicle = gate.nextArrival();
+        boolean parked = service.parkVehicle(parking, vehicle);
+        if (parked) {
+            service.unparkVehicle(vehicle);
+        }
+        return parked;
+    }
+
+    /**
+     * A burst of arrivals then departures, one call per vehicle.
+     * Scores are per vehicle, to compare with burstBatched.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public int burstOneByOne(Gate gate) {
+        int parked = 0;
+        for (Vehicle vehicle : gate.burst) {
+            if (service.parkVehicle(parking, vehicle)) {
+                parked++;
+            }
+        }
+        for (Vehicle vehicle : gate.burst) {
+            service.unparkVehicle(vehicle);
+        }
+        return parked;
+    }
+
+    /**
+     * The same burst through parkAll/unparkAll.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public int burstBatched(Gate gate) {
+        int parked = service.parkAll(parking, gate.burst).getSuccessCount();
+        service.unparkAll(gate.burst);
+        return parked;
+    }
+
+    @Benchmark
+    public int getFreeSpotsCount() {
+        return parking.getFreeSpotsCount();
+    }
+
+    @Benchmark
+    public OccupancySnapshot getOccupancySnapshot() {
+        return parking.getOccupancySnapshot();
+    }
+
+    @Benchmark
+    public int getNumberOfSpotsOccupiedByVans() {
+        return service.getNumberOfSpotsOccupiedByVans();
+    }
+
+    @Benchmark
+    public Map<Class<? extends Vehicle>, VehicleTypeOccupancy> getOccupancyByVehicleType() {
+        return service.getOccupancyByVehicleType();
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.parking.benchmark;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.Van;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JMH contention benchmark: each benchmark thread is a gate that parks then
+ * unparks a batch of vehicles in a loop, sticking to one vehicle type (moto,
+ * car, van in turn). Reports the throughput of every ConcurrencyMode, without
+ * and with gate buffers (ParkingService.enableGateBuffers); compare the runs
+ * for increasing thread counts to see how each mode scales:
+ *
+ *   mvn -Pbenchmark package
+ *   java -jar target/benchmarks.jar ParkingServiceContentionBenchmark -t 1
+ *   java -jar target/benchmarks.jar ParkingServiceContentionBenchmark -t 8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParkingServiceContentionBenchmark {
+
+    // Vehicles parked then unparked by a gate per invocation
+    static final int VEHICLES_PER_GATE = 64;
+
+    @Param({"GLOBAL_LOCK", "STRIPED", "LOCK_FREE"})
+    public ConcurrencyMode mode;
+
+    // Spots per gate buffer, 0 for no buffers
+    @Param({"0", "32"})
+    public int gateBufferSpots;
+
+    Parking parking;
+    ParkingService service;
+
+    // Gives every gate its own plates and vehicle type
+    final AtomicInteger gateIds = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parking = new Parking(10_000, 10_000, 10_000);
+        service = new ParkingService(mode);
+        if (gateBufferSpots > 0) {
+            service.enableGateBuffers(gateBufferSpots);
+        }
+    }
+
+    /**
+     * One gate and the vehicles going through it.
+     */
+    @State(Scope.Thread)
+    public static class Gate {
+
+        Vehicle[] vehicles;
+
+        @Setup(Level.Trial)
+        public void setUp(ParkingServiceContentionBenchmark benchmark) {
+            int gate = benchmark.gateIds.getAndIncrement();
+            vehicles = new Vehicle[VEHICLES_PER_GATE];
+            for (int i = 0; i < vehicles.length; i++) {
+                String plate = gate + "-" + i;
+                vehicles[i] = switch (gate % 3) {
+                    case 0 -> new Moto("MOTO-" + plate);
+                    case 1 -> new Car("CAR-" + plate);
+                    default -> new Van("VAN-" + plate);
+                };
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * VEHICLES_PER_GATE)
+    public void parkThenUnpark(Gate gate) {
+        for (Vehicle vehicle : gate.vehicles) {
+            service.parkVehicle(parking, vehicle);
+        }
+        for (Vehicle vehicle : gate.vehicles) {
+            service.unparkVehicle(vehicle);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.parking.benchmark;
+
+import org.example.parking.domain.LotLayout;
+import org.example.parking.domain.Parking;
+import org.example.parking.model.SpotType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the time to bring a large facility up: an on-heap
+ * Parking (one ParkingSpot per spot) against a Parking built from a
+ * LotLayout (bitmaps only, locations computed on demand).
+ *
+ * Single-shot, as a gate controller starts once:
+ *
+ *   mvn -Pbenchmark package
+ *   java -jar target/benchmarks.jar ParkingStartupBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParkingStartupBenchmark {
+
+    // Spots per level: 100 moto, 200 rows of 200C 20B 200C (80 000 car, 4 000 big)
+    static final int SPOTS_PER_LEVEL = 100 + 200 * 420;
+
+    @Param({"1000000", "5000000"})
+    private int spots;
+
+    private int levels;
+    private String layoutText;
+
+    @Setup
+    public void setUp() {
+        levels = (spots + SPOTS_PER_LEVEL - 1) / SPOTS_PER_LEVEL;
+        layoutText = "level x" + levels + "\n"
+                + "zone Bikes\n"
+                + "row 100M\n"
+                + "zone Main\n"
+                + "row 200C 20B 200C x200\n";
+    }
+
+    @Benchmark
+    public Parking onHeap() {
+        return new Parking(levels * 100, levels * 80_000, levels * 4_000);
+    }
+
+    @Benchmark
+    public Parking fromLayout() {
+        return Parking.fromLayout(LotLayout.parse(layoutText));
+    }
+
+    /**
+     * Startup, then the first park on the last level: the level view and
+     * location are only computed at that point.
+     */
+    @Benchmark
+    public boolean fromLayoutFirstPark() {
+        Parking parking = Parking.fromLayout(LotLayout.parse(layoutText));
+        int index = parking.getLevel(levels - 1).getFirstSpotIndex(SpotType.CAR);
+        return parking.tryOccupy(SpotType.CAR, index) && parking.getLocation(SpotType.CAR, index) != null;
+    }
+}
@@ -6,10 +6,59 @@ import org.example.parking.model.Moto;
 import org.example.parking.model.Van;
 import org.example.parking.model.Vehicle;
 import org.example.parking.service.ParkingService;
-
-
+import org.example.parking.simulation.EventSource;
+import org.example.parking.simulation.SimulationOptions;
+import org.example.parking.simulation.SimulationReport;
+import org.example.parking.simulation.TraceFile;
+
+import java.io.IOException;
+
+/**
+ * Runs the scripted demo when started without arguments, otherwise the load
+ * simulator (see SimulationOptions.USAGE), e.g.:
+ *   Main simulate --duration 30d --rate 20000 --car 50000 --gates 4 --mode STRIPED
+ *   Main generate trace.csv --duration 7d
+ *   Main replay trace.csv --strategy BEST_FIT
+ */
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            runDemo();
+            return;
+        }
+        if (args[0].equals("--help")) {
+            System.out.println(SimulationOptions.USAGE);
+            return;
+        }
+        SimulationOptions options;
+        try {
+            options = SimulationOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(SimulationOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options.getCommand().equals("generate")) {
+            long events = TraceFile.write(options.newSyntheticTrace(), options.getTraceFile());
+            System.out.printf("Wrote %,d events to %s%n", events, options.getTraceFile());
+            return;
+        }
+        System.out.println(options.describe());
+        Parking parking = options.newParking();
+        ParkingService service = options.newService();
+        EventSource trace = options.getCommand().equals("replay")
+                ? TraceFile.open(options.getTraceFile()) : options.newSyntheticTrace();
+        SimulationReport report = options.newSimulation(parking, service).run(trace);
+        report.print(System.out);
+        if (report.getEventsPerSecond() < options.getMinEventsPerSecond()) {
+            System.err.printf("Throughput regression: %,.0f events/s, expected at least %,.0f%n",
+                    report.getEventsPerSecond(), options.getMinEventsPerSecond());
+            System.exit(1);
+        }
+    }
+
+    private static void runDemo() {
         // 1) Create a Parking with 2 moto spots, 5 car spots, and 2 big spots
         Parking parking = new Parking(2, 5, 2);
         ParkingService parkingService = new ParkingService();
@@ -0,0 +1,95 @@
+package org.example.parking.domain;
+
+import org.example.parking.model.SpotLocation;
+import org.example.parking.model.SpotType;
+
+/**
+ * An entrance of a Parking (see Parking.addEntrance), with a priority index
+ * of the free spots of every class by walking distance from it, so the
+ * closest free spot is found without scanning the lot.
+ *
+ * The index costs about 8 bytes per spot of the parking, on heap.
+ */
+public final class Entrance {
+
+    /** Default cost of climbing one level, in positions along a row. */
+    public static final int DEFAULT_LEVEL_COST = 100;
+    /** Default cost of crossing one row, in positions along a row. */
+    public static final int DEFAULT_ROW_COST = 10;
+
+    private final Parking parking;
+    private final String name;
+    private final SpotLocation location;
+    private final int levelCost;
+    private final int rowCost;
+
+    // One index per spot class, indexed by SpotType.ordinal()
+    private final NearestFreeIndex[] indexes;
+
+    Entrance(Parking parking, String name, SpotLocation location, int levelCost, int rowCost,
+             NearestFreeIndex[] indexes) {
+        this.parking = parking;
+        this.name = name;
+        this.location = location;
+        this.levelCost = levelCost;
+        this.rowCost = rowCost;
+        this.indexes = indexes;
+    }
+
+    public Parking getParking() {
+        return parking;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SpotLocation getLocation() {
+        return location;
+    }
+
+    /**
+     * Walking distance from this entrance to the given spot.
+     */
+    public long distanceTo(SpotType type, int index) {
+        return location.distanceTo(parking.getLocation(type, index), levelCost, rowCost);
+    }
+
+    /**
+     * Returns the index of the free spot of the given class closest to this
+     * entrance, or -1 if there is none.
+     */
+    public int nearestFreeSpotIndex(SpotType type) {
+        int rank = nextFreeRank(type, 0);
+        return rank < 0 ? -1 : spotAt(type, rank);
+    }
+
+    /**
+     * Returns the first rank at or after fromRank whose spot is free, or -1.
+     * Rank 0 is the spot of the class closest to this entrance, and so on
+     * (the closest spots first, then by index).
+     */
+    public int nextFreeRank(SpotType type, int fromRank) {
+        return indexes[type.ordinal()].nextFree(fromRank);
+    }
+
+    /**
+     * Returns the index of the spot of the given rank.
+     */
+    public int spotAt(SpotType type, int rank) {
+        return indexes[type.ordinal()].spotAt(rank);
+    }
+
+    void sync(SpotType type, int index, boolean free) {
+        if (free) {
+            indexes[type.ordinal()].markFree(index);
+        } else {
+            indexes[type.ordinal()].markTaken(index);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Entrance{" + name + " at " + location + "}";
+    }
+}
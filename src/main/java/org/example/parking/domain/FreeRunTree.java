@@ -0,0 +1,128 @@
+package org.example.parking.domain;
+
+/**
+ * Segment tree over the spots of one class, tracking runs of adjacent free spots.
+ * Each node stores the free run touching its left edge (prefix), the one
+ * touching its right edge (suffix) and the longest run inside it, so both
+ * updating a spot and finding the leftmost run of k free spots are O(log n).
+ *
+ * Updates and queries are short, so they are simply synchronized:
+ * spot claims themselves remain compare-and-set on the spots.
+ */
+class FreeRunTree {
+
+    private final int leafCount;
+    private final int[] prefix;
+    private final int[] suffix;
+    private final int[] longest;
+
+    FreeRunTree(int size) {
+        int leaves = 1;
+        while (leaves < size) {
+            leaves <<= 1;
+        }
+        this.leafCount = leaves;
+        this.prefix = new int[2 * leaves];
+        this.suffix = new int[2 * leaves];
+        this.longest = new int[2 * leaves];
+
+        // All real spots start free; padding leaves stay "occupied" (0)
+        for (int i = 0; i < size; i++) {
+            prefix[leaves + i] = 1;
+            suffix[leaves + i] = 1;
+            longest[leaves + i] = 1;
+        }
+        int len = 1;
+        for (int level = leaves >>> 1; level >= 1; level >>>= 1) {
+            for (int node = level; node < 2 * level; node++) {
+                combine(node, len);
+            }
+            len <<= 1;
+        }
+    }
+
+    /**
+     * Resets every spot from the given free-spot index, in O(n) rather than
+     * O(n log n) spot by spot (see Parking.endBulkLoad).
+     */
+    synchronized void rebuild(FreeSpotIndex free) {
+        for (int i = 0; i < leafCount; i++) {
+            int bit = i < free.size() && free.isFree(i) ? 1 : 0;
+            prefix[leafCount + i] = bit;
+            suffix[leafCount + i] = bit;
+            longest[leafCount + i] = bit;
+        }
+        int len = 1;
+        for (int level = leafCount >>> 1; level >= 1; level >>>= 1) {
+            for (int node = level; node < 2 * level; node++) {
+                combine(node, len);
+            }
+            len <<= 1;
+        }
+    }
+
+    synchronized void markOccupied(int index) {
+        update(index, 0);
+    }
+
+    synchronized void markFree(int index) {
+        update(index, 1);
+    }
+
+    /**
+     * Returns the first index of the leftmost run of 'length' adjacent
+     * free spots, or -1 if there is no such run.
+     */
+    synchronized int findRun(int length) {
+        if (longest[1] < length) {
+            return -1;
+        }
+        int node = 1;
+        int start = 0;
+        int len = leafCount;
+        while (node < leafCount) {
+            int half = len >>> 1;
+            int left = 2 * node;
+            int right = left + 1;
+            if (longest[left] >= length) {
+                node = left;
+            } else if (suffix[left] + prefix[right] >= length) {
+                // The run straddles the middle of this node
+                return start + half - suffix[left];
+            } else {
+                node = right;
+                start += half;
+            }
+            len = half;
+        }
+        return start;
+    }
+
+    /**
+     * Returns the length of the longest run of adjacent free spots.
+     */
+    synchronized int longestRun() {
+        return longest[1];
+    }
+
+    private void update(int index, int free) {
+        int node = leafCount + index;
+        prefix[node] = free;
+        suffix[node] = free;
+        longest[node] = free;
+        int half = 1;
+        for (node >>>= 1; node >= 1; node >>>= 1) {
+            combine(node, half);
+            half <<= 1;
+        }
+    }
+
+    // Recomputes a node from its two children, each covering 'half' spots
+    private void combine(int node, int half) {
+        int left = 2 * node;
+        int right = left + 1;
+        prefix[node] = prefix[left] == half ? half + prefix[right] : prefix[left];
+        suffix[node] = suffix[right] == half ? half + suffix[left] : suffix[right];
+        longest[node] = Math.max(Math.max(longest[left], longest[right]), suffix[left] + prefix[right]);
+    }
+}
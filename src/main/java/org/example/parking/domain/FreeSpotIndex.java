@@ -0,0 +1,283 @@
+package org.example.parking.domain;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bitset of the free spots of one spot class.
+ * Bit i is set when the spot at index i is free, so finding a free spot
+ * is a scan over 64-spot words instead of a scan over every spot.
+ *
+ * Words are updated with atomic bit operations, so the index stays
+ * correct when spots are claimed concurrently without a lock.
+ *
+ * The words live either in a long[] or in an off-heap region (direct or
+ * memory-mapped buffer). Off-heap, the bitset is the occupancy state itself:
+ * spots are claimed and released with tryClaim/release.
+ */
+class FreeSpotIndex {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle REGION_WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // Exactly one of the two is set
+    private final long[] words;
+    private final ByteBuffer region;
+    private final int wordCount;
+    private final int size;
+
+    // Lowest word that may still contain a free bit: every word below it is full
+    private final AtomicInteger firstFreeWord = new AtomicInteger();
+
+    FreeSpotIndex(int size) {
+        this(size, null);
+    }
+
+    /**
+     * Creates an index whose words are stored in the given region, starting
+     * at its position (which must be 8-byte aligned), or in a long[] if null.
+     */
+    FreeSpotIndex(int size, ByteBuffer region) {
+        this.size = size;
+        this.wordCount = wordsFor(size);
+        this.words = region == null ? new long[wordCount] : null;
+        this.region = region == null ? null : region.slice(region.position(), wordCount * 8);
+        // All spots start free
+        for (int w = 0; w < wordCount; w++) {
+            setWord(w, -1L);
+        }
+        int tail = size & 63;
+        if (tail != 0) {
+            setWord(wordCount - 1, (1L << tail) - 1);
+        }
+    }
+
+    /**
+     * Returns the number of 64-bit words needed for the given number of spots.
+     */
+    static int wordsFor(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFree(int index) {
+        return (word(index >>> 6) & (1L << index)) != 0;
+    }
+
+    void markOccupied(int index) {
+        tryClaim(index);
+    }
+
+    void markFree(int index) {
+        release(index);
+    }
+
+    /**
+     * Atomically clears the bit of a free spot.
+     * Returns false if the spot was not free (e.g., another thread claimed it first).
+     */
+    boolean tryClaim(int index) {
+        long bit = 1L << index;
+        return (getAndClear(index >>> 6, bit) & bit) != 0;
+    }
+
+    /**
+     * Atomically sets the bit of a spot. Returns false if it was already free.
+     */
+    boolean release(int index) {
+        int w = index >>> 6;
+        long bit = 1L << index;
+        boolean wasOccupied = (getAndSet(w, bit) & bit) == 0;
+        lowerFirstFreeWord(w);
+        return wasOccupied;
+    }
+
+    /**
+     * Returns the first index of the leftmost run of 'length' adjacent free
+     * spots starting at or after fromIndex, or -1 if there is none. Scans
+     * whole words at a time: a full word adds 64 to the current run, others
+     * are split on their bit runs.
+     */
+    int findRun(int length, int fromIndex) {
+        if (fromIndex >= size) {
+            return -1;
+        }
+        int run = 0;
+        int first = fromIndex >>> 6;
+        for (int w = Math.max(firstFreeWord.get(), first); w < wordCount; w++) {
+            long word = w == first ? word(w) & (-1L << fromIndex) : word(w);
+            if (word == -1L) {
+                if (run + 64 >= length) {
+                    return (w << 6) - run;
+                }
+                run += 64;
+                continue;
+            }
+            int bit = 0;
+            while (bit < 64) {
+                long rest = word >>> bit;
+                if (rest == 0) {
+                    run = 0;
+                    break;
+                }
+                int occupied = Long.numberOfTrailingZeros(rest);
+                if (occupied > 0) {
+                    run = 0;
+                    bit += occupied;
+                    continue;
+                }
+                int free = Math.min(Long.numberOfTrailingZeros(~rest), 64 - bit);
+                if (run + free >= length) {
+                    return (w << 6) + bit - run;
+                }
+                run += free;
+                bit += free;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns how many spots of [fromIndex, toIndex) are free.
+     */
+    int countFree(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return 0;
+        }
+        int first = fromIndex >>> 6;
+        int last = (toIndex - 1) >>> 6;
+        int count = 0;
+        for (int w = first; w <= last; w++) {
+            long word = word(w);
+            if (w == first) {
+                word &= -1L << fromIndex;
+            }
+            if (w == last) {
+                word &= -1L >>> (63 - ((toIndex - 1) & 63));
+            }
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the first free spot at or after fromIndex,
+     * or -1 if there is none.
+     */
+    int nextFree(int fromIndex) {
+        if (fromIndex >= size) {
+            return -1;
+        }
+        int hint = firstFreeWord.get();
+        int w = fromIndex >>> 6;
+        boolean fromStart = fromIndex <= hint << 6;
+        if (fromStart) {
+            // Skip the words we already know to be full
+            w = hint;
+            fromIndex = w << 6;
+        }
+        if (w >= wordCount) {
+            return -1;
+        }
+        long word = word(w) & (-1L << fromIndex);
+        while (word == 0) {
+            if (++w == wordCount) {
+                break;
+            }
+            word = word(w);
+        }
+        if (fromStart && w > hint) {
+            raiseFirstFreeWord(hint, w);
+        }
+        return w == wordCount ? -1 : (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Returns the index of the first spot that is not free at or after
+     * fromIndex, or -1 if there is none.
+     */
+    int nextTaken(int fromIndex) {
+        if (fromIndex >= size) {
+            return -1;
+        }
+        int w = fromIndex >>> 6;
+        long word = ~word(w) & (-1L << fromIndex);
+        while (word == 0) {
+            if (++w == wordCount) {
+                return -1;
+            }
+            word = ~word(w);
+        }
+        int index = (w << 6) + Long.numberOfTrailingZeros(word);
+        // Bits past the last spot are always clear
+        return index < size ? index : -1;
+    }
+
+    /**
+     * Copies the words into 'target' (wordsFor(size) longs). Not atomic as a
+     * whole: see Parking.getLotSnapshot for consistent copies.
+     */
+    void copyWords(long[] target) {
+        for (int w = 0; w < wordCount; w++) {
+            target[w] = word(w);
+        }
+    }
+
+    private long word(int w) {
+        return words != null
+                ? (long) WORDS.getVolatile(words, w)
+                : (long) REGION_WORDS.getVolatile(region, w << 3);
+    }
+
+    private void setWord(int w, long value) {
+        if (words != null) {
+            WORDS.setVolatile(words, w, value);
+        } else {
+            REGION_WORDS.setVolatile(region, w << 3, value);
+        }
+    }
+
+    private long getAndClear(int w, long bits) {
+        return words != null
+                ? (long) WORDS.getAndBitwiseAnd(words, w, ~bits)
+                : (long) REGION_WORDS.getAndBitwiseAnd(region, w << 3, ~bits);
+    }
+
+    private long getAndSet(int w, long bits) {
+        return words != null
+                ? (long) WORDS.getAndBitwiseOr(words, w, bits)
+                : (long) REGION_WORDS.getAndBitwiseOr(region, w << 3, bits);
+    }
+
+    /**
+     * Moves the hint up to 'to' after a scan found [from, to) full.
+     * A spot freed concurrently in that range either lowers the hint itself
+     * (its markFree ran after our update) or is seen by the re-check below.
+     */
+    private void raiseFirstFreeWord(int from, int to) {
+        if (!firstFreeWord.compareAndSet(from, to)) {
+            return;
+        }
+        for (int w = from; w < to; w++) {
+            if (word(w) != 0) {
+                lowerFirstFreeWord(w);
+                return;
+            }
+        }
+    }
+
+    private void lowerFirstFreeWord(int w) {
+        int current;
+        while (w < (current = firstFreeWord.get())) {
+            if (firstFreeWord.compareAndSet(current, w)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package org.example.parking.domain;
+
+import org.example.parking.model.SpotLocation;
+import org.example.parking.model.SpotType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact description of a facility: its levels, the zones and rows of each
+ * level, and the runs of spot classes along each row. A Parking can be built
+ * from it (see Parking.fromLayout).
+ *
+ * The text form has one statement per line; 'xN' repeats a level (with all
+ * its rows) or a row N times, '#' starts a comment:
+ * <pre>
+ *   level x4            # 4 identical levels
+ *   zone East
+ *   row 40M             # 40 moto spots
+ *   row 30C 4B 30C x20  # 20 rows: 30 car spots, 4 big spots, 30 car spots
+ *   zone West
+ *   row 60C x20
+ *   level               # a last, different level
+ *   row 50B
+ * </pre>
+ *
+ * Only the distinct rows and the blocks of identical levels are kept, never
+ * anything per spot, so a multi-million-spot facility takes a few KB and
+ * parses as fast as its text is read. Spots of each class are numbered in
+ * layout order (level by level, row by row, along each row), and the
+ * location of a spot is computed from its index when asked for.
+ */
+public final class LotLayout {
+
+    private static final SpotType[] TYPES = SpotType.values();
+
+    // Runs of one row, shared by all the rows with the same content
+    private static final class Row {
+        final byte[] types;
+        final int[] lengths;
+        final int[] perClass = new int[TYPES.length];
+
+        Row(byte[] types, int[] lengths) {
+            this.types = types;
+            this.lengths = lengths;
+            for (int i = 0; i < types.length; i++) {
+                perClass[types[i]] += lengths[i];
+            }
+        }
+
+        // Position of the n-th spot of the class along the row
+        int positionOf(int type, int n) {
+            int position = 0;
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] == type) {
+                    if (n < lengths[i]) {
+                        return position + n;
+                    }
+                    n -= lengths[i];
+                }
+                position += lengths[i];
+            }
+            throw new IllegalStateException("No spot " + n + " of class " + type);
+        }
+    }
+
+    // Content of a level: groups of identical consecutive rows
+    private static final class Level {
+        final Row[] rows;
+        final int[] repeats;
+        final String[] zones;
+        final int[] firstRows;
+        // Spots of each class in the groups before each group, and in the level
+        final int[][] before;
+        final int[] perClass = new int[TYPES.length];
+
+        Level(List<Row> rows, List<Integer> repeats, List<String> zones) {
+            this.rows = rows.toArray(new Row[0]);
+            this.repeats = repeats.stream().mapToInt(Integer::intValue).toArray();
+            this.zones = zones.toArray(new String[0]);
+            this.firstRows = new int[this.rows.length];
+            this.before = new int[TYPES.length][this.rows.length];
+            long[] counts = new long[TYPES.length];
+            long row = 0;
+            for (int g = 0; g < this.rows.length; g++) {
+                firstRows[g] = (int) row;
+                row += this.repeats[g];
+                for (int t = 0; t < TYPES.length; t++) {
+                    before[t][g] = (int) counts[t];
+                    counts[t] += (long) this.rows[g].perClass[t] * this.repeats[g];
+                    checkCount(counts[t]);
+                }
+            }
+            if (row > SpotLocation.MAX_ROW + 1L) {
+                throw new IllegalArgumentException("Too many rows on a level: " + row);
+            }
+            for (int t = 0; t < TYPES.length; t++) {
+                perClass[t] = (int) counts[t];
+            }
+        }
+    }
+
+    // Consecutive identical levels
+    private static final class Block {
+        final Level level;
+        final int firstLevel;
+        // Index of the first spot of each class in the block
+        final int[] firstIndex;
+
+        Block(Level level, int firstLevel, int[] firstIndex) {
+            this.level = level;
+            this.firstLevel = firstLevel;
+            this.firstIndex = firstIndex;
+        }
+    }
+
+    private final Block[] blocks;
+    private final int levelCount;
+    private final int[] totals;
+
+    private LotLayout(List<Block> blocks, int levelCount, int[] totals) {
+        this.blocks = blocks.toArray(new Block[0]);
+        this.levelCount = levelCount;
+        this.totals = totals;
+    }
+
+    /**
+     * Parses a layout, reading it line by line.
+     */
+    public static LotLayout parse(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        Parser parser = new Parser();
+        String line;
+        while ((line = lines.readLine()) != null) {
+            parser.accept(line);
+        }
+        return parser.finish();
+    }
+
+    public static LotLayout parse(String text) {
+        try {
+            return parse(new StringReader(text));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static LotLayout read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Returns the number of spots of the given class in the whole facility.
+     */
+    public int getSpotCount(SpotType type) {
+        return totals[type.ordinal()];
+    }
+
+    public int getTotalSpots() {
+        return totals[0] + totals[1] + totals[2];
+    }
+
+    /**
+     * Returns the number of spots of the given class on one level.
+     */
+    public int getSpotCount(int level, SpotType type) {
+        return blockOf(level).level.perClass[type.ordinal()];
+    }
+
+    /**
+     * Returns the index of the first spot of the given class on one level
+     * (the spots of a class on a level have consecutive indexes).
+     */
+    public int getFirstSpotIndex(int level, SpotType type) {
+        Block block = blockOf(level);
+        return block.firstIndex[type.ordinal()] + (level - block.firstLevel) * block.level.perClass[type.ordinal()];
+    }
+
+    public SpotLocation getLocation(SpotType type, int index) {
+        return Parking.unpack(locate(type, index));
+    }
+
+    /**
+     * Returns the zone of a spot, or null if its rows are not in a zone.
+     */
+    public String getZone(SpotType type, int index) {
+        int t = type.ordinal();
+        checkIndex(t, index);
+        Block block = blocks[blockIndex(t, index)];
+        int offset = (index - block.firstIndex[t]) % block.level.perClass[t];
+        return block.level.zones[groupIndex(block.level, t, offset)];
+    }
+
+    /**
+     * Tells whether the spots [start, start + length) of a class stand next
+     * to each other along one row (so a vehicle can take all of them).
+     */
+    public boolean isContiguous(SpotType type, int start, int length) {
+        long first = locate(type, start);
+        long last = locate(type, start + length - 1);
+        // Same level and row, and nothing else in between
+        return first >>> 24 == last >>> 24 && (last & SpotLocation.MAX_POSITION) - (first & SpotLocation.MAX_POSITION)
+                == length - 1;
+    }
+
+    /**
+     * Location of a spot, packed like Parking.pack: binary searches on the
+     * level blocks and row groups, then a walk along the runs of the row.
+     */
+    long locate(SpotType type, int index) {
+        int t = type.ordinal();
+        checkIndex(t, index);
+        Block block = blocks[blockIndex(t, index)];
+        Level level = block.level;
+        int offset = index - block.firstIndex[t];
+        int levelNumber = block.firstLevel + offset / level.perClass[t];
+        offset %= level.perClass[t];
+        int group = groupIndex(level, t, offset);
+        Row row = level.rows[group];
+        offset -= level.before[t][group];
+        int rowNumber = level.firstRows[group] + offset / row.perClass[t];
+        return Parking.pack(levelNumber, rowNumber, row.positionOf(t, offset % row.perClass[t]));
+    }
+
+    private void checkIndex(int type, int index) {
+        if (index < 0 || index >= totals[type]) {
+            throw new IndexOutOfBoundsException("No " + TYPES[type] + " spot " + index);
+        }
+    }
+
+    // Last block starting at or before the index (blocks without the class start at the same index as the next one)
+    private int blockIndex(int type, int index) {
+        int low = 0;
+        int high = blocks.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blocks[mid].firstIndex[type] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static int groupIndex(Level level, int type, int offset) {
+        int[] before = level.before[type];
+        int low = 0;
+        int high = before.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (before[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private Block blockOf(int level) {
+        if (level < 0 || level >= levelCount) {
+            throw new IndexOutOfBoundsException("No level " + level);
+        }
+        int low = 0;
+        int high = blocks.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blocks[mid].firstLevel <= level) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return blocks[low];
+    }
+
+    private static void checkCount(long count) {
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many spots of one class: " + count);
+        }
+    }
+
+    // Builds the blocks while the lines are read
+    private static final class Parser {
+
+        private final List<Block> blocks = new ArrayList<>();
+        private final Map<String, Row> distinctRows = new HashMap<>();
+        private final long[] totals = new long[TYPES.length];
+        private long levelCount;
+        private int lineNumber;
+
+        // The level being read: its repeat count and row groups
+        private int levelRepeat = -1;
+        private final List<Row> rows = new ArrayList<>();
+        private final List<Integer> repeats = new ArrayList<>();
+        private final List<String> zones = new ArrayList<>();
+        private String zone;
+
+        void accept(String line) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            String[] tokens = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+            if (tokens[0].isEmpty()) {
+                return;
+            }
+            int count = tokens.length;
+            int repeat = 1;
+            if (count > 1 && tokens[count - 1].matches("x\\d+")) {
+                repeat = number(tokens[--count].substring(1));
+            }
+            switch (tokens[0]) {
+                case "level" -> {
+                    expect(count == 1, "'level' takes no argument but a repeat count");
+                    endLevel();
+                    levelRepeat = repeat;
+                    zone = null;
+                }
+                case "zone" -> {
+                    expect(levelRepeat > 0, "zone outside a level");
+                    expect(count == 2 && repeat == 1, "'zone' takes a name");
+                    zone = tokens[1];
+                }
+                case "row" -> {
+                    expect(levelRepeat > 0, "row outside a level");
+                    expect(count > 1, "a row needs runs of spots, e.g., 20C");
+                    rows.add(row(Arrays.copyOfRange(tokens, 1, count)));
+                    repeats.add(repeat);
+                    zones.add(zone);
+                }
+                default -> throw error("unknown statement '" + tokens[0] + "'");
+            }
+        }
+
+        private Row row(String[] runs) {
+            String key = String.join(" ", runs);
+            Row row = distinctRows.get(key);
+            if (row != null) {
+                return row;
+            }
+            byte[] types = new byte[runs.length];
+            int[] lengths = new int[runs.length];
+            long positions = 0;
+            for (int i = 0; i < runs.length; i++) {
+                String run = runs[i];
+                SpotType type = switch (run.charAt(run.length() - 1)) {
+                    case 'M' -> SpotType.MOTO;
+                    case 'C' -> SpotType.CAR;
+                    case 'B' -> SpotType.BIG;
+                    default -> throw error("bad run '" + run + "', expected a count and M, C or B");
+                };
+                types[i] = (byte) type.ordinal();
+                lengths[i] = number(run.substring(0, run.length() - 1));
+                positions += lengths[i];
+            }
+            expect(positions <= SpotLocation.MAX_POSITION + 1L, "row too long");
+            row = new Row(types, lengths);
+            distinctRows.put(key, row);
+            return row;
+        }
+
+        private void endLevel() {
+            if (levelRepeat < 0) {
+                return;
+            }
+            expect(!rows.isEmpty(), "level without rows");
+            Level level = new Level(rows, repeats, zones);
+            int[] firstIndex = new int[TYPES.length];
+            for (int t = 0; t < TYPES.length; t++) {
+                firstIndex[t] = (int) totals[t];
+                totals[t] += (long) level.perClass[t] * levelRepeat;
+                checkCount(totals[t]);
+            }
+            blocks.add(new Block(level, (int) levelCount, firstIndex));
+            levelCount += levelRepeat;
+            expect(levelCount <= SpotLocation.MAX_LEVEL + 1L, "too many levels");
+            rows.clear();
+            repeats.clear();
+            zones.clear();
+        }
+
+        LotLayout finish() {
+            endLevel();
+            if (blocks.isEmpty()) {
+                throw new IllegalArgumentException("Empty layout: no level");
+            }
+            int[] counts = new int[TYPES.length];
+            for (int t = 0; t < TYPES.length; t++) {
+                counts[t] = (int) totals[t];
+            }
+            return new LotLayout(blocks, (int) levelCount, counts);
+        }
+
+        private int number(String text) {
+            try {
+                int value = Integer.parseInt(text);
+                expect(value > 0, "counts must be positive: " + text);
+                return value;
+            } catch (NumberFormatException e) {
+                throw error("not a count: '" + text + "'");
+            }
+        }
+
+        private void expect(boolean condition, String message) {
+            if (!condition) {
+                throw error(message);
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Layout line " + lineNumber + ": " + message);
+        }
+    }
+}
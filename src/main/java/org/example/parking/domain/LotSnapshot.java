@@ -0,0 +1,118 @@
+package org.example.parking.domain;
+
+import org.example.parking.model.SpotType;
+
+/**
+ * Immutable copy of the state of every spot of a Parking, taken at a single
+ * point in time (see Parking.getLotSnapshot()): two bits per spot, free and
+ * not reserved, plus the counts they add up to.
+ *
+ * The version is the number of spot state changes applied to the parking
+ * before the snapshot: two consistent snapshots with the same version are
+ * identical, and a later snapshot never has a lower version. A snapshot
+ * copied while updates kept racing with it is flagged approximate instead
+ * (see isConsistent()), so readers never hold park/unpark back.
+ */
+public final class LotSnapshot {
+
+    private final long version;
+    private final OccupancySnapshot counts;
+    // Per spot class, indexed by SpotType.ordinal(): bit i set when spot i is free / not reserved
+    private final long[][] free;
+    private final long[][] notReserved;
+
+    LotSnapshot(long version, OccupancySnapshot counts, long[][] free, long[][] notReserved) {
+        this.version = version;
+        this.counts = counts;
+        this.free = free;
+        this.notReserved = notReserved;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns false if some spots changed while they were copied: the states
+     * and counts may then not add up exactly.
+     */
+    public boolean isConsistent() {
+        return counts.isConsistent();
+    }
+
+    /**
+     * Returns the counts per spot class, consistent with the spot states
+     * (if isConsistent()). Spots held by gate buffers are reserved here but
+     * free in the counts (see OccupancySnapshot.getHeld).
+     */
+    public OccupancySnapshot getCounts() {
+        return counts;
+    }
+
+    public int getSpotCount(SpotType type) {
+        return counts.getTotal(type);
+    }
+
+    public boolean isFree(SpotType type, int index) {
+        return bit(free, type, index);
+    }
+
+    public boolean isReserved(SpotType type, int index) {
+        return !bit(notReserved, type, index);
+    }
+
+    public boolean isOccupied(SpotType type, int index) {
+        return !isFree(type, index) && !isReserved(type, index);
+    }
+
+    /**
+     * Returns the index of the first free spot of the given class at or
+     * after fromIndex, or -1 if there is none.
+     */
+    public int nextFreeSpotIndex(SpotType type, int fromIndex) {
+        long[] words = free[type.ordinal()];
+        if (fromIndex >= counts.getTotal(type)) {
+            return -1;
+        }
+        int w = fromIndex >>> 6;
+        long word = words[w] & (-1L << fromIndex);
+        while (word == 0) {
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Returns the indexes of the occupied spots of the given class, in order.
+     */
+    public int[] getOccupiedSpotIndexes(SpotType type) {
+        long[] freeWords = free[type.ordinal()];
+        long[] notReservedWords = notReserved[type.ordinal()];
+        int[] indexes = new int[counts.getOccupied(type)];
+        int count = 0;
+        for (int w = 0; w < freeWords.length; w++) {
+            // Bits past the last spot are clear in both bitmaps
+            long occupied = ~freeWords[w] & notReservedWords[w];
+            while (occupied != 0) {
+                indexes[count++] = (w << 6) + Long.numberOfTrailingZeros(occupied);
+                occupied &= occupied - 1;
+            }
+        }
+        return indexes;
+    }
+
+    private boolean bit(long[][] bitmaps, SpotType type, int index) {
+        if (index < 0 || index >= counts.getTotal(type)) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + type + " spots");
+        }
+        return (bitmaps[type.ordinal()][index >>> 6] & (1L << index)) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LotSnapshot{version=" + version + ", " + counts + '}';
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.parking.domain;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * The free spots of one spot class, in order of distance from one entrance.
+ *
+ * Spots are ranked once by distance (rank 0 is the closest). Bit r of the
+ * bottom level is set when the spot of rank r is free, and bit w of each
+ * level above is set when word w of the level below may hold a free bit,
+ * up to a single top word: the closest free spot is found by walking down
+ * the levels, one word per level (O(log64 n)).
+ *
+ * Words are updated with atomic bit operations, like FreeSpotIndex. A
+ * summary bit is only cleared when its word became empty, then re-set if a
+ * bit was set below meanwhile, so a free spot is never hidden for good;
+ * callers still claim the spot itself, as the index may be briefly stale.
+ */
+final class NearestFreeIndex {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Spot index by rank, and rank by spot index
+    private final int[] spots;
+    private final int[] ranks;
+
+    // levels[0] holds one bit per rank, levels[levels.length - 1] one word
+    private final long[][] levels;
+
+    NearestFreeIndex(int[] spotsByRank) {
+        this.spots = spotsByRank;
+        this.ranks = new int[spotsByRank.length];
+        for (int rank = 0; rank < spotsByRank.length; rank++) {
+            ranks[spotsByRank[rank]] = rank;
+        }
+        int depth = 1;
+        for (int bits = spotsByRank.length; bits > 64; bits = FreeSpotIndex.wordsFor(bits)) {
+            depth++;
+        }
+        this.levels = new long[depth][];
+        int bits = spotsByRank.length;
+        for (int level = 0; level < depth; level++) {
+            levels[level] = new long[Math.max(1, FreeSpotIndex.wordsFor(bits))];
+            bits = levels[level].length;
+        }
+    }
+
+    int size() {
+        return spots.length;
+    }
+
+    int spotAt(int rank) {
+        return spots[rank];
+    }
+
+    int rankOf(int spot) {
+        return ranks[spot];
+    }
+
+    void markFree(int spot) {
+        setFrom(0, ranks[spot]);
+    }
+
+    void markTaken(int spot) {
+        int index = ranks[spot];
+        for (int level = 0; level < levels.length; level++) {
+            long bit = 1L << index;
+            long previous = (long) WORDS.getAndBitwiseAnd(levels[level], index >>> 6, ~bit);
+            if (level > 0 && (long) WORDS.getVolatile(levels[level - 1], index) != 0) {
+                // A bit was set below after it emptied: its summary must stay
+                setFrom(level, index);
+                return;
+            }
+            if ((previous & bit) == 0 || (previous & ~bit) != 0) {
+                // Already taken, or the word still has free bits
+                return;
+            }
+            index >>>= 6;
+        }
+    }
+
+    // Sets the bit of 'index' at the given level and its summaries above
+    private void setFrom(int level, int index) {
+        for (; level < levels.length; level++) {
+            WORDS.getAndBitwiseOr(levels[level], index >>> 6, 1L << index);
+            index >>>= 6;
+        }
+    }
+
+    /**
+     * Returns the smallest rank at or after fromRank whose spot is free,
+     * or -1 if there is none.
+     */
+    int nextFree(int fromRank) {
+        return fromRank >= spots.length ? -1 : next(0, fromRank);
+    }
+
+    private int next(int level, int from) {
+        long[] words = levels[level];
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = (long) WORDS.getVolatile(words, w) & (-1L << from);
+        while (word == 0) {
+            if (level + 1 == levels.length) {
+                // Top level: a single word
+                return -1;
+            }
+            // Next word that may hold a free bit, from the level above
+            w = next(level + 1, w + 1);
+            if (w < 0) {
+                return -1;
+            }
+            word = (long) WORDS.getVolatile(words, w);
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+}
@@ -0,0 +1,159 @@
+package org.example.parking.domain;
+
+import org.example.parking.model.SpotType;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per spot class free and reserved counters, updated on every spot state transition.
+ * Spots held (reserved for a gate buffer, see Parking.tryHold) count as free,
+ * and are counted apart too.
+ *
+ * Every transition (bitmap bits and counters together) is bracketed by
+ * beginUpdate() / endUpdate(), which bump two stamps (started / completed):
+ * a seqlock letting readers take a consistent view of the whole parking
+ * without any lock. If no update started after the completed stamp was read,
+ * what was read in between belongs to a single point in time, the version
+ * being the number of completed updates.
+ *
+ * Readers never have any effect on writers. A reader that keeps losing the
+ * race (a large lot copied under heavy traffic) gives up after MAX_READS
+ * attempts and keeps its last copy, flagged as approximate: each count is
+ * then off by at most the updates that ran during that copy.
+ */
+class OccupancyCounters {
+
+    // Attempts spinning, then yielding to the writers, before settling for an approximate read
+    private static final int SPINNING_READS = 64;
+    private static final int MAX_READS = 256;
+
+    private final int[] totals;
+    private final AtomicIntegerArray freeCounts;
+    private final AtomicIntegerArray reservedCounts;
+    private final AtomicIntegerArray heldCounts;
+    private final AtomicLong updatesStarted = new AtomicLong();
+    private final AtomicLong updatesCompleted = new AtomicLong();
+
+    OccupancyCounters(int[] totals) {
+        this.totals = totals.clone();
+        this.freeCounts = new AtomicIntegerArray(this.totals);
+        this.reservedCounts = new AtomicIntegerArray(this.totals.length);
+        this.heldCounts = new AtomicIntegerArray(this.totals.length);
+    }
+
+    void beginUpdate() {
+        updatesStarted.incrementAndGet();
+    }
+
+    void endUpdate() {
+        updatesCompleted.incrementAndGet();
+    }
+
+    void onOccupied(SpotType type) {
+        freeCounts.decrementAndGet(type.ordinal());
+    }
+
+    void onFreed(SpotType type) {
+        freeCounts.incrementAndGet(type.ordinal());
+    }
+
+    void onReserved(SpotType type) {
+        freeCounts.decrementAndGet(type.ordinal());
+        reservedCounts.incrementAndGet(type.ordinal());
+    }
+
+    void onReservationClaimed(SpotType type) {
+        reservedCounts.decrementAndGet(type.ordinal());
+    }
+
+    void onReservationCancelled(SpotType type) {
+        reservedCounts.decrementAndGet(type.ordinal());
+        freeCounts.incrementAndGet(type.ordinal());
+    }
+
+    // A reserved spot turned into a held one: free again in the counts
+    void onHeld(SpotType type) {
+        reservedCounts.decrementAndGet(type.ordinal());
+        freeCounts.incrementAndGet(type.ordinal());
+        heldCounts.incrementAndGet(type.ordinal());
+    }
+
+    // A held spot turned back into a plain reservation (before it is claimed or cancelled)
+    void onHoldEnded(SpotType type) {
+        heldCounts.decrementAndGet(type.ordinal());
+        freeCounts.decrementAndGet(type.ordinal());
+        reservedCounts.incrementAndGet(type.ordinal());
+    }
+
+    int total(SpotType type) {
+        return totals[type.ordinal()];
+    }
+
+    int free(SpotType type) {
+        return freeCounts.get(type.ordinal());
+    }
+
+    int reserved(SpotType type) {
+        return reservedCounts.get(type.ordinal());
+    }
+
+    int held(SpotType type) {
+        return heldCounts.get(type.ordinal());
+    }
+
+    /**
+     * Reads the counts of all classes as of a single point in time, or
+     * approximately if updates kept running (see readConsistently).
+     */
+    OccupancySnapshot snapshot() {
+        int[] free = new int[totals.length];
+        int[] reserved = new int[totals.length];
+        int[] held = new int[totals.length];
+        long stamp = readConsistently(() -> copyCounts(free, reserved, held));
+        return snapshotOf(free, reserved, held, stamp >= 0);
+    }
+
+    /**
+     * Copies the counts; only consistent when called from a readConsistently() read.
+     */
+    void copyCounts(int[] free, int[] reserved, int[] held) {
+        for (int i = 0; i < free.length; i++) {
+            free[i] = freeCounts.get(i);
+            reserved[i] = reservedCounts.get(i);
+            held[i] = heldCounts.get(i);
+        }
+    }
+
+    OccupancySnapshot snapshotOf(int[] free, int[] reserved, int[] held, boolean consistent) {
+        return new OccupancySnapshot(totals, free, reserved, held, consistent);
+    }
+
+    /**
+     * Runs 'read' until it ran while no update was in progress, and returns
+     * the version it saw (the number of updates completed before it). After
+     * MAX_READS attempts, runs it one last time whatever the writers do and
+     * returns ~version (a negative number): what it read is approximate.
+     */
+    long readConsistently(Runnable read) {
+        for (int attempt = 1; attempt < MAX_READS; attempt++) {
+            long completed = updatesCompleted.get();
+            if (updatesStarted.get() == completed) {
+                read.run();
+                if (updatesStarted.get() == completed) {
+                    return completed;
+                }
+            }
+            // A writer was in the middle of an update, read again
+            if (attempt < SPINNING_READS) {
+                Thread.onSpinWait();
+            } else {
+                // Let the updates in progress finish (they may be descheduled)
+                Thread.yield();
+            }
+        }
+        long completed = updatesCompleted.get();
+        read.run();
+        return updatesStarted.get() == completed ? completed : ~completed;
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.parking.domain;
+
+import org.example.parking.model.SpotType;
+
+/**
+ * Immutable view of the spot counts of a Parking (total, free, reserved and
+ * occupied spots of every class), consistent at one point in time unless
+ * flagged otherwise (see isConsistent()).
+ */
+public final class OccupancySnapshot {
+
+    private final int[] totals;
+    private final int[] free;
+    private final int[] reserved;
+    private final int[] held;
+    private final boolean consistent;
+
+    OccupancySnapshot(int[] totals, int[] free, int[] reserved, int[] held, boolean consistent) {
+        this.totals = totals;
+        this.free = free;
+        this.reserved = reserved;
+        this.held = held;
+        this.consistent = consistent;
+    }
+
+    /**
+     * Returns false if the counts were read while spots kept changing, after
+     * too many attempts at a consistent read: each count is right, but they
+     * may belong to slightly different points in time.
+     */
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    public int getTotal(SpotType type) {
+        return totals[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of free spots, those held by gate buffers included.
+     */
+    public int getFree(SpotType type) {
+        return free[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of free spots held by gate buffers (see Parking.tryHold),
+     * which only a gate can take right away.
+     */
+    public int getHeld(SpotType type) {
+        return held[type.ordinal()];
+    }
+
+    public int getReserved(SpotType type) {
+        return reserved[type.ordinal()];
+    }
+
+    /**
+     * Returns the number of spots holding a parked vehicle (reserved spots excluded).
+     */
+    public int getOccupied(SpotType type) {
+        return getTotal(type) - getFree(type) - getReserved(type);
+    }
+
+    /**
+     * Returns the number of free spots, all classes included.
+     */
+    public int getFreeSpotsCount() {
+        int count = 0;
+        for (int f : free) {
+            count += f;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("OccupancySnapshot{");
+        for (SpotType type : SpotType.values()) {
+            if (type.ordinal() > 0) {
+                sb.append(", ");
+            }
+            sb.append(type).append('=').append(getFree(type)).append('/').append(getTotal(type));
+        }
+        return sb.append(consistent ? "}" : ", approximate}").toString();
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.parking.domain;
+
+import org.example.parking.model.ParkingSpot;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+/**
+ * Short-lived view of one spot of an off-heap Parking.
+ * Holds no state of its own: the id is derived from the class and index,
+ * and occupancy is read and changed in the Parking bitmap.
+ */
+final class OffHeapSpot extends ParkingSpot {
+
+    private final Parking parking;
+    private final SpotType type;
+    private final int index;
+
+    OffHeapSpot(Parking parking, SpotType type, int index) {
+        super(null);
+        this.parking = parking;
+        this.type = type;
+        this.index = index;
+    }
+
+    @Override
+    public String getId() {
+        return Parking.spotId(type, index);
+    }
+
+    @Override
+    public int getPosition() {
+        return index;
+    }
+
+    @Override
+    public SpotType getType() {
+        return type;
+    }
+
+    @Override
+    public boolean isOccupied() {
+        return parking.isOccupied(type, index);
+    }
+
+    @Override
+    public boolean isReserved() {
+        return parking.isReserved(type, index);
+    }
+
+    @Override
+    public boolean isFree() {
+        return !isOccupied() && !isReserved();
+    }
+
+    @Override
+    public boolean tryReserve() {
+        return parking.tryReserve(type, index);
+    }
+
+    @Override
+    public boolean claimReservation() {
+        return parking.claimReservation(type, index);
+    }
+
+    @Override
+    public boolean cancelReservation() {
+        return parking.cancelReservation(type, index);
+    }
+
+    @Override
+    public boolean tryOccupy() {
+        return parking.tryOccupy(type, index);
+    }
+
+    @Override
+    public void free() {
+        parking.free(type, index);
+    }
+
+    @Override
+    public boolean canFitVehicle(Vehicle vehicle) {
+        return isFree() && type.accepts(vehicle);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof OffHeapSpot other
+                && other.parking == parking && other.type == type && other.index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * System.identityHashCode(parking) + type.hashCode()) + index;
+    }
+
+    @Override
+    public String toString() {
+        return getId();
+    }
+}
@@ -4,20 +4,84 @@ import org.example.parking.model.BigSpot;
 import org.example.parking.model.CarSpot;
 import org.example.parking.model.MotoSpot;
 import org.example.parking.model.ParkingSpot;
+import org.example.parking.model.SpotLocation;
+import org.example.parking.model.SpotStateListener;
+import org.example.parking.model.SpotType;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Represents the overall parking structure, holding
  * lists of different types of spots (moto, car, big).
+ *
+ * A Parking created with offHeap() or mapped() keeps no object per spot:
+ * the occupancy of each class is a bitmap in an off-heap region, and the
+ * spot lists are views creating lightweight spot handles on access.
+ *
+ * A Parking built from a LotLayout (fromLayout) is off-heap too, and takes
+ * the levels, rows and spot locations from the layout, computing them from
+ * spot indexes when asked for: startup does not depend on the lot size.
+ *
+ * Spots can be given a location (level, row, position) and the parking
+ * entrances, each one keeping the free spots ranked by distance from it
+ * (see Entrance), so gates can send drivers to the closest free spot.
  */
 public class Parking {
 
+    // Off-heap region layout: header, then the free-spot bitmap of each class,
+    // then the "not reserved" bitmap of each class
+    private static final int REGION_MAGIC = 0x504B4C54; // "PKLT"
+    private static final int REGION_VERSION = 2;
+    private static final int REGION_HEADER = 32;
+
+    // False when spot state lives in the off-heap region instead of spot objects
+    private final boolean onHeap;
+
     private final List<ParkingSpot> motoSpots;
     private final List<ParkingSpot> carSpots;
     private final List<ParkingSpot> bigSpots;
 
+    // One free-spot bitset per spot class, indexed by SpotType.ordinal()
+    private final FreeSpotIndex[] freeIndexes = new FreeSpotIndex[SpotType.values().length];
+
+    // Bit set while the spot is not reserved. Off-heap, this is the reserved
+    // state itself; on heap, it mirrors the spot objects for snapshots
+    private final FreeSpotIndex[] unreserved = new FreeSpotIndex[SpotType.values().length];
+
+    // Runs of adjacent free spots, only tracked for classes hosting
+    // multi-spot vehicles (vans on car spots); null for the others
+    private final FreeRunTree[] runTrees = new FreeRunTree[SpotType.values().length];
+
+    // Set while a bulk load defers the run tree updates (see beginBulkLoad)
+    private volatile boolean bulkLoading;
+
+    // Free spot counters per class, kept in sync with the indexes; their
+    // update stamps also guard the bitmaps (see getLotSnapshot)
+    private final OccupancyCounters counters;
+
+    // Location of every spot of a class, packed (see pack), or null while
+    // the class keeps the default layout (see getLocation)
+    private final long[][] locations = new long[SpotType.values().length][];
+
+    // The layout the parking was built from, or null; its levels are created on first access
+    private final LotLayout layout;
+    private final AtomicReferenceArray<ParkingLevel> levels;
+
+    // Copy-on-write: every spot transition is reported to each entrance
+    private volatile Entrance[] entrances = new Entrance[0];
+    private final Object entrancesLock = new Object();
+
     /**
      * Constructor that creates the specified number
      * of moto, car, and big spots.
@@ -37,6 +101,222 @@ public class Parking {
         for (int i = 0; i < nbBigSpots; i++) {
             bigSpots.add(new BigSpot("B-" + i));
         }
+
+        this.counters = new OccupancyCounters(new int[]{nbMotoSpots, nbCarSpots, nbBigSpots});
+
+        runTrees[SpotType.CAR.ordinal()] = new FreeRunTree(nbCarSpots);
+
+        // Build the free-spot indexes and attach every spot to them
+        attachSpots(SpotType.MOTO, motoSpots);
+        attachSpots(SpotType.CAR, carSpots);
+        attachSpots(SpotType.BIG, bigSpots);
+        this.onHeap = true;
+        this.layout = null;
+        this.levels = null;
+    }
+
+    // Off-heap parking: the region holds the header and the bitmaps
+    private Parking(ByteBuffer region, int nbMotoSpots, int nbCarSpots, int nbBigSpots, LotLayout layout) {
+        int[] sizes = {nbMotoSpots, nbCarSpots, nbBigSpots};
+        region.order(ByteOrder.nativeOrder());
+        region.putInt(0, REGION_MAGIC).putInt(4, REGION_VERSION);
+        int offset = REGION_HEADER;
+        for (SpotType type : SpotType.values()) {
+            int size = sizes[type.ordinal()];
+            region.putInt(8 + 4 * type.ordinal(), size);
+            freeIndexes[type.ordinal()] = new FreeSpotIndex(size, region.position(offset));
+            offset += FreeSpotIndex.wordsFor(size) * 8;
+        }
+        for (SpotType type : SpotType.values()) {
+            int size = sizes[type.ordinal()];
+            unreserved[type.ordinal()] = new FreeSpotIndex(size, region.position(offset));
+            offset += FreeSpotIndex.wordsFor(size) * 8;
+        }
+        this.motoSpots = new OffHeapSpotList(SpotType.MOTO, nbMotoSpots);
+        this.carSpots = new OffHeapSpotList(SpotType.CAR, nbCarSpots);
+        this.bigSpots = new OffHeapSpotList(SpotType.BIG, nbBigSpots);
+        // No run tree: it would cost heap per spot, vans use the bitmap run search
+        this.counters = new OccupancyCounters(sizes);
+        this.onHeap = false;
+        this.layout = layout;
+        this.levels = layout == null ? null : new AtomicReferenceArray<>(layout.getLevelCount());
+    }
+
+    /**
+     * Creates a parking whose spot state lives in off-heap memory
+     * (two bits per spot), so its heap footprint does not grow with its size.
+     */
+    public static Parking offHeap(int nbMotoSpots, int nbCarSpots, int nbBigSpots) {
+        ByteBuffer region = ByteBuffer.allocateDirect(regionSize(nbMotoSpots, nbCarSpots, nbBigSpots) + 8).alignedSlice(8);
+        return new Parking(region, nbMotoSpots, nbCarSpots, nbBigSpots, null);
+    }
+
+    /**
+     * Creates an off-heap parking (see offHeap) with the spots, levels and
+     * locations of the given layout. Nothing is created per spot or per
+     * level: a multi-million-spot facility comes up in a few milliseconds.
+     */
+    public static Parking fromLayout(LotLayout layout) {
+        int moto = layout.getSpotCount(SpotType.MOTO);
+        int car = layout.getSpotCount(SpotType.CAR);
+        int big = layout.getSpotCount(SpotType.BIG);
+        ByteBuffer region = ByteBuffer.allocateDirect(regionSize(moto, car, big) + 8).alignedSlice(8);
+        return new Parking(region, moto, car, big, layout);
+    }
+
+    /**
+     * Same as offHeap(), with the spot state in a memory-mapped file the OS
+     * can page in and out. The file is (re)initialized with every spot free:
+     * it is working memory, not persistence (see ParkingPersistence).
+     */
+    public static Parking mapped(Path file, int nbMotoSpots, int nbCarSpots, int nbBigSpots) throws IOException {
+        int size = regionSize(nbMotoSpots, nbCarSpots, nbBigSpots);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // The mapping stays valid once the channel is closed
+            return new Parking(channel.map(FileChannel.MapMode.READ_WRITE, 0, size),
+                    nbMotoSpots, nbCarSpots, nbBigSpots, null);
+        }
+    }
+
+    private static int regionSize(int nbMotoSpots, int nbCarSpots, int nbBigSpots) {
+        long words = (long) FreeSpotIndex.wordsFor(nbMotoSpots) + FreeSpotIndex.wordsFor(nbCarSpots)
+                + FreeSpotIndex.wordsFor(nbBigSpots);
+        // Free and "not reserved" bitmaps
+        return Math.toIntExact(REGION_HEADER + 2 * words * 8);
+    }
+
+    /**
+     * Returns the id of a spot, derived from its class and index (e.g., "C-42").
+     */
+    public static String spotId(SpotType type, int index) {
+        return switch (type) {
+            case MOTO -> "M-";
+            case CAR -> "C-";
+            case BIG -> "B-";
+        } + index;
+    }
+
+    /**
+     * Returns true if the spot state of this parking is kept off-heap.
+     */
+    public boolean isOffHeap() {
+        return !onHeap;
+    }
+
+    private void attachSpots(SpotType type, List<ParkingSpot> spots) {
+        FreeSpotIndex index = new FreeSpotIndex(spots.size());
+        freeIndexes[type.ordinal()] = index;
+        FreeSpotIndex notReserved = new FreeSpotIndex(spots.size());
+        unreserved[type.ordinal()] = notReserved;
+        FreeRunTree runs = runTrees[type.ordinal()];
+        SpotStateListener listener = new SpotStateListener() {
+            @Override
+            public void beforeChange(ParkingSpot spot) {
+                counters.beginUpdate();
+            }
+
+            @Override
+            public void afterChange(ParkingSpot spot) {
+                counters.endUpdate();
+            }
+
+            @Override
+            public void onOccupied(ParkingSpot spot) {
+                syncBits(spot);
+                counters.onOccupied(type);
+            }
+
+            @Override
+            public void onFreed(ParkingSpot spot) {
+                syncBits(spot);
+                counters.onFreed(type);
+            }
+
+            @Override
+            public void onReserved(ParkingSpot spot) {
+                syncBits(spot);
+                counters.onReserved(type);
+            }
+
+            @Override
+            public void onReservationClaimed(ParkingSpot spot) {
+                syncBits(spot);
+                counters.onReservationClaimed(type);
+            }
+
+            @Override
+            public void onReservationCancelled(ParkingSpot spot) {
+                syncBits(spot);
+                counters.onReservationCancelled(type);
+            }
+
+            // Copies the current state of the spot rather than applying the
+            // transition: two transitions of one spot may notify out of order
+            // (freed, claimed by another thread, then both listeners run), and
+            // re-reading the state until it is stable leaves the last writer right.
+            private void syncBits(ParkingSpot spot) {
+                int position = spot.getPosition();
+                Entrance[] current = entrances;
+                boolean free;
+                boolean reserved;
+                do {
+                    free = spot.isFree();
+                    reserved = spot.isReserved();
+                    // Bits are only written when they change (reads are cheaper)
+                    if (index.isFree(position) != free) {
+                        if (free) {
+                            index.markFree(position);
+                        } else {
+                            index.markOccupied(position);
+                        }
+                    }
+                    if (notReserved.isFree(position) == reserved) {
+                        if (reserved) {
+                            notReserved.markOccupied(position);
+                        } else {
+                            notReserved.markFree(position);
+                        }
+                    }
+                    if (runs != null && !bulkLoading) {
+                        if (free) {
+                            runs.markFree(position);
+                        } else {
+                            runs.markOccupied(position);
+                        }
+                    }
+                    for (Entrance entrance : current) {
+                        entrance.sync(type, position, free);
+                    }
+                } while (free != spot.isFree() || reserved != spot.isReserved());
+            }
+        };
+        for (int i = 0; i < spots.size(); i++) {
+            spots.get(i).attach(i, listener);
+        }
+    }
+
+    /**
+     * Starts loading many spot states at once (e.g., recovering a parking
+     * from disk): the run tree is no longer updated on every transition but
+     * rebuilt once by endBulkLoad. Until then, runs are not searched right,
+     * so no other thread may park in the parking.
+     */
+    public void beginBulkLoad() {
+        bulkLoading = true;
+    }
+
+    /**
+     * Ends a bulk load, rebuilding the run tree from the free-spot index in O(n).
+     */
+    public void endBulkLoad() {
+        for (SpotType type : SpotType.values()) {
+            FreeRunTree runs = runTrees[type.ordinal()];
+            if (runs != null) {
+                runs.rebuild(freeIndexes[type.ordinal()]);
+            }
+        }
+        bulkLoading = false;
     }
 
     // Getters for the lists, in case we need them
@@ -52,18 +332,576 @@ public class Parking {
         return bigSpots;
     }
 
+    /**
+     * Returns the list of spots of the given class.
+     */
+    public List<ParkingSpot> getSpots(SpotType type) {
+        return switch (type) {
+            case MOTO -> motoSpots;
+            case CAR -> carSpots;
+            case BIG -> bigSpots;
+        };
+    }
+
+    /**
+     * Returns the number of spots of the given class.
+     */
+    public int getSpotCount(SpotType type) {
+        return counters.total(type);
+    }
+
+    /**
+     * Atomically switches a spot from free to occupied.
+     * Returns false if it was already occupied.
+     */
+    public boolean tryOccupy(SpotType type, int index) {
+        if (onHeap) {
+            return getSpots(type).get(index).tryOccupy();
+        }
+        counters.beginUpdate();
+        try {
+            if (!freeIndexes[type.ordinal()].tryClaim(index)) {
+                return false;
+            }
+            counters.onOccupied(type);
+            syncEntrances(type, index);
+            return true;
+        } finally {
+            counters.endUpdate();
+        }
+    }
+
+    /**
+     * Frees an occupied spot (no-op if it is free or reserved).
+     */
+    public void free(SpotType type, int index) {
+        if (onHeap) {
+            getSpots(type).get(index).free();
+        } else {
+            counters.beginUpdate();
+            if (unreserved[type.ordinal()].isFree(index) && freeIndexes[type.ordinal()].release(index)) {
+                counters.onFreed(type);
+                syncEntrances(type, index);
+            }
+            counters.endUpdate();
+        }
+    }
+
+    public boolean isOccupied(SpotType type, int index) {
+        if (onHeap) {
+            return getSpots(type).get(index).isOccupied();
+        }
+        return !freeIndexes[type.ordinal()].isFree(index) && unreserved[type.ordinal()].isFree(index);
+    }
+
+    public boolean isReserved(SpotType type, int index) {
+        if (onHeap) {
+            return getSpots(type).get(index).isReserved();
+        }
+        return !unreserved[type.ordinal()].isFree(index);
+    }
+
+    /**
+     * Atomically switches a spot from free to reserved.
+     * Returns false if it was not free.
+     */
+    public boolean tryReserve(SpotType type, int index) {
+        if (onHeap) {
+            return getSpots(type).get(index).tryReserve();
+        }
+        counters.beginUpdate();
+        try {
+            if (!freeIndexes[type.ordinal()].tryClaim(index)) {
+                return false;
+            }
+            unreserved[type.ordinal()].tryClaim(index);
+            counters.onReserved(type);
+            syncEntrances(type, index);
+            return true;
+        } finally {
+            counters.endUpdate();
+        }
+    }
+
+    /**
+     * Atomically switches a spot from reserved to occupied.
+     * Returns false if it was not reserved (e.g., the reservation just expired).
+     */
+    public boolean claimReservation(SpotType type, int index) {
+        if (onHeap) {
+            return getSpots(type).get(index).claimReservation();
+        }
+        counters.beginUpdate();
+        try {
+            if (!unreserved[type.ordinal()].release(index)) {
+                return false;
+            }
+            counters.onReservationClaimed(type);
+            return true;
+        } finally {
+            counters.endUpdate();
+        }
+    }
+
+    /**
+     * Atomically switches a spot from reserved back to free.
+     * Returns false if it was not reserved.
+     */
+    public boolean cancelReservation(SpotType type, int index) {
+        if (onHeap) {
+            return getSpots(type).get(index).cancelReservation();
+        }
+        counters.beginUpdate();
+        try {
+            if (!unreserved[type.ordinal()].release(index)) {
+                return false;
+            }
+            freeIndexes[type.ordinal()].release(index);
+            counters.onReservationCancelled(type);
+            syncEntrances(type, index);
+            return true;
+        } finally {
+            counters.endUpdate();
+        }
+    }
+
+    /**
+     * Atomically switches a spot from free to held: reserved for a gate buffer,
+     * so no other vehicle gets it, yet still counted as free (the buffer gives
+     * it back on demand). Returns false if it was not free.
+     */
+    public boolean tryHold(SpotType type, int index) {
+        if (onHeap) {
+            if (!getSpots(type).get(index).tryReserve()) {
+                return false;
+            }
+            counters.beginUpdate();
+            counters.onHeld(type);
+            counters.endUpdate();
+            return true;
+        }
+        counters.beginUpdate();
+        try {
+            if (!freeIndexes[type.ordinal()].tryClaim(index)) {
+                return false;
+            }
+            unreserved[type.ordinal()].tryClaim(index);
+            counters.onReserved(type);
+            counters.onHeld(type);
+            syncEntrances(type, index);
+            return true;
+        } finally {
+            counters.endUpdate();
+        }
+    }
+
+    /**
+     * Atomically switches a held spot to occupied (see tryHold).
+     * Returns false if it was not reserved.
+     */
+    public boolean claimHold(SpotType type, int index) {
+        return endHold(type, index, true);
+    }
+
+    /**
+     * Atomically switches a held spot back to free (see tryHold).
+     * Returns false if it was not reserved.
+     */
+    public boolean releaseHold(SpotType type, int index) {
+        return endHold(type, index, false);
+    }
+
+    private boolean endHold(SpotType type, int index, boolean claim) {
+        if (onHeap) {
+            ParkingSpot spot = getSpots(type).get(index);
+            // Counted as a reservation again first, so the spot is never counted free twice
+            counters.beginUpdate();
+            counters.onHoldEnded(type);
+            counters.endUpdate();
+            if (claim ? spot.claimReservation() : spot.cancelReservation()) {
+                return true;
+            }
+            counters.beginUpdate();
+            counters.onHeld(type);
+            counters.endUpdate();
+            return false;
+        }
+        counters.beginUpdate();
+        try {
+            if (!unreserved[type.ordinal()].release(index)) {
+                return false;
+            }
+            counters.onHoldEnded(type);
+            if (claim) {
+                counters.onReservationClaimed(type);
+            } else {
+                freeIndexes[type.ordinal()].release(index);
+                counters.onReservationCancelled(type);
+                syncEntrances(type, index);
+            }
+            return true;
+        } finally {
+            counters.endUpdate();
+        }
+    }
+
+    // Off-heap version of the entrance update done in syncBits: re-reads the
+    // bit until it is stable, so the last transition of the spot wins
+    private void syncEntrances(SpotType type, int index) {
+        Entrance[] current = entrances;
+        if (current.length == 0) {
+            return;
+        }
+        FreeSpotIndex freeIndex = freeIndexes[type.ordinal()];
+        boolean free;
+        do {
+            free = freeIndex.isFree(index);
+            for (Entrance entrance : current) {
+                entrance.sync(type, index, free);
+            }
+        } while (free != freeIndex.isFree(index));
+    }
+
+    /**
+     * Places a spot. Until they are placed, the spots of each class stand
+     * where the LotLayout of the parking puts them or, without one, in index
+     * order along one row of level 0 (row = SpotType.ordinal()).
+     * The layout must be complete before entrances are added.
+     */
+    public void setLocation(SpotType type, int index, SpotLocation location) {
+        checkIndex(type, index);
+        synchronized (entrancesLock) {
+            checkNoEntrance();
+            locationsOf(type)[index] = pack(location.getLevel(), location.getRow(), location.getPosition());
+        }
+    }
+
+    /**
+     * Lays every spot out in rows of spotsPerRow spots, rowsPerLevel rows per
+     * level: the moto spots first, then the car spots from the next row, then
+     * the big spots. Must be called before entrances are added.
+     */
+    public void layOutInRows(int spotsPerRow, int rowsPerLevel) {
+        if (spotsPerRow <= 0 || rowsPerLevel <= 0) {
+            throw new IllegalArgumentException("Rows must hold spots: " + spotsPerRow + " spots per row, "
+                    + rowsPerLevel + " rows per level");
+        }
+        synchronized (entrancesLock) {
+            checkNoEntrance();
+            long row = 0;
+            for (SpotType type : SpotType.values()) {
+                long[] packed = locationsOf(type);
+                for (int i = 0; i < packed.length; i++) {
+                    long spotRow = row + i / spotsPerRow;
+                    packed[i] = pack(Math.toIntExact(spotRow / rowsPerLevel), (int) (spotRow % rowsPerLevel),
+                            i % spotsPerRow);
+                }
+                row += (packed.length + spotsPerRow - 1) / spotsPerRow;
+            }
+        }
+    }
+
+    /**
+     * Returns the location of a spot (see setLocation for the default one).
+     */
+    public SpotLocation getLocation(SpotType type, int index) {
+        checkIndex(type, index);
+        return unpack(locate(type, index));
+    }
+
+    // Packed location of a spot
+    private long locate(SpotType type, int index) {
+        long[] packed = locations[type.ordinal()];
+        if (packed != null) {
+            return packed[index];
+        }
+        return layout != null ? layout.locate(type, index) : pack(0, type.ordinal(), index);
+    }
+
+    /**
+     * Tells whether the spots [start, start + length) of a class stand next
+     * to each other along one row, so a vehicle can take all of them.
+     * Always true without a layout: adjacent indexes are adjacent spots.
+     */
+    public boolean isContiguous(SpotType type, int start, int length) {
+        long[] packed = locations[type.ordinal()];
+        if (packed != null) {
+            for (int i = 1; i < length; i++) {
+                if (packed[start + i] >>> 24 != packed[start] >>> 24 || packed[start + i] != packed[start] + i) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return layout == null || layout.isContiguous(type, start, length);
+    }
+
+    /**
+     * Returns the layout the parking was built from, or null.
+     */
+    public LotLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Returns a view of one level of a parking built from a layout, created
+     * on first access.
+     */
+    public ParkingLevel getLevel(int level) {
+        if (layout == null) {
+            throw new IllegalStateException("Levels are only known for a parking built from a LotLayout");
+        }
+        if (level < 0 || level >= layout.getLevelCount()) {
+            throw new IndexOutOfBoundsException("No level " + level);
+        }
+        ParkingLevel view = levels.get(level);
+        if (view == null) {
+            levels.compareAndSet(level, null, new ParkingLevel(this, layout, level));
+            view = levels.get(level);
+        }
+        return view;
+    }
+
+    /**
+     * Returns how many spots of [fromIndex, toIndex) of the given class are free.
+     */
+    int countFreeSpots(SpotType type, int fromIndex, int toIndex) {
+        return freeIndexes[type.ordinal()].countFree(fromIndex, toIndex);
+    }
+
+    /**
+     * Adds an entrance at the given location, with the default distance
+     * costs of Entrance.
+     */
+    public Entrance addEntrance(String name, SpotLocation location) {
+        return addEntrance(name, location, Entrance.DEFAULT_LEVEL_COST, Entrance.DEFAULT_ROW_COST);
+    }
+
+    /**
+     * Adds an entrance at the given location. Its spots are ranked by walking
+     * distance (see SpotLocation.distanceTo), which costs a sort of the spots
+     * of each class: entrances are meant to be added while setting the
+     * parking up, before the gates open. Added while vehicles come and go,
+     * its ranking may miss a spot freed meanwhile; the service then still
+     * finds it through the free-spot index, only not as the nearest one.
+     */
+    public Entrance addEntrance(String name, SpotLocation location, int levelCost, int rowCost) {
+        if (levelCost < 0 || rowCost < 0) {
+            throw new IllegalArgumentException("Distance costs cannot be negative");
+        }
+        SpotType[] types = SpotType.values();
+        synchronized (entrancesLock) {
+            NearestFreeIndex[] indexes = new NearestFreeIndex[types.length];
+            for (SpotType type : types) {
+                // Sort keys: distance in the high half, spot index in the low half
+                long[] keys = new long[getSpotCount(type)];
+                for (int i = 0; i < keys.length; i++) {
+                    long distance = location.distanceTo(getLocation(type, i), levelCost, rowCost);
+                    keys[i] = Math.min(distance, Integer.MAX_VALUE) << 32 | i;
+                }
+                Arrays.sort(keys);
+                int[] spotsByRank = new int[keys.length];
+                for (int rank = 0; rank < keys.length; rank++) {
+                    spotsByRank[rank] = (int) keys[rank];
+                }
+                indexes[type.ordinal()] = new NearestFreeIndex(spotsByRank);
+            }
+            Entrance entrance = new Entrance(this, name, location, levelCost, rowCost, indexes);
+            Entrance[] grown = Arrays.copyOf(entrances, entrances.length + 1);
+            grown[grown.length - 1] = entrance;
+            entrances = grown;
+            // Published first: transitions from now on update the index too
+            for (SpotType type : types) {
+                for (int i = nextFreeSpotIndex(type, 0); i >= 0; i = nextFreeSpotIndex(type, i + 1)) {
+                    entrance.sync(type, i, true);
+                }
+            }
+            return entrance;
+        }
+    }
+
+    public List<Entrance> getEntrances() {
+        return List.of(entrances);
+    }
+
+    private void checkIndex(SpotType type, int index) {
+        if (index < 0 || index >= getSpotCount(type)) {
+            throw new IndexOutOfBoundsException("No " + type + " spot " + index);
+        }
+    }
+
+    private void checkNoEntrance() {
+        if (entrances.length > 0) {
+            throw new IllegalStateException("The layout cannot change once entrances are added");
+        }
+    }
+
+    private long[] locationsOf(SpotType type) {
+        long[] packed = locations[type.ordinal()];
+        if (packed == null) {
+            packed = new long[getSpotCount(type)];
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = locate(type, i);
+            }
+            locations[type.ordinal()] = packed;
+        }
+        return packed;
+    }
+
+    // Level in bits 48-63, row in bits 24-47, position in bits 0-23
+    static long pack(int level, int row, int position) {
+        if (level > SpotLocation.MAX_LEVEL || row > SpotLocation.MAX_ROW || position > SpotLocation.MAX_POSITION) {
+            throw new IllegalArgumentException("Location out of range: level " + level + ", row " + row
+                    + ", position " + position);
+        }
+        return (long) level << 48 | (long) row << 24 | position;
+    }
+
+    static SpotLocation unpack(long location) {
+        return new SpotLocation((int) (location >>> 48), (int) (location >>> 24) & SpotLocation.MAX_ROW,
+                (int) location & SpotLocation.MAX_POSITION);
+    }
+
+    /**
+     * Returns the index of the first free spot of the given class
+     * at or after fromIndex, or -1 if there is none.
+     * Uses the free-spot bitset, so it never walks occupied spots one by one.
+     */
+    public int nextFreeSpotIndex(SpotType type, int fromIndex) {
+        return freeIndexes[type.ordinal()].nextFree(fromIndex);
+    }
+
+    /**
+     * Returns the index of the first spot of the given class at or after
+     * fromIndex that is not free (occupied or reserved), or -1 if there is none.
+     * Together with nextFreeSpotIndex, walks the runs of free spots a word at a time.
+     */
+    public int nextTakenSpotIndex(SpotType type, int fromIndex) {
+        return freeIndexes[type.ordinal()].nextTaken(fromIndex);
+    }
+
+    /**
+     * Returns the index of the first spot of the leftmost run of 'length'
+     * adjacent free spots of the given class, or -1 if there is none.
+     * O(log n) for classes with a run tree (car spots of an on-heap parking),
+     * otherwise a word by word scan of the free-spot bitset. Runs of
+     * adjacent indexes that do not stand next to each other (across rows or
+     * other spot classes, see isContiguous) are skipped.
+     */
+    public int findFreeRun(SpotType type, int length) {
+        if (length <= 1) {
+            return nextFreeSpotIndex(type, 0);
+        }
+        FreeRunTree runs = runTrees[type.ordinal()];
+        FreeSpotIndex index = freeIndexes[type.ordinal()];
+        int start = runs != null ? runs.findRun(length) : index.findRun(length, 0);
+        while (start >= 0 && !isContiguous(type, start, length)) {
+            start = index.findRun(length, start + 1);
+        }
+        return start;
+    }
+
+    /**
+     * Returns the first index, at or after fromIndex, of a run of 'length'
+     * adjacent free spots of the given class, or -1 if there is none.
+     * A word by word scan of the free-spot bitset, e.g., to resume a search
+     * after a run lost to another thread; like findFreeRun(type, length),
+     * runs that do not stand next to each other are skipped.
+     */
+    public int findFreeRun(SpotType type, int length, int fromIndex) {
+        if (length <= 1) {
+            return nextFreeSpotIndex(type, fromIndex);
+        }
+        FreeSpotIndex index = freeIndexes[type.ordinal()];
+        int start = index.findRun(length, fromIndex);
+        while (start >= 0 && !isContiguous(type, start, length)) {
+            start = index.findRun(length, start + 1);
+        }
+        return start;
+    }
+
+    /**
+     * Returns the first free spot of the given class, or null if they are all occupied.
+     */
+    public ParkingSpot findFreeSpot(SpotType type) {
+        int index = nextFreeSpotIndex(type, 0);
+        return index < 0 ? null : getSpots(type).get(index);
+    }
+
     public boolean areMotoSpotsFull() {
-        return motoSpots.stream().allMatch(spot -> spot.isOccupied());
+        return counters.free(SpotType.MOTO) == 0;
     }
 
     public boolean areCarSpotsFull() {
-        return carSpots.stream().allMatch(spot -> spot.isOccupied());
+        return counters.free(SpotType.CAR) == 0;
     }
 
     public boolean areBigSpotsFull() {
-        return bigSpots.stream().allMatch(spot -> spot.isOccupied());
+        return counters.free(SpotType.BIG) == 0;
+    }
+
+    /**
+     * Returns how many spots of the given class are currently free, those
+     * held by gate buffers included.
+     */
+    public int getFreeSpotsCount(SpotType type) {
+        return counters.free(type);
+    }
+
+    /**
+     * Returns how many free spots of the given class are held by gate buffers.
+     */
+    public int getHeldSpotsCount(SpotType type) {
+        return counters.held(type);
+    }
+
+    /**
+     * Returns how many spots of the given class are currently reserved
+     * (spots held by gate buffers excluded).
+     */
+    public int getReservedSpotsCount(SpotType type) {
+        return counters.reserved(type);
+    }
+
+    /**
+     * Returns a view of the total, free, reserved and occupied counts of every
+     * spot class, taken at a single point in time unless updates kept racing
+     * with the read (see OccupancySnapshot.isConsistent()).
+     */
+    public OccupancySnapshot getOccupancySnapshot() {
+        return counters.snapshot();
     }
 
+    /**
+     * Returns a point-in-time copy of the state of every spot (free, reserved
+     * or occupied) along with the matching counts, e.g., for dashboards and
+     * gate displays. Taken under the seqlock of the occupancy counters, so
+     * park/unpark never wait for it (see OccupancyCounters); costs a copy of
+     * two bits per spot. Under heavy traffic it may come out approximate
+     * (see LotSnapshot.isConsistent()).
+     */
+    public LotSnapshot getLotSnapshot() {
+        SpotType[] types = SpotType.values();
+        long[][] free = new long[types.length][];
+        long[][] notReserved = new long[types.length][];
+        int[] freeCounts = new int[types.length];
+        int[] reservedCounts = new int[types.length];
+        int[] heldCounts = new int[types.length];
+        for (SpotType type : types) {
+            free[type.ordinal()] = new long[FreeSpotIndex.wordsFor(counters.total(type))];
+            notReserved[type.ordinal()] = new long[free[type.ordinal()].length];
+        }
+        long stamp = counters.readConsistently(() -> {
+            for (SpotType type : types) {
+                freeIndexes[type.ordinal()].copyWords(free[type.ordinal()]);
+                unreserved[type.ordinal()].copyWords(notReserved[type.ordinal()]);
+            }
+            counters.copyCounts(freeCounts, reservedCounts, heldCounts);
+        });
+        boolean consistent = stamp >= 0;
+        return new LotSnapshot(consistent ? stamp : ~stamp,
+                counters.snapshotOf(freeCounts, reservedCounts, heldCounts, consistent), free, notReserved);
+    }
 
     /**
      * Returns the total number of spots in the parking.
@@ -74,12 +912,10 @@ public class Parking {
 
     /**
      * Returns how many spots (of all kinds) are currently free.
+     * Constant time: reads the per-class counters instead of streaming the lists.
      */
     public int getFreeSpotsCount() {
-        long freeMoto = motoSpots.stream().filter(s -> !s.isOccupied()).count();
-        long freeCar = carSpots.stream().filter(s -> !s.isOccupied()).count();
-        long freeBig = bigSpots.stream().filter(s -> !s.isOccupied()).count();
-        return (int) (freeMoto + freeCar + freeBig);
+        return counters.free(SpotType.MOTO) + counters.free(SpotType.CAR) + counters.free(SpotType.BIG);
     }
 
     /**
@@ -95,4 +931,29 @@ public class Parking {
     public boolean isEmpty() {
         return getFreeSpotsCount() == getTotalSpots();
     }
+
+    // Spot list of an off-heap parking: handles are created on access
+    private final class OffHeapSpotList extends AbstractList<ParkingSpot> implements RandomAccess {
+
+        private final SpotType type;
+        private final int size;
+
+        OffHeapSpotList(SpotType type, int size) {
+            this.type = type;
+            this.size = size;
+        }
+
+        @Override
+        public ParkingSpot get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            return new OffHeapSpot(Parking.this, type, index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
 }
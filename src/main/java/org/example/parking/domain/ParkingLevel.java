@@ -0,0 +1,68 @@
+package org.example.parking.domain;
+
+import org.example.parking.model.ParkingSpot;
+import org.example.parking.model.SpotType;
+
+import java.util.List;
+
+/**
+ * One level of a Parking built from a LotLayout (see Parking.getLevel).
+ *
+ * The spots of a class on a level are a contiguous range of the spot
+ * indexes of that class, so the view only keeps the bounds of those ranges.
+ */
+public final class ParkingLevel {
+
+    private final Parking parking;
+    private final int number;
+
+    // First spot index and spot count of each class, indexed by SpotType.ordinal()
+    private final int[] firstIndexes = new int[SpotType.values().length];
+    private final int[] counts = new int[SpotType.values().length];
+
+    ParkingLevel(Parking parking, LotLayout layout, int number) {
+        this.parking = parking;
+        this.number = number;
+        for (SpotType type : SpotType.values()) {
+            firstIndexes[type.ordinal()] = layout.getFirstSpotIndex(number, type);
+            counts[type.ordinal()] = layout.getSpotCount(number, type);
+        }
+    }
+
+    public Parking getParking() {
+        return parking;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public int getSpotCount(SpotType type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * Returns the index, in the parking, of the first spot of the given class on this level.
+     */
+    public int getFirstSpotIndex(SpotType type) {
+        return firstIndexes[type.ordinal()];
+    }
+
+    public int getFreeSpotsCount(SpotType type) {
+        int first = firstIndexes[type.ordinal()];
+        return parking.countFreeSpots(type, first, first + counts[type.ordinal()]);
+    }
+
+    /**
+     * Returns the spots of the given class on this level, a view of the spots of the parking.
+     */
+    public List<ParkingSpot> getSpots(SpotType type) {
+        int first = firstIndexes[type.ordinal()];
+        return parking.getSpots(type).subList(first, first + counts[type.ordinal()]);
+    }
+
+    @Override
+    public String toString() {
+        return "ParkingLevel{" + number + "}";
+    }
+}
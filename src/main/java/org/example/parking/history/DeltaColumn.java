@@ -0,0 +1,111 @@
+package org.example.parking.history;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ring of int samples, indexed by an ever-growing sample index, stored as
+ * 16-bit deltas from the previous sample. Every BLOCK samples a keyframe
+ * holds the absolute value, so reading a sample sums at most BLOCK - 1 deltas.
+ *
+ * A delta that does not fit in a short (a lot of more than 32k spots
+ * filling up within one period) is marked ESCAPE and kept in a small side
+ * table instead. Not thread-safe: OccupancyHistory serializes access.
+ */
+final class DeltaColumn {
+
+    static final int BLOCK = 64;
+
+    private static final short ESCAPE = Short.MIN_VALUE;
+
+    private final short[] deltas;
+    private final int[] keyframes;
+    private final int mask;
+    private final Map<Integer, Integer> escapes = new HashMap<>();
+    private int last;
+
+    /**
+     * Capacity must be a power of two, at least BLOCK.
+     */
+    DeltaColumn(int capacity) {
+        this.deltas = new short[capacity];
+        this.keyframes = new int[capacity / BLOCK];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Stores the sample of the given index, right after index - 1
+     * (or as the first one of a run, see restart).
+     */
+    void append(long index, int value, boolean first) {
+        int slot = (int) index & mask;
+        if (deltas[slot] == ESCAPE) {
+            escapes.remove(slot);
+        }
+        if (first || slot % BLOCK == 0) {
+            if (first) {
+                // Older samples before this one in the block must not count
+                int blockStart = slot - slot % BLOCK;
+                for (int i = blockStart; i < blockStart + BLOCK; i++) {
+                    if (deltas[i] == ESCAPE) {
+                        escapes.remove(i);
+                    }
+                    deltas[i] = 0;
+                }
+            }
+            keyframes[slot / BLOCK] = value;
+            deltas[slot] = 0;
+        } else {
+            int delta = value - last;
+            if (delta > Short.MIN_VALUE && delta <= Short.MAX_VALUE) {
+                deltas[slot] = (short) delta;
+            } else {
+                deltas[slot] = ESCAPE;
+                escapes.put(slot, delta);
+            }
+        }
+        last = value;
+    }
+
+    private int delta(int slot) {
+        short delta = deltas[slot];
+        return delta == ESCAPE ? escapes.get(slot) : delta;
+    }
+
+    /**
+     * Returns the sample of the given index, which must still be in the ring.
+     */
+    int get(long index) {
+        int slot = (int) index & mask;
+        int blockStart = slot - slot % BLOCK;
+        int value = keyframes[blockStart / BLOCK];
+        for (int i = blockStart + 1; i <= slot; i++) {
+            value += delta(i);
+        }
+        return value;
+    }
+
+    /**
+     * Copies the samples of indexes [from, from + count) into 'into', which
+     * must all be in the ring: one keyframe, then one addition per sample.
+     */
+    void read(long from, int count, int[] into, int offset) {
+        if (count == 0) {
+            return;
+        }
+        int value = get(from);
+        into[offset] = value;
+        for (int i = 1; i < count; i++) {
+            int slot = (int) (from + i) & mask;
+            value = slot % BLOCK == 0 ? keyframes[slot / BLOCK] : value + delta(slot);
+            into[offset + i] = value;
+        }
+    }
+
+    /**
+     * Bytes used by the samples (escaped deltas excluded).
+     */
+    long footprintBytes() {
+        return 2L * deltas.length + 4L * keyframes.length;
+    }
+}
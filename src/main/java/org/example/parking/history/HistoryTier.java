@@ -0,0 +1,97 @@
+package org.example.parking.history;
+
+/**
+ * The samples of one Resolution: per spot class, a column of mean in-use
+ * spots and (below SECOND) a column of peak in-use spots over each period.
+ * Holds a contiguous run of sample indexes (period numbers since the epoch),
+ * the last 'capacity' ones at most. Once the ring wrapped, the oldest block
+ * is only partly kept: its keyframe was overwritten by the newest samples,
+ * so reads start at the next block.
+ */
+final class HistoryTier {
+
+    private final Resolution resolution;
+    private final int capacity;
+    private final DeltaColumn[] means;
+    // Null for SECOND: one sample per second is both the mean and the peak
+    private final DeltaColumn[] peaks;
+    private long first = -1;
+    private long last = -1;
+
+    HistoryTier(Resolution resolution, int samples, int spotTypes) {
+        int size = DeltaColumn.BLOCK;
+        // Room for a partly overwritten block on top of the samples to keep
+        while (size < samples + DeltaColumn.BLOCK - 1) {
+            size <<= 1;
+        }
+        this.resolution = resolution;
+        this.capacity = size;
+        this.means = new DeltaColumn[spotTypes];
+        this.peaks = resolution == Resolution.SECOND ? null : new DeltaColumn[spotTypes];
+        for (int type = 0; type < spotTypes; type++) {
+            means[type] = new DeltaColumn(size);
+            if (peaks != null) {
+                peaks[type] = new DeltaColumn(size);
+            }
+        }
+    }
+
+    Resolution resolution() {
+        return resolution;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Stores the samples of one period. Indexes only grow; skipping some
+     * starts a new run and drops the older samples.
+     */
+    void append(long index, int[] mean, int[] peak) {
+        boolean restart = last < 0 || index != last + 1;
+        if (restart) {
+            first = index;
+        }
+        for (int type = 0; type < means.length; type++) {
+            means[type].append(index, mean[type], restart);
+            if (peaks != null) {
+                peaks[type].append(index, peak[type], restart);
+            }
+        }
+        last = index;
+    }
+
+    /**
+     * Index of the oldest sample that can still be read, -1 if there is none
+     * yet: the first one of the run, or after a wrap the first one of the
+     * oldest block whose keyframe is intact.
+     */
+    long oldest() {
+        if (last < 0) {
+            return -1;
+        }
+        long newestBlock = last - last % DeltaColumn.BLOCK;
+        return Math.max(first, newestBlock + DeltaColumn.BLOCK - capacity);
+    }
+
+    /**
+     * Index of the newest sample, -1 if there is none yet.
+     */
+    long newest() {
+        return last;
+    }
+
+    void read(int type, long from, int count, int[] mean, int[] peak) {
+        means[type].read(from, count, mean, 0);
+        (peaks != null ? peaks[type] : means[type]).read(from, count, peak, 0);
+    }
+
+    long footprintBytes() {
+        long bytes = 0;
+        for (int type = 0; type < means.length; type++) {
+            bytes += means[type].footprintBytes() + (peaks != null ? peaks[type].footprintBytes() : 0);
+        }
+        return bytes;
+    }
+}
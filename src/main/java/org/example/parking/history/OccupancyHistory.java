@@ -0,0 +1,272 @@
+package org.example.parking.history;
+
+import org.example.parking.domain.OccupancySnapshot;
+import org.example.parking.domain.Parking;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.ParkingEventListener;
+import org.example.parking.service.ParkingService;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Embedded time series of the in-use spots (occupied or reserved) of every
+ * spot class of one Parking, for capacity planning.
+ *
+ * Fed by the park / unpark events of the service: an event only compares
+ * the clock with the current second, and the first event of a new second
+ * closes the previous ones with the counts of the parking as they were
+ * before that event (seconds without any event carry them forward).
+ * Samples are downsampled as they are closed, into three tiers:
+ *   - SECOND: in-use spots at the end of each second, kept 1 day by default,
+ *   - MINUTE: mean and peak of the seconds of each minute, kept 30 days,
+ *   - HOUR: mean of the minutes and peak of each hour, kept 2 years.
+ * Each tier is a ring of 16-bit deltas per class and column with a keyframe
+ * every 64 samples (see DeltaColumn): the defaults take about 2 MB for any
+ * lot size.
+ *
+ * Closing and querying take a lock; gates only try it and leave the work
+ * to whoever holds it, so they never wait for a query.
+ */
+public final class OccupancyHistory implements ParkingEventListener, Closeable {
+
+    public static final Duration DEFAULT_SECONDS_KEPT = Duration.ofDays(1);
+    public static final Duration DEFAULT_MINUTES_KEPT = Duration.ofDays(30);
+    public static final Duration DEFAULT_HOURS_KEPT = Duration.ofDays(2 * 366);
+
+    private static final SpotType[] SPOT_TYPES = SpotType.values();
+    private static final long SECONDS_PER_MINUTE = 60;
+    private static final long MINUTES_PER_HOUR = 60;
+
+    private final ParkingService service;
+    private final Parking parking;
+    private final LongSupplier clockMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final HistoryTier seconds;
+    private final HistoryTier minutes;
+    private final HistoryTier hours;
+
+    // The second being observed, not closed yet
+    private volatile long currentSecond;
+
+    // Guarded by lock: the minute and hour being downsampled
+    private final long[] minuteSums = new long[SPOT_TYPES.length];
+    private final int[] minutePeaks = new int[SPOT_TYPES.length];
+    private int minuteSamples;
+    private final long[] hourSums = new long[SPOT_TYPES.length];
+    private final int[] hourPeaks = new int[SPOT_TYPES.length];
+    private int hourSamples;
+    private final int[] mean = new int[SPOT_TYPES.length];
+
+    private OccupancyHistory(ParkingService service, Parking parking, LongSupplier clockMillis,
+                             Duration secondsKept, Duration minutesKept, Duration hoursKept) {
+        this.service = service;
+        this.parking = parking;
+        this.clockMillis = clockMillis;
+        this.seconds = new HistoryTier(Resolution.SECOND, samples(secondsKept, Resolution.SECOND), SPOT_TYPES.length);
+        this.minutes = new HistoryTier(Resolution.MINUTE, samples(minutesKept, Resolution.MINUTE), SPOT_TYPES.length);
+        this.hours = new HistoryTier(Resolution.HOUR, samples(hoursKept, Resolution.HOUR), SPOT_TYPES.length);
+        this.currentSecond = clockMillis.getAsLong() / Resolution.SECOND.getPeriodMillis();
+    }
+
+    private static int samples(Duration kept, Resolution resolution) {
+        long samples = kept.toMillis() / resolution.getPeriodMillis();
+        if (samples <= 0 || samples > 1 << 28) {
+            throw new IllegalArgumentException("Cannot keep " + kept + " of " + resolution + " samples");
+        }
+        return (int) samples;
+    }
+
+    /**
+     * Starts recording the parking with the default retention and the system clock.
+     */
+    public static OccupancyHistory record(ParkingService service, Parking parking) {
+        return record(service, parking, System::currentTimeMillis,
+                DEFAULT_SECONDS_KEPT, DEFAULT_MINUTES_KEPT, DEFAULT_HOURS_KEPT);
+    }
+
+    /**
+     * Starts recording the parking, timestamped by the given clock (epoch
+     * milliseconds, e.g., simulated time), keeping each tier as long as given.
+     */
+    public static OccupancyHistory record(ParkingService service, Parking parking, LongSupplier clockMillis,
+                                          Duration secondsKept, Duration minutesKept, Duration hoursKept) {
+        OccupancyHistory history = new OccupancyHistory(service, parking, clockMillis,
+                secondsKept, minutesKept, hoursKept);
+        service.addListener(history);
+        return history;
+    }
+
+    /**
+     * Stops recording. The history can still be queried.
+     */
+    @Override
+    public void close() {
+        service.removeListener(this);
+    }
+
+    @Override
+    public void onParked(Parking parking, String plate, Class<? extends Vehicle> vehicleType,
+                         SpotType spotType, int firstSpot, int spotCount) {
+        if (parking == this.parking) {
+            // The spots are already taken: the seconds to close ended before this park
+            tick(spotType, -spotCount);
+        }
+    }
+
+    @Override
+    public void onUnparked(Parking parking, String plate, Class<? extends Vehicle> vehicleType,
+                           SpotType spotType, int firstSpot, int spotCount) {
+        if (parking == this.parking) {
+            // Notified before the spots are freed
+            tick(spotType, 0);
+        }
+    }
+
+    private void tick(SpotType spotType, int correction) {
+        long second = clockMillis.getAsLong() / Resolution.SECOND.getPeriodMillis();
+        if (second > currentSecond && lock.tryLock()) {
+            try {
+                advanceTo(second, spotType, correction);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes the seconds before the given one, with the current counts plus
+     * 'correction' spots of the given class (if any). Caller holds the lock.
+     */
+    private void advanceTo(long second, SpotType spotType, int correction) {
+        long from = currentSecond;
+        if (second <= from) {
+            return;
+        }
+        OccupancySnapshot counts = parking.getOccupancySnapshot();
+        int[] inUse = new int[SPOT_TYPES.length];
+        for (SpotType type : SPOT_TYPES) {
+            inUse[type.ordinal()] = counts.getTotal(type) - counts.getFree(type);
+        }
+        if (spotType != null) {
+            inUse[spotType.ordinal()] = Math.max(0, inUse[spotType.ordinal()] + correction);
+        }
+        // Samples that would be overwritten before the end of the gap are not stored
+        long keepSecondsFrom = second - seconds.capacity();
+        long keepMinutesFrom = second / SECONDS_PER_MINUTE - minutes.capacity();
+        long keepHoursFrom = second / (SECONDS_PER_MINUTE * MINUTES_PER_HOUR) - hours.capacity();
+        for (long s = from; s < second; ) {
+            long minuteEnd = (s / SECONDS_PER_MINUTE + 1) * SECONDS_PER_MINUTE;
+            long end = Math.min(second, minuteEnd);
+            for (long i = Math.max(s, keepSecondsFrom); i < end; i++) {
+                seconds.append(i, inUse, inUse);
+            }
+            for (int type = 0; type < inUse.length; type++) {
+                minuteSums[type] += inUse[type] * (end - s);
+                minutePeaks[type] = Math.max(minutePeaks[type], inUse[type]);
+            }
+            minuteSamples += (int) (end - s);
+            s = end;
+            if (s == minuteEnd) {
+                closeMinute(s / SECONDS_PER_MINUTE - 1, keepMinutesFrom, keepHoursFrom);
+            }
+        }
+        currentSecond = second;
+    }
+
+    private void closeMinute(long minute, long keepFrom, long keepHoursFrom) {
+        for (int type = 0; type < mean.length; type++) {
+            mean[type] = (int) ((minuteSums[type] + minuteSamples / 2) / minuteSamples);
+        }
+        if (minute >= keepFrom) {
+            minutes.append(minute, mean, minutePeaks);
+        }
+        for (int type = 0; type < mean.length; type++) {
+            hourSums[type] += mean[type];
+            hourPeaks[type] = Math.max(hourPeaks[type], minutePeaks[type]);
+            minuteSums[type] = 0;
+            minutePeaks[type] = 0;
+        }
+        minuteSamples = 0;
+        hourSamples++;
+        if ((minute + 1) % MINUTES_PER_HOUR == 0) {
+            long hour = minute / MINUTES_PER_HOUR;
+            for (int type = 0; type < mean.length; type++) {
+                mean[type] = (int) ((hourSums[type] + hourSamples / 2) / hourSamples);
+            }
+            if (hour >= keepHoursFrom) {
+                hours.append(hour, mean, hourPeaks);
+            }
+            for (int type = 0; type < mean.length; type++) {
+                hourSums[type] = 0;
+                hourPeaks[type] = 0;
+            }
+            hourSamples = 0;
+        }
+    }
+
+    /**
+     * Returns the samples of the given class and resolution whose period
+     * starts in [fromMillis, toMillis), limited to the periods already
+     * closed and still kept.
+     */
+    public OccupancySeries query(SpotType type, long fromMillis, long toMillis, Resolution resolution) {
+        HistoryTier tier = tierOf(resolution);
+        long period = resolution.getPeriodMillis();
+        lock.lock();
+        try {
+            advanceTo(clockMillis.getAsLong() / Resolution.SECOND.getPeriodMillis(), null, 0);
+            long from = Math.max(Math.ceilDiv(fromMillis, period), tier.oldest());
+            long to = Math.min(Math.ceilDiv(toMillis, period), tier.newest() + 1);
+            int count = (int) Math.max(0, to - from);
+            int[] means = new int[count];
+            int[] peaks = new int[count];
+            tier.read(type.ordinal(), from, count, means, peaks);
+            return new OccupancySeries(type, resolution, from * period, means, peaks);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Same as query, at the finest resolution still holding fromMillis
+     * (HOUR if none does).
+     */
+    public OccupancySeries query(SpotType type, long fromMillis, long toMillis) {
+        return query(type, fromMillis, toMillis, resolutionFor(fromMillis));
+    }
+
+    private Resolution resolutionFor(long fromMillis) {
+        lock.lock();
+        try {
+            for (HistoryTier tier : new HistoryTier[]{seconds, minutes}) {
+                long oldest = tier.oldest();
+                if (oldest >= 0 && oldest * tier.resolution().getPeriodMillis() <= fromMillis) {
+                    return tier.resolution();
+                }
+            }
+            return Resolution.HOUR;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private HistoryTier tierOf(Resolution resolution) {
+        return switch (resolution) {
+            case SECOND -> seconds;
+            case MINUTE -> minutes;
+            case HOUR -> hours;
+        };
+    }
+
+    /**
+     * Bytes used by the samples of the three tiers.
+     */
+    public long getFootprintBytes() {
+        return seconds.footprintBytes() + minutes.footprintBytes() + hours.footprintBytes();
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.parking.history;
+
+import org.example.parking.model.SpotType;
+
+import java.util.Locale;
+
+/**
+ * Result of an OccupancyHistory query: in-use spots of one class per
+ * period, mean and peak, from getStartMillis() on, one period apart.
+ */
+public final class OccupancySeries {
+
+    private final SpotType spotType;
+    private final Resolution resolution;
+    private final long startMillis;
+    private final int[] means;
+    private final int[] peaks;
+
+    OccupancySeries(SpotType spotType, Resolution resolution, long startMillis, int[] means, int[] peaks) {
+        this.spotType = spotType;
+        this.resolution = resolution;
+        this.startMillis = startMillis;
+        this.means = means;
+        this.peaks = peaks;
+    }
+
+    public SpotType getSpotType() {
+        return spotType;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Start of the first period (epoch millis of the history clock).
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public int size() {
+        return means.length;
+    }
+
+    public long getTimeMillis(int i) {
+        return startMillis + i * resolution.getPeriodMillis();
+    }
+
+    /**
+     * Mean number of in-use spots (occupied or reserved) over period i.
+     */
+    public int getMean(int i) {
+        return means[i];
+    }
+
+    /**
+     * Highest number of in-use spots seen at a second boundary during period i.
+     */
+    public int getPeak(int i) {
+        return peaks[i];
+    }
+
+    /**
+     * Highest peak of the series, 0 if it is empty.
+     */
+    public int getPeak() {
+        int peak = 0;
+        for (int value : peaks) {
+            peak = Math.max(peak, value);
+        }
+        return peak;
+    }
+
+    /**
+     * Mean of the series, 0 if it is empty.
+     */
+    public double getMean() {
+        long sum = 0;
+        for (int value : means) {
+            sum += value;
+        }
+        return means.length == 0 ? 0 : (double) sum / means.length;
+    }
+
+    @Override
+    public String toString() {
+        return "OccupancySeries{" + spotType + ", " + resolution + ", " + size() + " samples from " + startMillis
+                + ", mean=" + String.format(Locale.ROOT, "%.1f", getMean()) + ", peak=" + getPeak() + '}';
+    }
+}
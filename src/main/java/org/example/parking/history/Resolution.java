@@ -0,0 +1,22 @@
+package org.example.parking.history;
+
+import java.time.Duration;
+
+/**
+ * Sampling period of an OccupancyHistory tier.
+ */
+public enum Resolution {
+    SECOND(Duration.ofSeconds(1)),
+    MINUTE(Duration.ofMinutes(1)),
+    HOUR(Duration.ofHours(1));
+
+    private final long periodMillis;
+
+    Resolution(Duration period) {
+        this.periodMillis = period.toMillis();
+    }
+
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+}
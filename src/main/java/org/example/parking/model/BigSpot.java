@@ -9,10 +9,15 @@ public class BigSpot extends ParkingSpot {
         super(id);
     }
 
+    @Override
+    public SpotType getType() {
+        return SpotType.BIG;
+    }
+
     @Override
     public boolean canFitVehicle(Vehicle vehicle) {
         // Check if the spot is free and if the vehicle
         // can park on a big spot
-        return !isOccupied() && vehicle.canParkOnBigSpot();
+        return isFree() && getType().accepts(vehicle);
     }
 }
@@ -9,10 +9,15 @@ public class CarSpot extends ParkingSpot {
         super(id);
     }
 
+    @Override
+    public SpotType getType() {
+        return SpotType.CAR;
+    }
+
     @Override
     public boolean canFitVehicle(Vehicle vehicle) {
         // Check if the spot is free and if the vehicle
         // can park on a car spot
-        return !isOccupied() && vehicle.canParkOnCarSpot();
+        return isFree() && getType().accepts(vehicle);
     }
 }
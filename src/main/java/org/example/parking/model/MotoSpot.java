@@ -9,10 +9,15 @@ public class MotoSpot extends ParkingSpot {
         super(id);
     }
 
+    @Override
+    public SpotType getType() {
+        return SpotType.MOTO;
+    }
+
     @Override
     public boolean canFitVehicle(Vehicle vehicle) {
         // Check if the spot is free and if the vehicle is allowed
         // to park on a moto spot (e.g., a moto can, a car cannot).
-        return !isOccupied() && vehicle.canParkOnMotoSpot();
+        return isFree() && getType().accepts(vehicle);
     }
 }
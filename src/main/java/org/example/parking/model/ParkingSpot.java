@@ -1,13 +1,39 @@
 package org.example.parking.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * Abstract class representing a generic parking spot.
  * Subclasses (MotoSpot, CarSpot, BigSpot) will specify
  * which vehicles can park here.
  */
 public abstract class ParkingSpot {
+
+    // Compare-and-set access to state, so a spot can be claimed without any lock
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup()
+                    .findVarHandle(ParkingSpot.class, "state", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // A spot is free, occupied by a parked vehicle, or reserved for one on its way
+    private static final int FREE = 0;
+    private static final int OCCUPIED = 1;
+    private static final int RESERVED = 2;
+
     private final String id;
-    private boolean isOccupied = false;
+    private volatile int state = FREE;
+
+    // Position of the spot inside its Parking list, and the listener
+    // keeping the Parking indexes up to date (both set by the Parking)
+    private int position = -1;
+    private SpotStateListener listener;
 
     protected ParkingSpot(String id) {
         this.id = id;
@@ -17,18 +43,115 @@ public abstract class ParkingSpot {
         return id;
     }
 
+    /**
+     * Returns the index of this spot in its Parking list, or -1 if
+     * the spot is not attached to a Parking.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Attaches this spot to its owning Parking.
+     * The listener is notified on every free/occupied transition.
+     */
+    public void attach(int position, SpotStateListener listener) {
+        this.position = position;
+        this.listener = listener;
+    }
+
     public boolean isOccupied() {
-        return isOccupied;
+        return state == OCCUPIED;
+    }
+
+    public boolean isReserved() {
+        return state == RESERVED;
+    }
+
+    /**
+     * Returns true if the spot is neither occupied nor reserved.
+     */
+    public boolean isFree() {
+        return state == FREE;
     }
 
     public void occupy() {
-        this.isOccupied = true;
+        tryOccupy();
+    }
+
+    /**
+     * Atomically switches the spot from free to occupied.
+     * Returns false if the spot was already occupied (e.g., another
+     * thread claimed it first), true if this call claimed it.
+     */
+    public boolean tryOccupy() {
+        return transition(FREE, OCCUPIED);
     }
 
     public void free() {
-        this.isOccupied = false;
+        transition(OCCUPIED, FREE);
     }
 
+    /**
+     * Atomically switches the spot from free to reserved.
+     * Returns false if the spot was not free.
+     */
+    public boolean tryReserve() {
+        return transition(FREE, RESERVED);
+    }
+
+    /**
+     * Atomically switches the spot from reserved to occupied, when the
+     * vehicle it was reserved for arrives. Returns false if it was not reserved.
+     */
+    public boolean claimReservation() {
+        return transition(RESERVED, OCCUPIED);
+    }
+
+    /**
+     * Atomically switches the spot from reserved back to free (the reservation
+     * was cancelled or expired). Returns false if it was not reserved.
+     */
+    public boolean cancelReservation() {
+        return transition(RESERVED, FREE);
+    }
+
+    // Compare-and-set of the state, notified to the listener within its
+    // beforeChange/afterChange bracket
+    private boolean transition(int from, int to) {
+        SpotStateListener current = listener;
+        if (current == null) {
+            return STATE.compareAndSet(this, from, to);
+        }
+        current.beforeChange(this);
+        try {
+            if (!STATE.compareAndSet(this, from, to)) {
+                return false;
+            }
+            if (from == FREE) {
+                if (to == OCCUPIED) {
+                    current.onOccupied(this);
+                } else {
+                    current.onReserved(this);
+                }
+            } else if (from == OCCUPIED) {
+                current.onFreed(this);
+            } else if (to == OCCUPIED) {
+                current.onReservationClaimed(this);
+            } else {
+                current.onReservationCancelled(this);
+            }
+            return true;
+        } finally {
+            current.afterChange(this);
+        }
+    }
+
+    /**
+     * Returns the class of this spot (moto, car or big).
+     */
+    public abstract SpotType getType();
+
     /**
      * Checks if the given vehicle can fit into this spot,
      * considering the spot type and whether it's occupied.
@@ -0,0 +1,64 @@
+package org.example.parking.model;
+
+/**
+ * Where a spot (or an entrance) stands in the facility: the level, the row
+ * (aisle) on that level, and the position along the row.
+ */
+public final class SpotLocation {
+
+    public static final int MAX_LEVEL = (1 << 16) - 1;
+    public static final int MAX_ROW = (1 << 24) - 1;
+    public static final int MAX_POSITION = (1 << 24) - 1;
+
+    private final int level;
+    private final int row;
+    private final int position;
+
+    public SpotLocation(int level, int row, int position) {
+        if (level < 0 || level > MAX_LEVEL || row < 0 || row > MAX_ROW || position < 0 || position > MAX_POSITION) {
+            throw new IllegalArgumentException("Invalid location: level " + level + ", row " + row
+                    + ", position " + position);
+        }
+        this.level = level;
+        this.row = row;
+        this.position = position;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Walking distance to another location: one unit per position along a
+     * row, 'rowCost' per row crossed and 'levelCost' per level climbed.
+     */
+    public long distanceTo(SpotLocation other, int levelCost, int rowCost) {
+        return (long) Math.abs(level - other.level) * levelCost
+                + (long) Math.abs(row - other.row) * rowCost
+                + Math.abs(position - other.position);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SpotLocation other
+                && other.level == level && other.row == row && other.position == position;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * level + row) + position;
+    }
+
+    @Override
+    public String toString() {
+        return "L" + level + "-R" + row + "-P" + position;
+    }
+}
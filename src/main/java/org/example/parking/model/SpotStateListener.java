@@ -0,0 +1,43 @@
+package org.example.parking.model;
+
+/**
+ * Callback notified whenever a spot switches between free, occupied and reserved.
+ * The owning Parking registers one to keep its indexes in sync.
+ */
+public interface SpotStateListener {
+
+    /**
+     * Called before every attempted state change of the spot, and
+     * afterChange() once it is over (whether the change happened or not):
+     * a change and its notification happen in between.
+     */
+    default void beforeChange(ParkingSpot spot) {
+    }
+
+    default void afterChange(ParkingSpot spot) {
+    }
+
+    void onOccupied(ParkingSpot spot);
+
+    void onFreed(ParkingSpot spot);
+
+    /**
+     * A free spot was reserved. By default, seen as a spot becoming occupied.
+     */
+    default void onReserved(ParkingSpot spot) {
+        onOccupied(spot);
+    }
+
+    /**
+     * A reserved spot became occupied by the vehicle it was reserved for.
+     */
+    default void onReservationClaimed(ParkingSpot spot) {
+    }
+
+    /**
+     * A reserved spot became free again. By default, seen as a spot being freed.
+     */
+    default void onReservationCancelled(ParkingSpot spot) {
+        onFreed(spot);
+    }
+}
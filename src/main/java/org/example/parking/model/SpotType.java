@@ -0,0 +1,23 @@
+package org.example.parking.model;
+
+/**
+ * The different classes of parking spots.
+ * Used as a key whenever spots are grouped by kind (indexes, counters, etc.).
+ */
+public enum SpotType {
+    MOTO,
+    CAR,
+    BIG;
+
+    /**
+     * Checks if the vehicle is allowed on spots of this class
+     * (whether a given spot is free is up to the spot).
+     */
+    public boolean accepts(Vehicle vehicle) {
+        return switch (this) {
+            case MOTO -> vehicle.canParkOnMotoSpot();
+            case CAR -> vehicle.canParkOnCarSpot();
+            case BIG -> vehicle.canParkOnBigSpot();
+        };
+    }
+}
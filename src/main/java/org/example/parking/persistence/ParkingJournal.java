@@ -0,0 +1,446 @@
+package org.example.parking.persistence;
+
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of park/unpark events, split in numbered segment files.
+ *
+ * Appending only copies the record into an in-memory buffer; a committer
+ * thread writes the buffer and fsyncs it every commit interval, so one
+ * fsync covers every event of the interval (group commit) and parking
+ * never waits for the disk. Events of the last interval are lost on a crash;
+ * callers needing more can wait with sync().
+ *
+ * Each record is framed as [payload length][CRC32C of payload][payload],
+ * so a torn write at the end of a segment is detected and ignored on replay.
+ */
+final class ParkingJournal implements Closeable {
+
+    private static final int MAGIC = 0x504A524E; // "PJRN"
+    private static final int VERSION = 1;
+
+    // Record tags
+    private static final byte TYPE = 1;   // vehicle type code -> class name, once per segment
+    private static final byte PARK = 2;
+    private static final byte UNPARK = 3;
+
+    private static final int FRAME_HEADER = 8;
+    private static final int INITIAL_BUFFER = 64 * 1024;
+
+    private final Path directory;
+    private final long commitIntervalNanos;
+    private final Thread committer;
+
+    // Held while a batch is written, so batches reach the file in order.
+    // Lock order: ioLock, then this
+    private final Object ioLock = new Object();
+
+    // Everything below is guarded by this
+    private FileChannel channel;
+    private long segment;
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+    private final Map<Class<?>, Integer> typeCodes = new HashMap<>();
+    private final CRC32C crc = new CRC32C();
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Starts a new segment with the given number in the directory.
+     */
+    ParkingJournal(Path directory, long segment, long commitInterval, TimeUnit unit) throws IOException {
+        this.directory = directory;
+        this.commitIntervalNanos = Math.max(1, unit.toNanos(commitInterval));
+        this.channel = openChannel(segment);
+        startSegment(segment);
+        this.committer = new Thread(this::runCommitter, "parking-journal-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("journal-%016d.log", segment));
+    }
+
+    /**
+     * Returns the segment number of a journal file name, or -1 if it is not one.
+     */
+    static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("journal-") || !name.endsWith(".log")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    synchronized long currentSegment() {
+        return segment;
+    }
+
+    /**
+     * Appends a park event. Returns its sequence number, see awaitDurable.
+     */
+    synchronized long appendPark(String plate, Class<? extends Vehicle> vehicleType,
+                                 SpotType spotType, int firstSpot, int spotCount) {
+        checkOpen();
+        int code = typeCode(vehicleType);
+        byte[] plateBytes = plate.getBytes(StandardCharsets.UTF_8);
+        int start = beginRecord(1 + 1 + 1 + 4 + 1 + 2 + plateBytes.length);
+        pending.put(PARK)
+                .put((byte) code)
+                .put((byte) spotType.ordinal())
+                .putInt(firstSpot)
+                .put((byte) spotCount)
+                .putShort((short) plateBytes.length)
+                .put(plateBytes);
+        endRecord(start);
+        return ++appended;
+    }
+
+    /**
+     * Appends an unpark event. Returns its sequence number, see awaitDurable.
+     */
+    synchronized long appendUnpark(String plate) {
+        checkOpen();
+        byte[] plateBytes = plate.getBytes(StandardCharsets.UTF_8);
+        int start = beginRecord(1 + 2 + plateBytes.length);
+        pending.put(UNPARK)
+                .putShort((short) plateBytes.length)
+                .put(plateBytes);
+        endRecord(start);
+        return ++appended;
+    }
+
+    /**
+     * Blocks until every event up to the given sequence number is on disk.
+     */
+    synchronized void awaitDurable(long sequence) throws IOException, InterruptedException {
+        while (durable < sequence) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new IOException("Journal closed");
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Writes and fsyncs every event appended so far, without waiting for
+     * the committer.
+     */
+    void sync() throws IOException {
+        commit();
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Closes the current segment and starts the next one.
+     * Returns the number of the new segment: replaying it and the segments
+     * after it gives every event appended after this call.
+     */
+    long rotate() throws IOException {
+        synchronized (ioLock) {
+            long number;
+            synchronized (this) {
+                checkOpen();
+                number = segment + 1;
+            }
+            // Creating the file and fsyncing the old segment are done without
+            // holding this, so gates keep appending meanwhile
+            FileChannel next = openChannel(number);
+            ByteBuffer batch;
+            FileChannel previous;
+            long upTo;
+            synchronized (this) {
+                if (closed || failure != null) {
+                    next.close();
+                    checkOpen();
+                }
+                // Pending records use the type codes of the old segment: they go with it
+                batch = pending;
+                pending = spare;
+                spare = null;
+                previous = channel;
+                upTo = appended;
+                channel = next;
+                startSegment(number);
+            }
+            try {
+                writeAndForce(batch, previous);
+                previous.close();
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+            batch.clear();
+            synchronized (this) {
+                spare = batch;
+                durable = upTo;
+                notifyAll();
+            }
+            return number;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        LockSupport.unpark(committer);
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ioLock) {
+            synchronized (this) {
+                try {
+                    if (failure == null) {
+                        writeAndForce(pending, channel);
+                        durable = appended;
+                    }
+                } finally {
+                    channel.close();
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays the records of one segment file. Stops silently at the first
+     * truncated or corrupted record (the tail of a crash).
+     */
+    static void replay(Path file, JournalVisitor visitor) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+        if (buffer.remaining() < 8) {
+            return; // crashed before the header reached the disk
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a parking journal segment: " + file);
+        }
+        Map<Integer, String> types = new HashMap<>();
+        CRC32C check = new CRC32C();
+        while (buffer.remaining() >= FRAME_HEADER) {
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            check.reset();
+            check.update(payload.duplicate());
+            if ((int) check.getValue() != expected) {
+                return;
+            }
+            buffer.position(buffer.position() + length);
+            try {
+                readRecord(payload, types, visitor, file);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Malformed record in " + file, e);
+            }
+        }
+    }
+
+    private static void readRecord(ByteBuffer payload, Map<Integer, String> types,
+                                   JournalVisitor visitor, Path file) throws IOException {
+        byte tag = payload.get();
+        switch (tag) {
+            case TYPE -> {
+                int code = payload.get() & 0xFF;
+                types.put(code, readString(payload));
+            }
+            case PARK -> {
+                String vehicleType = types.get(payload.get() & 0xFF);
+                SpotType spotType = SpotType.values()[payload.get()];
+                int firstSpot = payload.getInt();
+                int spotCount = payload.get() & 0xFF;
+                String plate = readString(payload);
+                if (vehicleType == null) {
+                    throw new IOException("Unknown vehicle type code in " + file);
+                }
+                visitor.parked(plate, vehicleType, spotType, firstSpot, spotCount);
+            }
+            case UNPARK -> visitor.unparked(readString(payload));
+            default -> throw new IOException("Unknown record tag " + tag + " in " + file);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Receives the events of a segment, in append order.
+     */
+    interface JournalVisitor {
+
+        void parked(String plate, String vehicleType, SpotType spotType, int firstSpot, int spotCount) throws IOException;
+
+        void unparked(String plate) throws IOException;
+    }
+
+    private FileChannel openChannel(long number) throws IOException {
+        return FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    // Caller holds this; pending is empty
+    private void startSegment(long number) {
+        segment = number;
+        typeCodes.clear();
+        ensureCapacity(8);
+        pending.putInt(MAGIC).putInt(VERSION);
+    }
+
+    // Caller holds this
+    private int typeCode(Class<? extends Vehicle> vehicleType) {
+        Integer code = typeCodes.get(vehicleType);
+        if (code != null) {
+            return code;
+        }
+        if (typeCodes.size() > 0xFF) {
+            throw new IllegalStateException("Too many vehicle types in one journal segment");
+        }
+        int newCode = typeCodes.size();
+        typeCodes.put(vehicleType, newCode);
+        byte[] name = vehicleType.getName().getBytes(StandardCharsets.UTF_8);
+        int start = beginRecord(1 + 1 + 2 + name.length);
+        pending.put(TYPE).put((byte) newCode).putShort((short) name.length).put(name);
+        endRecord(start);
+        return newCode;
+    }
+
+    // Reserves the frame header and returns where it starts
+    private int beginRecord(int payloadLength) {
+        ensureCapacity(FRAME_HEADER + payloadLength);
+        int start = pending.position();
+        pending.putInt(payloadLength).putInt(0);
+        return start;
+    }
+
+    private void endRecord(int start) {
+        int payloadStart = start + FRAME_HEADER;
+        crc.reset();
+        crc.update(pending.array(), payloadStart, pending.position() - payloadStart);
+        pending.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Journal failed, events can no longer be persisted", failure);
+        }
+    }
+
+    private void runCommitter() {
+        while (true) {
+            LockSupport.parkNanos(this, commitIntervalNanos);
+            synchronized (this) {
+                if (closed || failure != null) {
+                    return;
+                }
+            }
+            try {
+                commit();
+            } catch (IOException e) {
+                return; // recorded in failure by commit()
+            }
+        }
+    }
+
+    /**
+     * Swaps the pending buffer for the spare one, then writes and fsyncs it
+     * outside of the append lock.
+     */
+    private void commit() throws IOException {
+        synchronized (ioLock) {
+            ByteBuffer batch;
+            FileChannel target;
+            long upTo;
+            synchronized (this) {
+                if (pending.position() == 0 || failure != null || closed) {
+                    return;
+                }
+                batch = pending;
+                pending = spare;
+                spare = null;
+                target = channel;
+                upTo = appended;
+            }
+            try {
+                writeAndForce(batch, target);
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+            batch.clear();
+            synchronized (this) {
+                spare = batch;
+                durable = upTo;
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized void fail(IOException e) {
+        failure = e;
+        notifyAll();
+    }
+
+    private static void writeAndForce(ByteBuffer batch, FileChannel target) throws IOException {
+        batch.flip();
+        while (batch.hasRemaining()) {
+            target.write(batch);
+        }
+        target.force(false);
+    }
+}
@@ -0,0 +1,358 @@
+package org.example.parking.persistence;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.ParkingEventListener;
+import org.example.parking.service.ParkingService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Makes the state of one Parking survive a restart.
+ *
+ * Every park/unpark done through the service is appended to a write-ahead
+ * journal (see ParkingJournal: group commit, no fsync on the gate thread),
+ * and snapshots of the parked vehicles are taken periodically so that
+ * recovery only replays the journal written since the last snapshot.
+ *
+ * open() first recovers the state found in the directory into the (empty)
+ * parking and service, then starts journaling.
+ *
+ * Events are journaled from a service listener, once the spots are taken or
+ * freed. If the journal has failed (or was closed) by then, the event is not
+ * persisted but the park or unpark stands: the failure is recorded and
+ * reported by sync() and getJournalFailure(), rather than thrown at the gate.
+ */
+public final class ParkingPersistence implements ParkingEventListener, Closeable {
+
+    /**
+     * Default delay between two journal fsyncs: the most a crash can lose.
+     */
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 5;
+
+    private final Path directory;
+    private final Parking parking;
+    private final ParkingService service;
+    private final ParkingJournal journal;
+    private final int recoveredVehicles;
+    private final ScheduledExecutorService snapshotter;
+
+    // One snapshot at a time, be it periodic or explicit
+    private final Object snapshotLock = new Object();
+    private volatile IOException snapshotFailure;
+
+    // First failed journal append, and how many events were not journaled since
+    private volatile RuntimeException journalFailure;
+    private final LongAdder lostEvents = new LongAdder();
+
+    private ParkingPersistence(Path directory, Parking parking, ParkingService service, ParkingJournal journal,
+                               int recoveredVehicles, long snapshotIntervalMillis) {
+        this.directory = directory;
+        this.parking = parking;
+        this.service = service;
+        this.journal = journal;
+        this.recoveredVehicles = recoveredVehicles;
+        if (snapshotIntervalMillis > 0) {
+            this.snapshotter = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "parking-snapshotter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(this::periodicSnapshot,
+                    snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.snapshotter = null;
+        }
+    }
+
+    /**
+     * Recovers the parking state stored in the directory (if any) and starts
+     * journaling, with the default commit interval and no periodic snapshot.
+     */
+    public static ParkingPersistence open(Path directory, Parking parking, ParkingService service) throws IOException {
+        return open(directory, parking, service, DEFAULT_COMMIT_INTERVAL_MILLIS, 0);
+    }
+
+    /**
+     * Recovers the parking state stored in the directory (if any) and starts
+     * journaling. A snapshot is taken every snapshotIntervalMillis (never if 0).
+     * The parking must not have any vehicle parked yet.
+     */
+    public static ParkingPersistence open(Path directory, Parking parking, ParkingService service,
+                                          long commitIntervalMillis, long snapshotIntervalMillis) throws IOException {
+        if (!parking.isEmpty()) {
+            throw new IllegalStateException("State can only be recovered into an empty parking");
+        }
+        Files.createDirectories(directory);
+
+        Path snapshot = latest(listFiles(directory, ParkingSnapshot::firstSegment));
+        long firstSegment = snapshot == null ? 0 : ParkingSnapshot.firstSegment(snapshot);
+        Recovery recovery = new Recovery(parking, service);
+
+        // The run tree is rebuilt once at the end rather than per vehicle
+        parking.beginBulkLoad();
+        long lastSegment = firstSegment - 1;
+        try {
+            // 1) Replay the journal written since the latest snapshot
+            for (Path segment : listFiles(directory, ParkingJournal::segmentNumber)) {
+                long number = ParkingJournal.segmentNumber(segment);
+                if (number >= firstSegment) {
+                    ParkingJournal.replay(segment, recovery);
+                }
+                lastSegment = Math.max(lastSegment, number);
+            }
+
+            // 2) Restore the snapshot, then the vehicles that moved since
+            if (snapshot != null) {
+                ParkingSnapshot.read(snapshot, parking, recovery::fromSnapshot);
+            }
+            recovery.applyJournal();
+        } finally {
+            parking.endBulkLoad();
+        }
+
+        // 3) Journal new events in a fresh segment, never after a torn tail
+        ParkingJournal journal = new ParkingJournal(directory, lastSegment + 1, commitIntervalMillis, TimeUnit.MILLISECONDS);
+        int[] recovered = new int[1];
+        service.forEachParked(parking, (plate, vehicleType, spotType, firstSpot, spotCount) -> recovered[0]++);
+        ParkingPersistence persistence = new ParkingPersistence(directory, parking, service, journal,
+                recovered[0], snapshotIntervalMillis);
+        service.addListener(persistence);
+        return persistence;
+    }
+
+    /**
+     * Returns how many vehicles were parked again by the recovery.
+     */
+    public int getRecoveredVehicles() {
+        return recoveredVehicles;
+    }
+
+    /**
+     * Takes a snapshot of the parked vehicles, then deletes the snapshots and
+     * journal segments it makes obsolete. Gates keep running meanwhile.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            // Events from here on go to the new segment, replayed on top of this snapshot
+            long firstSegment = journal.rotate();
+            Path written = ParkingSnapshot.write(directory, firstSegment, parking, service);
+            for (Path old : listFiles(directory, ParkingSnapshot::firstSegment)) {
+                if (!old.equals(written)) {
+                    Files.deleteIfExists(old);
+                }
+            }
+            for (Path segment : listFiles(directory, ParkingJournal::segmentNumber)) {
+                if (ParkingJournal.segmentNumber(segment) < firstSegment) {
+                    Files.deleteIfExists(segment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the error of the first event that could not be journaled, or
+     * null if every event was. The state on disk misses that event and
+     * getLostEventCount() events in all.
+     */
+    public RuntimeException getJournalFailure() {
+        return journalFailure;
+    }
+
+    /**
+     * Returns how many park/unpark events could not be journaled.
+     */
+    public long getLostEventCount() {
+        return lostEvents.sum();
+    }
+
+    /**
+     * Blocks until every event journaled so far is on disk.
+     * Also reports an event that could not be journaled, and the failure of
+     * a previous periodic snapshot, if any.
+     */
+    public void sync() throws IOException {
+        RuntimeException lost = journalFailure;
+        if (lost != null) {
+            throw new IOException(getLostEventCount() + " events could not be journaled", lost);
+        }
+        journal.sync();
+        IOException failure = snapshotFailure;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stops journaling: flushes the pending events and detaches from the service.
+     */
+    @Override
+    public void close() throws IOException {
+        service.removeListener(this);
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+            try {
+                snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journal.close();
+    }
+
+    @Override
+    public void onParked(Parking parking, String plate, Class<? extends Vehicle> vehicleType,
+                         SpotType spotType, int firstSpot, int spotCount) {
+        if (parking == this.parking) {
+            try {
+                journal.appendPark(plate, vehicleType, spotType, firstSpot, spotCount);
+            } catch (RuntimeException e) {
+                onJournalFailure(e);
+            }
+        }
+    }
+
+    @Override
+    public void onUnparked(Parking parking, String plate, Class<? extends Vehicle> vehicleType,
+                           SpotType spotType, int firstSpot, int spotCount) {
+        if (parking == this.parking) {
+            try {
+                journal.appendUnpark(plate);
+            } catch (RuntimeException e) {
+                onJournalFailure(e);
+            }
+        }
+    }
+
+    // Called from a listener, inside the plate monitors: the vehicle has moved already
+    private void onJournalFailure(RuntimeException e) {
+        if (journalFailure == null) {
+            journalFailure = e;
+        }
+        lostEvents.increment();
+    }
+
+    private void periodicSnapshot() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            snapshotFailure = e;
+        }
+    }
+
+    private static Path latest(List<Path> files) {
+        return files.isEmpty() ? null : files.get(files.size() - 1);
+    }
+
+    /**
+     * Returns the files of the directory having a number in their name, sorted by number.
+     */
+    private static List<Path> listFiles(Path directory, NumberedFile numbering) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.filter(file -> numbering.number(file) >= 0).forEach(files::add);
+        }
+        files.sort((a, b) -> Long.compare(numbering.number(a), numbering.number(b)));
+        return files;
+    }
+
+    @FunctionalInterface
+    private interface NumberedFile {
+        long number(Path file);
+    }
+
+    /**
+     * Rebuilds the parking from a snapshot and the journal written since.
+     *
+     * The snapshot is taken while gates run, so it may hold a vehicle that
+     * left right after it was read next to the one that took its spot, or a
+     * vehicle that arrived after the journal segment started. Every such
+     * vehicle has moved since the segment started, so its journal records
+     * tell its real final state: the journal is replayed first into the last
+     * move of each plate, and the snapshot only restores the plates the
+     * journal does not mention.
+     */
+    private static final class Recovery implements ParkingJournal.JournalVisitor {
+
+        // Last move of each plate found in the journal, UNPARKED if it left
+        private static final LoggedPark UNPARKED = new LoggedPark(null, null, 0, 0);
+
+        private final Parking parking;
+        private final ParkingService service;
+        private final Map<String, LoggedPark> lastMoves = new HashMap<>();
+        private final Map<String, Class<? extends Vehicle>> vehicleClasses = new HashMap<>();
+
+        Recovery(Parking parking, ParkingService service) {
+            this.parking = parking;
+            this.service = service;
+        }
+
+        @Override
+        public void parked(String plate, String vehicleType, SpotType spotType, int firstSpot, int spotCount)
+                throws IOException {
+            Class<? extends Vehicle> type = vehicleClasses.get(vehicleType);
+            if (type == null) {
+                type = ParkingSnapshot.vehicleClass(vehicleType);
+                vehicleClasses.put(vehicleType, type);
+            }
+            lastMoves.put(plate, new LoggedPark(type, spotType, firstSpot, spotCount));
+        }
+
+        @Override
+        public void unparked(String plate) {
+            lastMoves.put(plate, UNPARKED);
+        }
+
+        void fromSnapshot(String plate, Class<? extends Vehicle> vehicleType,
+                          SpotType spotType, int firstSpot, int spotCount) throws IOException {
+            if (!lastMoves.containsKey(plate)) {
+                restore(plate, vehicleType, spotType, firstSpot, spotCount);
+            }
+        }
+
+        void applyJournal() throws IOException {
+            for (Map.Entry<String, LoggedPark> move : lastMoves.entrySet()) {
+                LoggedPark park = move.getValue();
+                if (park != UNPARKED) {
+                    restore(move.getKey(), park.vehicleType, park.spotType, park.firstSpot, park.spotCount);
+                }
+            }
+        }
+
+        private void restore(String plate, Class<? extends Vehicle> vehicleType,
+                             SpotType spotType, int firstSpot, int spotCount) throws IOException {
+            if (!service.restore(parking, plate, vehicleType, spotType, firstSpot, spotCount)) {
+                throw new IOException("Persisted state does not match the parking: cannot put " + plate
+                        + " back on " + spotType + " spots " + firstSpot + ".." + (firstSpot + spotCount - 1));
+            }
+        }
+    }
+
+    private static final class LoggedPark {
+
+        final Class<? extends Vehicle> vehicleType;
+        final SpotType spotType;
+        final int firstSpot;
+        final int spotCount;
+
+        LoggedPark(Class<? extends Vehicle> vehicleType, SpotType spotType, int firstSpot, int spotCount) {
+            this.vehicleType = vehicleType;
+            this.spotType = spotType;
+            this.firstSpot = firstSpot;
+            this.spotCount = spotCount;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.example.parking.persistence;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.ParkedVehicleVisitor;
+import org.example.parking.service.ParkingService;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot file of the vehicles parked in one Parking: one compact record
+ * per vehicle (plate, vehicle type code, spot class, first spot, spot count),
+ * from which both the plate table and the occupancy bitmaps are rebuilt.
+ *
+ * The occupancy bitmaps themselves are not stored: they follow from the
+ * records, while the plate of each vehicle does not follow from them, so
+ * the records are needed anyway and a bitmap would only add to the file.
+ * Recovery time is dominated by the plate-table inserts, not by setting
+ * bits (see ParkingRecoveryBenchmark).
+ *
+ * The snapshot names the first journal segment to replay on top of it.
+ * It is taken without stopping the gates, so it may mix states from just
+ * before and just after that point; replaying the journal from that segment
+ * fixes every vehicle that moved in between.
+ */
+final class ParkingSnapshot {
+
+    private static final int MAGIC = 0x50534E50; // "PSNP"
+    private static final int VERSION = 1;
+
+    // Entry tags
+    private static final byte END = 0;
+    private static final byte TYPE = 1;
+    private static final byte VEHICLE = 2;
+
+    private ParkingSnapshot() {
+    }
+
+    static Path snapshotPath(Path directory, long firstSegment) {
+        return directory.resolve(String.format("snapshot-%016d.bin", firstSegment));
+    }
+
+    /**
+     * Returns the first segment of a snapshot file name, or -1 if it is not one.
+     */
+    static long firstSegment(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("snapshot-") || !name.endsWith(".bin")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring("snapshot-".length(), name.length() - ".bin".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes the parked vehicles of the parking to a new snapshot file.
+     * The vehicles are first copied in memory, so the plate table is never
+     * locked while writing to disk; the file only appears once complete.
+     */
+    static Path write(Path directory, long firstSegment, Parking parking, ParkingService service) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream out = new DataOutputStream(body);
+        Map<Class<?>, Integer> typeCodes = new HashMap<>();
+        ParkedVehicleVisitor writer = (plate, vehicleType, spotType, firstSpot, spotCount) -> {
+            try {
+                Integer code = typeCodes.get(vehicleType);
+                if (code == null) {
+                    code = typeCodes.size();
+                    typeCodes.put(vehicleType, code);
+                    out.writeByte(TYPE);
+                    out.writeShort(code);
+                    out.writeUTF(vehicleType.getName());
+                }
+                out.writeByte(VEHICLE);
+                out.writeUTF(plate);
+                out.writeShort(code);
+                out.writeByte(spotType.ordinal());
+                out.writeInt(firstSpot);
+                out.writeByte(spotCount);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        service.forEachParked(parking, writer);
+        out.writeByte(END);
+
+        Path target = snapshotPath(directory, firstSegment);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32C crc = new CRC32C();
+            OutputStream stream = Channels.newOutputStream(channel);
+            DataOutputStream file = new DataOutputStream(new CheckedOutputStream(stream, crc));
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeLong(firstSegment);
+            for (SpotType type : SpotType.values()) {
+                file.writeInt(parking.getSpotCount(type));
+            }
+            body.writeTo(file);
+            file.flush();
+            new DataOutputStream(stream).writeInt((int) crc.getValue());
+            channel.force(true);
+        }
+        return Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads a snapshot file, checking it was taken on a parking with the same
+     * number of spots per class. Returns the first journal segment to replay.
+     */
+    static long read(Path file, Parking parking, ParkedVehicleSink sink) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(stream, crc));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a parking snapshot: " + file);
+            }
+            long firstSegment = in.readLong();
+            for (SpotType type : SpotType.values()) {
+                int spots = in.readInt();
+                if (spots != parking.getSpotCount(type)) {
+                    throw new IOException("Snapshot " + file + " was taken on a parking with " + spots + " "
+                            + type + " spots, this one has " + parking.getSpotCount(type));
+                }
+            }
+            Map<Integer, Class<? extends Vehicle>> types = new HashMap<>();
+            byte tag;
+            while ((tag = in.readByte()) != END) {
+                if (tag == TYPE) {
+                    int code = in.readUnsignedShort();
+                    types.put(code, vehicleClass(in.readUTF()));
+                } else if (tag == VEHICLE) {
+                    String plate = in.readUTF();
+                    Class<? extends Vehicle> vehicleType = types.get(in.readUnsignedShort());
+                    SpotType spotType = SpotType.values()[in.readUnsignedByte()];
+                    int firstSpot = in.readInt();
+                    int spotCount = in.readUnsignedByte();
+                    if (vehicleType == null) {
+                        throw new IOException("Unknown vehicle type code in " + file);
+                    }
+                    sink.accept(plate, vehicleType, spotType, firstSpot, spotCount);
+                } else {
+                    throw new IOException("Unknown entry tag " + tag + " in " + file);
+                }
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(stream).readInt() != expected) {
+                throw new IOException("Checksum mismatch in snapshot " + file);
+            }
+            return firstSegment;
+        } catch (EOFException e) {
+            throw new IOException("Truncated snapshot " + file, e);
+        }
+    }
+
+    static Class<? extends Vehicle> vehicleClass(String name) throws IOException {
+        try {
+            return Class.forName(name, false, ParkingSnapshot.class.getClassLoader()).asSubclass(Vehicle.class);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unknown vehicle type " + name, e);
+        }
+    }
+
+    /**
+     * Receives the vehicles of a snapshot.
+     */
+    interface ParkedVehicleSink {
+
+        void accept(String plate, Class<? extends Vehicle> vehicleType,
+                    SpotType spotType, int firstSpot, int spotCount) throws IOException;
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.parking.service;
+
+import org.example.parking.model.SpotType;
+
+import java.util.Arrays;
+
+/**
+ * Ordered list of the ways a vehicle type may be parked: each step is a spot
+ * class and a number of adjacent spots of that class to take, and steps are
+ * tried in order until one succeeds. For example, a van is
+ * AllocationPlan.of(SpotType.BIG).then(SpotType.CAR, 3).
+ *
+ * Plans are immutable; see AllocationPlanRegistry for how a vehicle type gets one.
+ */
+public final class AllocationPlan {
+
+    static final AllocationPlan EMPTY = new AllocationPlan(new SpotType[0], new int[0]);
+
+    private final SpotType[] types;
+    private final int[] spotCounts;
+
+    private AllocationPlan(SpotType[] types, int[] spotCounts) {
+        this.types = types;
+        this.spotCounts = spotCounts;
+    }
+
+    /**
+     * Returns a plan whose first step takes a single spot of the given class.
+     */
+    public static AllocationPlan of(SpotType type) {
+        return EMPTY.then(type, 1);
+    }
+
+    /**
+     * Returns a plan whose first step takes a run of adjacent spots of the given class.
+     */
+    public static AllocationPlan of(SpotType type, int spots) {
+        return EMPTY.then(type, spots);
+    }
+
+    /**
+     * Returns this plan followed by a single spot of the given class.
+     */
+    public AllocationPlan then(SpotType type) {
+        return then(type, 1);
+    }
+
+    /**
+     * Returns this plan followed by a run of adjacent spots of the given class.
+     */
+    public AllocationPlan then(SpotType type, int spots) {
+        if (spots < 1 || spots > SpotAllocation.MAX_SPOTS) {
+            throw new IllegalArgumentException("A step takes 1 to " + SpotAllocation.MAX_SPOTS + " spots: " + spots);
+        }
+        SpotType[] grownTypes = Arrays.copyOf(types, types.length + 1);
+        int[] grownCounts = Arrays.copyOf(spotCounts, spotCounts.length + 1);
+        grownTypes[types.length] = type;
+        grownCounts[types.length] = spots;
+        return new AllocationPlan(grownTypes, grownCounts);
+    }
+
+    public int size() {
+        return types.length;
+    }
+
+    public SpotType typeAt(int step) {
+        return types[step];
+    }
+
+    public int spotsAt(int step) {
+        return spotCounts[step];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AllocationPlan)) {
+            return false;
+        }
+        AllocationPlan other = (AllocationPlan) o;
+        return Arrays.equals(types, other.types) && Arrays.equals(spotCounts, other.spotCounts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(types) + Arrays.hashCode(spotCounts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (int step = 0; step < types.length; step++) {
+            if (step > 0) {
+                out.append(" -> ");
+            }
+            out.append(types[step]).append(" x").append(spotCounts[step]);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.parking.service;
+
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Gives every vehicle type its AllocationPlan.
+ *
+ * A type gets the plan registered for it or, failing that, for its closest
+ * registered superclass, up to Vehicle itself. Types with no registered plan get one derived from
+ * what the vehicle accepts: a vehicle needing several car spots (a van) tries
+ * a big spot, then that many adjacent car spots; any other tries moto, car,
+ * then big spots, skipping the classes it cannot use. This reproduces the
+ * historical Moto / Car / Van rules.
+ *
+ * Plans are resolved once per vehicle type and cached in an array indexed by
+ * its VehicleKinds id, so finding the plan of a vehicle is a table lookup.
+ * Registering a plan clears the cache.
+ */
+public final class AllocationPlanRegistry {
+
+    private final Map<Class<? extends Vehicle>, AllocationPlan> registered = new ConcurrentHashMap<>();
+
+    // Resolved plans, indexed by vehicle kind (null until first used)
+    private volatile AtomicReferenceArray<AllocationPlan> resolved = new AtomicReferenceArray<>(SpotAllocation.MAX_KINDS);
+
+    // Default plans derived so far, indexed by vehicle kind (kept across registrations)
+    private final AtomicReferenceArray<AllocationPlan> derived = new AtomicReferenceArray<>(SpotAllocation.MAX_KINDS);
+
+    // Per spot class, the longest run any plan seen so far takes (see longestRun)
+    private final AtomicIntegerArray longestRuns = new AtomicIntegerArray(SpotType.values().length);
+
+    /**
+     * Sets the plan of a vehicle type and of its subclasses that have none of their own
+     * (Vehicle.class sets it for every type without a closer plan). Applies to the vehicles parked from now on.
+     */
+    public AllocationPlanRegistry register(Class<? extends Vehicle> type, AllocationPlan plan) {
+        if (plan.size() == 0) {
+            throw new IllegalArgumentException("Empty plan for " + type.getName());
+        }
+        registered.put(type, plan);
+        resolved = new AtomicReferenceArray<>(SpotAllocation.MAX_KINDS);
+        trackRuns(plan);
+        return this;
+    }
+
+    /**
+     * Returns the plan used to park the given vehicle.
+     */
+    public AllocationPlan planFor(Vehicle vehicle) {
+        AtomicReferenceArray<AllocationPlan> plans = resolved;
+        int kind = VehicleKinds.idOf(vehicle.getClass());
+        AllocationPlan plan = plans.get(kind);
+        if (plan == null) {
+            plan = resolve(vehicle);
+            trackRuns(plan);
+            plans.set(kind, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Returns the plan already resolved for a vehicle kind, or null if no
+     * vehicle of that kind was parked since the last registration.
+     */
+    AllocationPlan resolvedPlan(int kind) {
+        return resolved.get(kind);
+    }
+
+    /**
+     * Returns the plan of a vehicle kind without a vehicle at hand: the one
+     * already resolved, else the closest registered one, else the default plan
+     * derived the last time a vehicle of that kind was parked. Null if none of
+     * these is known (e.g., a kind only ever restored from a snapshot).
+     */
+    AllocationPlan planFor(int kind) {
+        AllocationPlan plan = resolved.get(kind);
+        if (plan != null) {
+            return plan;
+        }
+        Class<? extends Vehicle> vehicleType = VehicleKinds.classOf(kind);
+        for (Class<?> type = vehicleType; type != null && type != Object.class; type = type.getSuperclass()) {
+            plan = registered.get(type);
+            if (plan != null) {
+                return plan;
+            }
+        }
+        return derived.get(kind);
+    }
+
+    /**
+     * Returns the longest run of adjacent spots of the given class that a
+     * registered or already used plan takes (e.g., 3 car spots once a van
+     * showed up), or 1 if every plan takes its spots of this class one by one.
+     */
+    public int longestRun(SpotType type) {
+        return Math.max(1, longestRuns.get(type.ordinal()));
+    }
+
+    private void trackRuns(AllocationPlan plan) {
+        for (int step = 0; step < plan.size(); step++) {
+            int index = plan.typeAt(step).ordinal();
+            int spots = plan.spotsAt(step);
+            int current;
+            while (spots > (current = longestRuns.get(index))
+                    && !longestRuns.compareAndSet(index, current, spots)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private AllocationPlan resolve(Vehicle vehicle) {
+        for (Class<?> type = vehicle.getClass(); type != Object.class; type = type.getSuperclass()) {
+            AllocationPlan plan = registered.get(type);
+            if (plan != null) {
+                return plan;
+            }
+        }
+        AllocationPlan plan = derive(vehicle);
+        derived.set(VehicleKinds.idOf(vehicle.getClass()), plan);
+        return plan;
+    }
+
+    /**
+     * Builds the default plan of a vehicle from what it accepts.
+     */
+    static AllocationPlan derive(Vehicle vehicle) {
+        AllocationPlan plan = AllocationPlan.EMPTY;
+        int carSpots = vehicle.getRequiredCarSpots();
+        if (carSpots > 1) {
+            // 1) Prefer a big spot first, 2) otherwise a run of car spots
+            if (vehicle.canParkOnBigSpot()) {
+                plan = plan.then(SpotType.BIG);
+            }
+            if (vehicle.canParkOnCarSpot()) {
+                plan = plan.then(SpotType.CAR, carSpots);
+            }
+            return plan;
+        }
+        // Smallest spot class first
+        if (vehicle.canParkOnMotoSpot()) {
+            plan = plan.then(SpotType.MOTO);
+        }
+        if (vehicle.canParkOnCarSpot()) {
+            plan = plan.then(SpotType.CAR);
+        }
+        if (vehicle.canParkOnBigSpot()) {
+            plan = plan.then(SpotType.BIG);
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.parking.service;
+
+/**
+ * How ParkingService picks among the free spots of a spot class.
+ */
+public enum AllocationStrategy {
+    /**
+     * The leftmost free spot, or the leftmost free run for a vehicle taking
+     * several spots. Cheapest (index lookups only); the default.
+     */
+    FIRST_FIT,
+    /**
+     * The spot or run that fits the shortest free run, so single spots fill
+     * the holes left by departures and long runs stay available for vehicles
+     * taking several adjacent spots (vans). Walks the free runs of the class.
+     */
+    BEST_FIT
+}
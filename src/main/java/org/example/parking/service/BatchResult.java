@@ -0,0 +1,53 @@
+package org.example.parking.service;
+
+/**
+ * Outcome of a batch park/unpark: one bit per vehicle, in the
+ * iteration order of the submitted collection.
+ */
+public final class BatchResult {
+
+    private final long[] successes;
+    private final int size;
+    private int successCount;
+
+    BatchResult(int size) {
+        this.size = size;
+        this.successes = new long[(size + 63) >>> 6];
+    }
+
+    void markSuccess(int index) {
+        successes[index >>> 6] |= 1L << index;
+        successCount++;
+    }
+
+    /**
+     * Returns the number of vehicles in the batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the vehicle at the given position of the batch
+     * was parked (parkAll) or unparked (unparkAll).
+     */
+    public boolean isSuccess(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of batch of " + size);
+        }
+        return (successes[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public int getFailureCount() {
+        return size - successCount;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{size=" + size + ", successes=" + successCount + "}";
+    }
+}
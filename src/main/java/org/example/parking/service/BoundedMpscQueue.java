@@ -0,0 +1,110 @@
+package org.example.parking.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer / single-consumer ring buffer.
+ *
+ * Producers claim a slot with a compare-and-set on the tail, then publish
+ * their element in it; the single consumer takes elements in claim order
+ * and clears their slots, without any compare-and-set. A slot claimed but
+ * not yet published simply ends the current drain.
+ *
+ * The queue can be closed: the closed flag lives in the tail itself, so a
+ * producer either claimed its slot before the close (and its element will
+ * be drained) or sees the close, never anything in between.
+ */
+final class BoundedMpscQueue<E> {
+
+    static final int OFFERED = 0;
+    static final int FULL = 1;
+    static final int CLOSED = 2;
+
+    private static final long CLOSED_BIT = 1L << 62;
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final int capacity;
+
+    // Next slot to claim (producers), plus CLOSED_BIT once closed
+    private final AtomicLong tail = new AtomicLong();
+    // Next slot to take, only written by the consumer; read by producers to detect a full queue
+    private final AtomicLong head = new AtomicLong();
+
+    BoundedMpscQueue(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds an element. Returns OFFERED, or FULL / CLOSED if it was not added.
+     */
+    int offer(E element) {
+        while (true) {
+            long current = tail.get();
+            if ((current & CLOSED_BIT) != 0) {
+                return CLOSED;
+            }
+            if (current - head.get() >= capacity) {
+                return FULL;
+            }
+            if (tail.compareAndSet(current, current + 1)) {
+                slots.set((int) current & mask, element);
+                return OFFERED;
+            }
+        }
+    }
+
+    /**
+     * Moves up to 'max' published elements into the array, in claim order.
+     * Consumer thread only. Returns how many were moved.
+     */
+    int drain(E[] into, int max) {
+        long next = head.get();
+        int count = 0;
+        while (count < max) {
+            int slot = (int) next & mask;
+            E element = slots.get(slot);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(slot, null);
+            into[count++] = element;
+            next++;
+        }
+        if (count > 0) {
+            // Slots are cleared before producers may reuse them
+            head.set(next);
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if an element was claimed and not drained yet
+     * (possibly not published yet).
+     */
+    boolean hasPending() {
+        return (tail.get() & ~CLOSED_BIT) != head.get();
+    }
+
+    /**
+     * Rejects every further offer. Elements already claimed are still drained.
+     */
+    void close() {
+        tail.getAndUpdate(current -> current | CLOSED_BIT);
+    }
+
+    boolean isClosed() {
+        return (tail.get() & CLOSED_BIT) != 0;
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.parking.service;
+
+/**
+ * How a ParkingService serializes concurrent park/unpark operations.
+ */
+public enum ConcurrencyMode {
+
+    /**
+     * One lock for the whole service: every park/unpark runs alone.
+     */
+    GLOBAL_LOCK,
+
+    /**
+     * One lock per spot class: vehicles claiming spots of different
+     * classes (e.g., a moto on a moto spot and a car on a car spot)
+     * are allocated in parallel.
+     */
+    STRIPED,
+
+    /**
+     * No lock at all: every spot is claimed with a compare-and-set on its
+     * state. Single-spot parks never block; a van claims its spots one by
+     * one and releases them if it cannot get them all.
+     */
+    LOCK_FREE
+}
@@ -0,0 +1,310 @@
+package org.example.parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Vehicle;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous front end of a ParkingService for the gate controllers.
+ *
+ * Gates submit requests to a bounded queue and get a future back; a single
+ * writer thread drains the queue in batches and applies them to the service,
+ * so gates never contend on the service lock: consecutive park requests for
+ * the same parking become one parkAll, consecutive unparks one unparkAll.
+ * Requests are applied in submission order.
+ *
+ * Futures are completed off the writer thread (by default on virtual threads
+ * owned and shut down by the pipeline), so callbacks attached to them cannot
+ * stall the pipeline. Batches are completed one after the other, in the
+ * order they were applied, whatever the executor; if it rejects the work,
+ * the futures fail with its exception instead of hanging.
+ * Gate controllers blocking on their future are best run on virtual threads too.
+ *
+ * When the queue is full, requests are rejected right away (the future fails
+ * with a RejectedExecutionException) rather than queued behind a growing backlog.
+ * Invalid requests (no vehicle, plate number or parking) fail right away too,
+ * with an IllegalArgumentException, so they cannot fail the batch they would
+ * have joined.
+ */
+public final class GatePipeline implements AutoCloseable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private final ParkingService service;
+    private final BoundedMpscQueue<GateRequest> queue;
+    private final int maxBatch;
+    private final Executor completions;
+    // The default completion executor, shut down by close(); null if given by the caller
+    private final ExecutorService ownedCompletions;
+    private final Thread writer;
+
+    // Applied batches waiting for their futures to be completed, in order.
+    // Only one completion task drains them at a time (see publish)
+    private final ConcurrentLinkedQueue<AppliedBatch> applied = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean completing = new AtomicBoolean();
+
+    // Set by the writer before parking itself, so producers know to wake it up
+    private volatile boolean writerIdle;
+
+    public GatePipeline(ParkingService service) {
+        this(service, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("gate-completion-", 0).factory()), true);
+    }
+
+    /**
+     * Creates a pipeline with the given queue capacity (rounded up to a power
+     * of two) and batch size, completing futures with the given executor.
+     * The executor stays the caller's: close() does not shut it down.
+     */
+    public GatePipeline(ParkingService service, int queueCapacity, int maxBatch, Executor completions) {
+        this(service, queueCapacity, maxBatch, completions, false);
+    }
+
+    private GatePipeline(ParkingService service, int queueCapacity, int maxBatch, Executor completions,
+                         boolean ownsCompletions) {
+        if (queueCapacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be positive");
+        }
+        this.service = service;
+        this.queue = new BoundedMpscQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.completions = completions;
+        this.ownedCompletions = ownsCompletions ? (ExecutorService) completions : null;
+        this.writer = Thread.ofPlatform().name("gate-pipeline-writer").daemon().unstarted(this::runWriter);
+        writer.start();
+    }
+
+    /**
+     * Submits a park request. The future tells whether the vehicle was parked.
+     */
+    public CompletableFuture<Boolean> parkAsync(Parking parking, Vehicle vehicle) {
+        return submit(new GateRequest(true, parking, vehicle));
+    }
+
+    /**
+     * Submits an unpark request. The future tells whether the vehicle was parked
+     * (and is now gone).
+     */
+    public CompletableFuture<Boolean> unparkAsync(Vehicle vehicle) {
+        return submit(new GateRequest(false, null, vehicle));
+    }
+
+    /**
+     * Stops accepting requests, then waits until every request already
+     * accepted has been applied (and, with the default executor, until
+     * every future has been completed).
+     */
+    @Override
+    public void close() {
+        queue.close();
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (ownedCompletions != null) {
+            // Waits for the completion tasks already submitted
+            ownedCompletions.close();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Boolean> submit(GateRequest request) {
+        String invalid = request.vehicle == null ? "A gate request needs a vehicle"
+                : request.vehicle.getPlateNumber() == null ? "A vehicle needs a plate number"
+                : request.park && request.parking == null ? "A park request needs a parking"
+                : null;
+        if (invalid != null) {
+            request.result.completeExceptionally(new IllegalArgumentException(invalid));
+            return request.result;
+        }
+        int status = queue.offer(request);
+        if (status != BoundedMpscQueue.OFFERED) {
+            request.result.completeExceptionally(new RejectedExecutionException(status == BoundedMpscQueue.FULL
+                    ? "Gate queue full (" + queue.capacity() + " requests)"
+                    : "Gate pipeline closed"));
+        } else if (writerIdle) {
+            writerIdle = false;
+            LockSupport.unpark(writer);
+        }
+        return request.result;
+    }
+
+    private void runWriter() {
+        GateRequest[] batch = new GateRequest[maxBatch];
+        while (true) {
+            int count = queue.drain(batch, maxBatch);
+            if (count > 0) {
+                apply(batch, count);
+                continue;
+            }
+            if (queue.hasPending()) {
+                // A producer claimed a slot and is about to publish it
+                Thread.onSpinWait();
+                continue;
+            }
+            if (queue.isClosed()) {
+                return;
+            }
+            // Announce we are going to sleep, then check again before sleeping
+            writerIdle = true;
+            if (!queue.hasPending() && !queue.isClosed()) {
+                LockSupport.park(this);
+            }
+            writerIdle = false;
+        }
+    }
+
+    /**
+     * Applies a drained batch, grouping runs of requests of the same kind
+     * (and the same parking, for parks) into one batch call of the service.
+     */
+    private void apply(GateRequest[] batch, int count) {
+        boolean[] outcomes = new boolean[count];
+        RuntimeException[] failures = null;
+        int start = 0;
+        while (start < count) {
+            int end = start + 1;
+            while (end < count && batch[end].park == batch[start].park && batch[end].parking == batch[start].parking) {
+                end++;
+            }
+            List<Vehicle> vehicles = new VehicleRun(batch, start, end);
+            try {
+                BatchResult result = batch[start].park
+                        ? service.parkAll(batch[start].parking, vehicles)
+                        : service.unparkAll(vehicles);
+                for (int i = start; i < end; i++) {
+                    outcomes[i] = result.isSuccess(i - start);
+                }
+            } catch (RuntimeException e) {
+                if (failures == null) {
+                    failures = new RuntimeException[count];
+                }
+                for (int i = start; i < end; i++) {
+                    failures[i] = e;
+                }
+            }
+            start = end;
+        }
+
+        publish(new AppliedBatch(Arrays.copyOf(batch, count), outcomes, failures));
+        Arrays.fill(batch, 0, count, null);
+    }
+
+    /**
+     * Queues an applied batch for completion, starting a completion task
+     * unless one is already running. Called by the writer thread only.
+     */
+    private void publish(AppliedBatch batch) {
+        applied.add(batch);
+        if (!completing.compareAndSet(false, true)) {
+            return; // the running task will see it
+        }
+        try {
+            completions.execute(this::runCompletions);
+        } catch (RuntimeException e) {
+            // No task will run: fail the waiting futures rather than leave them hanging
+            for (AppliedBatch waiting; (waiting = applied.poll()) != null; ) {
+                waiting.fail(e);
+            }
+            completing.set(false);
+        }
+    }
+
+    private void runCompletions() {
+        do {
+            for (AppliedBatch batch; (batch = applied.poll()) != null; ) {
+                batch.complete();
+            }
+            completing.set(false);
+            // A batch published after the last poll but before the reset found
+            // completing still set: take it over unless another task did
+        } while (!applied.isEmpty() && completing.compareAndSet(false, true));
+    }
+
+    private static final class AppliedBatch {
+
+        final GateRequest[] requests;
+        final boolean[] outcomes;
+        final RuntimeException[] failures;
+
+        AppliedBatch(GateRequest[] requests, boolean[] outcomes, RuntimeException[] failures) {
+            this.requests = requests;
+            this.outcomes = outcomes;
+            this.failures = failures;
+        }
+
+        void complete() {
+            for (int i = 0; i < requests.length; i++) {
+                if (failures != null && failures[i] != null) {
+                    requests[i].result.completeExceptionally(failures[i]);
+                } else {
+                    requests[i].result.complete(outcomes[i]);
+                }
+            }
+        }
+
+        void fail(Throwable error) {
+            for (GateRequest request : requests) {
+                request.result.completeExceptionally(error);
+            }
+        }
+    }
+
+    private static final class GateRequest {
+
+        final boolean park;
+        final Parking parking;
+        final Vehicle vehicle;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        GateRequest(boolean park, Parking parking, Vehicle vehicle) {
+            this.park = park;
+            this.parking = parking;
+            this.vehicle = vehicle;
+        }
+    }
+
+    // The vehicles of batch[from, to), without copying them
+    private static final class VehicleRun extends AbstractList<Vehicle> implements RandomAccess {
+
+        private final GateRequest[] batch;
+        private final int from;
+        private final int to;
+
+        VehicleRun(GateRequest[] batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Vehicle get(int index) {
+            return batch[from + index].vehicle;
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
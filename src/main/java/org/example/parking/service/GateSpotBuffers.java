@@ -0,0 +1,260 @@
+package org.example.parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.SpotType;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-gate buffers of pre-claimed spots, like the thread-local allocation
+ * buffers of a JVM (see ParkingService.enableGateBuffers).
+ *
+ * Each gate thread holds a batch of free spots of a class in one go
+ * (under the lock of the service mode), then parks the vehicles of that
+ * class on them without any lock, and without racing the other gates for
+ * the first free spots of the class. Buffered spots are held in the Parking
+ * (see Parking.tryHold): no other vehicle gets them, but its counts, the
+ * occupancy feed and the history still show them as free.
+ *
+ * A class only refills buffers while it has 'spotsPerBuffer' unheld free
+ * spots for each buffer of the class. Once it runs below that, the first
+ * gate failing to refill gives every buffered spot of the class back to the
+ * shared pool, and gates park through the shared path. A park that finds no
+ * free spot also gives every buffered spot of the parking back (returnAll)
+ * before trying again, so a nearly full lot still fills up to its last spot.
+ *
+ * Buffers belong to their gate thread: those of threads that ended are
+ * given back and dropped on the next refill of any gate.
+ *
+ * Buffer entries change hands with a compare-and-set (the owner taking its
+ * next spot, or another thread giving it back), so a spot is never used twice.
+ */
+public final class GateSpotBuffers {
+
+    private static final VarHandle ENTRIES = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int spotsPerBuffer;
+
+    // Buffers of the calling thread, and of every thread (copy-on-write)
+    private final ThreadLocal<Buffer[]> local = ThreadLocal.withInitial(() -> new Buffer[0]);
+    private volatile Buffer[] all = new Buffer[0];
+    private final Object allLock = new Object();
+
+    private final LongAdder refills = new LongAdder();
+    private final LongAdder returned = new LongAdder();
+
+    GateSpotBuffers(int spotsPerBuffer) {
+        if (spotsPerBuffer < 1) {
+            throw new IllegalArgumentException("A buffer holds at least one spot: " + spotsPerBuffer);
+        }
+        this.spotsPerBuffer = spotsPerBuffer;
+    }
+
+    public int getSpotsPerBuffer() {
+        return spotsPerBuffer;
+    }
+
+    /**
+     * Returns how many spots the buffers of every gate currently hold.
+     */
+    public int getBufferedSpotCount() {
+        int count = 0;
+        for (Buffer buffer : all) {
+            for (int i = 0; i < buffer.entries.length; i++) {
+                if ((int) ENTRIES.getAcquire(buffer.entries, i) >= 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns how many times a buffer was refilled from the shared pool.
+     */
+    public long getRefillCount() {
+        return refills.sum();
+    }
+
+    /**
+     * Returns how many buffered spots were given back to the shared pool.
+     */
+    public long getReturnedSpotCount() {
+        return returned.sum();
+    }
+
+    /**
+     * Gives every spot buffered for the parking back to the shared pool,
+     * whichever gate holds it. Returns how many spots were given back.
+     */
+    public int returnAll(Parking parking) {
+        int count = 0;
+        for (Buffer buffer : all) {
+            if (buffer.parking == parking) {
+                count += buffer.returnAll();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gives every spot of the given class buffered for the parking back to the shared pool.
+     */
+    private void returnClass(Parking parking, SpotType type) {
+        for (Buffer buffer : all) {
+            if (buffer.parking == parking && buffer.type == type) {
+                buffer.returnAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the buffer of the calling thread for the given class, created on first use.
+     */
+    Buffer bufferOf(Parking parking, int parkingId, SpotType type) {
+        Buffer[] mine = local.get();
+        int slot = parkingId * SpotType.values().length + type.ordinal();
+        if (slot >= mine.length) {
+            mine = Arrays.copyOf(mine, slot + 1);
+            local.set(mine);
+        }
+        Buffer buffer = mine[slot];
+        if (buffer == null) {
+            buffer = new Buffer(Thread.currentThread(), parking, type, spotsPerBuffer);
+            mine[slot] = buffer;
+            synchronized (allLock) {
+                Buffer[] grown = Arrays.copyOf(all, all.length + 1);
+                grown[all.length] = buffer;
+                all = grown;
+            }
+        }
+        return buffer;
+    }
+
+    // True while the class has enough unheld free spots to refill each of its buffers once
+    private boolean canRefill(Parking parking, SpotType type) {
+        int buffers = 0;
+        for (Buffer buffer : all) {
+            if (buffer.parking == parking && buffer.type == type) {
+                buffers++;
+            }
+        }
+        int available = parking.getFreeSpotsCount(type) - parking.getHeldSpotsCount(type);
+        return available >= (long) spotsPerBuffer * buffers;
+    }
+
+    // Gives back and drops the buffers of the gate threads that ended
+    private void pruneEndedOwners() {
+        Buffer[] current = all;
+        int alive = 0;
+        for (Buffer buffer : current) {
+            if (buffer.owner.isAlive()) {
+                alive++;
+            }
+        }
+        if (alive == current.length) {
+            return;
+        }
+        synchronized (allLock) {
+            Buffer[] kept = new Buffer[all.length];
+            int count = 0;
+            for (Buffer buffer : all) {
+                if (buffer.owner.isAlive()) {
+                    kept[count++] = buffer;
+                } else {
+                    buffer.returnAll();
+                }
+            }
+            all = Arrays.copyOf(kept, count);
+        }
+    }
+
+    /**
+     * The spots of one class pre-claimed by one gate. Only the owner thread
+     * takes and refills; any thread may give its spots back (returnAll).
+     */
+    final class Buffer {
+
+        private final Thread owner;
+        private final Parking parking;
+        private final SpotType type;
+
+        // Spot indexes, -1 once taken or given back
+        private final int[] entries;
+
+        // Owner only: the next entry to take, and the end of the last refill
+        private int next;
+        private int end;
+
+        private Buffer(Thread owner, Parking parking, SpotType type, int capacity) {
+            this.owner = owner;
+            this.parking = parking;
+            this.type = type;
+            this.entries = new int[capacity];
+            Arrays.fill(entries, -1);
+        }
+
+        SpotType type() {
+            return type;
+        }
+
+        /**
+         * Returns the index of a buffered spot, still held, now owned by
+         * the caller; or -1 if the buffer is empty.
+         */
+        int take() {
+            while (next < end) {
+                int slot = next++;
+                int index = (int) ENTRIES.getAcquire(entries, slot);
+                // Fails if the spot was just given back by another thread
+                if (index >= 0 && ENTRIES.compareAndSet(entries, slot, index, -1)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Holds up to a buffer of free spots, the first ones of the class,
+         * unless the class runs low, in which case every buffer of the class
+         * gives its spots back. The caller holds the lock of the class (if
+         * the service mode has one), and the buffer is empty.
+         * Returns false if nothing was held.
+         */
+        boolean refill() {
+            pruneEndedOwners();
+            if (!canRefill(parking, type)) {
+                returnClass(parking, type);
+                return false;
+            }
+            int count = 0;
+            int index = parking.nextFreeSpotIndex(type, 0);
+            while (index >= 0 && count < entries.length) {
+                if (parking.tryHold(type, index)) {
+                    ENTRIES.setRelease(entries, count++, index);
+                }
+                index = parking.nextFreeSpotIndex(type, index + 1);
+            }
+            next = 0;
+            end = count;
+            refills.increment();
+            return count > 0;
+        }
+
+        private int returnAll() {
+            int count = 0;
+            for (int i = 0; i < entries.length; i++) {
+                int index = (int) ENTRIES.getAcquire(entries, i);
+                if (index >= 0 && ENTRIES.compareAndSet(entries, i, index, -1)) {
+                    parking.releaseHold(type, index);
+                    count++;
+                }
+            }
+            returned.add(count);
+            return count;
+        }
+    }
+}
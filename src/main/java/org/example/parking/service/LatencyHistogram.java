@@ -0,0 +1,108 @@
+package org.example.parking.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations in nanoseconds, in the spirit of HdrHistogram:
+ * every power of two is split into 16 buckets, so any recorded value is known
+ * within 1/16 (6.25%) of its true value, from 1 ns up to about 18 minutes
+ * (longer durations land in the last bucket).
+ *
+ * Recording is a couple of atomic adds on preallocated arrays: it never
+ * allocates and never locks, so it can stay on in production.
+ * Reads are not atomic with concurrent records, which is fine for monitoring.
+ * Used by ParkingMetrics, and by the load simulator to time every request.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 40;
+    static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.getAndIncrement(bucketOf(value));
+        totalCount.getAndIncrement();
+        totalNanos.getAndAdd(value);
+    }
+
+    public long count() {
+        return totalCount.get();
+    }
+
+    public long totalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * Returns the value below which the given fraction of the recorded values
+     * fall (e.g., 0.99 for the 99th percentile), rounded up to the top of its
+     * bucket, or 0 if nothing was recorded.
+     */
+    public long percentile(double fraction) {
+        long total = totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        // Records landed while we were scanning
+        return MAX_VALUE;
+    }
+
+    /**
+     * Adds the values recorded here to another histogram (e.g., to aggregate several).
+     */
+    public void addTo(LatencyHistogram target) {
+        // Count what was copied, so the target's total matches its buckets
+        long copied = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count != 0) {
+                target.counts.getAndAdd(i, count);
+                copied += count;
+            }
+        }
+        target.totalCount.getAndAdd(copied);
+        target.totalNanos.getAndAdd(totalNanos.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalNanos.set(0);
+    }
+
+    // Values below 32 get a bucket each, then 16 buckets per power of two
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.parking.service;
+
+import org.example.parking.domain.OccupancySnapshot;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+/**
+ * One item of an OccupancyFeed subscription: a vehicle parked or left, or
+ * the latest counts of the whole parking (COUNTS) when the subscriber just
+ * subscribed or fell too far behind to receive every event.
+ */
+public final class OccupancyEvent {
+
+    public enum Kind {
+        PARKED,
+        UNPARKED,
+        COUNTS
+    }
+
+    private final Kind kind;
+    private final long sequence;
+    private final String plate;
+    private final Class<? extends Vehicle> vehicleType;
+    private final SpotType spotType;
+    private final int firstSpot;
+    private final int spotCount;
+    private final int freeSpots;
+    private final OccupancySnapshot counts;
+    private final long skippedEvents;
+
+    private OccupancyEvent(Kind kind, long sequence, String plate, Class<? extends Vehicle> vehicleType,
+                           SpotType spotType, int firstSpot, int spotCount, int freeSpots,
+                           OccupancySnapshot counts, long skippedEvents) {
+        this.kind = kind;
+        this.sequence = sequence;
+        this.plate = plate;
+        this.vehicleType = vehicleType;
+        this.spotType = spotType;
+        this.firstSpot = firstSpot;
+        this.spotCount = spotCount;
+        this.freeSpots = freeSpots;
+        this.counts = counts;
+        this.skippedEvents = skippedEvents;
+    }
+
+    static OccupancyEvent change(Kind kind, long sequence, String plate, Class<? extends Vehicle> vehicleType,
+                                 SpotType spotType, int firstSpot, int spotCount, int freeSpots) {
+        return new OccupancyEvent(kind, sequence, plate, vehicleType, spotType, firstSpot, spotCount, freeSpots,
+                null, 0);
+    }
+
+    static OccupancyEvent counts(long sequence, OccupancySnapshot counts, long skippedEvents) {
+        return new OccupancyEvent(Kind.COUNTS, sequence, null, null, null, -1, 0, -1, counts, skippedEvents);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Position of the event in the feed. For COUNTS, the position of the
+     * next event the subscriber will receive.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * The plate of the vehicle, null for COUNTS.
+     */
+    public String getPlate() {
+        return plate;
+    }
+
+    public Class<? extends Vehicle> getVehicleType() {
+        return vehicleType;
+    }
+
+    /**
+     * The class of the spots the vehicle took or left, null for COUNTS.
+     */
+    public SpotType getSpotType() {
+        return spotType;
+    }
+
+    public int getFirstSpot() {
+        return firstSpot;
+    }
+
+    public int getSpotCount() {
+        return spotCount;
+    }
+
+    /**
+     * Free spots of the event spot class right after the change, as seen by
+     * the gate that made it (-1 for COUNTS).
+     */
+    public int getFreeSpots() {
+        return freeSpots;
+    }
+
+    /**
+     * The counts of every spot class, read when this COUNTS item was
+     * delivered; null for PARKED / UNPARKED.
+     */
+    public OccupancySnapshot getCounts() {
+        return counts;
+    }
+
+    /**
+     * Number of events replaced by this COUNTS item (0 for a new subscription).
+     */
+    public long getSkippedEvents() {
+        return skippedEvents;
+    }
+
+    @Override
+    public String toString() {
+        if (kind == Kind.COUNTS) {
+            return "OccupancyEvent{#" + sequence + " COUNTS " + counts + ", skipped=" + skippedEvents + '}';
+        }
+        return "OccupancyEvent{#" + sequence + ' ' + kind + ' ' + plate + ' ' + spotType + ' ' + firstSpot
+                + (spotCount > 1 ? ".." + (firstSpot + spotCount - 1) : "") + ", free=" + freeSpots + '}';
+    }
+}
@@ -0,0 +1,256 @@
+package org.example.parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Push feed of the park / unpark events of one Parking, for displays and
+ * backends that would otherwise poll the free counts.
+ *
+ * Gates publish into a bounded ring buffer (see ParkingService.openOccupancyFeed):
+ * one getAndIncrement to claim a sequence number, then a few plain writes in
+ * preallocated arrays, never waiting for a subscriber and never allocating.
+ * Subscribers only hold a cursor into the ring, so any number of them can
+ * follow the feed at no cost to the gates.
+ *
+ * A subscriber that falls more than the capacity behind finds its next event
+ * overwritten. Instead of the events it missed, it then receives a single
+ * COUNTS item with the latest counts of the parking and resumes at the
+ * newest event: slow consumers see coalesced counts, they never hold the
+ * gates back.
+ *
+ * Each slot carries its own stamp (0 when empty, 2s + 1 while event s is
+ * written, 2s + 2 once it is published); a subscriber reads the slot between
+ * two reads of the stamp and retries if it changed.
+ */
+public final class OccupancyFeed implements ParkingEventListener, Closeable {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Bit of the packed spots telling an unpark from a park
+    private static final long UNPARKED_BIT = 1L << 62;
+
+    private final ParkingService service;
+    private final Parking parking;
+    private final int mask;
+
+    // Next sequence number to publish
+    private final AtomicLong next = new AtomicLong();
+
+    // The ring: one stamp and one event per slot, in parallel arrays
+    private final long[] stamps;
+    private final String[] plates;
+    private final Class<?>[] vehicleTypes;
+    private final long[] spots; // SpotAllocation.of(...), plus UNPARKED_BIT
+    private final int[] freeSpots;
+
+    OccupancyFeed(ParkingService service, Parking parking, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.service = service;
+        this.parking = parking;
+        this.mask = size - 1;
+        this.stamps = new long[size];
+        this.plates = new String[size];
+        this.vehicleTypes = new Class<?>[size];
+        this.spots = new long[size];
+        this.freeSpots = new int[size];
+    }
+
+    public Parking getParking() {
+        return parking;
+    }
+
+    /**
+     * Number of events the ring holds (the capacity asked for, rounded up to a power of two).
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Number of events published since the feed was opened.
+     */
+    public long getPublishedCount() {
+        return next.get();
+    }
+
+    /**
+     * Starts following the feed. The first item of the subscription is the
+     * current COUNTS of the parking, then every event published after it.
+     */
+    public Subscription subscribe() {
+        return new Subscription();
+    }
+
+    /**
+     * Stops publishing: the feed no longer listens to the service.
+     * Subscribers still receive the events already published.
+     */
+    @Override
+    public void close() {
+        service.removeListener(this);
+    }
+
+    @Override
+    public void onParked(Parking parking, String plate, Class<? extends Vehicle> vehicleType,
+                         SpotType spotType, int firstSpot, int spotCount) {
+        if (parking == this.parking) {
+            publish(plate, vehicleType, SpotAllocation.of(spotType, firstSpot, spotCount),
+                    parking.getFreeSpotsCount(spotType));
+        }
+    }
+
+    @Override
+    public void onUnparked(Parking parking, String plate, Class<? extends Vehicle> vehicleType,
+                           SpotType spotType, int firstSpot, int spotCount) {
+        if (parking == this.parking) {
+            // Notified before the spots are freed
+            publish(plate, vehicleType, SpotAllocation.of(spotType, firstSpot, spotCount) | UNPARKED_BIT,
+                    parking.getFreeSpotsCount(spotType) + spotCount);
+        }
+    }
+
+    private void publish(String plate, Class<?> vehicleType, long packedSpots, int free) {
+        long sequence = next.getAndIncrement();
+        int slot = (int) sequence & mask;
+        long writing = 2 * sequence + 1;
+        while (true) {
+            long stamp = (long) STAMPS.getVolatile(stamps, slot);
+            if ((stamp & 1) != 0) {
+                // Another gate is writing the slot, a whole lap apart: only when the ring is tiny
+                Thread.onSpinWait();
+                continue;
+            }
+            if (stamp != 0 && sequenceOf(stamp) > sequence) {
+                // A later event already took the slot: this one is lost to every subscriber
+                return;
+            }
+            if (STAMPS.compareAndSet(stamps, slot, stamp, writing)) {
+                break;
+            }
+        }
+        plates[slot] = plate;
+        vehicleTypes[slot] = vehicleType;
+        spots[slot] = packedSpots;
+        freeSpots[slot] = free;
+        STAMPS.setRelease(stamps, slot, writing + 1);
+    }
+
+    private static long sequenceOf(long stamp) {
+        return (stamp - 1) >>> 1;
+    }
+
+    /**
+     * A cursor into the feed. Not thread-safe: each consumer thread takes
+     * its own subscription.
+     */
+    public final class Subscription {
+
+        // Next sequence number to deliver
+        private long cursor;
+        // Counts as of subscribing, until delivered
+        private OccupancyEvent initialCounts;
+
+        private Subscription() {
+            cursor = next.get();
+            initialCounts = OccupancyEvent.counts(cursor, parking.getOccupancySnapshot(), 0);
+        }
+
+        /**
+         * Returns the next item, or null if nothing new was published.
+         */
+        @SuppressWarnings("unchecked")
+        public OccupancyEvent poll() {
+            if (initialCounts != null) {
+                OccupancyEvent counts = initialCounts;
+                initialCounts = null;
+                return counts;
+            }
+            while (true) {
+                int slot = (int) cursor & mask;
+                long stamp = (long) STAMPS.getAcquire(stamps, slot);
+                if (stamp == 0) {
+                    return null;
+                }
+                long sequence = sequenceOf(stamp);
+                if (sequence > cursor) {
+                    return catchUp();
+                }
+                if (sequence < cursor || (stamp & 1) != 0) {
+                    // Not published yet
+                    return null;
+                }
+                String plate = plates[slot];
+                Class<?> vehicleType = vehicleTypes[slot];
+                long packedSpots = spots[slot];
+                int free = freeSpots[slot];
+                VarHandle.acquireFence();
+                if ((long) STAMPS.getOpaque(stamps, slot) != stamp) {
+                    // Overwritten while being read
+                    continue;
+                }
+                OccupancyEvent.Kind kind = (packedSpots & UNPARKED_BIT) != 0
+                        ? OccupancyEvent.Kind.UNPARKED : OccupancyEvent.Kind.PARKED;
+                return OccupancyEvent.change(kind, cursor++, plate, (Class<? extends Vehicle>) vehicleType,
+                        SpotAllocation.type(packedSpots), SpotAllocation.start(packedSpots),
+                        SpotAllocation.count(packedSpots), free);
+            }
+        }
+
+        /**
+         * Returns the next item, waiting up to the timeout for one to be
+         * published; null if none was. Gates are never signalled: the wait
+         * polls with a growing pause (at most a millisecond).
+         */
+        public OccupancyEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            long pauseNanos = 1_000;
+            while (true) {
+                OccupancyEvent event = poll();
+                if (event != null) {
+                    return event;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.parkNanos(Math.min(pauseNanos, remaining));
+                pauseNanos = Math.min(2 * pauseNanos, 1_000_000);
+            }
+        }
+
+        /**
+         * Returns how many published events this subscription has not received yet.
+         */
+        public long getLag() {
+            return next.get() - cursor;
+        }
+
+        // The next event was overwritten: coalesce everything missed into the latest counts
+        private OccupancyEvent catchUp() {
+            long resumeAt = next.get();
+            long skipped = resumeAt - cursor;
+            cursor = resumeAt;
+            return OccupancyEvent.counts(resumeAt, parking.getOccupancySnapshot(), skipped);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.parking.service;
+
+/**
+ * How a park request was served, as reported by ParkingMetrics.
+ */
+public enum ParkOutcome {
+    /** On the first spot class of the vehicle's AllocationPlan (moto spot for a moto, big spot for a van...). */
+    PRIMARY,
+    /** Fell back on moto spots (only with a custom plan). */
+    FALLBACK_MOTO,
+    /** Fell back on car spots (a moto on a car spot, a van on adjacent car spots). */
+    FALLBACK_CAR,
+    /** Fell back on a big spot (a moto or a car). */
+    FALLBACK_BIG,
+    /** Not parked: no spot available, or the plate is already parked. */
+    REJECTED
+}
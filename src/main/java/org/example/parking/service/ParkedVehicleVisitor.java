@@ -0,0 +1,14 @@
+package org.example.parking.service;
+
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+/**
+ * Receives the parked vehicles of a Parking, one call per vehicle.
+ * See ParkingService.forEachParked.
+ */
+@FunctionalInterface
+public interface ParkedVehicleVisitor {
+
+    void visit(String plate, Class<? extends Vehicle> vehicleType, SpotType spotType, int firstSpot, int spotCount);
+}
@@ -0,0 +1,29 @@
+package org.example.parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+/**
+ * Callback notified by a ParkingService on every successful park and unpark.
+ *
+ * A vehicle always holds a run of adjacent spots of one class, described by
+ * its spot type, first spot index and spot count. onParked is called once the
+ * spots are claimed; onUnparked is called before they are freed, so for any
+ * given spot the events of consecutive owners are always seen in order, and
+ * so are the events of any given plate.
+ *
+ * Listeners run on the gate thread, while the plate is locked in the
+ * service plate table, so they must be short and must not call back
+ * into the service.
+ */
+public interface ParkingEventListener {
+
+    default void onParked(Parking parking, String plate, Class<? extends Vehicle> vehicleType,
+                          SpotType spotType, int firstSpot, int spotCount) {
+    }
+
+    default void onUnparked(Parking parking, String plate, Class<? extends Vehicle> vehicleType,
+                            SpotType spotType, int firstSpot, int spotCount) {
+    }
+}
@@ -0,0 +1,224 @@
+package org.example.parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A multi-zone facility (levels, areas, sites) sharded into ParkingZones,
+ * each one with its own Parking and ParkingService.
+ *
+ * Arrivals are routed to a zone according to the ZoneRoutingPolicy, and fall
+ * back on the other zones if the chosen one turns out to be full. Departures
+ * go straight to the zone owning the plate. Aggregate counts only read the
+ * zones' counters, so they never lock any shard.
+ */
+public class ParkingFacility {
+
+    private final ParkingZone[] zones;
+    private final ZoneRoutingPolicy policy;
+
+    // Plate -> index of the zone the vehicle is parked in
+    private final PlateOccupancyTable routes = new PlateOccupancyTable();
+
+    public ParkingFacility(List<ParkingZone> zones, ZoneRoutingPolicy policy) {
+        if (zones.isEmpty()) {
+            throw new IllegalArgumentException("A facility needs at least one zone");
+        }
+        this.zones = zones.toArray(new ParkingZone[0]);
+        this.policy = policy;
+    }
+
+    public ParkingFacility(List<ParkingZone> zones) {
+        this(zones, ZoneRoutingPolicy.POWER_OF_TWO_CHOICES);
+    }
+
+    /**
+     * Registers the plan of a vehicle type in every zone (see AllocationPlanRegistry).
+     */
+    public void registerAllocationPlan(Class<? extends Vehicle> type, AllocationPlan plan) {
+        for (ParkingZone zone : zones) {
+            zone.getService().getAllocationPlans().register(type, plan);
+        }
+    }
+
+    public List<ParkingZone> getZones() {
+        return List.of(zones);
+    }
+
+    /**
+     * Parks the vehicle in the zone picked by the routing policy, or in any
+     * other zone with room if that one is full.
+     * Returns false if no zone can take it, or if its plate is already parked.
+     */
+    public boolean parkVehicle(Vehicle vehicle) {
+        String plate = ParkingService.checkPlate(vehicle.getPlateNumber());
+        if (routes.get(plate) != SpotAllocation.NONE) {
+            return false;
+        }
+        int first = pickZone(vehicle);
+        if (parkInZone(first, vehicle)) {
+            return true;
+        }
+        // The hint was stale or the zone is full: try the others in turn
+        for (int i = 1; i < zones.length; i++) {
+            if (parkInZone((first + i) % zones.length, vehicle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean parkInZone(int zone, Vehicle vehicle) {
+        ParkingZone target = zones[zone];
+        if (!target.getService().parkVehicle(target.getParking(), vehicle)) {
+            return false;
+        }
+        if (routes.putIfAbsent(vehicle.getPlateNumber(), zone)) {
+            return true;
+        }
+        // Same plate parked concurrently in another zone: back out
+        target.getService().unparkVehicle(vehicle);
+        return false;
+    }
+
+    /**
+     * Unparks the vehicle from the zone that owns it.
+     */
+    public void unparkVehicle(Vehicle vehicle) {
+        unparkByPlate(vehicle.getPlateNumber());
+    }
+
+    /**
+     * Unparks the vehicle with the given plate from the zone that owns it.
+     * Returns false if no vehicle with this plate is parked in the facility.
+     */
+    public boolean unparkByPlate(String plate) {
+        ParkingService.checkPlate(plate);
+        long zone = routes.remove(plate);
+        return zone != SpotAllocation.NONE && zones[(int) zone].getService().unparkByPlate(plate);
+    }
+
+    /**
+     * Returns the zone the vehicle with this plate is parked in, or null.
+     */
+    public ParkingZone findZone(String plate) {
+        ParkingService.checkPlate(plate);
+        long zone = routes.get(plate);
+        return zone == SpotAllocation.NONE ? null : zones[(int) zone];
+    }
+
+    private int pickZone(Vehicle vehicle) {
+        if (zones.length == 1) {
+            return 0;
+        }
+        if (policy == ZoneRoutingPolicy.POWER_OF_TWO_CHOICES) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int a = random.nextInt(zones.length);
+            int b = random.nextInt(zones.length - 1);
+            if (b >= a) {
+                b++;
+            }
+            return capacityFor(zones[a], vehicle) >= capacityFor(zones[b], vehicle) ? a : b;
+        }
+        int best = 0;
+        int bestCapacity = -1;
+        for (int i = 0; i < zones.length; i++) {
+            int capacity = capacityFor(zones[i], vehicle);
+            if (capacity > bestCapacity) {
+                best = i;
+                bestCapacity = capacity;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Free-capacity hint: free spots of the classes the zone's plan for this
+     * vehicle uses, divided by the spots each step takes (car spots count for
+     * a third for a van needing 3 of them).
+     */
+    private static int capacityFor(ParkingZone zone, Vehicle vehicle) {
+        Parking parking = zone.getParking();
+        AllocationPlan plan = zone.getService().getAllocationPlans().planFor(vehicle);
+        int capacity = 0;
+        for (int step = 0; step < plan.size(); step++) {
+            capacity += parking.getFreeSpotsCount(plan.typeAt(step)) / plan.spotsAt(step);
+        }
+        return capacity;
+    }
+
+    // ---------------------------------------------------------------------
+    // Aggregates: sums of the zones' counters, no shard is locked
+    // ---------------------------------------------------------------------
+
+    public int getTotalSpots() {
+        int total = 0;
+        for (ParkingZone zone : zones) {
+            total += zone.getParking().getTotalSpots();
+        }
+        return total;
+    }
+
+    public int getFreeSpotsCount() {
+        int free = 0;
+        for (ParkingZone zone : zones) {
+            free += zone.getParking().getFreeSpotsCount();
+        }
+        return free;
+    }
+
+    public int getFreeSpotsCount(SpotType type) {
+        int free = 0;
+        for (ParkingZone zone : zones) {
+            free += zone.getParking().getFreeSpotsCount(type);
+        }
+        return free;
+    }
+
+    public boolean isFull() {
+        return getFreeSpotsCount() == 0;
+    }
+
+    public boolean isEmpty() {
+        return getFreeSpotsCount() == getTotalSpots();
+    }
+
+    public int getParkedVehicleCount() {
+        int count = 0;
+        for (ParkingZone zone : zones) {
+            count += zone.getService().getParkedVehicleCount();
+        }
+        return count;
+    }
+
+    public int getNumberOfSpotsOccupiedByVans() {
+        int count = 0;
+        for (ParkingZone zone : zones) {
+            count += zone.getService().getNumberOfSpotsOccupiedByVans();
+        }
+        return count;
+    }
+
+    /**
+     * Parked vehicles and occupied spots per vehicle type, over all zones.
+     */
+    public Map<Class<? extends Vehicle>, VehicleTypeOccupancy> getOccupancyByVehicleType() {
+        Map<Class<? extends Vehicle>, int[]> sums = new LinkedHashMap<>();
+        for (ParkingZone zone : zones) {
+            zone.getService().getOccupancyByVehicleType().forEach((type, occupancy) -> {
+                int[] sum = sums.computeIfAbsent(type, t -> new int[2]);
+                sum[0] += occupancy.getParkedVehicles();
+                sum[1] += occupancy.getOccupiedSpots();
+            });
+        }
+        Map<Class<? extends Vehicle>, VehicleTypeOccupancy> result = new LinkedHashMap<>();
+        sums.forEach((type, sum) -> result.put(type, new VehicleTypeOccupancy(sum[0], sum[1])));
+        return result;
+    }
+}
@@ -0,0 +1,420 @@
+package org.example.parking.service;
+
+import org.example.parking.model.Vehicle;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counters and latency histograms of a ParkingService (see ParkingService.enableMetrics()):
+ * - parks (parkVehicle, parkAll, claimed reservations), per vehicle type and ParkOutcome,
+ * - unparks, per vehicle type (plus unknown plates),
+ * - time spent waiting for the service lock (global lock, or spot class stripes).
+ *
+ * Every request is counted. A park or unpark is counted while the service
+ * holds the monitor of the plate's segment in its PlateOccupancyTable, so
+ * the count is a plain write to that segment's cache line rather than an
+ * atomic add (which cost as much as 10% of a park). Rejections and unknown
+ * plates hold no monitor and use a LongAdder.
+ * Only one request in SAMPLE_EVERY is timed: reading the clock costs about
+ * as much as a park, so timing every request would halve the throughput.
+ * Lock waits are sampled at the same rate, be it the global lock or a
+ * stripe, contended or not, so their histograms describe the same
+ * population and can be merged.
+ * Series are created the first time a vehicle type shows up; after that
+ * recording never allocates (see LatencyHistogram).
+ * Readable through JMX (registerMBean) or as Prometheus text (toPrometheusText).
+ */
+public final class ParkingMetrics implements ParkingMetricsMXBean {
+
+    /**
+     * One request in SAMPLE_EVERY (a power of two) is timed.
+     */
+    public static final int SAMPLE_EVERY = 64;
+
+    private static final ParkOutcome[] OUTCOMES = ParkOutcome.values();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // Tally slots of one plate segment: a park count per outcome, then the
+    // unpark count, padded to a cache line so segments do not share one
+    private static final int UNPARK_SLOT = OUTCOMES.length;
+    private static final int TALLY_STRIDE = 8;
+    private static final VarHandle TALLY = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Request count and sampled latencies of one kind of request. Only
+     * rejections and unknown plates are counted here (see tallies).
+     */
+    private static final class Series {
+        final LongAdder count = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(long nanos) {
+            count.increment();
+            if (nanos >= 0) {
+                latency.record(nanos);
+            }
+        }
+
+        void reset() {
+            count.reset();
+            latency.reset();
+        }
+    }
+
+    // Indexed by vehicle kind * OUTCOMES.length + outcome ordinal
+    private final AtomicReferenceArray<Series> parks =
+            new AtomicReferenceArray<>(SpotAllocation.MAX_KINDS * OUTCOMES.length);
+    // Indexed by vehicle kind
+    private final AtomicReferenceArray<Series> unparks =
+            new AtomicReferenceArray<>(SpotAllocation.MAX_KINDS);
+    private final Series unknownUnparks = new Series();
+    // Counts of the parks and unparks that went through, indexed by vehicle
+    // kind, then by plate segment * TALLY_STRIDE + slot; each slot is only
+    // written while holding the monitor of its plate segment
+    private final AtomicReferenceArray<long[]> tallies = new AtomicReferenceArray<>(SpotAllocation.MAX_KINDS);
+    private final Series globalLockWait = new Series();
+    private final Series stripeLockWait = new Series();
+
+    // The plate table whose segment monitors guard the tallies
+    private final PlateOccupancyTable plates;
+
+    ParkingMetrics(PlateOccupancyTable plates) {
+        this.plates = plates;
+    }
+
+    /**
+     * Tells whether the current request should be timed.
+     */
+    static boolean sample() {
+        return (ThreadLocalRandom.current().nextInt() & (SAMPLE_EVERY - 1)) == 0;
+    }
+
+    /**
+     * Records the latency of a park request unless 'nanos' is negative (not
+     * sampled). Also counts it if it was rejected; the others are counted by countPark.
+     */
+    void recordPark(int kind, ParkOutcome outcome, long nanos) {
+        if (outcome == ParkOutcome.REJECTED) {
+            series(parks, kind * OUTCOMES.length + outcome.ordinal()).record(nanos);
+        } else if (nanos >= 0) {
+            series(parks, kind * OUTCOMES.length + outcome.ordinal()).latency.record(nanos);
+        }
+    }
+
+    /**
+     * Records the latency of an unpark of the given allocation (NONE for an
+     * unknown plate) unless 'nanos' is negative. Also counts an unknown
+     * plate; the others are counted by countUnpark.
+     */
+    void recordUnpark(long allocation, long nanos) {
+        if (allocation == SpotAllocation.NONE) {
+            unknownUnparks.record(nanos);
+        } else if (nanos >= 0) {
+            series(unparks, SpotAllocation.kind(allocation)).latency.record(nanos);
+        }
+    }
+
+    /**
+     * Counts a park that went through.
+     * Caller holds the monitor of the given segment of its plate table.
+     */
+    void countPark(int segment, int kind, ParkOutcome outcome) {
+        increment(tallies(kind), segment * TALLY_STRIDE + outcome.ordinal());
+    }
+
+    /**
+     * Counts an unpark of a parked vehicle.
+     * Caller holds the monitor of the given segment of its plate table.
+     */
+    void countUnpark(int segment, int kind) {
+        increment(tallies(kind), segment * TALLY_STRIDE + UNPARK_SLOT);
+    }
+
+    private static void increment(long[] tally, int index) {
+        // Single writer per slot (the segment monitor): no atomic add needed,
+        // opaque accesses only keep readers from seeing a torn value
+        TALLY.setOpaque(tally, index, (long) TALLY.getOpaque(tally, index) + 1);
+    }
+
+    private long[] tallies(int kind) {
+        long[] tally = tallies.get(kind);
+        if (tally == null) {
+            tallies.compareAndSet(kind, null, new long[PlateOccupancyTable.SEGMENTS * TALLY_STRIDE]);
+            tally = tallies.get(kind);
+        }
+        return tally;
+    }
+
+    private long tally(int kind, int slot) {
+        long[] tally = tallies.get(kind);
+        if (tally == null) {
+            return 0;
+        }
+        long sum = 0;
+        for (int segment = 0; segment < PlateOccupancyTable.SEGMENTS; segment++) {
+            sum += (long) TALLY.getOpaque(tally, segment * TALLY_STRIDE + slot);
+        }
+        return sum;
+    }
+
+    private long parkCount(int kind, int outcome) {
+        if (outcome == ParkOutcome.REJECTED.ordinal()) {
+            Series series = parks.get(kind * OUTCOMES.length + outcome);
+            return series == null ? 0 : series.count.sum();
+        }
+        return tally(kind, outcome);
+    }
+
+    void recordGlobalLockWait(long nanos) {
+        globalLockWait.record(nanos);
+    }
+
+    void recordStripeLockWait(long nanos) {
+        stripeLockWait.record(nanos);
+    }
+
+    private static Series series(AtomicReferenceArray<Series> all, int index) {
+        Series series = all.get(index);
+        if (series == null) {
+            all.compareAndSet(index, null, new Series());
+            series = all.get(index);
+        }
+        return series;
+    }
+
+    /**
+     * Registers these metrics in the platform MBean server, under
+     * org.example.parking:type=ParkingService,name=&lt;name&gt;.
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("org.example.parking:type=ParkingService,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the parking metrics as " + name, e);
+        }
+    }
+
+    @Override
+    public long getParkCount() {
+        long count = 0;
+        for (ParkOutcome outcome : OUTCOMES) {
+            count += parkCount(outcome);
+        }
+        return count;
+    }
+
+    @Override
+    public long getFallbackParkCount() {
+        return parkCount(ParkOutcome.FALLBACK_MOTO) + parkCount(ParkOutcome.FALLBACK_CAR)
+                + parkCount(ParkOutcome.FALLBACK_BIG);
+    }
+
+    @Override
+    public long getRejectedParkCount() {
+        return parkCount(ParkOutcome.REJECTED);
+    }
+
+    @Override
+    public long getUnparkCount() {
+        long count = unknownUnparks.count.sum();
+        for (int kind = 0; kind < SpotAllocation.MAX_KINDS; kind++) {
+            count += tally(kind, UNPARK_SLOT);
+        }
+        return count;
+    }
+
+    @Override
+    public long getParkLatencyP50Nanos() {
+        return allParks().percentile(0.5);
+    }
+
+    @Override
+    public long getParkLatencyP99Nanos() {
+        return allParks().percentile(0.99);
+    }
+
+    @Override
+    public long getParkLatencyP999Nanos() {
+        return allParks().percentile(0.999);
+    }
+
+    @Override
+    public long getUnparkLatencyP99Nanos() {
+        return allUnparks().percentile(0.99);
+    }
+
+    @Override
+    public long getLockWaitP99Nanos() {
+        LatencyHistogram all = new LatencyHistogram();
+        globalLockWait.latency.addTo(all);
+        stripeLockWait.latency.addTo(all);
+        return all.percentile(0.99);
+    }
+
+    @Override
+    public long getLockWaitTotalNanos() {
+        // Both are sampled one in SAMPLE_EVERY
+        return (globalLockWait.latency.totalNanos() + stripeLockWait.latency.totalNanos()) * SAMPLE_EVERY;
+    }
+
+    @Override
+    public Map<String, Long> getParkCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (int i = 0; i < parks.length(); i++) {
+            long count = parkCount(i / OUTCOMES.length, i % OUTCOMES.length);
+            if (count > 0) {
+                counts.put(vehicleLabel(i / OUTCOMES.length) + "/" + OUTCOMES[i % OUTCOMES.length], count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text exposition format: a counter
+     * of requests per series, and the sampled latencies as a summary
+     * (quantiles, _sum and _count of the timed requests, in seconds).
+     */
+    @Override
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        header(out, "parking_parks_total", "counter", "Parks by vehicle type and outcome.");
+        forEachPark((labels, count, series) -> counter(out, "parking_parks_total", count, labels));
+        header(out, "parking_park_duration_seconds", "summary", "Sampled duration of parkVehicle calls.");
+        forEachPark((labels, count, series) -> summary(out, "parking_park_duration_seconds", series, labels));
+
+        header(out, "parking_unparks_total", "counter", "Unparks by vehicle type.");
+        forEachUnpark((labels, count, series) -> counter(out, "parking_unparks_total", count, labels));
+        header(out, "parking_unpark_duration_seconds", "summary", "Sampled duration of unpark calls.");
+        forEachUnpark((labels, count, series) -> summary(out, "parking_unpark_duration_seconds", series, labels));
+
+        header(out, "parking_lock_wait_seconds", "summary", "Time spent waiting for the service lock.");
+        summary(out, "parking_lock_wait_seconds", globalLockWait, "lock=\"global\"");
+        summary(out, "parking_lock_wait_seconds", stripeLockWait, "lock=\"stripe\"");
+        return out.toString();
+    }
+
+    /**
+     * Zeroes every counter and histogram. The tallies of each plate segment
+     * are zeroed under its monitor, like they are written, so a park or
+     * unpark racing the reset is counted either before or after it, never
+     * lost or carried over. The same goes for each other counter on its own;
+     * the metrics as a whole are not reset at a single point in time.
+     */
+    @Override
+    public void reset() {
+        forEachPark((labels, count, series) -> series.reset());
+        forEachUnpark((labels, count, series) -> series.reset());
+        for (int segment = 0; segment < PlateOccupancyTable.SEGMENTS; segment++) {
+            int first = segment * TALLY_STRIDE;
+            plates.runInSegment(segment, () -> {
+                for (int kind = 0; kind < tallies.length(); kind++) {
+                    long[] tally = tallies.get(kind);
+                    if (tally != null) {
+                        for (int i = first; i < first + TALLY_STRIDE; i++) {
+                            TALLY.setOpaque(tally, i, 0L);
+                        }
+                    }
+                }
+            });
+        }
+        globalLockWait.reset();
+        stripeLockWait.reset();
+    }
+
+    private interface SeriesVisitor {
+        void visit(String labels, long count, Series series);
+    }
+
+    // Visits every park series counted or timed so far (creating the series
+    // of the ones counted but never timed yet)
+    private void forEachPark(SeriesVisitor visitor) {
+        for (int i = 0; i < parks.length(); i++) {
+            long count = parkCount(i / OUTCOMES.length, i % OUTCOMES.length);
+            if (count > 0 || parks.get(i) != null) {
+                visitor.visit("vehicle=\"" + vehicleLabel(i / OUTCOMES.length) + "\",outcome=\""
+                        + OUTCOMES[i % OUTCOMES.length].name().toLowerCase(Locale.ROOT) + "\"", count, series(parks, i));
+            }
+        }
+    }
+
+    private void forEachUnpark(SeriesVisitor visitor) {
+        for (int kind = 0; kind < unparks.length(); kind++) {
+            long count = tally(kind, UNPARK_SLOT);
+            if (count > 0 || unparks.get(kind) != null) {
+                visitor.visit("vehicle=\"" + vehicleLabel(kind) + "\"", count, series(unparks, kind));
+            }
+        }
+        visitor.visit("vehicle=\"unknown\"", unknownUnparks.count.sum(), unknownUnparks);
+    }
+
+    private long parkCount(ParkOutcome outcome) {
+        long count = 0;
+        for (int kind = 0; kind < SpotAllocation.MAX_KINDS; kind++) {
+            count += parkCount(kind, outcome.ordinal());
+        }
+        return count;
+    }
+
+    private LatencyHistogram allParks() {
+        return merge(parks, null);
+    }
+
+    private LatencyHistogram allUnparks() {
+        return merge(unparks, unknownUnparks);
+    }
+
+    private static LatencyHistogram merge(AtomicReferenceArray<Series> all, Series extra) {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (int i = 0; i < all.length(); i++) {
+            Series series = all.get(i);
+            if (series != null) {
+                series.latency.addTo(merged);
+            }
+        }
+        if (extra != null) {
+            extra.latency.addTo(merged);
+        }
+        return merged;
+    }
+
+    private static String vehicleLabel(int kind) {
+        Class<? extends Vehicle> type = VehicleKinds.classOf(kind);
+        return type == null ? "unknown" : type.getSimpleName();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, long count, String labels) {
+        out.append(name).append('{').append(labels).append("} ").append(count).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, Series series, String labels) {
+        LatencyHistogram histogram = series.latency;
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.percentile(quantile))).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ").append(seconds(histogram.totalNanos())).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(histogram.count()).append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
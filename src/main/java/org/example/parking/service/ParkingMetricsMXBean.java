@@ -0,0 +1,42 @@
+package org.example.parking.service;
+
+import java.util.Map;
+
+/**
+ * JMX view of ParkingMetrics (see ParkingMetrics.registerMBean).
+ * Latencies are in nanoseconds.
+ */
+public interface ParkingMetricsMXBean {
+
+    long getParkCount();
+
+    long getFallbackParkCount();
+
+    long getRejectedParkCount();
+
+    long getUnparkCount();
+
+    long getParkLatencyP50Nanos();
+
+    long getParkLatencyP99Nanos();
+
+    long getParkLatencyP999Nanos();
+
+    long getUnparkLatencyP99Nanos();
+
+    long getLockWaitP99Nanos();
+
+    long getLockWaitTotalNanos();
+
+    /**
+     * Number of park requests per "VehicleType/outcome", e.g., "Car/FALLBACK_BIG".
+     */
+    Map<String, Long> getParkCounts();
+
+    /**
+     * Returns every metric in the Prometheus text exposition format.
+     */
+    String toPrometheusText();
+
+    void reset();
+}
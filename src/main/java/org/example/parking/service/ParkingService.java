@@ -1,29 +1,58 @@
 package org.example.parking.service;
 
+import org.example.parking.domain.Entrance;
 import org.example.parking.domain.Parking;
-import org.example.parking.model.Car;
-import org.example.parking.model.Moto;
 import org.example.parking.model.ParkingSpot;
+import org.example.parking.model.SpotType;
 import org.example.parking.model.Van;
 import org.example.parking.model.Vehicle;
 
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * This class contains the business logic for parking/unparking vehicles,
- * using an internal Map<Vehicle, List<ParkingSpot>> to track which spots
- * each vehicle occupies. We also introduce a lock to ensure concurrency safety.
+ * using an internal plate-keyed table to track which spots each vehicle
+ * occupies. We also introduce a lock to ensure concurrency safety.
+ *
+ * Depending on the ConcurrencyMode, the lock is either global (one
+ * operation at a time), striped per spot class, or not used at all
+ * (spots are then claimed with compare-and-set only).
  */
 public class ParkingService {
 
     /**
-     * vehicleToSpots is now a ConcurrentHashMap for thread-safe reads/writes.
-     * However, we still use a lock to ensure atomicity for operations that
-     * occupy multiple spots (e.g., vans).
+     * Plate number -> spots held by the vehicle, packed in a long (see SpotAllocation).
+     * Replaces the former Map<Vehicle, List<ParkingSpot>>: no entry object and
+     * no List per vehicle, and vehicles can be looked up or unparked by plate alone.
+     * The table is thread-safe on its own; we still use a lock to ensure atomicity
+     * for operations that occupy multiple spots (e.g., vans).
      */
-    private final Map<Vehicle, List<ParkingSpot>> vehicleToSpots = new ConcurrentHashMap<>();
+    private final PlateOccupancyTable plates = new PlateOccupancyTable();
+
+    /**
+     * Parkings this service has parked vehicles in, indexed by the parking id
+     * stored in each allocation (almost always a single one).
+     */
+    private volatile Parking[] parkings = new Parking[0];
+    private final Object parkingsLock = new Object();
+
+    /**
+     * Parked vehicles and occupied spots per vehicle type, maintained on
+     * park/unpark so dashboards never have to walk the plate table.
+     */
+    private final VehicleTypeCounters vehicleTypes = new VehicleTypeCounters();
 
     /**
      * Lock object used to synchronize park/unpark operations.
@@ -31,155 +60,1356 @@ public class ParkingService {
      */
     private final Object lock = new Object();
 
+    /**
+     * Per spot class locks, only used in STRIPED mode.
+     * LOCK_FREE mode relies on the compare-and-set of Parking.tryOccupy() alone.
+     */
+    private final StripedLocks stripes = new StripedLocks();
+
+    // Mask of every spot class, for operations locking all stripes at once
+    private static final int ALL_SPOT_TYPES = (1 << SpotType.values().length) - 1;
+
+    private final ConcurrencyMode mode;
+
+    // How each vehicle type is parked
+    private final AllocationPlanRegistry plans = new AllocationPlanRegistry();
+    private volatile AllocationStrategy strategy = AllocationStrategy.FIRST_FIT;
+
+    // BEST_FIT looks at this many free runs at most, then settles for the best seen
+    private static final int BEST_FIT_MAX_RUNS = 256;
+
+    // Free spots tried as the start of a run near an entrance before giving up on distance
+    private static final int NEAREST_MAX_RUNS = 256;
+
+    // Copy-on-write, so firing an event never takes a lock
+    private volatile ParkingEventListener[] listeners = new ParkingEventListener[0];
+    private final Object listenersLock = new Object();
+
+    // Fired from inside the plate table (see PlateOccupancyTable.putIfAbsent),
+    // so that two events of one plate can never be delivered out of order
+    private final PlateOccupancyTable.EntryConsumer parkedEvent = this::onArrival;
+    private final PlateOccupancyTable.EntryConsumer unparkedEvent = this::onDeparture;
+    // A relocated vehicle is reported as leaving its spots then taking new ones, its session goes on
+    private final PlateOccupancyTable.EntryConsumer movedFromEvent = this::fireUnparked;
+    private final PlateOccupancyTable.EntryConsumer movedToEvent = this::fireParked;
+
+    /**
+     * Granularity of reservation expiry: a reservation expires at most one tick late.
+     */
+    public static final long RESERVATION_TICK_MILLIS = 100;
+
+    // Outstanding reservations by plate; removing the entry elects the single
+    // winner among claim, cancel and expiry
+    private final ConcurrentHashMap<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private final TimingWheel reservationWheel;
+    private final Object expiryLock = new Object();
+    private final LongSupplier clockMillis;
+    private volatile ReservationTicker ticker;
+
+    // Null until enableMetrics() is called
+    private volatile ParkingMetrics metrics;
+    // Null until enableBilling() is called
+    private volatile ParkingSessions sessions;
+    // Null until enableGateBuffers() is called
+    private volatile GateSpotBuffers gateBuffers;
+
+    /**
+     * Creates a service using a single global lock.
+     */
+    public ParkingService() {
+        this(ConcurrencyMode.GLOBAL_LOCK);
+    }
+
+    public ParkingService(ConcurrencyMode mode) {
+        this(mode, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a service whose reservations expire according to the given clock
+     * (milliseconds, e.g., a fake clock in tests).
+     */
+    public ParkingService(ConcurrencyMode mode, LongSupplier clockMillis) {
+        this.mode = mode;
+        this.clockMillis = clockMillis;
+        this.reservationWheel = new TimingWheel(clockMillis.getAsLong() / RESERVATION_TICK_MILLIS);
+    }
+
+    public ConcurrencyMode getConcurrencyMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the plans deciding which spots each vehicle type takes, e.g., to
+     * register a new type: getAllocationPlans().register(Bus.class, AllocationPlan.of(SpotType.BIG, 2)).
+     */
+    public AllocationPlanRegistry getAllocationPlans() {
+        return plans;
+    }
+
+    public AllocationStrategy getAllocationStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Chooses how spots are picked inside a spot class (FIRST_FIT by default).
+     * Applies to the vehicles parked from now on.
+     */
+    public void setAllocationStrategy(AllocationStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Starts counting parkVehicle / unparkVehicle calls and recording their
+     * latency and the waits on the service lock (sampled, see ParkingMetrics),
+     * and returns the metrics (the same instance on every call).
+     * Recording does not allocate, so it can stay on.
+     * Batches (parkAll / unparkAll) are counted, including their rejections,
+     * but not timed.
+     */
+    public ParkingMetrics enableMetrics() {
+        if (metrics == null) {
+            synchronized (listenersLock) {
+                if (metrics == null) {
+                    metrics = new ParkingMetrics(plates);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the metrics of this service, or null if they are not enabled.
+     */
+    public ParkingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts tracking parking sessions (entry and exit times, from the
+     * service clock) and billing them with the given tariff, and returns the
+     * sessions (the same instance on every call, whose tariff is replaced).
+     * Only vehicles parked from now on are billed.
+     */
+    public ParkingSessions enableBilling(Tariff tariff) {
+        synchronized (listenersLock) {
+            if (sessions == null) {
+                sessions = new ParkingSessions(clockMillis, tariff, ParkingSessions.DEFAULT_LOG_CAPACITY);
+            } else {
+                sessions.setTariff(tariff);
+            }
+            return sessions;
+        }
+    }
+
+    /**
+     * Returns the sessions of this service, or null if billing is not enabled.
+     */
+    public ParkingSessions getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Lets every gate thread pre-claim up to spotsPerBuffer spots of a class
+     * at a time and park vehicles on them without locking (see
+     * GateSpotBuffers), and returns the buffers (the same instance on every
+     * call, keeping the size of the first one). Applies to parkVehicle
+     * without an entrance, for vehicles whose first spot class takes one spot.
+     * Buffers are filled first-fit, so under BEST_FIT they are skipped for the
+     * classes where best fit applies (those some vehicle needs a run of).
+     */
+    public GateSpotBuffers enableGateBuffers(int spotsPerBuffer) {
+        if (gateBuffers == null) {
+            synchronized (listenersLock) {
+                if (gateBuffers == null) {
+                    gateBuffers = new GateSpotBuffers(spotsPerBuffer);
+                }
+            }
+        }
+        return gateBuffers;
+    }
+
+    /**
+     * Returns the gate buffers of this service, or null if they are not enabled.
+     */
+    public GateSpotBuffers getGateBuffers() {
+        return gateBuffers;
+    }
+
+    /**
+     * Registers a listener notified on every successful park and unpark.
+     */
+    public void addListener(ParkingEventListener listener) {
+        synchronized (listenersLock) {
+            ParkingEventListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+            grown[listeners.length] = listener;
+            listeners = grown;
+        }
+    }
+
+    /**
+     * Opens a feed pushing the park / unpark events of the parking, with the
+     * free count of the spot class after each of them, to any number of
+     * subscribers (see OccupancyFeed). The ring holds 'capacity' events:
+     * subscribers lagging further behind get coalesced counts instead.
+     * Close the feed to stop publishing.
+     */
+    public OccupancyFeed openOccupancyFeed(Parking parking, int capacity) {
+        OccupancyFeed feed = new OccupancyFeed(this, parking, capacity);
+        addListener(feed);
+        return feed;
+    }
+
+    public void removeListener(ParkingEventListener listener) {
+        synchronized (listenersLock) {
+            ParkingEventListener[] current = listeners;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == listener) {
+                    ParkingEventListener[] shrunk = new ParkingEventListener[current.length - 1];
+                    System.arraycopy(current, 0, shrunk, 0, i);
+                    System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                    listeners = shrunk;
+                    return;
+                }
+            }
+        }
+    }
+
     /**
      * Attempts to park the given vehicle in the provided parking.
      * Returns true if successful, false otherwise.
+     * A vehicle holding a reservation in this parking parks on its reserved
+     * spots; one it cannot use is cancelled.
      *
-     * The entire logic is wrapped in a synchronized(lock) block
-     * to ensure atomicity.
+     * In GLOBAL_LOCK mode the entire logic is wrapped in a synchronized(lock)
+     * block to ensure atomicity. In STRIPED mode each attempt only locks
+     * the spot class it claims from, and in LOCK_FREE mode nothing is locked.
      */
     public boolean parkVehicle(Parking parking, Vehicle vehicle) {
-        synchronized (lock) {
-            // If it's a Moto
-            if (vehicle instanceof Moto) {
-                // 1) Try moto spots
-                List<ParkingSpot> used = tryParkOnSpots(parking.getMotoSpots(), vehicle);
-                if (used != null) {
-                    vehicleToSpots.put(vehicle, used);
-                    return true;
-                }
-                // 2) Then fallback on car spots
-                used = tryParkOnSpots(parking.getCarSpots(), vehicle);
-                if (used != null) {
-                    vehicleToSpots.put(vehicle, used);
-                    return true;
-                }
-                // 3) Finally try big spots
-                used = tryParkOnBigSpot(parking.getBigSpots(), vehicle);
-                if (used != null) {
-                    vehicleToSpots.put(vehicle, used);
-                    return true;
+        return parkVehicle(parking, vehicle, null);
+    }
+
+    /**
+     * Same as parkVehicle, on the spots closest to the given entrance of the
+     * parking (with the same fallback rules between spot classes), whatever
+     * the allocation strategy. A null entrance means no preference.
+     */
+    public boolean parkVehicle(Parking parking, Vehicle vehicle, Entrance entrance) {
+        checkPlate(vehicle.getPlateNumber());
+        if (entrance != null && entrance.getParking() != parking) {
+            throw new IllegalArgumentException(entrance + " is not an entrance of this parking");
+        }
+        ParkingMetrics recorder = metrics;
+        boolean timed = recorder != null && ParkingMetrics.sample();
+        long start = timed ? System.nanoTime() : 0;
+        long allocation = parkOnReservation(parking, vehicle);
+        GateSpotBuffers buffers = gateBuffers;
+        if (allocation == SpotAllocation.NONE && buffers != null && entrance == null) {
+            allocation = parkFromBuffer(buffers, parking, vehicle);
+        }
+        if (allocation == SpotAllocation.NONE) {
+            if (mode == ConcurrencyMode.GLOBAL_LOCK) {
+                long lockStart = timed ? System.nanoTime() : 0;
+                synchronized (lock) {
+                    if (timed) {
+                        recorder.recordGlobalLockWait(System.nanoTime() - lockStart);
+                    }
+                    allocation = doParkVehicle(parking, vehicle, null, entrance);
                 }
-                return false;
+            } else {
+                allocation = doParkVehicle(parking, vehicle, null, entrance);
             }
+        }
+        // A park that went through was counted under its plate's monitor (see onArrival)
+        if (recorder != null && (timed || allocation == SpotAllocation.NONE)) {
+            int kind = allocation == SpotAllocation.NONE
+                    ? VehicleKinds.idOf(vehicle.getClass())
+                    : SpotAllocation.kind(allocation);
+            recorder.recordPark(kind, outcomeOf(vehicle, allocation), timed ? System.nanoTime() - start : -1);
+        }
+        return allocation != SpotAllocation.NONE;
+    }
 
-            // If it's a Car
-            if (vehicle instanceof Car) {
-                // 1) Try car spots
-                List<ParkingSpot> used = tryParkOnSpots(parking.getCarSpots(), vehicle);
-                if (used != null) {
-                    vehicleToSpots.put(vehicle, used);
-                    return true;
+    /**
+     * Parks the vehicle on a spot of the calling gate's buffer for the first
+     * class of its plan, refilling the buffer from the shared pool (under the
+     * lock of the class) when it is empty. Returns NONE if the vehicle takes
+     * no spot or several spots there, if BEST_FIT applies to the class, if
+     * the buffer cannot be refilled (the class runs low), or if the plate is
+     * already parked: the shared path takes over.
+     */
+    private long parkFromBuffer(GateSpotBuffers buffers, Parking parking, Vehicle vehicle) {
+        AllocationPlan plan = plans.planFor(vehicle);
+        if (plan.size() == 0 || plan.spotsAt(0) != 1) {
+            return SpotAllocation.NONE;
+        }
+        SpotType type = plan.typeAt(0);
+        if (strategy == AllocationStrategy.BEST_FIT && plans.longestRun(type) > 1) {
+            return SpotAllocation.NONE;
+        }
+        int id = parkingId(parking);
+        GateSpotBuffers.Buffer buffer = buffers.bufferOf(parking, id, type);
+        int index = buffer.take();
+        if (index < 0) {
+            if (mode == ConcurrencyMode.GLOBAL_LOCK) {
+                synchronized (lock) {
+                    buffer.refill();
                 }
-                // 2) Then fallback on big spots
-                used = tryParkOnBigSpot(parking.getBigSpots(), vehicle);
-                if (used != null) {
-                    vehicleToSpots.put(vehicle, used);
-                    return true;
+            } else {
+                lockStripe(type);
+                try {
+                    buffer.refill();
+                } finally {
+                    unlockStripe(type);
                 }
-                return false;
             }
+            index = buffer.take();
+        }
+        // Fails if the hold was released from outside the buffers
+        if (index < 0 || !parking.claimHold(type, index)) {
+            return SpotAllocation.NONE;
+        }
+        long owned = SpotAllocation.withOwner(SpotAllocation.of(type, index, 1),
+                VehicleKinds.idOf(vehicle.getClass()), id);
+        if (plates.putIfAbsent(vehicle.getPlateNumber(), owned, parkedEvent)) {
+            vehicleTypes.onParked(SpotAllocation.kind(owned), 1);
+            return owned;
+        }
+        parking.free(type, index);
+        return SpotAllocation.NONE;
+    }
+
+    /**
+     * Tells whether an allocation is on the first spot class of the vehicle's plan, a fallback, or NONE.
+     */
+    private ParkOutcome outcomeOf(Vehicle vehicle, long allocation) {
+        if (allocation == SpotAllocation.NONE) {
+            return ParkOutcome.REJECTED;
+        }
+        SpotType type = SpotAllocation.type(allocation);
+        // The plan was resolved to park the vehicle: an array read, no class lookup.
+        // Without the vehicle, a park racing with a new registration counts as primary
+        AllocationPlan plan = plans.resolvedPlan(SpotAllocation.kind(allocation));
+        if (plan == null && vehicle != null) {
+            plan = plans.planFor(vehicle);
+        }
+        if (plan == null || type == plan.typeAt(0)) {
+            return ParkOutcome.PRIMARY;
+        }
+        return switch (type) {
+            case MOTO -> ParkOutcome.FALLBACK_MOTO;
+            case CAR -> ParkOutcome.FALLBACK_CAR;
+            case BIG -> ParkOutcome.FALLBACK_BIG;
+        };
+    }
+
+    /**
+     * Parks a burst of vehicles (e.g., a shift change at the gates) in one go.
+     * The lock is taken once for the whole batch (every stripe in STRIPED mode),
+     * and each spot class is scanned in a single forward pass: the search for the
+     * next free spot resumes where the previous vehicle stopped, and a class
+     * found full is skipped for the rest of the batch.
+     *
+     * Vehicles are handled in iteration order, with the same fallback rules as
+     * parkVehicle. In LOCK_FREE mode, spots freed by other threads behind the
+     * scan position are only seen by the next call.
+     */
+    public BatchResult parkAll(Parking parking, Collection<? extends Vehicle> vehicles) {
+        checkPlates(vehicles);
+        BatchResult result = new BatchResult(vehicles.size());
+        // Per class position of the scan, Integer.MAX_VALUE once the class is full
+        int[] cursors = new int[SpotType.values().length];
+        if (mode == ConcurrencyMode.GLOBAL_LOCK) {
+            synchronized (lock) {
+                parkBatch(parking, vehicles, cursors, result);
+            }
+        } else if (mode == ConcurrencyMode.STRIPED) {
+            stripes.lockAll(ALL_SPOT_TYPES);
+            try {
+                parkBatch(parking, vehicles, cursors, result);
+            } finally {
+                stripes.unlockAll(ALL_SPOT_TYPES);
+            }
+        } else {
+            parkBatch(parking, vehicles, cursors, result);
+        }
+        return result;
+    }
+
+    private void parkBatch(Parking parking, Collection<? extends Vehicle> vehicles, int[] cursors, BatchResult result) {
+        int i = 0;
+        ParkingMetrics recorder = metrics;
+        for (Vehicle vehicle : vehicles) {
+            if (parkOnReservation(parking, vehicle) != SpotAllocation.NONE
+                    || doParkVehicle(parking, vehicle, cursors, null) != SpotAllocation.NONE) {
+                result.markSuccess(i);
+            } else if (recorder != null) {
+                recorder.recordPark(VehicleKinds.idOf(vehicle.getClass()), ParkOutcome.REJECTED, -1);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Returns the spots the vehicle was parked on, or NONE.
+     */
+    private long doParkVehicle(Parking parking, Vehicle vehicle, int[] cursors, Entrance entrance) {
+        long used = allocateSpots(parking, vehicle, cursors, entrance, false);
+        if (used == SpotAllocation.NONE) {
+            return SpotAllocation.NONE;
+        }
+        long owned = SpotAllocation.withOwner(used, VehicleKinds.idOf(vehicle.getClass()), parkingId(parking));
+        if (plates.putIfAbsent(vehicle.getPlateNumber(), owned, parkedEvent)) {
+            vehicleTypes.onParked(SpotAllocation.kind(owned), SpotAllocation.count(owned));
+            return owned;
+        }
+        // This plate is already parked: give the spots back
+        releaseSpots(owned);
+        return SpotAllocation.NONE;
+    }
+
+    /**
+     * Claims the spots for the vehicle, following the steps of its AllocationPlan.
+     * With an entrance, the spots closest to it are taken.
+     * With 'reserve', the spots are switched to reserved instead of occupied.
+     * Returns the claimed spots packed as a SpotAllocation, or NONE.
+     *
+     * With gate buffers, a vehicle finding no room first gets the spots held
+     * in the buffers of the parking back into the shared pool, then tries again.
+     */
+    private long allocateSpots(Parking parking, Vehicle vehicle, int[] cursors, Entrance entrance, boolean reserve) {
+        long used = allocateFromPlan(parking, vehicle, cursors, entrance, reserve);
+        GateSpotBuffers buffers = gateBuffers;
+        if (used == SpotAllocation.NONE && buffers != null && buffers.returnAll(parking) > 0) {
+            // The scan cursors of a batch may be past the spots given back
+            used = allocateFromPlan(parking, vehicle, null, entrance, reserve);
+        }
+        return used;
+    }
+
+    private long allocateFromPlan(Parking parking, Vehicle vehicle, int[] cursors, Entrance entrance,
+                                  boolean reserve) {
+        AllocationPlan plan = plans.planFor(vehicle);
+        boolean bestFit = strategy == AllocationStrategy.BEST_FIT;
+        for (int step = 0; step < plan.size(); step++) {
+            SpotType type = plan.typeAt(step);
+            int spots = plan.spotsAt(step);
+            long used;
+            if (entrance != null) {
+                used = tryParkNearest(parking, entrance, type, spots, reserve);
+            } else if (bestFit && (spots > 1 || plans.longestRun(type) > 1)) {
+                // Only worth it on classes where some vehicles need runs
+                used = tryParkOnBestFit(parking, type, spots, reserve);
+            } else if (spots == 1) {
+                used = tryParkOnSpots(parking, type, cursors, reserve);
+            } else {
+                used = tryParkOnRun(parking, type, spots, reserve);
+            }
+            if (used != SpotAllocation.NONE) {
+                return used;
+            }
+        }
+        return SpotAllocation.NONE;
+    }
+
+    /**
+     * Unparks a vehicle by freeing all the spots it occupies, if any.
+     * Vehicles are identified by their plate number.
+     */
+    public void unparkVehicle(Vehicle vehicle) {
+        unparkByPlate(vehicle.getPlateNumber());
+    }
+
+    /**
+     * Unparks the vehicle with the given plate number, freeing all its spots.
+     * Returns false if no vehicle with this plate is parked.
+     * Synchronized (or striped) to ensure the spots are freed atomically.
+     */
+    public boolean unparkByPlate(String plate) {
+        checkPlate(plate);
+        ParkingMetrics recorder = metrics;
+        boolean timed = recorder != null && ParkingMetrics.sample();
+        long start = timed ? System.nanoTime() : 0;
+        long allocation;
+        if (mode == ConcurrencyMode.GLOBAL_LOCK) {
+            synchronized (lock) {
+                if (timed) {
+                    recorder.recordGlobalLockWait(System.nanoTime() - start);
+                }
+                allocation = doUnpark(plate);
+            }
+        } else {
+            // STRIPED / LOCK_FREE: the atomic remove elects a single thread to free the spots
+            allocation = doUnpark(plate);
+        }
+        if (recorder != null && (timed || allocation == SpotAllocation.NONE)) {
+            recorder.recordUnpark(allocation, timed ? System.nanoTime() - start : -1);
+        }
+        return allocation != SpotAllocation.NONE;
+    }
+
+    /**
+     * Returns true if a vehicle with the given plate number is parked.
+     */
+    public boolean isParked(String plate) {
+        checkPlate(plate);
+        return plates.get(plate) != SpotAllocation.NONE;
+    }
+
+    /**
+     * Returns the spots held by the vehicle with the given plate number,
+     * or an empty list if it is not parked.
+     */
+    public List<ParkingSpot> findSpotsByPlate(String plate) {
+        checkPlate(plate);
+        long allocation = plates.get(plate);
+        if (allocation == SpotAllocation.NONE) {
+            return List.of();
+        }
+        int start = SpotAllocation.start(allocation);
+        return List.copyOf(parkings[SpotAllocation.parkingId(allocation)]
+                .getSpots(SpotAllocation.type(allocation))
+                .subList(start, start + SpotAllocation.count(allocation)));
+    }
+
+    /**
+     * Returns the number of vehicles currently parked through this service.
+     */
+    public int getParkedVehicleCount() {
+        return plates.size();
+    }
+
+    /**
+     * Unparks a burst of vehicles, taking the lock once for the whole batch.
+     * The result tells, in iteration order, which vehicles were actually parked
+     * (and are now gone) and which were unknown to this service.
+     */
+    public BatchResult unparkAll(Collection<? extends Vehicle> vehicles) {
+        checkPlates(vehicles);
+        BatchResult result = new BatchResult(vehicles.size());
+        if (mode == ConcurrencyMode.GLOBAL_LOCK) {
+            synchronized (lock) {
+                unparkBatch(vehicles, result);
+            }
+        } else if (mode == ConcurrencyMode.STRIPED) {
+            stripes.lockAll(ALL_SPOT_TYPES);
+            try {
+                unparkBatch(vehicles, result);
+            } finally {
+                stripes.unlockAll(ALL_SPOT_TYPES);
+            }
+        } else {
+            unparkBatch(vehicles, result);
+        }
+        return result;
+    }
+
+    private void unparkBatch(Collection<? extends Vehicle> vehicles, BatchResult result) {
+        int i = 0;
+        ParkingMetrics recorder = metrics;
+        for (Vehicle vehicle : vehicles) {
+            if (doUnpark(vehicle.getPlateNumber()) != SpotAllocation.NONE) {
+                result.markSuccess(i);
+            } else if (recorder != null) {
+                recorder.recordUnpark(SpotAllocation.NONE, -1);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Returns the spots the vehicle was parked on, or NONE.
+     * Caller holds the lock(s) of the current mode, if any.
+     */
+    private long doUnpark(String plate) {
+        // Notified before the spots are freed, so it precedes the next owner's onParked
+        long allocation = plates.remove(plate, unparkedEvent);
+        if (allocation == SpotAllocation.NONE) {
+            return SpotAllocation.NONE;
+        }
+        vehicleTypes.onUnparked(SpotAllocation.kind(allocation), SpotAllocation.count(allocation));
+        releaseSpots(allocation);
+        return allocation;
+    }
+
+    /**
+     * Holds spots for a vehicle that has not arrived yet (e.g., booked from the app),
+     * following the same fallback rules as parkVehicle. The spots are reserved:
+     * nobody else can park on them until the vehicle claims them, the
+     * reservation is cancelled, or the ttl elapses.
+     * Returns false if no spot is available, or if the plate is already parked
+     * or holds a reservation.
+     *
+     * Reservations are not reported to listeners (so not persisted):
+     * only the park that claims one is.
+     */
+    public boolean reserve(Parking parking, Vehicle vehicle, Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive: " + ttl);
+        }
+        String plate = checkPlate(vehicle.getPlateNumber());
+        if (isParked(plate) || reservations.containsKey(plate)) {
+            return false;
+        }
+        long used;
+        if (mode == ConcurrencyMode.GLOBAL_LOCK) {
+            synchronized (lock) {
+                used = allocateSpots(parking, vehicle, null, null, true);
+            }
+        } else {
+            used = allocateSpots(parking, vehicle, null, null, true);
+        }
+        if (used == SpotAllocation.NONE) {
+            return false;
+        }
+        Reservation reservation = new Reservation(plate,
+                SpotAllocation.withOwner(used, VehicleKinds.idOf(vehicle.getClass()), parkingId(parking)));
+        if (reservations.putIfAbsent(plate, reservation) != null) {
+            // Reserved concurrently by another gate
+            releaseReservedSpots(reservation.allocation);
+            return false;
+        }
+        long deadline = clockMillis.getAsLong() + ttl.toMillis();
+        // Rounded up, so a reservation never expires early
+        reservationWheel.schedule(reservation, (deadline + RESERVATION_TICK_MILLIS - 1) / RESERVATION_TICK_MILLIS);
+        startTicker();
+        return true;
+    }
+
+    /**
+     * Parks a vehicle on the spots reserved for its plate.
+     * Returns false if there is no reservation for it (never made, cancelled or
+     * expired) or if it was made for another vehicle type.
+     */
+    public boolean claimReservation(Vehicle vehicle) {
+        checkPlate(vehicle.getPlateNumber());
+        return claimReserved(vehicle, null) != SpotAllocation.NONE;
+    }
+
+    /**
+     * A vehicle arriving with a reservation in this parking parks on its
+     * reserved spots rather than on new ones; a reservation it cannot use
+     * (made for another parking or vehicle type) is cancelled.
+     * Returns the spots claimed, or NONE if the vehicle still has to park.
+     */
+    private long parkOnReservation(Parking parking, Vehicle vehicle) {
+        String plate = vehicle.getPlateNumber();
+        if (reservations.isEmpty() || !reservations.containsKey(plate)) {
+            return SpotAllocation.NONE;
+        }
+        long allocation = claimReserved(vehicle, parking);
+        if (allocation == SpotAllocation.NONE) {
+            cancelReservation(plate);
+        }
+        return allocation;
+    }
+
+    /**
+     * Claims the reservation of the vehicle, in the given parking if not null.
+     * Returns the spots it was parked on, or NONE.
+     */
+    private long claimReserved(Vehicle vehicle, Parking parking) {
+        String plate = vehicle.getPlateNumber();
+        Reservation reservation = reservations.get(plate);
+        if (reservation == null
+                || SpotAllocation.kind(reservation.allocation) != VehicleKinds.idOf(vehicle.getClass())
+                || (parking != null && parkings[SpotAllocation.parkingId(reservation.allocation)] != parking)
+                || !reservations.remove(plate, reservation)) {
+            return SpotAllocation.NONE;
+        }
+        reservationWheel.cancel(reservation);
+        // We won the reservation: its spots are still reserved for us, unless
+        // they were cancelled from outside (see claimReservedSpots)
+        if (mode == ConcurrencyMode.GLOBAL_LOCK) {
+            synchronized (lock) {
+                return doClaimReserved(plate, reservation.allocation);
+            }
+        }
+        return doClaimReserved(plate, reservation.allocation);
+    }
+
+    private long doClaimReserved(String plate, long allocation) {
+        if (!claimReservedSpots(allocation)) {
+            return SpotAllocation.NONE;
+        }
+        if (plates.putIfAbsent(plate, allocation, parkedEvent)) {
+            vehicleTypes.onParked(SpotAllocation.kind(allocation), SpotAllocation.count(allocation));
+            return allocation;
+        }
+        // Parked meanwhile without using the reservation: give the spots back
+        releaseSpots(allocation);
+        return SpotAllocation.NONE;
+    }
+
+    /**
+     * Switches the reserved spots to occupied. If one of them is no longer
+     * reserved, undoes the claim (the other spots are freed) and returns false.
+     */
+    private boolean claimReservedSpots(long allocation) {
+        SpotType type = SpotAllocation.type(allocation);
+        Parking parking = parkings[SpotAllocation.parkingId(allocation)];
+        int start = SpotAllocation.start(allocation);
+        int count = SpotAllocation.count(allocation);
+        lockStripe(type);
+        try {
+            int claimed = 0;
+            while (claimed < count && parking.claimReservation(type, start + claimed)) {
+                claimed++;
+            }
+            if (claimed == count) {
+                return true;
+            }
+            for (int i = 0; i < claimed; i++) {
+                parking.free(type, start + i);
+            }
+            for (int i = claimed + 1; i < count; i++) {
+                parking.cancelReservation(type, start + i);
+            }
+            return false;
+        } finally {
+            unlockStripe(type);
+        }
+    }
+
+    /**
+     * Cancels the reservation of the given plate, freeing its spots.
+     * Returns false if it has none.
+     */
+    public boolean cancelReservation(String plate) {
+        checkPlate(plate);
+        Reservation reservation = reservations.get(plate);
+        if (reservation == null || !reservations.remove(plate, reservation)) {
+            return false;
+        }
+        reservationWheel.cancel(reservation);
+        releaseReservedSpots(reservation.allocation);
+        return true;
+    }
+
+    public boolean hasReservation(String plate) {
+        checkPlate(plate);
+        return reservations.containsKey(plate);
+    }
+
+    /**
+     * Returns the number of outstanding reservations.
+     */
+    public int getReservationCount() {
+        return reservations.size();
+    }
+
+    /**
+     * Frees the spots of every reservation whose ttl has elapsed.
+     * Called every tick by a background daemon thread, and can be called
+     * directly (e.g., with a fake clock in tests). Returns how many expired.
+     */
+    public int expireReservations() {
+        // Serializes the ticker and direct callers, so that once this returns,
+        // every reservation due is gone and its spots are free again
+        synchronized (expiryLock) {
+            List<Reservation> expired = new ArrayList<>();
+            reservationWheel.advance(clockMillis.getAsLong() / RESERVATION_TICK_MILLIS,
+                    entry -> expired.add((Reservation) entry));
+            int count = 0;
+            // Outside of the wheel lock: a claim or cancel may win the race, then we skip it
+            for (Reservation reservation : expired) {
+                if (reservations.remove(reservation.plate, reservation)) {
+                    releaseReservedSpots(reservation.allocation);
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private void releaseReservedSpots(long allocation) {
+        // Also called by the ticker: GLOBAL_LOCK transitions happen under the lock only
+        if (mode == ConcurrencyMode.GLOBAL_LOCK) {
+            synchronized (lock) {
+                doReleaseReservedSpots(allocation);
+            }
+        } else {
+            doReleaseReservedSpots(allocation);
+        }
+    }
+
+    private void doReleaseReservedSpots(long allocation) {
+        SpotType type = SpotAllocation.type(allocation);
+        Parking parking = parkings[SpotAllocation.parkingId(allocation)];
+        int start = SpotAllocation.start(allocation);
+        int end = start + SpotAllocation.count(allocation);
+        lockStripe(type);
+        try {
+            for (int i = start; i < end; i++) {
+                parking.cancelReservation(type, i);
+            }
+        } finally {
+            unlockStripe(type);
+        }
+    }
 
-            // If it's a Van
-            if (vehicle instanceof Van) {
-                // 1) Prefer a big spot first
-                List<ParkingSpot> used = tryParkOnBigSpot(parking.getBigSpots(), vehicle);
-                if (used != null) {
-                    vehicleToSpots.put(vehicle, used);
-                    return true;
+    private void startTicker() {
+        if (ticker == null) {
+            synchronized (reservations) {
+                if (ticker == null) {
+                    ticker = ReservationTicker.start(this);
                 }
-                // 2) Otherwise occupy multiple car spots (e.g., 3)
-                used = tryParkVanOnCarSpots(parking.getCarSpots(), (Van) vehicle);
-                if (used != null) {
-                    vehicleToSpots.put(vehicle, used);
-                    return true;
+            }
+        }
+    }
+
+    /**
+     * An outstanding reservation, linked into the timing wheel.
+     */
+    private static final class Reservation extends TimingWheel.Entry {
+        final String plate;
+        final long allocation;
+
+        Reservation(String plate, long allocation) {
+            this.plate = plate;
+            this.allocation = allocation;
+        }
+    }
+
+    /**
+     * Expires the reservations of a service every tick, on one daemon thread
+     * shared by all services. Only holds the service weakly, and stops once
+     * it has been garbage collected.
+     */
+    private static final class ReservationTicker implements Runnable {
+
+        private static final ScheduledExecutorService TICKS = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "parking-reservation-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final WeakReference<ParkingService> service;
+        private volatile ScheduledFuture<?> future;
+
+        private ReservationTicker(ParkingService service) {
+            this.service = new WeakReference<>(service);
+        }
+
+        static ReservationTicker start(ParkingService service) {
+            ReservationTicker ticker = new ReservationTicker(service);
+            ticker.future = TICKS.scheduleAtFixedRate(ticker, RESERVATION_TICK_MILLIS, RESERVATION_TICK_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            return ticker;
+        }
+
+        @Override
+        public void run() {
+            ParkingService current = service.get();
+            if (current == null) {
+                ScheduledFuture<?> scheduled = future;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
                 }
+                return;
+            }
+            current.expireReservations();
+        }
+    }
+
+    /**
+     * Suggests up to maxSuggestions moves of parked single-spot vehicles that
+     * would make room, e.g., for a background job directing drivers or valets:
+     * - a vehicle that fell back on another class (a car on a big spot) goes back
+     *   to its preferred class when a spot of it is free again,
+     * - a vehicle standing between free spots that would form a run long enough
+     *   for a multi-spot vehicle (a van) goes to a hole too short to be useful.
+     * Nothing is moved: see relocate(). The suggestions are computed from a copy
+     * of the free runs, so they do not compete for the same spots.
+     */
+    public List<RelocationSuggestion> suggestRelocations(Parking parking, int maxSuggestions) {
+        RelocationPlanner planner = new RelocationPlanner(parking, plans);
+        int id = parkingId(parking);
+        plates.forEachEntry((plate, allocation) -> {
+            if (SpotAllocation.parkingId(allocation) == id && SpotAllocation.count(allocation) == 1) {
+                planner.addVehicle(plate, SpotAllocation.kind(allocation),
+                        SpotAllocation.type(allocation), SpotAllocation.start(allocation));
+            }
+        });
+        return planner.suggest(maxSuggestions);
+    }
+
+    /**
+     * Moves a parked single-spot vehicle to the given free spot of its parking
+     * (e.g., following a RelocationSuggestion). Listeners see an unpark from the
+     * old spot followed by a park on the new one.
+     * Returns false if the plate is not parked on a single spot, the target is not free,
+     * or the plan of the vehicle does not take a single spot of the target class.
+     */
+    public boolean relocate(String plate, SpotType toType, int toIndex) {
+        checkPlate(plate);
+        if (mode == ConcurrencyMode.GLOBAL_LOCK) {
+            synchronized (lock) {
+                return doRelocate(plate, toType, toIndex);
+            }
+        }
+        return doRelocate(plate, toType, toIndex);
+    }
+
+    private boolean doRelocate(String plate, SpotType toType, int toIndex) {
+        long allocation = plates.get(plate);
+        if (allocation == SpotAllocation.NONE || SpotAllocation.count(allocation) != 1) {
+            return false;
+        }
+        if (!allows(plans.planFor(SpotAllocation.kind(allocation)), toType, SpotAllocation.count(allocation))) {
+            return false;
+        }
+        int id = SpotAllocation.parkingId(allocation);
+        Parking parking = parkings[id];
+        if (toIndex < 0 || toIndex >= parking.getSpotCount(toType)) {
+            return false;
+        }
+        lockStripe(toType);
+        try {
+            if (!parking.tryOccupy(toType, toIndex)) {
                 return false;
             }
+        } finally {
+            unlockStripe(toType);
+        }
+        long moved = SpotAllocation.withOwner(SpotAllocation.of(toType, toIndex, 1),
+                SpotAllocation.kind(allocation), id);
+        if (!plates.replace(plate, allocation, moved, movedFromEvent, movedToEvent)) {
+            // Unparked or moved meanwhile
+            parking.free(toType, toIndex);
+            return false;
+        }
+        releaseSpots(allocation);
+        return true;
+    }
 
-            // Otherwise (if we add a new vehicle type?), fallback
+    // Whether one step of the plan takes 'spots' spots of the given class
+    private static boolean allows(AllocationPlan plan, SpotType type, int spots) {
+        if (plan == null) {
             return false;
         }
+        for (int step = 0; step < plan.size(); step++) {
+            if (plan.typeAt(step) == type && plan.spotsAt(step) == spots) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Unparks a vehicle by freeing all the spots it occupies, if any.
-     * Also synchronized to ensure atomic remove from the map.
+     * Puts back a vehicle known to hold the given run of spots, e.g., when
+     * recovering the state of a Parking after a restart. No fallback rule is
+     * applied and no listener is notified.
+     * Returns false if the plate is already parked or one of the spots is taken.
      */
-    public void unparkVehicle(Vehicle vehicle) {
-        synchronized (lock) {
-            List<ParkingSpot> spots = vehicleToSpots.get(vehicle);
-            if (spots != null && !spots.isEmpty()) {
-                // Free each occupied spot
-                for (ParkingSpot s : spots) {
-                    s.free();
+    public boolean restore(Parking parking, String plate, Class<? extends Vehicle> vehicleType,
+                           SpotType spotType, int firstSpot, int spotCount) {
+        checkPlate(plate);
+        if (firstSpot < 0 || spotCount < 1 || spotCount > SpotAllocation.MAX_SPOTS
+                || firstSpot + spotCount > parking.getSpotCount(spotType)) {
+            throw new IllegalArgumentException("Invalid spot run " + spotType + "[" + firstSpot + ", +" + spotCount + ")");
+        }
+        if (mode == ConcurrencyMode.GLOBAL_LOCK) {
+            synchronized (lock) {
+                return doRestore(parking, plate, vehicleType, spotType, firstSpot, spotCount);
+            }
+        }
+        return doRestore(parking, plate, vehicleType, spotType, firstSpot, spotCount);
+    }
+
+    private boolean doRestore(Parking parking, String plate, Class<? extends Vehicle> vehicleType,
+                              SpotType spotType, int firstSpot, int spotCount) {
+        long owned = SpotAllocation.withOwner(SpotAllocation.of(spotType, firstSpot, spotCount),
+                VehicleKinds.idOf(vehicleType), parkingId(parking));
+        lockStripe(spotType);
+        try {
+            int claimed = 0;
+            while (claimed < spotCount && parking.tryOccupy(spotType, firstSpot + claimed)) {
+                claimed++;
+            }
+            if (claimed < spotCount) {
+                for (int i = 0; i < claimed; i++) {
+                    parking.free(spotType, firstSpot + i);
                 }
-                // Remove the vehicle from the map
-                vehicleToSpots.remove(vehicle);
+                return false;
             }
+        } finally {
+            unlockStripe(spotType);
+        }
+        if (plates.putIfAbsent(plate, owned)) {
+            vehicleTypes.onParked(SpotAllocation.kind(owned), spotCount);
+            return true;
         }
+        releaseSpots(owned);
+        return false;
     }
 
     /**
-     * Tries to park a vehicle on a list of single-capacity spots (moto or car).
-     * Returns a list containing the used spot if successful, or null otherwise.
+     * Calls the visitor with every vehicle parked in the given parking.
+     * Does not block parking: each vehicle is seen either before or after a
+     * concurrent park/unpark, but the walk is not one atomic snapshot.
      */
-    private List<ParkingSpot> tryParkOnSpots(List<ParkingSpot> spots, Vehicle vehicle) {
-        for (ParkingSpot spot : spots) {
-            if (!spot.isOccupied() && spot.canFitVehicle(vehicle)) {
-                spot.occupy();
-                return List.of(spot); // single spot
+    public void forEachParked(Parking parking, ParkedVehicleVisitor visitor) {
+        int id = parkingId(parking);
+        plates.forEachEntry((plate, allocation) -> {
+            if (SpotAllocation.parkingId(allocation) == id) {
+                visitor.visit(plate, VehicleKinds.classOf(SpotAllocation.kind(allocation)),
+                        SpotAllocation.type(allocation), SpotAllocation.start(allocation),
+                        SpotAllocation.count(allocation));
             }
+        });
+    }
+
+    // Called under the monitor of the plate's segment, as onDeparture
+    private void onArrival(String plate, long allocation) {
+        ParkingMetrics recorder = metrics;
+        if (recorder != null) {
+            recorder.countPark(PlateOccupancyTable.segmentOf(plate), SpotAllocation.kind(allocation),
+                    outcomeOf(null, allocation));
+        }
+        ParkingSessions current = sessions;
+        if (current != null) {
+            current.open(plate, allocation);
+        }
+        fireParked(plate, allocation);
+    }
+
+    private void onDeparture(String plate, long allocation) {
+        ParkingMetrics recorder = metrics;
+        if (recorder != null) {
+            recorder.countUnpark(PlateOccupancyTable.segmentOf(plate), SpotAllocation.kind(allocation));
+        }
+        ParkingSessions current = sessions;
+        if (current != null) {
+            current.close(plate);
+        }
+        fireUnparked(plate, allocation);
+    }
+
+    private void fireParked(String plate, long allocation) {
+        ParkingEventListener[] current = listeners;
+        if (current.length == 0) {
+            return;
+        }
+        Parking parking = parkings[SpotAllocation.parkingId(allocation)];
+        Class<? extends Vehicle> vehicleType = VehicleKinds.classOf(SpotAllocation.kind(allocation));
+        for (ParkingEventListener listener : current) {
+            listener.onParked(parking, plate, vehicleType, SpotAllocation.type(allocation),
+                    SpotAllocation.start(allocation), SpotAllocation.count(allocation));
+        }
+    }
+
+    private void fireUnparked(String plate, long allocation) {
+        ParkingEventListener[] current = listeners;
+        if (current.length == 0) {
+            return;
+        }
+        Parking parking = parkings[SpotAllocation.parkingId(allocation)];
+        Class<? extends Vehicle> vehicleType = VehicleKinds.classOf(SpotAllocation.kind(allocation));
+        for (ParkingEventListener listener : current) {
+            listener.onUnparked(parking, plate, vehicleType, SpotAllocation.type(allocation),
+                    SpotAllocation.start(allocation), SpotAllocation.count(allocation));
         }
-        return null;
     }
 
     /**
-     * Tries to park a vehicle on a single big spot, returns a list
-     * containing the used spot if successful, or null otherwise.
+     * Frees every spot of an allocation. In STRIPED mode the class of the
+     * spots is locked (re-entering is fine when the caller already holds it).
      */
-    private List<ParkingSpot> tryParkOnBigSpot(List<ParkingSpot> bigSpots, Vehicle vehicle) {
-        for (ParkingSpot spot : bigSpots) {
-            if (!spot.isOccupied() && spot.canFitVehicle(vehicle)) {
-                spot.occupy();
-                return List.of(spot);
+    private void releaseSpots(long allocation) {
+        SpotType type = SpotAllocation.type(allocation);
+        Parking parking = parkings[SpotAllocation.parkingId(allocation)];
+        int start = SpotAllocation.start(allocation);
+        int end = start + SpotAllocation.count(allocation);
+        lockStripe(type);
+        try {
+            // Free each occupied spot
+            for (int i = start; i < end; i++) {
+                parking.free(type, i);
             }
+        } finally {
+            unlockStripe(type);
         }
-        return null;
     }
 
     /**
-     * Tries to park a Van on multiple car spots (e.g., 3).
-     * Returns the list of spots if successful, or null otherwise.
+     * Returns the id of the parking inside this service, registering it on first use.
      */
-    private List<ParkingSpot> tryParkVanOnCarSpots(List<ParkingSpot> carSpots, Van van) {
-        int required = van.getRequiredCarSpots(); // typically 3
-        List<ParkingSpot> freeCarSpots = carSpots.stream()
-                .filter(s -> !s.isOccupied() && s.canFitVehicle(van))
-                .toList();
+    private int parkingId(Parking parking) {
+        Parking[] known = parkings;
+        for (int i = 0; i < known.length; i++) {
+            if (known[i] == parking) {
+                return i;
+            }
+        }
+        synchronized (parkingsLock) {
+            known = parkings;
+            for (int i = 0; i < known.length; i++) {
+                if (known[i] == parking) {
+                    return i;
+                }
+            }
+            if (known.length == SpotAllocation.MAX_PARKINGS) {
+                throw new IllegalStateException("Too many parkings for one service, max " + known.length);
+            }
+            Parking[] grown = Arrays.copyOf(known, known.length + 1);
+            grown[known.length] = parking;
+            parkings = grown;
+            return known.length;
+        }
+    }
 
-        if (freeCarSpots.size() >= required) {
-            // Occupy the first 'required' spots
-            List<ParkingSpot> spotsToUse = freeCarSpots.subList(0, required);
-            for (ParkingSpot s : spotsToUse) {
-                s.occupy();
+    /**
+     * Tries to park a vehicle on a single-capacity spot of the given class.
+     * The free spot is found through the Parking free-spot index instead of
+     * walking the whole list, then claimed with a compare-and-set (by index,
+     * so no spot object is touched on an off-heap parking): if another
+     * thread won the spot in the meantime (LOCK_FREE mode), we move on to the next one.
+     * During a batch, 'cursors' holds where the scan of each class resumes (null otherwise).
+     * Returns the used spot if successful (as a SpotAllocation), or NONE otherwise.
+     */
+    private long tryParkOnSpots(Parking parking, SpotType type, int[] cursors, boolean reserve) {
+        int from = cursors == null ? 0 : cursors[type.ordinal()];
+        if (from >= parking.getSpotCount(type)) {
+            return SpotAllocation.NONE;
+        }
+        lockStripe(type);
+        try {
+            int index = parking.nextFreeSpotIndex(type, from);
+            while (index >= 0) {
+                if (claimSpot(parking, type, index, reserve)) {
+                    if (cursors != null) {
+                        cursors[type.ordinal()] = index + 1;
+                    }
+                    return SpotAllocation.of(type, index, 1); // single spot
+                }
+                index = parking.nextFreeSpotIndex(type, index + 1);
+            }
+            if (cursors != null) {
+                // Nothing free after the cursor: skip this class for the rest of the batch
+                cursors[type.ordinal()] = Integer.MAX_VALUE;
             }
-            return spotsToUse;
+            return SpotAllocation.NONE;
+        } finally {
+            unlockStripe(type);
         }
-        return null;
     }
 
     /**
-     * Returns the total number of spots currently occupied by any vans.
+     * Tries to park a vehicle on a run of adjacent spots of one class (e.g., 3 car
+     * spots for a van). Returns the run of spots if successful, or NONE otherwise.
+     * The run is found through the Parking run index (O(log n) run tree on heap),
+     * then claimed spot by spot; if another thread took one of them in the
+     * meantime (LOCK_FREE mode), the partial claim is released and we look for
+     * another run after the lost spot, so the vehicle never ends up with only
+     * part of its spots and the search ends.
      */
-    public int getNumberOfSpotsOccupiedByVans() {
-        int count = 0;
-        for (Map.Entry<Vehicle, List<ParkingSpot>> entry : vehicleToSpots.entrySet()) {
-            if (entry.getKey() instanceof Van) {
-                count += entry.getValue().size();
+    private long tryParkOnRun(Parking parking, SpotType type, int required, boolean reserve) {
+        if (required > parking.getSpotCount(type)) {
+            return SpotAllocation.NONE;
+        }
+
+        lockStripe(type);
+        try {
+            int start = parking.findFreeRun(type, required);
+            while (start >= 0) {
+                if (claimRun(parking, type, start, required, reserve)) {
+                    return SpotAllocation.of(type, start, required);
+                }
+                // Lost a spot of the run to another thread: look further on,
+                // so the search always moves forward
+                start = parking.findFreeRun(type, required, start + 1);
+            }
+            return SpotAllocation.NONE;
+        } finally {
+            unlockStripe(type);
+        }
+    }
+
+    /**
+     * BEST_FIT version of tryParkOnSpots / tryParkOnRun: takes the first spots
+     * of the shortest free run that is long enough (see findBestFitRun).
+     * A run lost to another thread (LOCK_FREE mode) is rolled back and the
+     * search goes on first-fit after it, so it always moves forward.
+     */
+    private long tryParkOnBestFit(Parking parking, SpotType type, int required, boolean reserve) {
+        lockStripe(type);
+        try {
+            int start = findBestFitRun(parking, type, required);
+            while (start >= 0) {
+                if (claimRun(parking, type, start, required, reserve)) {
+                    return SpotAllocation.of(type, start, required);
+                }
+                start = parking.findFreeRun(type, required, start + 1);
+            }
+            return SpotAllocation.NONE;
+        } finally {
+            unlockStripe(type);
+        }
+    }
+
+    /**
+     * Entrance-aware version of tryParkOnSpots / tryParkOnRun: walks the free
+     * spots of the class from the closest to the entrance (see Entrance) and
+     * claims the first one, or the first run of free spots starting there.
+     * A spot lost to another thread (LOCK_FREE mode) is skipped. Runs are
+     * only looked for from the NEAREST_MAX_RUNS closest free spots, then
+     * anywhere (tryParkOnRun), keeping the cost bounded on a fragmented class.
+     * When the ranking has no free spot left, the free-spot index of the
+     * parking is searched too (tryParkOnSpots / tryParkOnRun): a spot freed
+     * while the entrance was being added may be missing from its ranking.
+     */
+    private long tryParkNearest(Parking parking, Entrance entrance, SpotType type, int required, boolean reserve) {
+        int size = parking.getSpotCount(type);
+        if (required > size) {
+            return SpotAllocation.NONE;
+        }
+        lockStripe(type);
+        try {
+            int rank = entrance.nextFreeRank(type, 0);
+            for (int seen = 0; rank >= 0 && (required == 1 || seen < NEAREST_MAX_RUNS); seen++) {
+                int start = entrance.spotAt(type, rank);
+                if (required == 1) {
+                    if (claimSpot(parking, type, start, reserve)) {
+                        return SpotAllocation.of(type, start, 1);
+                    }
+                } else {
+                    int end = parking.nextTakenSpotIndex(type, start);
+                    if ((end < 0 ? size : end) - start >= required
+                            && parking.isContiguous(type, start, required)
+                            && claimRun(parking, type, start, required, reserve)) {
+                        return SpotAllocation.of(type, start, required);
+                    }
+                }
+                rank = entrance.nextFreeRank(type, rank + 1);
+            }
+        } finally {
+            unlockStripe(type);
+        }
+        return required == 1 ? tryParkOnSpots(parking, type, null, reserve) : tryParkOnRun(parking, type, required, reserve);
+    }
+
+    /**
+     * Scores the free runs of a class by length and returns the start of the
+     * shortest one holding 'required' spots (leftmost among equals), or -1.
+     * Stops at an exact fit, or after BEST_FIT_MAX_RUNS runs, keeping the
+     * cost bounded on a very fragmented class. Runs whose first spots do not
+     * stand next to each other (see Parking.isContiguous) are left to findFreeRun.
+     */
+    private static int findBestFitRun(Parking parking, SpotType type, int required) {
+        int size = parking.getSpotCount(type);
+        int best = -1;
+        int bestLength = Integer.MAX_VALUE;
+        boolean skipped = false;
+        int start = parking.nextFreeSpotIndex(type, 0);
+        for (int seen = 0; start >= 0 && seen < BEST_FIT_MAX_RUNS; seen++) {
+            int end = parking.nextTakenSpotIndex(type, start);
+            if (end < 0) {
+                end = size;
+            }
+            int length = end - start;
+            if (length >= required && length < bestLength && !parking.isContiguous(type, start, required)) {
+                skipped = true;
+            } else if (length >= required && length < bestLength) {
+                best = start;
+                bestLength = length;
+                if (length == required) {
+                    break;
+                }
             }
+            start = parking.nextFreeSpotIndex(type, end);
+        }
+        if (best < 0 && (start >= 0 || skipped)) {
+            // Gave up before the end of the class, or across rows: any run that fits will do
+            return parking.findFreeRun(type, required);
+        }
+        return best;
+    }
+
+    /**
+     * Claims the spots [start, start + required) one by one. If one of them
+     * was taken by another thread (LOCK_FREE mode), the partial claim is
+     * rolled back and false is returned.
+     */
+    private static boolean claimRun(Parking parking, SpotType type, int start, int required, boolean reserve) {
+        int claimed = 0;
+        while (claimed < required && claimSpot(parking, type, start + claimed, reserve)) {
+            claimed++;
+        }
+        if (claimed == required) {
+            return true;
+        }
+        for (int i = 0; i < claimed; i++) {
+            unclaimSpot(parking, type, start + i, reserve);
+        }
+        return false;
+    }
+
+    /**
+     * Rejects a missing plate number at the API, rather than deep inside the plate table.
+     */
+    static String checkPlate(String plate) {
+        if (plate == null) {
+            throw new IllegalArgumentException("A vehicle needs a plate number");
         }
-        return count;
+        return plate;
+    }
+
+    private static void checkPlates(Collection<? extends Vehicle> vehicles) {
+        for (Vehicle vehicle : vehicles) {
+            checkPlate(vehicle.getPlateNumber());
+        }
+    }
+
+    private static boolean claimSpot(Parking parking, SpotType type, int index, boolean reserve) {
+        return reserve ? parking.tryReserve(type, index) : parking.tryOccupy(type, index);
+    }
+
+    private static void unclaimSpot(Parking parking, SpotType type, int index, boolean reserve) {
+        if (reserve) {
+            parking.cancelReservation(type, index);
+        } else {
+            parking.free(type, index);
+        }
+    }
+
+    // In GLOBAL_LOCK mode the caller already holds the service lock
+    private void lockStripe(SpotType type) {
+        if (mode != ConcurrencyMode.STRIPED) {
+            return;
+        }
+        ParkingMetrics recorder = metrics;
+        if (recorder == null || !ParkingMetrics.sample()) {
+            stripes.lock(type);
+        } else {
+            // Sampled like the global lock, contended or not, so both waits add up
+            long start = System.nanoTime();
+            stripes.lock(type);
+            recorder.recordStripeLockWait(System.nanoTime() - start);
+        }
+    }
+
+    private void unlockStripe(SpotType type) {
+        if (mode == ConcurrencyMode.STRIPED) {
+            stripes.unlock(type);
+        }
+    }
+
+    /**
+     * Returns the total number of spots currently occupied by any vans.
+     * Constant time: read from the per-type counters.
+     */
+    public int getNumberOfSpotsOccupiedByVans() {
+        return vehicleTypes.occupiedSpots(VehicleKinds.idOf(Van.class));
+    }
+
+    /**
+     * Returns, for every vehicle type parked through this service so far,
+     * how many vehicles are parked and how many spots they hold.
+     * Answered from counters updated on park/unpark, without walking the
+     * parked vehicles; each type's pair of numbers is read atomically.
+     */
+    public Map<Class<? extends Vehicle>, VehicleTypeOccupancy> getOccupancyByVehicleType() {
+        return vehicleTypes.snapshot();
     }
 
 }
@@ -0,0 +1,74 @@
+package org.example.parking.service;
+
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+/**
+ * A closed parking session: who parked where (the spots taken on entry, which
+ * it is billed for), from when to when, and what it cost.
+ */
+public final class ParkingSession {
+
+    private final String plate;
+    private final Class<? extends Vehicle> vehicleType;
+    private final SpotType spotType;
+    private final int firstSpot;
+    private final int spotCount;
+    private final long entryMillis;
+    private final long exitMillis;
+    private final long amountCents;
+
+    ParkingSession(String plate, Class<? extends Vehicle> vehicleType, SpotType spotType, int firstSpot,
+                   int spotCount, long entryMillis, long exitMillis, long amountCents) {
+        this.plate = plate;
+        this.vehicleType = vehicleType;
+        this.spotType = spotType;
+        this.firstSpot = firstSpot;
+        this.spotCount = spotCount;
+        this.entryMillis = entryMillis;
+        this.exitMillis = exitMillis;
+        this.amountCents = amountCents;
+    }
+
+    public String getPlate() {
+        return plate;
+    }
+
+    public Class<? extends Vehicle> getVehicleType() {
+        return vehicleType;
+    }
+
+    public SpotType getSpotType() {
+        return spotType;
+    }
+
+    public int getFirstSpot() {
+        return firstSpot;
+    }
+
+    public int getSpotCount() {
+        return spotCount;
+    }
+
+    public long getEntryMillis() {
+        return entryMillis;
+    }
+
+    public long getExitMillis() {
+        return exitMillis;
+    }
+
+    public long getDwellMillis() {
+        return exitMillis - entryMillis;
+    }
+
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    @Override
+    public String toString() {
+        return "ParkingSession{" + plate + ' ' + vehicleType.getSimpleName() + " on " + spotType + ' ' + firstSpot
+                + ", " + getDwellMillis() / 1000 + "s, " + amountCents + " cents}";
+    }
+}
@@ -0,0 +1,289 @@
+package org.example.parking.service;
+
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Parking sessions and billing of a ParkingService (see ParkingService.enableBilling()).
+ *
+ * A session opens when a vehicle parks (or claims its reservation) and
+ * closes when it leaves; relocating a vehicle does not interrupt it. Entry
+ * times and the spots taken on entry are kept in plate-keyed tables of longs
+ * (the same open addressing table as the parked vehicles), so an open session
+ * costs no object.
+ *
+ * A session is billed for the spots taken on entry, wherever the vehicle
+ * was moved since: relocations are moves asked by the lot, so the driver
+ * neither gains nor loses by them.
+ *
+ * Closing a session prices it with the current Tariff and folds it into the
+ * running totals (revenue, sessions and dwell time, overall and per vehicle
+ * type and spot class) on the gate thread, so the figures are always up to
+ * date without any batch job. The last closed sessions are kept in a ring
+ * of parallel primitive arrays (entry and exit times, amount, spots), each
+ * slot stamped like the slots of an OccupancyFeed.
+ *
+ * Vehicles parked before billing was enabled, or put back by a recovery,
+ * have no open session: their departures are only counted as untracked.
+ */
+public final class ParkingSessions {
+
+    public static final int DEFAULT_LOG_CAPACITY = 1 << 16;
+
+    private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final SpotType[] SPOT_TYPES = SpotType.values();
+
+    /**
+     * Running totals of closed sessions.
+     */
+    private static final class Totals {
+        final LongAdder sessions = new LongAdder();
+        final LongAdder revenue = new LongAdder();
+        final LongAdder dwellMillis = new LongAdder();
+
+        void add(long amount, long dwell) {
+            sessions.increment();
+            revenue.add(amount);
+            dwellMillis.add(dwell);
+        }
+
+        long averageDwellMillis() {
+            long count = sessions.sum();
+            return count == 0 ? 0 : dwellMillis.sum() / count;
+        }
+    }
+
+    private final LongSupplier clockMillis;
+    private volatile Tariff tariff;
+
+    // Plate -> entry time and spots taken on entry of every open session
+    private final PlateOccupancyTable entries = new PlateOccupancyTable();
+    private final PlateOccupancyTable entryAllocations = new PlateOccupancyTable();
+
+    private final Totals totals = new Totals();
+    private final Totals[] totalsBySpotType = new Totals[SPOT_TYPES.length];
+    // Indexed by vehicle kind, created on first use
+    private final AtomicReferenceArray<Totals> totalsByKind = new AtomicReferenceArray<>(SpotAllocation.MAX_KINDS);
+    private final LongAdder untrackedDepartures = new LongAdder();
+
+    // Ring of the last closed sessions; stamps as in OccupancyFeed (2s + 1 writing, 2s + 2 published)
+    private final int mask;
+    private final AtomicLong closed = new AtomicLong();
+    private final long[] stamps;
+    private final String[] plates;
+    private final long[] allocations;
+    private final long[] entryTimes;
+    private final long[] exitTimes;
+    private final long[] amounts;
+
+    ParkingSessions(LongSupplier clockMillis, Tariff tariff, int logCapacity) {
+        int size = 1;
+        while (size < logCapacity) {
+            size <<= 1;
+        }
+        this.clockMillis = clockMillis;
+        this.tariff = tariff;
+        for (int i = 0; i < totalsBySpotType.length; i++) {
+            totalsBySpotType[i] = new Totals();
+        }
+        this.mask = size - 1;
+        this.stamps = new long[size];
+        this.plates = new String[size];
+        this.allocations = new long[size];
+        this.entryTimes = new long[size];
+        this.exitTimes = new long[size];
+        this.amounts = new long[size];
+    }
+
+    public Tariff getTariff() {
+        return tariff;
+    }
+
+    /**
+     * Changes the tariff. Applies to the sessions closed from now on, whenever they opened.
+     */
+    public void setTariff(Tariff tariff) {
+        this.tariff = tariff;
+    }
+
+    /**
+     * Called while the plate is locked in the service plate table.
+     */
+    void open(String plate, long allocation) {
+        if (entries.putIfAbsent(plate, clockMillis.getAsLong())) {
+            entryAllocations.putIfAbsent(plate, allocation);
+        }
+    }
+
+    /**
+     * Called while the plate is locked in the service plate table, before its spots are freed.
+     */
+    void close(String plate) {
+        long entry = entries.remove(plate);
+        long allocation = entryAllocations.remove(plate);
+        if (entry == SpotAllocation.NONE || allocation == SpotAllocation.NONE) {
+            untrackedDepartures.increment();
+            return;
+        }
+        long exit = clockMillis.getAsLong();
+        long dwell = Math.max(0, exit - entry);
+        int kind = SpotAllocation.kind(allocation);
+        SpotType type = SpotAllocation.type(allocation);
+        long amount = tariff.price(kind, type, SpotAllocation.count(allocation), dwell);
+        totals.add(amount, dwell);
+        totalsBySpotType[type.ordinal()].add(amount, dwell);
+        totalsOf(kind).add(amount, dwell);
+        log(plate, allocation, entry, exit, amount);
+    }
+
+    private Totals totalsOf(int kind) {
+        Totals kindTotals = totalsByKind.get(kind);
+        if (kindTotals == null) {
+            totalsByKind.compareAndSet(kind, null, new Totals());
+            kindTotals = totalsByKind.get(kind);
+        }
+        return kindTotals;
+    }
+
+    private void log(String plate, long allocation, long entry, long exit, long amount) {
+        long sequence = closed.getAndIncrement();
+        int slot = (int) sequence & mask;
+        long writing = 2 * sequence + 1;
+        while (true) {
+            long stamp = (long) STAMPS.getVolatile(stamps, slot);
+            if ((stamp & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (stamp != 0 && sequenceOf(stamp) > sequence) {
+                // Already overwritten by a later session: only the totals keep this one
+                return;
+            }
+            if (STAMPS.compareAndSet(stamps, slot, stamp, writing)) {
+                break;
+            }
+        }
+        plates[slot] = plate;
+        allocations[slot] = allocation;
+        entryTimes[slot] = entry;
+        exitTimes[slot] = exit;
+        amounts[slot] = amount;
+        STAMPS.setRelease(stamps, slot, writing + 1);
+    }
+
+    private static long sequenceOf(long stamp) {
+        return (stamp - 1) >>> 1;
+    }
+
+    /**
+     * Returns the entry time of the open session of the plate, or -1 if it has none.
+     */
+    public long getEntryMillis(String plate) {
+        return entries.get(plate);
+    }
+
+    /**
+     * Returns what the vehicle with the given plate would pay if it left
+     * now, or -1 if it has no open session.
+     */
+    public long quote(String plate) {
+        long entry = entries.get(plate);
+        long allocation = entryAllocations.get(plate);
+        if (entry == SpotAllocation.NONE || allocation == SpotAllocation.NONE) {
+            return -1;
+        }
+        return tariff.price(SpotAllocation.kind(allocation), SpotAllocation.type(allocation),
+                SpotAllocation.count(allocation), Math.max(0, clockMillis.getAsLong() - entry));
+    }
+
+    public int getOpenSessionCount() {
+        return entries.size();
+    }
+
+    public long getClosedSessionCount() {
+        return totals.sessions.sum();
+    }
+
+    /**
+     * Total amount billed for the closed sessions, in cents.
+     */
+    public long getRevenueCents() {
+        return totals.revenue.sum();
+    }
+
+    public long getRevenueCents(SpotType type) {
+        return totalsBySpotType[type.ordinal()].revenue.sum();
+    }
+
+    public long getRevenueCents(Class<? extends Vehicle> vehicleType) {
+        Totals kindTotals = totalsByKind.get(VehicleKinds.idOf(vehicleType));
+        return kindTotals == null ? 0 : kindTotals.revenue.sum();
+    }
+
+    /**
+     * Average length of the closed sessions.
+     */
+    public long getAverageDwellMillis() {
+        return totals.averageDwellMillis();
+    }
+
+    public long getAverageDwellMillis(SpotType type) {
+        return totalsBySpotType[type.ordinal()].averageDwellMillis();
+    }
+
+    public long getAverageDwellMillis(Class<? extends Vehicle> vehicleType) {
+        Totals kindTotals = totalsByKind.get(VehicleKinds.idOf(vehicleType));
+        return kindTotals == null ? 0 : kindTotals.averageDwellMillis();
+    }
+
+    /**
+     * Departures of vehicles that had no open session (see the class comment).
+     */
+    public long getUntrackedDepartureCount() {
+        return untrackedDepartures.sum();
+    }
+
+    /**
+     * Returns up to 'max' of the last closed sessions, oldest first. Sessions
+     * older than the log capacity, or overwritten while being read, are left out.
+     */
+    public List<ParkingSession> recentSessions(int max) {
+        long end = closed.get();
+        long from = Math.max(0, end - Math.min(max, mask + 1));
+        List<ParkingSession> sessions = new ArrayList<>((int) (end - from));
+        for (long sequence = from; sequence < end; sequence++) {
+            int slot = (int) sequence & mask;
+            long stamp = (long) STAMPS.getAcquire(stamps, slot);
+            if (stamp != 2 * sequence + 2) {
+                continue;
+            }
+            String plate = plates[slot];
+            long allocation = allocations[slot];
+            long entry = entryTimes[slot];
+            long exit = exitTimes[slot];
+            long amount = amounts[slot];
+            VarHandle.acquireFence();
+            if ((long) STAMPS.getOpaque(stamps, slot) == stamp) {
+                sessions.add(new ParkingSession(plate, VehicleKinds.classOf(SpotAllocation.kind(allocation)),
+                        SpotAllocation.type(allocation), SpotAllocation.start(allocation),
+                        SpotAllocation.count(allocation), entry, exit, amount));
+            }
+        }
+        return sessions;
+    }
+
+    @Override
+    public String toString() {
+        return "ParkingSessions{open=" + getOpenSessionCount() + ", closed=" + getClosedSessionCount()
+                + ", revenue=" + getRevenueCents() + " cents, averageDwell=" + getAverageDwellMillis() / 1000 + "s}";
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.parking.service;
+
+import org.example.parking.domain.Parking;
+
+/**
+ * One shard of a ParkingFacility: a Parking (a level, an area, a site...)
+ * with its own ParkingService, so zones never share a lock.
+ */
+public final class ParkingZone {
+
+    private final String name;
+    private final Parking parking;
+    private final ParkingService service;
+
+    public ParkingZone(String name, Parking parking, ParkingService service) {
+        this.name = name;
+        this.parking = parking;
+        this.service = service;
+    }
+
+    /**
+     * Creates a zone with its own default ParkingService.
+     */
+    public ParkingZone(String name, Parking parking) {
+        this(name, parking, new ParkingService());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Parking getParking() {
+        return parking;
+    }
+
+    public ParkingService getService() {
+        return service;
+    }
+
+    @Override
+    public String toString() {
+        return "ParkingZone{" + name + ", free=" + parking.getFreeSpotsCount() + "/" + parking.getTotalSpots() + "}";
+    }
+}
@@ -0,0 +1,274 @@
+package org.example.parking.service;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Plate number -> packed SpotAllocation of every parked vehicle
+ * (ParkingFacility also uses it for plate -> zone index).
+ *
+ * Open addressing with linear probing over a String[] of plates and a
+ * long[] of allocations: one slot costs a reference and a long, with no
+ * entry object, no boxed key and no List of spots per vehicle.
+ * The table is split into segments selected by the plate hash, each one
+ * guarded by its own monitor, so gates touching different plates rarely
+ * contend.
+ */
+final class PlateOccupancyTable {
+
+    private static final int SEGMENT_BITS = 4;
+    static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    PlateOccupancyTable() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Returns the allocation of the given plate, or SpotAllocation.NONE.
+     */
+    long get(String plate) {
+        int hash = hash(plate);
+        return segmentFor(hash).get(plate, hash);
+    }
+
+    /**
+     * Records the allocation of a plate, unless the plate is already parked.
+     * Returns true if the allocation was recorded.
+     */
+    boolean putIfAbsent(String plate, long allocation) {
+        return putIfAbsent(plate, allocation, null);
+    }
+
+    /**
+     * Same as putIfAbsent, calling onInserted if the allocation was recorded.
+     * The callback runs while the plate is still locked, so the callbacks of
+     * one plate are seen in the same order as its inserts and removals.
+     */
+    boolean putIfAbsent(String plate, long allocation, EntryConsumer onInserted) {
+        int hash = hash(plate);
+        return segmentFor(hash).putIfAbsent(plate, hash, allocation, onInserted);
+    }
+
+    /**
+     * Removes a plate and returns its allocation, or SpotAllocation.NONE
+     * if it was not parked. Only one of several concurrent callers gets it.
+     */
+    long remove(String plate) {
+        return remove(plate, null);
+    }
+
+    /**
+     * Same as remove, calling onRemoved with the removed allocation, if any,
+     * while the plate is still locked (see putIfAbsent).
+     */
+    long remove(String plate, EntryConsumer onRemoved) {
+        int hash = hash(plate);
+        return segmentFor(hash).remove(plate, hash, onRemoved);
+    }
+
+    /**
+     * Moves a plate from one allocation to another, if it still holds 'expected'.
+     * Calls onRemoved with the old allocation then onInserted with the new one,
+     * while the plate is locked. Returns false if the plate holds something else.
+     */
+    boolean replace(String plate, long expected, long update, EntryConsumer onRemoved, EntryConsumer onInserted) {
+        int hash = hash(plate);
+        return segmentFor(hash).replace(plate, hash, expected, update, onRemoved, onInserted);
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Calls the consumer with every allocation, one segment at a time.
+     */
+    void forEach(LongConsumer consumer) {
+        for (Segment segment : segments) {
+            segment.forEach(consumer);
+        }
+    }
+
+    /**
+     * Calls the consumer with every plate and its allocation, one segment at a time.
+     * Each segment is seen at a single point in time, the table as a whole is not.
+     */
+    void forEachEntry(EntryConsumer consumer) {
+        for (Segment segment : segments) {
+            segment.forEachEntry(consumer);
+        }
+    }
+
+    /**
+     * Runs the action under the monitor of the given segment, the one its
+     * callbacks run under (see segmentOf).
+     */
+    void runInSegment(int segment, Runnable action) {
+        synchronized (segments[segment]) {
+            action.run();
+        }
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(String plate, long allocation);
+    }
+
+    /**
+     * Returns the segment of the given plate, in [0, SEGMENTS): callbacks
+     * run under that segment's monitor (see ParkingMetrics.countPark).
+     */
+    static int segmentOf(String plate) {
+        return hash(plate) >>> (32 - SEGMENT_BITS);
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+
+    private static int hash(String plate) {
+        // String caches its hashCode; spread it so both the high bits
+        // (segment) and the low bits (slot) are well mixed
+        return plate.hashCode() * 0x9E3779B9;
+    }
+
+    private static final class Segment {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private String[] plates = new String[INITIAL_CAPACITY];
+        private long[] allocations = new long[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized long get(String plate, int hash) {
+            int mask = plates.length - 1;
+            for (int slot = hash & mask; plates[slot] != null; slot = (slot + 1) & mask) {
+                if (plates[slot].equals(plate)) {
+                    return allocations[slot];
+                }
+            }
+            return SpotAllocation.NONE;
+        }
+
+        synchronized boolean putIfAbsent(String plate, int hash, long allocation, EntryConsumer onInserted) {
+            int mask = plates.length - 1;
+            int slot = hash & mask;
+            for (; plates[slot] != null; slot = (slot + 1) & mask) {
+                if (plates[slot].equals(plate)) {
+                    return false;
+                }
+            }
+            plates[slot] = plate;
+            allocations[slot] = allocation;
+            // Keep the load factor under 3/4 so probe chains stay short
+            if (++size > plates.length - (plates.length >>> 2)) {
+                resize();
+            }
+            if (onInserted != null) {
+                onInserted.accept(plate, allocation);
+            }
+            return true;
+        }
+
+        synchronized long remove(String plate, int hash, EntryConsumer onRemoved) {
+            int mask = plates.length - 1;
+            int slot = hash & mask;
+            for (; plates[slot] != null; slot = (slot + 1) & mask) {
+                if (plates[slot].equals(plate)) {
+                    long allocation = allocations[slot];
+                    deleteSlot(slot, mask);
+                    size--;
+                    if (onRemoved != null) {
+                        onRemoved.accept(plate, allocation);
+                    }
+                    return allocation;
+                }
+            }
+            return SpotAllocation.NONE;
+        }
+
+        synchronized boolean replace(String plate, int hash, long expected, long update,
+                                     EntryConsumer onRemoved, EntryConsumer onInserted) {
+            int mask = plates.length - 1;
+            for (int slot = hash & mask; plates[slot] != null; slot = (slot + 1) & mask) {
+                if (plates[slot].equals(plate)) {
+                    if (allocations[slot] != expected) {
+                        return false;
+                    }
+                    allocations[slot] = update;
+                    onRemoved.accept(plate, expected);
+                    onInserted.accept(plate, update);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void forEach(LongConsumer consumer) {
+            for (int slot = 0; slot < plates.length; slot++) {
+                if (plates[slot] != null) {
+                    consumer.accept(allocations[slot]);
+                }
+            }
+        }
+
+        synchronized void forEachEntry(EntryConsumer consumer) {
+            for (int slot = 0; slot < plates.length; slot++) {
+                if (plates[slot] != null) {
+                    consumer.accept(plates[slot], allocations[slot]);
+                }
+            }
+        }
+
+        // Backward-shift deletion: moves the following entries of the probe
+        // chain up, so lookups never need tombstones
+        private void deleteSlot(int hole, int mask) {
+            int slot = hole;
+            while (true) {
+                slot = (slot + 1) & mask;
+                String plate = plates[slot];
+                if (plate == null) {
+                    break;
+                }
+                int home = hash(plate) & mask;
+                // Move the entry only if its home slot is not between hole and slot
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    plates[hole] = plate;
+                    allocations[hole] = allocations[slot];
+                    hole = slot;
+                }
+            }
+            plates[hole] = null;
+        }
+
+        private void resize() {
+            String[] oldPlates = plates;
+            long[] oldAllocations = allocations;
+            plates = new String[oldPlates.length * 2];
+            allocations = new long[oldPlates.length * 2];
+            int mask = plates.length - 1;
+            for (int i = 0; i < oldPlates.length; i++) {
+                String plate = oldPlates[i];
+                if (plate != null) {
+                    int slot = hash(plate) & mask;
+                    while (plates[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    plates[slot] = plate;
+                    allocations[slot] = oldAllocations[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.example.parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.SpotType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Works out relocation suggestions for the single-spot vehicles of one parking
+ * (see ParkingService.suggestRelocations). Runs on a private copy of the free
+ * runs, updated as if every suggestion made so far had been followed, so
+ * suggestions never compete for the same spot.
+ */
+final class RelocationPlanner {
+
+    private static final class Parked {
+        final String plate;
+        final int kind;
+        final SpotType type;
+        final int index;
+
+        Parked(String plate, int kind, SpotType type, int index) {
+            this.plate = plate;
+            this.kind = kind;
+            this.type = type;
+            this.index = index;
+        }
+    }
+
+    private final AllocationPlanRegistry plans;
+    private final List<Parked> vehicles = new ArrayList<>();
+
+    // Per spot class, the free runs (of spots next to each other) as first spot -> length
+    @SuppressWarnings("unchecked")
+    private final TreeMap<Integer, Integer>[] runs = new TreeMap[SpotType.values().length];
+
+    RelocationPlanner(Parking parking, AllocationPlanRegistry plans) {
+        this.plans = plans;
+        for (SpotType type : SpotType.values()) {
+            TreeMap<Integer, Integer> free = new TreeMap<>();
+            int size = parking.getSpotCount(type);
+            int start = parking.nextFreeSpotIndex(type, 0);
+            while (start >= 0) {
+                int end = parking.nextTakenSpotIndex(type, start);
+                if (end < 0) {
+                    end = size;
+                }
+                if (!parking.isContiguous(type, start, end - start)) {
+                    // Split the run where it crosses rows
+                    for (int i = start; i < end - 1; i++) {
+                        if (!parking.isContiguous(type, i, 2)) {
+                            free.put(start, i + 1 - start);
+                            start = i + 1;
+                        }
+                    }
+                }
+                free.put(start, end - start);
+                start = parking.nextFreeSpotIndex(type, end);
+            }
+            runs[type.ordinal()] = free;
+        }
+    }
+
+    void addVehicle(String plate, int kind, SpotType type, int index) {
+        vehicles.add(new Parked(plate, kind, type, index));
+    }
+
+    List<RelocationSuggestion> suggest(int maxSuggestions) {
+        List<RelocationSuggestion> suggestions = new ArrayList<>();
+        List<Parked> stayed = new ArrayList<>();
+
+        // 1) Vehicles on a fallback class, back to their preferred class
+        for (Parked vehicle : vehicles) {
+            if (suggestions.size() == maxSuggestions) {
+                return suggestions;
+            }
+            AllocationPlan plan = plans.resolvedPlan(vehicle.kind);
+            if (plan == null || plan.typeAt(0) == vehicle.type || plan.spotsAt(0) != 1) {
+                stayed.add(vehicle);
+                continue;
+            }
+            int target = take(plan.typeAt(0), Integer.MAX_VALUE, -1);
+            if (target < 0) {
+                stayed.add(vehicle);
+                continue;
+            }
+            release(vehicle.type, vehicle.index);
+            suggestions.add(new RelocationSuggestion(vehicle.plate, vehicle.type, vehicle.index,
+                    plan.typeAt(0), target, RelocationSuggestion.Reason.BACK_TO_PREFERRED_CLASS));
+        }
+
+        // 2) Vehicles splitting free spots that would form a long enough run,
+        // moved into a hole too short to be of use to multi-spot vehicles
+        for (Parked vehicle : stayed) {
+            if (suggestions.size() == maxSuggestions) {
+                break;
+            }
+            int required = plans.longestRun(vehicle.type);
+            if (required < 2) {
+                continue;
+            }
+            TreeMap<Integer, Integer> free = runs[vehicle.type.ordinal()];
+            Map.Entry<Integer, Integer> left = free.floorEntry(vehicle.index - 1);
+            int leftLength = left != null && left.getKey() + left.getValue() == vehicle.index ? left.getValue() : 0;
+            int rightLength = free.getOrDefault(vehicle.index + 1, 0);
+            if (leftLength >= required || rightLength >= required || leftLength + rightLength + 1 < required) {
+                continue;
+            }
+            int target = take(vehicle.type, required - 1, vehicle.index);
+            if (target < 0) {
+                continue;
+            }
+            release(vehicle.type, vehicle.index);
+            suggestions.add(new RelocationSuggestion(vehicle.plate, vehicle.type, vehicle.index,
+                    vehicle.type, target, RelocationSuggestion.Reason.JOIN_FREE_RUN));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Takes the first spot of the shortest free run of at most maxLength spots
+     * (leftmost among equals), skipping the runs touching 'neighbour'.
+     * Returns the spot, or -1 if there is no such run.
+     */
+    private int take(SpotType type, int maxLength, int neighbour) {
+        TreeMap<Integer, Integer> free = runs[type.ordinal()];
+        int best = -1;
+        int bestLength = Integer.MAX_VALUE;
+        for (Map.Entry<Integer, Integer> run : free.entrySet()) {
+            int start = run.getKey();
+            int length = run.getValue();
+            boolean touchesNeighbour = neighbour >= 0 && (start == neighbour + 1 || start + length == neighbour);
+            if (length > maxLength || length >= bestLength || touchesNeighbour) {
+                continue;
+            }
+            best = start;
+            bestLength = length;
+            if (length == 1) {
+                break;
+            }
+        }
+        if (best >= 0) {
+            free.remove(best);
+            if (bestLength > 1) {
+                free.put(best + 1, bestLength - 1);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Marks a spot free, merging it with the free runs on both sides.
+     */
+    private void release(SpotType type, int index) {
+        TreeMap<Integer, Integer> free = runs[type.ordinal()];
+        int start = index;
+        int length = 1;
+        Map.Entry<Integer, Integer> left = free.floorEntry(index - 1);
+        if (left != null && left.getKey() + left.getValue() == index) {
+            start = left.getKey();
+            length += left.getValue();
+        }
+        Integer right = free.remove(index + 1);
+        if (right != null) {
+            length += right;
+        }
+        free.put(start, length);
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.parking.service;
+
+import org.example.parking.model.SpotType;
+
+/**
+ * A parked vehicle that could be moved to another spot to make room
+ * (see ParkingService.suggestRelocations), and why.
+ */
+public final class RelocationSuggestion {
+
+    /**
+     * Why moving the vehicle helps.
+     */
+    public enum Reason {
+        /** It fell back on another spot class, and a spot of its preferred class is free now. */
+        BACK_TO_PREFERRED_CLASS,
+        /** It splits free spots that would form a run long enough for a multi-spot vehicle. */
+        JOIN_FREE_RUN
+    }
+
+    private final String plate;
+    private final SpotType fromType;
+    private final int fromIndex;
+    private final SpotType toType;
+    private final int toIndex;
+    private final Reason reason;
+
+    RelocationSuggestion(String plate, SpotType fromType, int fromIndex, SpotType toType, int toIndex, Reason reason) {
+        this.plate = plate;
+        this.fromType = fromType;
+        this.fromIndex = fromIndex;
+        this.toType = toType;
+        this.toIndex = toIndex;
+        this.reason = reason;
+    }
+
+    public String getPlate() {
+        return plate;
+    }
+
+    public SpotType getFromType() {
+        return fromType;
+    }
+
+    public int getFromIndex() {
+        return fromIndex;
+    }
+
+    public SpotType getToType() {
+        return toType;
+    }
+
+    public int getToIndex() {
+        return toIndex;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return plate + ": " + fromType + "[" + fromIndex + "] -> " + toType + "[" + toIndex + "] (" + reason + ")";
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.parking.service;
+
+import org.example.parking.model.SpotType;
+
+/**
+ * Packs the spots held by one parked vehicle into a single long.
+ * A vehicle always holds a run of adjacent spots of one class
+ * (one spot, or e.g. 3 car spots for a van), so the run is enough:
+ *
+ *   bits  0-31  index of the first spot in its Parking list
+ *   bits 32-39  number of spots
+ *   bits 40-43  spot class (SpotType ordinal)
+ *   bits 44-51  vehicle kind (see VehicleKinds)
+ *   bits 52-62  parking id inside the owning ParkingService
+ *
+ * Bit 63 is never set, so NONE (-1) can never be a valid allocation.
+ */
+final class SpotAllocation {
+
+    static final long NONE = -1L;
+
+    static final int MAX_SPOTS = 0xFF;
+    static final int MAX_KINDS = 0x100;
+    static final int MAX_PARKINGS = 0x800;
+
+    private SpotAllocation() {
+    }
+
+    static long of(SpotType type, int start, int count) {
+        return (start & 0xFFFFFFFFL)
+                | ((long) count << 32)
+                | ((long) type.ordinal() << 40);
+    }
+
+    static long withOwner(long allocation, int kind, int parkingId) {
+        return allocation | ((long) kind << 44) | ((long) parkingId << 52);
+    }
+
+    static int start(long allocation) {
+        return (int) allocation;
+    }
+
+    static int count(long allocation) {
+        return (int) (allocation >>> 32) & 0xFF;
+    }
+
+    static SpotType type(long allocation) {
+        return SpotType.values()[(int) (allocation >>> 40) & 0xF];
+    }
+
+    static int kind(long allocation) {
+        return (int) (allocation >>> 44) & 0xFF;
+    }
+
+    static int parkingId(long allocation) {
+        return (int) (allocation >>> 52) & 0x7FF;
+    }
+}
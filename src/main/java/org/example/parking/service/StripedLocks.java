@@ -0,0 +1,52 @@
+package org.example.parking.service;
+
+import org.example.parking.model.SpotType;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One lock per spot class.
+ * When several classes must be held together, they are always
+ * acquired in SpotType order, so two threads can never deadlock.
+ */
+class StripedLocks {
+
+    private final ReentrantLock[] locks = new ReentrantLock[SpotType.values().length];
+
+    StripedLocks() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    void lock(SpotType type) {
+        locks[type.ordinal()].lock();
+    }
+
+    void unlock(SpotType type) {
+        locks[type.ordinal()].unlock();
+    }
+
+    /**
+     * Locks every class whose bit is set in the mask (bit = SpotType.ordinal()),
+     * in ascending order.
+     */
+    void lockAll(int typeMask) {
+        for (int i = 0; i < locks.length; i++) {
+            if ((typeMask & (1 << i)) != 0) {
+                locks[i].lock();
+            }
+        }
+    }
+
+    /**
+     * Releases the classes locked by lockAll(typeMask), in reverse order.
+     */
+    void unlockAll(int typeMask) {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            if ((typeMask & (1 << i)) != 0) {
+                locks[i].unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.example.parking.service;
+
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Vehicle;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Prices of parking sessions, in cents: every started billing period costs
+ * the rate of the spots held, e.g.
+ *
+ *   Tariff.perPeriod(Duration.ofHours(1))
+ *         .withSpotRate(SpotType.CAR, 250)          // per car spot and hour
+ *         .withVehicleRate(Van.class, SpotType.CAR, 600)  // a van on 3 car spots
+ *         .withGracePeriod(Duration.ofMinutes(15))
+ *         .withDailyCap(2_000);
+ *
+ * A vehicle pays the vehicle rate of its type on the spot class it holds if
+ * one is set, otherwise the spot rate of the class times its number of spots.
+ * Sessions no longer than the grace period are free, and each day of a
+ * session costs at most the daily cap (if set).
+ *
+ * Tariffs are immutable. Rates are kept in tables indexed by spot class and
+ * by vehicle kind (see VehicleKinds), so pricing a session is a few array
+ * reads and multiplications.
+ */
+public final class Tariff {
+
+    private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+    private static final int SPOT_TYPES = SpotType.values().length;
+
+    private final long periodMillis;
+    private final long periodsPerDay;
+    private final long graceMillis;
+    private final long dailyCap;
+    // Indexed by spot class: price of one spot for one period
+    private final long[] spotRates;
+    // Indexed by vehicle kind * SPOT_TYPES + spot class: price of the vehicle for one period, -1 if unset
+    private final long[] vehicleRates;
+
+    private Tariff(long periodMillis, long graceMillis, long dailyCap, long[] spotRates, long[] vehicleRates) {
+        this.periodMillis = periodMillis;
+        this.periodsPerDay = (DAY_MILLIS + periodMillis - 1) / periodMillis;
+        this.graceMillis = graceMillis;
+        this.dailyCap = dailyCap;
+        this.spotRates = spotRates;
+        this.vehicleRates = vehicleRates;
+    }
+
+    /**
+     * Returns a free tariff billed by periods of the given length; set the rates with the with... methods.
+     */
+    public static Tariff perPeriod(Duration period) {
+        long millis = period.toMillis();
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Billing period must be positive: " + period);
+        }
+        return new Tariff(millis, 0, 0, new long[SPOT_TYPES], new long[0]);
+    }
+
+    /**
+     * Returns this tariff with the price of one spot of the given class for one period.
+     */
+    public Tariff withSpotRate(SpotType type, long cents) {
+        checkPrice(cents);
+        long[] rates = spotRates.clone();
+        rates[type.ordinal()] = cents;
+        return new Tariff(periodMillis, graceMillis, dailyCap, rates, vehicleRates);
+    }
+
+    /**
+     * Returns this tariff with the price of one period for a vehicle of the
+     * given type on spots of the given class, whatever its number of spots.
+     */
+    public Tariff withVehicleRate(Class<? extends Vehicle> vehicleType, SpotType type, long cents) {
+        checkPrice(cents);
+        int index = VehicleKinds.idOf(vehicleType) * SPOT_TYPES + type.ordinal();
+        long[] rates = vehicleRates;
+        if (index >= rates.length) {
+            rates = Arrays.copyOf(rates, index - type.ordinal() + SPOT_TYPES);
+            Arrays.fill(rates, vehicleRates.length, rates.length, -1);
+        } else {
+            rates = rates.clone();
+        }
+        rates[index] = cents;
+        return new Tariff(periodMillis, graceMillis, dailyCap, spotRates, rates);
+    }
+
+    /**
+     * Returns this tariff where sessions up to the given length are free.
+     */
+    public Tariff withGracePeriod(Duration grace) {
+        if (grace.isNegative()) {
+            throw new IllegalArgumentException("Negative grace period: " + grace);
+        }
+        return new Tariff(periodMillis, grace.toMillis(), dailyCap, spotRates, vehicleRates);
+    }
+
+    /**
+     * Returns this tariff where each day of a session costs at most the given price (0 for no cap).
+     */
+    public Tariff withDailyCap(long cents) {
+        checkPrice(cents);
+        return new Tariff(periodMillis, graceMillis, cents, spotRates, vehicleRates);
+    }
+
+    public Duration getPeriod() {
+        return Duration.ofMillis(periodMillis);
+    }
+
+    /**
+     * Returns the price of a session of the given length, for a vehicle of
+     * the given type holding spotCount spots of the given class.
+     */
+    public long price(Class<? extends Vehicle> vehicleType, SpotType type, int spotCount, long dwellMillis) {
+        return price(VehicleKinds.idOf(vehicleType), type, spotCount, dwellMillis);
+    }
+
+    long price(int kind, SpotType type, int spotCount, long dwellMillis) {
+        if (dwellMillis <= graceMillis) {
+            return 0;
+        }
+        long periods = (dwellMillis + periodMillis - 1) / periodMillis;
+        long rate = rate(kind, type, spotCount);
+        long fullDay = capped(periodsPerDay * rate);
+        return periods / periodsPerDay * fullDay + capped(periods % periodsPerDay * rate);
+    }
+
+    private long rate(int kind, SpotType type, int spotCount) {
+        int index = kind * SPOT_TYPES + type.ordinal();
+        if (index < vehicleRates.length && vehicleRates[index] >= 0) {
+            return vehicleRates[index];
+        }
+        return spotRates[type.ordinal()] * spotCount;
+    }
+
+    private long capped(long price) {
+        return dailyCap > 0 ? Math.min(price, dailyCap) : price;
+    }
+
+    private static void checkPrice(long cents) {
+        if (cents < 0) {
+            throw new IllegalArgumentException("Negative price: " + cents);
+        }
+    }
+}
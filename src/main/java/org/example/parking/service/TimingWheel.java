@@ -0,0 +1,174 @@
+package org.example.parking.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: 4 levels of 64 slots, each level covering 64 times
+ * the span of the one below (64, 4096, 262144 and 16777216 ticks), plus an
+ * overflow list for deadlines even further away.
+ *
+ * Entries are intrusive doubly-linked list nodes, so scheduling and cancelling
+ * are O(1) and allocation-free, and a tick only touches the slot that is due
+ * (plus, every 64 ticks, the slot of the next level that gets cascaded down).
+ * An entry is placed on the lowest level whose slot range still contains both
+ * the current tick and its deadline; when the current tick reaches that slot,
+ * it is moved down a level, until it expires from level 0.
+ *
+ * Every method is synchronized: the work done under the lock is bounded by the
+ * entries actually due, never by the number of outstanding entries.
+ */
+class TimingWheel {
+
+    static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /**
+     * A scheduled deadline, linked into one slot of the wheel.
+     */
+    static class Entry {
+        long deadline;
+        Entry prev;
+        Entry next;
+
+        boolean isScheduled() {
+            return next != null;
+        }
+    }
+
+    // Sentinel of each slot's circular list, indexed by [level][slot]
+    private final Entry[][] slots = new Entry[LEVELS][SLOTS];
+    private final Entry overflow = sentinel();
+
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long startTick) {
+        this.currentTick = startTick;
+        for (Entry[] level : slots) {
+            for (int s = 0; s < SLOTS; s++) {
+                level[s] = sentinel();
+            }
+        }
+    }
+
+    synchronized long currentTick() {
+        return currentTick;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Schedules an entry to expire at the given tick (the next tick if it is already due).
+     * The entry must not be scheduled already.
+     */
+    synchronized void schedule(Entry entry, long deadlineTick) {
+        if (entry.isScheduled()) {
+            throw new IllegalStateException("Entry already scheduled");
+        }
+        entry.deadline = Math.max(deadlineTick, currentTick + 1);
+        place(entry);
+        size++;
+    }
+
+    /**
+     * Unschedules an entry. Returns false if it was not scheduled
+     * (e.g., it was just handed out by advance()).
+     */
+    synchronized boolean cancel(Entry entry) {
+        if (!entry.isScheduled()) {
+            return false;
+        }
+        unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward to the given tick, passing every entry that
+     * expires on the way to the callback (already unscheduled).
+     * The callback runs under the wheel lock and should only collect entries.
+     */
+    synchronized void advance(long toTick, Consumer<? super Entry> expired) {
+        if (size == 0) {
+            // Nothing to expire: jump straight there
+            currentTick = Math.max(currentTick, toTick);
+            return;
+        }
+        while (currentTick < toTick) {
+            currentTick++;
+            cascade();
+            Entry head = slots[0][(int) (currentTick & SLOT_MASK)];
+            while (head.next != head) {
+                Entry entry = head.next;
+                unlink(entry);
+                size--;
+                expired.accept(entry);
+            }
+            if (size == 0) {
+                currentTick = toTick;
+            }
+        }
+    }
+
+    /**
+     * When the lower bits of the current tick wrap, moves the entries of the slot
+     * now due on the upper levels down to the levels below, highest level first.
+     */
+    private void cascade() {
+        int wrapped = 0;
+        while (wrapped < LEVELS && (currentTick & ((1L << (SLOT_BITS * (wrapped + 1))) - 1)) == 0) {
+            wrapped++;
+        }
+        if (wrapped == LEVELS) {
+            redistribute(overflow);
+        }
+        for (int level = Math.min(wrapped, LEVELS - 1); level >= 1; level--) {
+            redistribute(slots[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)]);
+        }
+    }
+
+    private void redistribute(Entry head) {
+        // Detach the whole list first: entries may land back on the same slot list
+        Entry entry = head.next;
+        head.next = head;
+        head.prev = head;
+        while (entry != head) {
+            Entry next = entry.next;
+            place(entry);
+            entry = next;
+        }
+    }
+
+    private void place(Entry entry) {
+        Entry head = overflow;
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * (level + 1);
+            if ((entry.deadline >>> shift) == (currentTick >>> shift)) {
+                head = slots[level][(int) ((entry.deadline >>> (SLOT_BITS * level)) & SLOT_MASK)];
+                break;
+            }
+        }
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    private static void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private static Entry sentinel() {
+        Entry head = new Entry();
+        head.prev = head;
+        head.next = head;
+        return head;
+    }
+}
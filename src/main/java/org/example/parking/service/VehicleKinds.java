@@ -0,0 +1,51 @@
+package org.example.parking.service;
+
+import org.example.parking.model.Vehicle;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Assigns a small integer id to every Vehicle class, so per-type data
+ * can live in plain arrays (or in packed longs) instead of class-keyed maps.
+ * The id of a class is computed once and cached by a ClassValue.
+ */
+final class VehicleKinds {
+
+    private static final AtomicReferenceArray<Class<?>> CLASSES =
+            new AtomicReferenceArray<>(SpotAllocation.MAX_KINDS);
+
+    private static final ClassValue<Integer> IDS = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            for (int id = 0; id < CLASSES.length(); id++) {
+                if (CLASSES.compareAndSet(id, null, type) || CLASSES.get(id) == type) {
+                    return id;
+                }
+            }
+            throw new IllegalStateException("Too many vehicle types, max " + CLASSES.length());
+        }
+    };
+
+    private VehicleKinds() {
+    }
+
+    static int idOf(Class<? extends Vehicle> type) {
+        return IDS.get(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Class<? extends Vehicle> classOf(int id) {
+        return (Class<? extends Vehicle>) CLASSES.get(id);
+    }
+
+    /**
+     * Returns an upper bound of the ids handed out so far.
+     */
+    static int count() {
+        int count = 0;
+        while (count < CLASSES.length() && CLASSES.get(count) != null) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.parking.service;
+
+import org.example.parking.model.Vehicle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Parked vehicles and occupied spots per vehicle type, updated on every
+ * park and unpark. Both numbers of a type share one long (vehicles in the
+ * high half, spots in the low half), so each update is a single atomic add
+ * and a type's pair is always read consistently.
+ */
+final class VehicleTypeCounters {
+
+    private final AtomicLongArray counters = new AtomicLongArray(SpotAllocation.MAX_KINDS);
+
+    void onParked(int kind, int spots) {
+        counters.addAndGet(kind, (1L << 32) + spots);
+    }
+
+    void onUnparked(int kind, int spots) {
+        counters.addAndGet(kind, -((1L << 32) + spots));
+    }
+
+    int parkedVehicles(int kind) {
+        return (int) (counters.get(kind) >>> 32);
+    }
+
+    int occupiedSpots(int kind) {
+        return (int) counters.get(kind);
+    }
+
+    /**
+     * Returns the counts of every vehicle type seen so far.
+     */
+    Map<Class<? extends Vehicle>, VehicleTypeOccupancy> snapshot() {
+        Map<Class<? extends Vehicle>, VehicleTypeOccupancy> snapshot = new LinkedHashMap<>();
+        int kinds = VehicleKinds.count();
+        for (int kind = 0; kind < kinds; kind++) {
+            long value = counters.get(kind);
+            snapshot.put(VehicleKinds.classOf(kind),
+                    new VehicleTypeOccupancy((int) (value >>> 32), (int) value));
+        }
+        return snapshot;
+    }
+}
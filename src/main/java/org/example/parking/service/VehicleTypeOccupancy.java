@@ -0,0 +1,28 @@
+package org.example.parking.service;
+
+/**
+ * Number of parked vehicles of one type, and how many spots they hold.
+ */
+public final class VehicleTypeOccupancy {
+
+    private final int parkedVehicles;
+    private final int occupiedSpots;
+
+    VehicleTypeOccupancy(int parkedVehicles, int occupiedSpots) {
+        this.parkedVehicles = parkedVehicles;
+        this.occupiedSpots = occupiedSpots;
+    }
+
+    public int getParkedVehicles() {
+        return parkedVehicles;
+    }
+
+    public int getOccupiedSpots() {
+        return occupiedSpots;
+    }
+
+    @Override
+    public String toString() {
+        return parkedVehicles + " vehicles on " + occupiedSpots + " spots";
+    }
+}
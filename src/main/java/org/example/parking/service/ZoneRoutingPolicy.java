@@ -0,0 +1,22 @@
+package org.example.parking.service;
+
+/**
+ * How a ParkingFacility picks the zone an arriving vehicle is sent to.
+ * Both policies use the zones' free-spot counters as capacity hints,
+ * which are read without taking any lock.
+ */
+public enum ZoneRoutingPolicy {
+
+    /**
+     * Sends the vehicle to the zone with the most free spots it can use.
+     * Reads every zone's counters on each arrival.
+     */
+    LEAST_LOADED,
+
+    /**
+     * Samples two random zones and sends the vehicle to the one with more
+     * free spots it can use: constant cost per arrival, and load stays
+     * close to the least-loaded policy.
+     */
+    POWER_OF_TWO_CHOICES
+}
@@ -0,0 +1,68 @@
+package org.example.parking.simulation;
+
+import java.util.Locale;
+
+/**
+ * Parses and prints the durations used on the simulator command line,
+ * e.g. "1500ms", "30s", "90m", "2h" or "7d" (a bare number is milliseconds).
+ */
+final class Durations {
+
+    private static final long SECOND = 1_000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private Durations() {
+    }
+
+    static long parseMillis(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (value.endsWith("ms")) {
+            value = value.substring(0, value.length() - 2);
+        } else if (value.endsWith("s")) {
+            unit = SECOND;
+        } else if (value.endsWith("m")) {
+            unit = MINUTE;
+        } else if (value.endsWith("h")) {
+            unit = HOUR;
+        } else if (value.endsWith("d")) {
+            unit = DAY;
+        }
+        if (unit != 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            double amount = Double.parseDouble(value);
+            if (amount < 0) {
+                throw new IllegalArgumentException("Negative duration: " + text);
+            }
+            return Math.round(amount * unit);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid duration: " + text, e);
+        }
+    }
+
+    /**
+     * Formats a duration in the largest unit that divides it, e.g. "90m".
+     */
+    static String format(long millis) {
+        long[] units = {DAY, HOUR, MINUTE, SECOND};
+        String[] suffixes = {"d", "h", "m", "s"};
+        for (int i = 0; i < units.length; i++) {
+            if (millis != 0 && millis % units[i] == 0) {
+                return millis / units[i] + suffixes[i];
+            }
+        }
+        return millis + "ms";
+    }
+
+    /**
+     * Formats a simulated time as day and time of day, e.g. "d1 07:30".
+     */
+    static String formatTime(long millis) {
+        long minutes = millis / MINUTE;
+        return String.format(Locale.ROOT, "d%d %02d:%02d", millis / DAY, minutes / 60 % 24, minutes % 60);
+    }
+}
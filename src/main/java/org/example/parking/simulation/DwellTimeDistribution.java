@@ -0,0 +1,90 @@
+package org.example.parking.simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * How long a vehicle stays parked, drawn once per arrival.
+ */
+public abstract class DwellTimeDistribution {
+
+    private final String spec;
+
+    private DwellTimeDistribution(String spec) {
+        this.spec = spec;
+    }
+
+    /**
+     * Draws a dwell time in milliseconds (at least 1).
+     */
+    public abstract long nextMillis(SplittableRandom random);
+
+    public static DwellTimeDistribution fixed(long millis) {
+        return new DwellTimeDistribution("fixed:" + Durations.format(millis)) {
+            @Override
+            public long nextMillis(SplittableRandom random) {
+                return Math.max(1, millis);
+            }
+        };
+    }
+
+    public static DwellTimeDistribution uniform(long minMillis, long maxMillis) {
+        if (maxMillis < minMillis) {
+            throw new IllegalArgumentException("Uniform dwell time with max < min");
+        }
+        return new DwellTimeDistribution("uniform:" + Durations.format(minMillis) + ":" + Durations.format(maxMillis)) {
+            @Override
+            public long nextMillis(SplittableRandom random) {
+                return Math.max(1, minMillis + (long) (random.nextDouble() * (maxMillis - minMillis)));
+            }
+        };
+    }
+
+    /**
+     * Memoryless stays: many short ones and a long tail.
+     */
+    public static DwellTimeDistribution exponential(long meanMillis) {
+        return new DwellTimeDistribution("exp:" + Durations.format(meanMillis)) {
+            @Override
+            public long nextMillis(SplittableRandom random) {
+                return Math.max(1, (long) (-meanMillis * Math.log(1 - random.nextDouble())));
+            }
+        };
+    }
+
+    /**
+     * Log-normal stays around a median (half the stays are shorter), 'sigma'
+     * setting the spread: closer to observed parking stays than exponential.
+     */
+    public static DwellTimeDistribution logNormal(long medianMillis, double sigma) {
+        double mu = Math.log(medianMillis);
+        return new DwellTimeDistribution("lognormal:" + Durations.format(medianMillis) + ":" + sigma) {
+            @Override
+            public long nextMillis(SplittableRandom random) {
+                return Math.max(1, (long) Math.exp(mu + sigma * random.nextGaussian()));
+            }
+        };
+    }
+
+    /**
+     * Parses "fixed:1h", "uniform:15m:4h", "exp:2h" (mean) or "lognormal:90m:0.8" (median, sigma).
+     */
+    public static DwellTimeDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            return switch (parts[0]) {
+                case "fixed" -> fixed(Durations.parseMillis(parts[1]));
+                case "uniform" -> uniform(Durations.parseMillis(parts[1]), Durations.parseMillis(parts[2]));
+                case "exp" -> exponential(Durations.parseMillis(parts[1]));
+                case "lognormal" -> logNormal(Durations.parseMillis(parts[1]), Double.parseDouble(parts[2]));
+                default -> throw new IllegalArgumentException("Unknown dwell time distribution: " + spec);
+            };
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Missing parameter in dwell time distribution: " + spec, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
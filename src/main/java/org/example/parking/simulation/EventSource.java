@@ -0,0 +1,21 @@
+package org.example.parking.simulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A stream of trace events in non-decreasing time order, generated on the fly
+ * (SyntheticTrace) or read from a file (TraceFile), so traces of millions of
+ * events never have to fit in memory.
+ */
+public interface EventSource extends Closeable {
+
+    /**
+     * Returns the next event, or null at the end of the trace.
+     */
+    TraceEvent next() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
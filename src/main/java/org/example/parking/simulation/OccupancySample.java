@@ -0,0 +1,43 @@
+package org.example.parking.simulation;
+
+import org.example.parking.domain.OccupancySnapshot;
+import org.example.parking.model.SpotType;
+
+/**
+ * State of the lot at one point of simulated time.
+ */
+public final class OccupancySample {
+
+    private final long timeMillis;
+    private final OccupancySnapshot snapshot;
+    private final int parkedVehicles;
+
+    OccupancySample(long timeMillis, OccupancySnapshot snapshot, int parkedVehicles) {
+        this.timeMillis = timeMillis;
+        this.snapshot = snapshot;
+        this.parkedVehicles = parkedVehicles;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public OccupancySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public int getParkedVehicles() {
+        return parkedVehicles;
+    }
+
+    /**
+     * Share of the spots that are not free (occupied or reserved), from 0 to 1.
+     */
+    public double getOccupancyRate() {
+        int total = 0;
+        for (SpotType type : SpotType.values()) {
+            total += snapshot.getTotal(type);
+        }
+        return total == 0 ? 0 : 1 - (double) snapshot.getFreeSpotsCount() / total;
+    }
+}
@@ -0,0 +1,351 @@
+package org.example.parking.simulation;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.LatencyHistogram;
+import org.example.parking.service.ParkingService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Discrete-event load simulator: plays a trace of arrivals and departures
+ * against a Parking and its ParkingService, as fast as possible, and reports
+ * throughput, rejections, latency percentiles and occupancy over time.
+ *
+ * With no gate threads, events run one by one on the calling thread, in
+ * trace order. With N gate threads, the calling thread dispatches the events
+ * in batches, each plate always to the same gate (so a vehicle's departure
+ * never overtakes its arrival), and the gates call the service concurrently.
+ * The gates advance through simulated time together: every 'syncEveryMillis'
+ * they wait for each other, so no gate plays an event of a window before all
+ * of them have played the previous window, and only events less than a window
+ * apart can play out of trace order. Occupancy is sampled every
+ * 'sampleEveryMillis' of simulated time, after waiting for the gates to play
+ * every event dispatched before that time.
+ */
+public final class Simulation {
+
+    private static final long MINUTE = 60 * 1_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final int BATCH_SIZE = 256;
+    private static final int BATCHES_PER_GATE = 64;
+    private static final TraceEvent[] END_OF_TRACE = new TraceEvent[0];
+    private static final TraceEvent[] END_OF_WINDOW = new TraceEvent[0];
+
+    private final Parking parking;
+    private final ParkingService service;
+    private int gateThreads;
+    private long sampleEveryMillis = HOUR;
+    private long syncEveryMillis = MINUTE;
+
+    public Simulation(Parking parking, ParkingService service) {
+        this.parking = parking;
+        this.service = service;
+    }
+
+    public int getGateThreads() {
+        return gateThreads;
+    }
+
+    /**
+     * Sets the number of gate threads calling the service, 0 to play the
+     * trace on the calling thread.
+     */
+    public void setGateThreads(int gateThreads) {
+        if (gateThreads < 0) {
+            throw new IllegalArgumentException("Negative number of gate threads: " + gateThreads);
+        }
+        this.gateThreads = gateThreads;
+    }
+
+    public long getSampleEveryMillis() {
+        return sampleEveryMillis;
+    }
+
+    /**
+     * Sets the simulated time between two occupancy samples, 0 for none.
+     */
+    public void setSampleEveryMillis(long sampleEveryMillis) {
+        if (sampleEveryMillis < 0) {
+            throw new IllegalArgumentException("Negative sampling period: " + sampleEveryMillis);
+        }
+        this.sampleEveryMillis = sampleEveryMillis;
+    }
+
+    public long getSyncEveryMillis() {
+        return syncEveryMillis;
+    }
+
+    /**
+     * Sets the simulated time the gate threads may drift apart, e.g. 1 ms to
+     * play only simultaneous events concurrently. Shorter windows keep the
+     * trace order better but leave the gates fewer events to play at once.
+     */
+    public void setSyncEveryMillis(long syncEveryMillis) {
+        if (syncEveryMillis <= 0) {
+            throw new IllegalArgumentException("Non-positive synchronization period: " + syncEveryMillis);
+        }
+        this.syncEveryMillis = syncEveryMillis;
+    }
+
+    /**
+     * Plays every event of the source, then closes it.
+     */
+    public SimulationReport run(EventSource source) throws IOException {
+        try (source) {
+            return gateThreads == 0 ? runInline(source) : runOnGates(source);
+        }
+    }
+
+    private SimulationReport runInline(EventSource source) throws IOException {
+        GateStats stats = new GateStats();
+        List<OccupancySample> samples = new ArrayList<>();
+        long nextSample = 0;
+        long lastTime = 0;
+        long events = 0;
+        long start = System.nanoTime();
+        TraceEvent event;
+        while ((event = source.next()) != null) {
+            lastTime = event.getTimeMillis();
+            while (sampleEveryMillis > 0 && lastTime >= nextSample) {
+                samples.add(sample(nextSample));
+                nextSample += sampleEveryMillis;
+            }
+            play(event, stats);
+            events++;
+        }
+        long wallNanos = System.nanoTime() - start;
+        if (sampleEveryMillis > 0) {
+            samples.add(sample(lastTime));
+        }
+        return report(new GateStats[]{stats}, wallNanos, events, samples);
+    }
+
+    private SimulationReport runOnGates(EventSource source) throws IOException {
+        Phaser windows = new Phaser(gateThreads);
+        Gate[] gates = new Gate[gateThreads];
+        for (int i = 0; i < gates.length; i++) {
+            gates[i] = new Gate("sim-gate-" + i, windows);
+        }
+        List<OccupancySample> samples = new ArrayList<>();
+        long nextSample = 0;
+        long nextWindow = syncEveryMillis;
+        long lastTime = 0;
+        long events = 0;
+        long start = System.nanoTime();
+        try {
+            TraceEvent event;
+            while ((event = source.next()) != null) {
+                lastTime = event.getTimeMillis();
+                if (sampleEveryMillis > 0 && lastTime >= nextSample) {
+                    drain(gates);
+                    while (lastTime >= nextSample) {
+                        samples.add(sample(nextSample));
+                        nextSample += sampleEveryMillis;
+                    }
+                }
+                if (lastTime >= nextWindow) {
+                    for (Gate gate : gates) {
+                        gate.flush();
+                        gate.put(END_OF_WINDOW);
+                    }
+                    nextWindow = (lastTime / syncEveryMillis + 1) * syncEveryMillis;
+                }
+                gates[(event.getPlate().hashCode() & Integer.MAX_VALUE) % gates.length].add(event);
+                events++;
+            }
+            for (Gate gate : gates) {
+                gate.flush();
+                gate.put(END_OF_TRACE);
+            }
+            for (Gate gate : gates) {
+                gate.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while dispatching the trace", e);
+        } finally {
+            for (Gate gate : gates) {
+                gate.thread.interrupt();
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+        GateStats[] stats = new GateStats[gates.length];
+        for (int i = 0; i < gates.length; i++) {
+            gates[i].checkFailure();
+            stats[i] = gates[i].stats;
+        }
+        if (sampleEveryMillis > 0) {
+            samples.add(sample(lastTime));
+        }
+        return report(stats, wallNanos, events, samples);
+    }
+
+    /**
+     * Hands the pending batches to the gates and waits until they have played them.
+     */
+    private static void drain(Gate[] gates) throws InterruptedException {
+        for (Gate gate : gates) {
+            gate.flush();
+        }
+        for (Gate gate : gates) {
+            while (gate.played.get() < gate.dispatched) {
+                gate.checkFailure();
+                LockSupport.parkNanos(20_000);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+
+    private void play(TraceEvent event, GateStats stats) {
+        long start = System.nanoTime();
+        if (event.isArrival()) {
+            Vehicle vehicle = event.getVehicle();
+            boolean parked = service.parkVehicle(parking, vehicle);
+            stats.parkLatency.record(System.nanoTime() - start);
+            stats.countArrival(vehicle.getClass(), parked);
+        } else if (service.unparkByPlate(event.getPlate())) {
+            stats.unparkLatency.record(System.nanoTime() - start);
+            stats.departures++;
+        } else {
+            stats.ignoredDepartures++;
+        }
+    }
+
+    private OccupancySample sample(long timeMillis) {
+        return new OccupancySample(timeMillis, parking.getOccupancySnapshot(), service.getParkedVehicleCount());
+    }
+
+    private SimulationReport report(GateStats[] stats, long wallNanos, long events, List<OccupancySample> samples) {
+        LatencyHistogram parkLatency = new LatencyHistogram();
+        LatencyHistogram unparkLatency = new LatencyHistogram();
+        Map<String, long[]> arrivalsByType = new TreeMap<>();
+        long accepted = 0;
+        long rejected = 0;
+        long departures = 0;
+        long ignoredDepartures = 0;
+        for (GateStats gate : stats) {
+            gate.parkLatency.addTo(parkLatency);
+            gate.unparkLatency.addTo(unparkLatency);
+            for (Map.Entry<Class<?>, long[]> entry : gate.arrivalsByType.entrySet()) {
+                long[] counts = arrivalsByType.computeIfAbsent(entry.getKey().getSimpleName(), type -> new long[2]);
+                counts[0] += entry.getValue()[0];
+                counts[1] += entry.getValue()[1];
+                accepted += entry.getValue()[0];
+                rejected += entry.getValue()[1];
+            }
+            departures += gate.departures;
+            ignoredDepartures += gate.ignoredDepartures;
+        }
+        return new SimulationReport(gateThreads, wallNanos, events, accepted, rejected, departures,
+                ignoredDepartures, arrivalsByType, parkLatency, unparkLatency, samples);
+    }
+
+    /**
+     * Counters of one gate, only touched by its thread.
+     */
+    private static final class GateStats {
+        final LatencyHistogram parkLatency = new LatencyHistogram();
+        final LatencyHistogram unparkLatency = new LatencyHistogram();
+        // Vehicle class -> {accepted, rejected}
+        final Map<Class<?>, long[]> arrivalsByType = new HashMap<>();
+        long departures;
+        long ignoredDepartures;
+
+        void countArrival(Class<?> type, boolean parked) {
+            arrivalsByType.computeIfAbsent(type, t -> new long[2])[parked ? 0 : 1]++;
+        }
+    }
+
+    /**
+     * A gate thread and the queue of event batches it plays.
+     */
+    private final class Gate implements Runnable {
+        final BlockingQueue<TraceEvent[]> queue = new ArrayBlockingQueue<>(BATCHES_PER_GATE);
+        final GateStats stats = new GateStats();
+        final AtomicLong played = new AtomicLong();
+        final Phaser windows;
+        final Thread thread;
+        volatile Throwable failure;
+
+        // Dispatcher side
+        TraceEvent[] pending = new TraceEvent[BATCH_SIZE];
+        int pendingSize;
+        long dispatched;
+
+        Gate(String name, Phaser windows) {
+            this.windows = windows;
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void add(TraceEvent event) throws InterruptedException {
+            pending[pendingSize++] = event;
+            if (pendingSize == BATCH_SIZE) {
+                put(pending);
+                pending = new TraceEvent[BATCH_SIZE];
+                pendingSize = 0;
+            }
+        }
+
+        void flush() throws InterruptedException {
+            if (pendingSize > 0) {
+                put(Arrays.copyOf(pending, pendingSize));
+                pendingSize = 0;
+            }
+        }
+
+        void put(TraceEvent[] batch) throws InterruptedException {
+            checkFailure();
+            queue.put(batch);
+            dispatched += batch.length;
+        }
+
+        void checkFailure() {
+            if (failure != null) {
+                throw new IllegalStateException(thread.getName() + " failed", failure);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                TraceEvent[] batch;
+                while ((batch = queue.take()) != END_OF_TRACE) {
+                    if (batch == END_OF_WINDOW) {
+                        // Wait for the other gates to finish the window
+                        windows.awaitAdvanceInterruptibly(windows.arrive());
+                        continue;
+                    }
+                    if (failure == null) {
+                        try {
+                            for (TraceEvent event : batch) {
+                                play(event, stats);
+                            }
+                        } catch (RuntimeException | Error e) {
+                            // Keep taking batches so the dispatcher never blocks on a full queue
+                            failure = e;
+                        }
+                    }
+                    played.addAndGet(batch.length);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
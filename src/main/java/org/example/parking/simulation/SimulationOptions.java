@@ -0,0 +1,171 @@
+package org.example.parking.simulation;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.service.AllocationStrategy;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingService;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Command line of the simulator (see Main): a command, an optional trace file,
+ * then --name value options. Unset options keep the defaults below.
+ */
+public final class SimulationOptions {
+
+    public static final String USAGE = String.join(System.lineSeparator(),
+            "Usage:",
+            "  Main                                   runs the scripted demo",
+            "  Main simulate [options]                plays a synthetic trace",
+            "  Main generate <trace.csv> [options]    writes a synthetic trace to a file",
+            "  Main replay <trace.csv> [options]      plays a trace file",
+            "Lot:",
+            "  --moto N --car N --big N   spots of each class (default 200, 2000, 100)",
+            "  --offheap                  keeps the spots off-heap (Parking.offHeap)",
+            "  --mode M                   GLOBAL_LOCK, STRIPED or LOCK_FREE (default GLOBAL_LOCK)",
+            "  --strategy S               FIRST_FIT or BEST_FIT (default FIRST_FIT)",
+            "Synthetic trace:",
+            "  --duration D               arrivals during D, e.g. 24h or 30d (default 1d)",
+            "  --rate R                   arrivals per hour at the peak hour (default 1000)",
+            "  --profile daily|flat       hourly arrival profile (default daily)",
+            "  --mix moto=15,car=55,van=30   vehicle mix (weights)",
+            "  --dwell SPEC               fixed:1h, uniform:15m:4h, exp:2h or lognormal:90m:0.8 (default)",
+            "  --seed N                   random seed (default 42)",
+            "Run:",
+            "  --gates N                  concurrent gate threads, 0 for single-threaded (default 0)",
+            "  --sync D                   simulated time the gates may drift apart (default 1m)",
+            "  --sample D                 occupancy sampling period in simulated time (default 1h, 0 for none)",
+            "  --min-events-per-sec N     exits with status 1 below this throughput (regression check)");
+
+    private String command = "simulate";
+    private Path traceFile;
+    private int motoSpots = 200;
+    private int carSpots = 2_000;
+    private int bigSpots = 100;
+    private boolean offHeap;
+    private ConcurrencyMode mode = ConcurrencyMode.GLOBAL_LOCK;
+    private AllocationStrategy strategy = AllocationStrategy.FIRST_FIT;
+    private long durationMillis = Durations.parseMillis("1d");
+    private double peakRate = 1_000;
+    private boolean flatProfile;
+    private VehicleMix mix = VehicleMix.DEFAULT;
+    private DwellTimeDistribution dwellTime = DwellTimeDistribution.parse("lognormal:90m:0.8");
+    private long seed = 42;
+    private int gateThreads;
+    private long syncEveryMillis = Durations.parseMillis("1m");
+    private long sampleEveryMillis = Durations.parseMillis("1h");
+    private double minEventsPerSecond;
+
+    private SimulationOptions() {
+    }
+
+    public static SimulationOptions parse(String[] args) {
+        SimulationOptions options = new SimulationOptions();
+        int i = 0;
+        if (i < args.length && !args[i].startsWith("--")) {
+            options.command = args[i++];
+            switch (options.command) {
+                case "simulate" -> {
+                }
+                case "generate", "replay" -> {
+                    if (i == args.length || args[i].startsWith("--")) {
+                        throw new IllegalArgumentException(options.command + " needs a trace file");
+                    }
+                    options.traceFile = Path.of(args[i++]);
+                }
+                default -> throw new IllegalArgumentException("Unknown command: " + options.command);
+            }
+        }
+        while (i < args.length) {
+            String name = args[i++];
+            if (name.equals("--offheap")) {
+                options.offHeap = true;
+                continue;
+            }
+            if (i == args.length) {
+                throw new IllegalArgumentException("Missing value for " + name);
+            }
+            String value = args[i++];
+            switch (name) {
+                case "--moto" -> options.motoSpots = Integer.parseInt(value);
+                case "--car" -> options.carSpots = Integer.parseInt(value);
+                case "--big" -> options.bigSpots = Integer.parseInt(value);
+                case "--mode" -> options.mode = ConcurrencyMode.valueOf(value.toUpperCase(Locale.ROOT));
+                case "--strategy" -> options.strategy = AllocationStrategy.valueOf(value.toUpperCase(Locale.ROOT));
+                case "--duration" -> options.durationMillis = Durations.parseMillis(value);
+                case "--rate" -> options.peakRate = Double.parseDouble(value);
+                case "--profile" -> options.flatProfile = parseProfile(value);
+                case "--mix" -> options.mix = VehicleMix.parse(value);
+                case "--dwell" -> options.dwellTime = DwellTimeDistribution.parse(value);
+                case "--seed" -> options.seed = Long.parseLong(value);
+                case "--gates" -> options.gateThreads = Integer.parseInt(value);
+                case "--sync" -> options.syncEveryMillis = Durations.parseMillis(value);
+                case "--sample" -> options.sampleEveryMillis = Durations.parseMillis(value);
+                case "--min-events-per-sec" -> options.minEventsPerSecond = Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+        return options;
+    }
+
+    private static boolean parseProfile(String value) {
+        return switch (value) {
+            case "daily" -> false;
+            case "flat" -> true;
+            default -> throw new IllegalArgumentException("Unknown arrival profile: " + value);
+        };
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * The trace file to write (generate) or to play (replay), null for simulate.
+     */
+    public Path getTraceFile() {
+        return traceFile;
+    }
+
+    public double getMinEventsPerSecond() {
+        return minEventsPerSecond;
+    }
+
+    public Parking newParking() {
+        return offHeap ? Parking.offHeap(motoSpots, carSpots, bigSpots) : new Parking(motoSpots, carSpots, bigSpots);
+    }
+
+    public ParkingService newService() {
+        ParkingService service = new ParkingService(mode);
+        service.setAllocationStrategy(strategy);
+        return service;
+    }
+
+    public SyntheticTrace newSyntheticTrace() {
+        double[] rates = flatProfile ? SyntheticTrace.flatProfile(peakRate) : SyntheticTrace.dailyProfile(peakRate);
+        return new SyntheticTrace(seed, durationMillis, rates, mix, dwellTime);
+    }
+
+    public Simulation newSimulation(Parking parking, ParkingService service) {
+        Simulation simulation = new Simulation(parking, service);
+        simulation.setGateThreads(gateThreads);
+        simulation.setSyncEveryMillis(syncEveryMillis);
+        simulation.setSampleEveryMillis(sampleEveryMillis);
+        return simulation;
+    }
+
+    /**
+     * One-line summary of the lot and trace settings, printed before a run.
+     */
+    public String describe() {
+        String lot = String.format(Locale.ROOT, "lot %d/%d/%d%s, %s, %s", motoSpots, carSpots, bigSpots,
+                offHeap ? " off-heap" : "", mode, strategy);
+        if (command.equals("replay")) {
+            return lot + ", trace " + traceFile;
+        }
+        return String.format(Locale.ROOT, "%s, %.1fh of arrivals, %s profile peaking at %.0f/h, mix %s, dwell %s, seed %d",
+                lot, durationMillis / 3_600_000.0, flatProfile ? "flat" : "daily",
+                peakRate, mix, dwellTime, seed);
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.parking.simulation;
+
+import org.example.parking.model.SpotType;
+import org.example.parking.service.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outcome of a simulation run: throughput, rejections, latencies and the
+ * occupancy of the lot over simulated time.
+ */
+public final class SimulationReport {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+    private static final String[] QUANTILE_LABELS = {"p50", "p90", "p99", "p99.9", "max"};
+
+    private final int gateThreads;
+    private final long wallNanos;
+    private final long events;
+    private final long accepted;
+    private final long rejected;
+    private final long departures;
+    private final long ignoredDepartures;
+    // Vehicle type -> {accepted, rejected}
+    private final Map<String, long[]> arrivalsByType;
+    private final LatencyHistogram parkLatency;
+    private final LatencyHistogram unparkLatency;
+    private final List<OccupancySample> occupancy;
+
+    SimulationReport(int gateThreads, long wallNanos, long events, long accepted, long rejected,
+                     long departures, long ignoredDepartures, Map<String, long[]> arrivalsByType,
+                     LatencyHistogram parkLatency, LatencyHistogram unparkLatency,
+                     List<OccupancySample> occupancy) {
+        this.gateThreads = gateThreads;
+        this.wallNanos = wallNanos;
+        this.events = events;
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.departures = departures;
+        this.ignoredDepartures = ignoredDepartures;
+        this.arrivalsByType = arrivalsByType;
+        this.parkLatency = parkLatency;
+        this.unparkLatency = unparkLatency;
+        this.occupancy = Collections.unmodifiableList(occupancy);
+    }
+
+    public int getGateThreads() {
+        return gateThreads;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getEventCount() {
+        return events;
+    }
+
+    /**
+     * Events played per second of wall-clock time, trace reading included.
+     */
+    public double getEventsPerSecond() {
+        return wallNanos == 0 ? 0 : events * 1e9 / wallNanos;
+    }
+
+    public long getArrivalCount() {
+        return accepted + rejected;
+    }
+
+    public long getAcceptedCount() {
+        return accepted;
+    }
+
+    public long getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * Share of the arrivals that could not be parked, from 0 to 1.
+     */
+    public double getRejectionRate() {
+        return rate(rejected, accepted + rejected);
+    }
+
+    /**
+     * Rejection rate of one vehicle type (simple class name, e.g., "Van"), 0 if none arrived.
+     */
+    public double getRejectionRate(String vehicleType) {
+        long[] counts = arrivalsByType.get(vehicleType);
+        return counts == null ? 0 : rate(counts[1], counts[0] + counts[1]);
+    }
+
+    /**
+     * Departures of parked vehicles (unparks).
+     */
+    public long getDepartureCount() {
+        return departures;
+    }
+
+    /**
+     * Departures of plates that were not parked, e.g., vehicles rejected on arrival.
+     */
+    public long getIgnoredDepartureCount() {
+        return ignoredDepartures;
+    }
+
+    /**
+     * Returns the given percentile of parkVehicle durations (e.g., 0.99), in nanoseconds.
+     */
+    public long getParkLatencyNanos(double fraction) {
+        return parkLatency.percentile(fraction);
+    }
+
+    public long getUnparkLatencyNanos(double fraction) {
+        return unparkLatency.percentile(fraction);
+    }
+
+    public List<OccupancySample> getOccupancy() {
+        return occupancy;
+    }
+
+    public double getPeakOccupancyRate() {
+        double peak = 0;
+        for (OccupancySample sample : occupancy) {
+            peak = Math.max(peak, sample.getOccupancyRate());
+        }
+        return peak;
+    }
+
+    public void print(PrintStream out) {
+        out.printf(Locale.ROOT, "== %,d events in %.2f s: %,.0f events/s (%s) ==%n", events, wallNanos / 1e9,
+                getEventsPerSecond(), gateThreads == 0 ? "single-threaded" : gateThreads + " gate threads");
+        out.printf(Locale.ROOT, "Arrivals   : %,d, accepted %,d, rejected %,d (%.2f%%)%n",
+                getArrivalCount(), accepted, rejected, 100 * getRejectionRate());
+        for (Map.Entry<String, long[]> entry : arrivalsByType.entrySet()) {
+            long[] counts = entry.getValue();
+            out.printf(Locale.ROOT, "  %-8s : accepted %,d, rejected %,d (%.2f%%)%n", entry.getKey(),
+                    counts[0], counts[1], 100 * rate(counts[1], counts[0] + counts[1]));
+        }
+        out.printf(Locale.ROOT, "Departures : %,d (%,d of plates not parked)%n", departures, ignoredDepartures);
+        printLatency(out, "Park   ", parkLatency);
+        printLatency(out, "Unpark ", unparkLatency);
+
+        if (!occupancy.isEmpty()) {
+            out.printf(Locale.ROOT, "Occupancy (peak %.1f%%):%n", 100 * getPeakOccupancyRate());
+            out.printf(Locale.ROOT, "  %-9s %9s", "time", "occupied");
+            for (SpotType type : SpotType.values()) {
+                out.printf(Locale.ROOT, " %13s", type);
+            }
+            out.printf(Locale.ROOT, " %9s%n", "vehicles");
+            for (OccupancySample sample : occupancy) {
+                out.printf(Locale.ROOT, "  %-9s %8.1f%%", Durations.formatTime(sample.getTimeMillis()),
+                        100 * sample.getOccupancyRate());
+                for (SpotType type : SpotType.values()) {
+                    int total = sample.getSnapshot().getTotal(type);
+                    out.printf(Locale.ROOT, " %13s", (total - sample.getSnapshot().getFree(type)) + "/" + total);
+                }
+                out.printf(Locale.ROOT, " %9d%n", sample.getParkedVehicles());
+            }
+        }
+    }
+
+    private static void printLatency(PrintStream out, String label, LatencyHistogram histogram) {
+        out.printf(Locale.ROOT, "%s latency (us):", label);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.printf(Locale.ROOT, " %s %.1f", QUANTILE_LABELS[i], histogram.percentile(QUANTILES[i]) / 1e3);
+        }
+        out.println();
+    }
+
+    private static double rate(long part, long total) {
+        return total == 0 ? 0 : (double) part / total;
+    }
+}
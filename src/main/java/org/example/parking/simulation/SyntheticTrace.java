@@ -0,0 +1,121 @@
+package org.example.parking.simulation;
+
+import org.example.parking.model.Vehicle;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a trace on the fly: arrivals follow a Poisson process whose rate
+ * depends on the hour of the day, and every arrival schedules its own
+ * departure after a dwell time. Arrivals stop after the given duration, then
+ * the remaining departures are played, so the lot ends empty.
+ *
+ * Only the pending departures are kept in memory, whatever the length of the
+ * trace. The same seed always gives the same trace.
+ */
+public final class SyntheticTrace implements EventSource {
+
+    private static final long HOUR = 60 * 60 * 1_000L;
+
+    /**
+     * Arrival rate of each hour of the day, as a fraction of the peak rate:
+     * quiet nights, a morning rush and an afternoon one.
+     */
+    private static final double[] DAILY_SHAPE = {
+            0.05, 0.03, 0.02, 0.02, 0.03, 0.10, 0.35, 0.80, 1.00, 0.85, 0.70, 0.65,
+            0.70, 0.65, 0.60, 0.65, 0.80, 0.90, 0.70, 0.45, 0.30, 0.20, 0.12, 0.08};
+
+    private final SplittableRandom random;
+    private final long durationMillis;
+    private final double[] arrivalsPerHour;
+    private final VehicleMix mix;
+    private final DwellTimeDistribution dwellTime;
+    private final PriorityQueue<TraceEvent> departures =
+            new PriorityQueue<>(Comparator.comparingLong(TraceEvent::getTimeMillis));
+
+    private double nextArrival;
+    private long arrivals;
+
+    /**
+     * @param arrivalsPerHour expected arrivals during each hour of the day (24 values, see dailyProfile)
+     */
+    public SyntheticTrace(long seed, long durationMillis, double[] arrivalsPerHour,
+                          VehicleMix mix, DwellTimeDistribution dwellTime) {
+        if (arrivalsPerHour.length != 24) {
+            throw new IllegalArgumentException("Expected 24 hourly arrival rates, got " + arrivalsPerHour.length);
+        }
+        this.random = new SplittableRandom(seed);
+        this.durationMillis = durationMillis;
+        this.arrivalsPerHour = arrivalsPerHour.clone();
+        this.mix = mix;
+        this.dwellTime = dwellTime;
+        boolean anyArrival = Arrays.stream(arrivalsPerHour).anyMatch(rate -> rate > 0);
+        this.nextArrival = anyArrival ? drawArrivalAfter(0) : -1;
+    }
+
+    /**
+     * Hourly rates following a typical day, 'peakPerHour' arrivals at the busiest hour.
+     */
+    public static double[] dailyProfile(double peakPerHour) {
+        double[] rates = new double[24];
+        for (int hour = 0; hour < 24; hour++) {
+            rates[hour] = DAILY_SHAPE[hour] * peakPerHour;
+        }
+        return rates;
+    }
+
+    /**
+     * The same rate all day long.
+     */
+    public static double[] flatProfile(double perHour) {
+        double[] rates = new double[24];
+        Arrays.fill(rates, perHour);
+        return rates;
+    }
+
+    @Override
+    public TraceEvent next() {
+        TraceEvent departure = departures.peek();
+        // On a tie, the departure goes first and frees its spots
+        if (departure != null && (nextArrival < 0 || departure.getTimeMillis() <= (long) nextArrival)) {
+            return departures.poll();
+        }
+        if (nextArrival < 0) {
+            return null;
+        }
+        long time = (long) nextArrival;
+        Vehicle vehicle = mix.next("SIM-" + arrivals++, random);
+        departures.add(TraceEvent.departure(time + dwellTime.nextMillis(random), vehicle.getPlateNumber()));
+        nextArrival = drawArrivalAfter(nextArrival);
+        return TraceEvent.arrival(time, vehicle);
+    }
+
+    /**
+     * Number of arrivals generated so far.
+     */
+    public long getArrivalCount() {
+        return arrivals;
+    }
+
+    // Exponential gaps at the rate of the current hour; as the process is
+    // memoryless, a gap crossing the end of the hour restarts from there.
+    private double drawArrivalAfter(double time) {
+        double t = time;
+        while (t < durationMillis) {
+            long hour = (long) (t / HOUR);
+            double hourEnd = (hour + 1) * (double) HOUR;
+            double ratePerMilli = arrivalsPerHour[(int) (hour % 24)] / HOUR;
+            if (ratePerMilli > 0) {
+                double arrival = t - Math.log(1 - random.nextDouble()) / ratePerMilli;
+                if (arrival < hourEnd) {
+                    return arrival < durationMillis ? arrival : -1;
+                }
+            }
+            t = hourEnd;
+        }
+        return -1;
+    }
+}
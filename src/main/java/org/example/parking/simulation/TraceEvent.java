@@ -0,0 +1,52 @@
+package org.example.parking.simulation;
+
+import org.example.parking.model.Vehicle;
+
+/**
+ * One event of a load trace: a vehicle arriving at a gate (to be parked),
+ * or a plate leaving (to be unparked), at a simulated time in milliseconds.
+ */
+public final class TraceEvent {
+
+    private final long timeMillis;
+    private final Vehicle vehicle;
+    private final String plate;
+
+    private TraceEvent(long timeMillis, Vehicle vehicle, String plate) {
+        this.timeMillis = timeMillis;
+        this.vehicle = vehicle;
+        this.plate = plate;
+    }
+
+    public static TraceEvent arrival(long timeMillis, Vehicle vehicle) {
+        return new TraceEvent(timeMillis, vehicle, vehicle.getPlateNumber());
+    }
+
+    public static TraceEvent departure(long timeMillis, String plate) {
+        return new TraceEvent(timeMillis, null, plate);
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public boolean isArrival() {
+        return vehicle != null;
+    }
+
+    /**
+     * Returns the arriving vehicle, or null for a departure.
+     */
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    public String getPlate() {
+        return plate;
+    }
+
+    @Override
+    public String toString() {
+        return timeMillis + (isArrival() ? " arrival " + vehicle.getClass().getSimpleName() + " " : " departure ") + plate;
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.parking.simulation;
+
+import org.example.parking.model.Vehicle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Trace files, to replay recorded gate logs or a saved synthetic trace.
+ * One event per line, in time order:
+ *
+ *   time_ms,A,plate,type     an arrival (type: Moto, Car or Van)
+ *   time_ms,D,plate          a departure
+ *
+ * Blank lines and lines starting with '#' are ignored.
+ */
+public final class TraceFile {
+
+    private static final String HEADER = "# time_ms,event,plate,type";
+
+    private TraceFile() {
+    }
+
+    /**
+     * Opens a trace file for replay; events are read as they are consumed.
+     */
+    public static EventSource open(Path file) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        return new EventSource() {
+            private long lineNumber;
+            private long lastTime = Long.MIN_VALUE;
+
+            @Override
+            public TraceEvent next() throws IOException {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (!line.isBlank() && line.charAt(0) != '#') {
+                        TraceEvent event = parse(line);
+                        if (event.getTimeMillis() < lastTime) {
+                            throw new IOException(file + ":" + lineNumber + ": event out of time order");
+                        }
+                        lastTime = event.getTimeMillis();
+                        return event;
+                    }
+                }
+                return null;
+            }
+
+            private TraceEvent parse(String line) throws IOException {
+                String[] fields = line.split(",");
+                try {
+                    long time = Long.parseLong(fields[0].trim());
+                    String plate = fields[2].trim();
+                    return switch (fields[1].trim()) {
+                        case "A" -> TraceEvent.arrival(time, VehicleMix.vehicleOf(fields[3].trim(), plate));
+                        case "D" -> TraceEvent.departure(time, plate);
+                        default -> throw new IOException(file + ":" + lineNumber + ": unknown event " + fields[1]);
+                    };
+                } catch (RuntimeException e) {
+                    throw new IOException(file + ":" + lineNumber + ": invalid event: " + line, e);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    /**
+     * Writes every event of a source to a trace file, returning the number of events.
+     */
+    public static long write(EventSource source, Path file) throws IOException {
+        long count = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            TraceEvent event;
+            while ((event = source.next()) != null) {
+                writer.write(Long.toString(event.getTimeMillis()));
+                if (event.isArrival()) {
+                    Vehicle vehicle = event.getVehicle();
+                    writer.write(",A,");
+                    writer.write(event.getPlate());
+                    writer.write(',');
+                    writer.write(vehicle.getClass().getSimpleName());
+                } else {
+                    writer.write(",D,");
+                    writer.write(event.getPlate());
+                }
+                writer.newLine();
+                count++;
+            }
+        }
+        return count;
+    }
+}
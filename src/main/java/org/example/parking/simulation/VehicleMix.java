@@ -0,0 +1,107 @@
+package org.example.parking.simulation;
+
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.Van;
+import org.example.parking.model.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Share of each vehicle type among arrivals, e.g. "moto=15,car=55,van=30"
+ * (weights, they do not have to add up to 100).
+ */
+public final class VehicleMix {
+
+    public static final VehicleMix DEFAULT = parse("moto=15,car=55,van=30");
+
+    private final String[] types;
+    private final Function<String, Vehicle>[] factories;
+    // Running totals of the weights, to pick a type with one random draw
+    private final int[] cumulativeWeights;
+
+    private VehicleMix(List<String> types, List<Integer> weights) {
+        int size = types.size();
+        this.types = types.toArray(new String[0]);
+        @SuppressWarnings("unchecked")
+        Function<String, Vehicle>[] factories = new Function[size];
+        this.factories = factories;
+        this.cumulativeWeights = new int[size];
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            factories[i] = factoryOf(this.types[i]);
+            total += weights.get(i);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("A vehicle mix needs at least one positive weight");
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of type=weight, types being moto, car and van.
+     */
+    public static VehicleMix parse(String spec) {
+        List<String> types = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected type=weight in vehicle mix: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in vehicle mix: " + part);
+            }
+            types.add(pair[0].trim().toLowerCase(Locale.ROOT));
+            weights.add(weight);
+        }
+        return new VehicleMix(types, weights);
+    }
+
+    /**
+     * Draws a vehicle type according to the weights and creates a vehicle of that type.
+     */
+    public Vehicle next(String plate, SplittableRandom random) {
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (cumulativeWeights[i] <= draw) {
+            i++;
+        }
+        return factories[i].apply(plate);
+    }
+
+    /**
+     * Creates a vehicle from a type name as written in trace files (e.g., "Car").
+     */
+    static Vehicle vehicleOf(String type, String plate) {
+        return factoryOf(type.toLowerCase(Locale.ROOT)).apply(plate);
+    }
+
+    private static Function<String, Vehicle> factoryOf(String type) {
+        return switch (type) {
+            case "moto" -> Moto::new;
+            case "car" -> Car::new;
+            case "van" -> Van::new;
+            default -> throw new IllegalArgumentException("Unknown vehicle type: " + type);
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        int previous = 0;
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(types[i]).append('=').append(cumulativeWeights[i] - previous);
+            previous = cumulativeWeights[i];
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,172 @@
+package parking.domain;
+
+import org.example.parking.domain.Entrance;
+import org.example.parking.domain.LotLayout;
+import org.example.parking.domain.Parking;
+import org.example.parking.domain.ParkingLevel;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.SpotLocation;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Van;
+import org.example.parking.service.ParkingService;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Unit tests for lot layouts and the parkings built from them.
+ */
+public class LotLayoutTest {
+
+    // Per level 0 and 1: 4 moto, 17 car, 4 big spots; level 2: 2 big spots
+    private static final String LAYOUT = """
+            # Two identical levels, then a small one
+            level x2
+            zone East
+            row 4M
+            row 3C 2B 3C x2   # big spots in the middle
+            zone West
+            row 5C
+            level
+            row 2B
+            """;
+
+    /**
+     * testParseAndLocate:
+     * Spots are numbered level by level, row by row, and their location and
+     * zone are computed from their index.
+     */
+    @Test
+    public void testParseAndLocate() {
+        // When
+        LotLayout layout = LotLayout.parse(LAYOUT);
+
+        // Then: the counts
+        Assertions.assertEquals(3, layout.getLevelCount());
+        Assertions.assertEquals(8, layout.getSpotCount(SpotType.MOTO));
+        Assertions.assertEquals(34, layout.getSpotCount(SpotType.CAR));
+        Assertions.assertEquals(10, layout.getSpotCount(SpotType.BIG));
+        Assertions.assertEquals(52, layout.getTotalSpots());
+        Assertions.assertEquals(17, layout.getFirstSpotIndex(1, SpotType.CAR));
+        Assertions.assertEquals(0, layout.getSpotCount(2, SpotType.CAR));
+
+        // And: the locations and zones
+        Assertions.assertEquals(new SpotLocation(0, 1, 5), layout.getLocation(SpotType.CAR, 3));
+        Assertions.assertEquals(new SpotLocation(0, 2, 0), layout.getLocation(SpotType.CAR, 6));
+        Assertions.assertEquals(new SpotLocation(1, 1, 1), layout.getLocation(SpotType.CAR, 18));
+        Assertions.assertEquals(new SpotLocation(2, 0, 1), layout.getLocation(SpotType.BIG, 9));
+        Assertions.assertEquals("East", layout.getZone(SpotType.CAR, 0));
+        Assertions.assertEquals("West", layout.getZone(SpotType.CAR, 12));
+        Assertions.assertNull(layout.getZone(SpotType.BIG, 8));
+
+        // And: runs of indexes split by big spots or rows are not adjacent spots
+        Assertions.assertTrue(layout.isContiguous(SpotType.CAR, 0, 3));
+        Assertions.assertFalse(layout.isContiguous(SpotType.CAR, 1, 3));
+        Assertions.assertTrue(layout.isContiguous(SpotType.CAR, 3, 3));
+        Assertions.assertFalse(layout.isContiguous(SpotType.CAR, 5, 2));
+
+        // And: errors give the line
+        IllegalArgumentException error = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> LotLayout.parse("level\nrow 10C\nrow 5Q\n"));
+        Assertions.assertTrue(error.getMessage().startsWith("Layout line 3"), error.getMessage());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> LotLayout.parse("row 10C\n"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> LotLayout.parse("# nothing\n"));
+    }
+
+    /**
+     * testParkingFromLayout:
+     * A parking built from a layout has its levels and locations, and vans
+     * only get car spots standing next to each other.
+     */
+    @Test
+    public void testParkingFromLayout() {
+        // Given
+        Parking parking = Parking.fromLayout(LotLayout.parse(LAYOUT));
+        ParkingService service = new ParkingService();
+        Assertions.assertEquals(34, parking.getSpotCount(SpotType.CAR));
+        Assertions.assertEquals(new SpotLocation(0, 1, 5), parking.getLocation(SpotType.CAR, 3));
+
+        for (int i = 0; i < parking.getSpotCount(SpotType.BIG); i++) {
+            Assertions.assertTrue(parking.tryOccupy(SpotType.BIG, i));
+        }
+
+        // When: a car takes C-0, then two vans come (the big spots are all taken)
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-1")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-2")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Moto("MOTO")));
+
+        // Then: C-1 and C-2 are free but split by the big spots, so the first van gets C-3..C-5
+        Assertions.assertEquals("C-3", service.findSpotsByPlate("VAN-1").get(0).getId());
+        Assertions.assertEquals("C-6", service.findSpotsByPlate("VAN-2").get(0).getId());
+
+        // And: the levels see their own spots
+        ParkingLevel level = parking.getLevel(0);
+        Assertions.assertSame(level, parking.getLevel(0));
+        Assertions.assertEquals(17 - 7, level.getFreeSpotsCount(SpotType.CAR));
+        Assertions.assertEquals(3, level.getFreeSpotsCount(SpotType.MOTO));
+        Assertions.assertEquals(17, parking.getLevel(1).getFreeSpotsCount(SpotType.CAR));
+        Assertions.assertEquals("C-17", parking.getLevel(1).getSpots(SpotType.CAR).get(0).getId());
+        Assertions.assertEquals(2, parking.getLevel(2).getSpots(SpotType.BIG).size());
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> parking.getLevel(3));
+        Assertions.assertThrows(IllegalStateException.class, () -> new Parking(1, 1, 1).getLevel(0));
+
+        // And: entrances rank the spots by their layout location
+        Entrance top = parking.addEntrance("top", new SpotLocation(1, 3, 0));
+        Assertions.assertEquals(29, top.nearestFreeSpotIndex(SpotType.CAR));
+    }
+
+    /**
+     * testResumedRunSearchFollowsRows:
+     * A run search resumed from an index skips runs of free indexes that
+     * are split by big spots or rows, like a search from the start.
+     */
+    @Test
+    public void testResumedRunSearchFollowsRows() {
+        // Given
+        Parking parking = Parking.fromLayout(LotLayout.parse(LAYOUT));
+
+        // When / Then: car spots 1-2 and 3-5 are split by big spots, 4-5 and 6-8 by a row
+        Assertions.assertEquals(0, parking.findFreeRun(SpotType.CAR, 3, 0));
+        Assertions.assertEquals(3, parking.findFreeRun(SpotType.CAR, 3, 1));
+        Assertions.assertEquals(6, parking.findFreeRun(SpotType.CAR, 3, 4));
+        Assertions.assertEquals(5, parking.findFreeRun(SpotType.CAR, 1, 5));
+
+        // And: occupied spots are skipped too
+        Assertions.assertTrue(parking.tryOccupy(SpotType.CAR, 7));
+        Assertions.assertEquals(9, parking.findFreeRun(SpotType.CAR, 3, 4));
+        Assertions.assertEquals(-1, parking.findFreeRun(SpotType.CAR, 6, 0));
+    }
+
+    /**
+     * testLargeFacility:
+     * A facility of several million spots is built without a per-spot
+     * structure, and spots deep in it are located and used right away.
+     */
+    @Test
+    public void testLargeFacility() {
+        // Given: 50 levels of 100 moto spots and 200 rows of 200C 20B 200C
+        String text = "level x50\nzone Bikes\nrow 100M\nzone Main\nrow 200C 20B 200C x200\n";
+
+        // When
+        Parking parking = Parking.fromLayout(LotLayout.parse(text));
+
+        // Then
+        Assertions.assertEquals(50 * 200 * 400, parking.getSpotCount(SpotType.CAR));
+        Assertions.assertEquals(50 * 200 * 20, parking.getSpotCount(SpotType.BIG));
+        Assertions.assertEquals(50 * 100, parking.getFreeSpotsCount(SpotType.MOTO));
+        int last = parking.getSpotCount(SpotType.CAR) - 1;
+        Assertions.assertEquals(new SpotLocation(49, 200, 419), parking.getLocation(SpotType.CAR, last));
+        Assertions.assertEquals("Main", parking.getLayout().getZone(SpotType.CAR, last));
+
+        // And: a van on the last level gets 3 adjacent spots
+        ParkingLevel top = parking.getLevel(49);
+        int first = top.getFirstSpotIndex(SpotType.CAR);
+        for (int i = first; i < first + 199; i++) {
+            Assertions.assertTrue(parking.tryOccupy(SpotType.CAR, i));
+        }
+        Assertions.assertEquals(first + 199, parking.nextFreeSpotIndex(SpotType.CAR, first));
+        Assertions.assertFalse(parking.isContiguous(SpotType.CAR, first + 199, 3));
+        Assertions.assertEquals(400 * 200 - 199, top.getFreeSpotsCount(SpotType.CAR));
+    }
+}
@@ -0,0 +1,196 @@
+package parking.history;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.history.OccupancyHistory;
+import org.example.parking.history.OccupancySeries;
+import org.example.parking.history.Resolution;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.SpotType;
+import org.example.parking.service.ParkingService;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for the occupancy time series, driven by a fake clock.
+ */
+public class OccupancyHistoryTest {
+
+    private static final long SECOND = 1_000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    // Midnight, 1000 days after the epoch
+    private final AtomicLong clock = new AtomicLong(1_000 * DAY);
+
+    /**
+     * testDownsampling:
+     * Seconds are sampled on park / unpark and carried forward when nothing
+     * happens, then folded into minute and hour means and peaks.
+     */
+    @Test
+    public void testDownsampling() {
+        // Given
+        Parking parking = new Parking(5, 10, 2);
+        ParkingService service = new ParkingService();
+        OccupancyHistory history = OccupancyHistory.record(service, parking, clock::get,
+                Duration.ofMinutes(10), Duration.ofHours(2), Duration.ofDays(2));
+        long start = clock.get();
+
+        // When: 6 cars arrive in the first second, 3 leave 30 seconds later, a moto comes at 1m30s
+        for (int i = 0; i < 6; i++) {
+            service.parkVehicle(parking, new Car("CAR-" + i));
+        }
+        clock.addAndGet(30 * SECOND);
+        for (int i = 0; i < 3; i++) {
+            service.unparkByPlate("CAR-" + i);
+        }
+        clock.addAndGet(60 * SECOND);
+        service.parkVehicle(parking, new Moto("MOTO-1"));
+        clock.set(start + 3 * MINUTE);
+
+        // Then: one sample per second, the counts at the end of each
+        OccupancySeries perSecond = history.query(SpotType.CAR, start, start + 40 * SECOND, Resolution.SECOND);
+        Assertions.assertEquals(40, perSecond.size());
+        Assertions.assertEquals(start, perSecond.getStartMillis());
+        Assertions.assertEquals(6, perSecond.getMean(0));
+        Assertions.assertEquals(6, perSecond.getMean(29));
+        Assertions.assertEquals(3, perSecond.getMean(30));
+        OccupancySeries motoSeconds = history.query(SpotType.MOTO, start, start + 2 * MINUTE, Resolution.SECOND);
+        Assertions.assertEquals(0, motoSeconds.getMean(89));
+        Assertions.assertEquals(1, motoSeconds.getMean(90));
+
+        // When: two hours pass without any event
+        clock.set(start + 2 * HOUR + 5 * SECOND);
+        // Only the last minutes of seconds are kept (at least 10), and only closed seconds are returned
+        OccupancySeries recent = history.query(SpotType.CAR, start, clock.get(), Resolution.SECOND);
+        Assertions.assertTrue(recent.size() >= 600 && recent.size() < 7_200, "Kept " + recent.size());
+        Assertions.assertEquals(start + 2 * HOUR + 4 * SECOND, recent.getTimeMillis(recent.size() - 1));
+        Assertions.assertEquals(3, recent.getMean(0));
+
+        // And: the first minute averages 30s at 6 and 30s at 3 cars
+        OccupancySeries perMinute = history.query(SpotType.CAR, start, start + 2 * HOUR, Resolution.MINUTE);
+        Assertions.assertEquals(120, perMinute.size());
+        Assertions.assertEquals(5, perMinute.getMean(0)); // 4.5 rounded
+        Assertions.assertEquals(6, perMinute.getPeak(0));
+        Assertions.assertEquals(3, perMinute.getMean(1));
+        OccupancySeries motos = history.query(SpotType.MOTO, start, start + 2 * HOUR, Resolution.MINUTE);
+        Assertions.assertEquals(0, motos.getPeak(0));
+        Assertions.assertEquals(1, motos.getPeak(1));
+
+        // And: hours, picked automatically for older ranges
+        OccupancySeries perHour = history.query(SpotType.CAR, start, start + 2 * HOUR, Resolution.HOUR);
+        Assertions.assertEquals(2, perHour.size());
+        Assertions.assertEquals(3, perHour.getMean(0));
+        Assertions.assertEquals(6, perHour.getPeak(0));
+        Assertions.assertEquals(Resolution.MINUTE, history.query(SpotType.CAR, start, clock.get()).getResolution());
+        Assertions.assertEquals(Resolution.SECOND,
+                history.query(SpotType.CAR, clock.get() - MINUTE, clock.get()).getResolution());
+    }
+
+    /**
+     * testSecondsAfterWrap:
+     * Once the ring of seconds wrapped, every sample read back is the one
+     * recorded for its second, and at least the retention asked for is kept.
+     */
+    @Test
+    public void testSecondsAfterWrap() {
+        // Given: 100 seconds kept
+        Parking parking = new Parking(0, 400, 0);
+        ParkingService service = new ParkingService();
+        OccupancyHistory history = OccupancyHistory.record(service, parking, clock::get,
+                Duration.ofSeconds(100), Duration.ofHours(2), Duration.ofDays(2));
+        long start = clock.get();
+
+        // When: for 300 seconds, one car arrives every second, and one in three leaves right away
+        for (int i = 0; i < 300; i++) {
+            clock.set(start + i * SECOND);
+            service.parkVehicle(parking, new Car("CAR-" + i));
+            if (i % 3 == 0) {
+                service.unparkByPlate("CAR-" + i);
+            }
+        }
+        clock.set(start + 300 * SECOND);
+
+        // Then: the last seconds are kept, each with the cars parked at its end
+        OccupancySeries recent = history.query(SpotType.CAR, start, clock.get(), Resolution.SECOND);
+        Assertions.assertTrue(recent.size() >= 100, "Kept " + recent.size());
+        Assertions.assertEquals(start + 299 * SECOND, recent.getTimeMillis(recent.size() - 1));
+        for (int i = 0; i < recent.size(); i++) {
+            long second = (recent.getTimeMillis(i) - start) / SECOND;
+            Assertions.assertEquals(second + 1 - (second / 3 + 1), recent.getMean(i), "Second " + second);
+        }
+    }
+
+    /**
+     * testYearOfHistory:
+     * A year of daily traffic on a large lot fits in a few MB, the whole
+     * year is read back hour by hour in milliseconds, and jumps larger than
+     * a 16-bit delta are kept exactly.
+     */
+    @Test
+    public void testYearOfHistory() {
+        // Given: 50k car spots with the default retention
+        Parking parking = Parking.offHeap(0, 50_000, 0);
+        ParkingService service = new ParkingService();
+        OccupancyHistory history = OccupancyHistory.record(service, parking, clock::get,
+                OccupancyHistory.DEFAULT_SECONDS_KEPT, OccupancyHistory.DEFAULT_MINUTES_KEPT,
+                OccupancyHistory.DEFAULT_HOURS_KEPT);
+        long start = clock.get();
+
+        // When: every day, 200 cars come in during the morning and leave in the afternoon
+        int cars = 200;
+        for (int day = 0; day < 364; day++) {
+            long midnight = start + day * DAY;
+            for (int i = 0; i < cars; i++) {
+                clock.set(midnight + 6 * HOUR + i * (4 * HOUR / cars));
+                service.parkVehicle(parking, new Car("CAR-" + i));
+            }
+            for (int i = 0; i < cars; i++) {
+                clock.set(midnight + 14 * HOUR + i * (4 * HOUR / cars));
+                service.unparkByPlate("CAR-" + i);
+            }
+        }
+        // And: on the last day, 40k cars of an event arrive at noon and leave at 1 pm
+        List<Car> crowd = new ArrayList<>();
+        for (int i = 0; i < 40_000; i++) {
+            crowd.add(new Car("FAN-" + i));
+        }
+        clock.set(start + 364 * DAY + 12 * HOUR);
+        service.parkAll(parking, crowd);
+        clock.set(start + 364 * DAY + 13 * HOUR);
+        service.unparkAll(crowd);
+        clock.set(start + 365 * DAY);
+
+        // Then
+        Assertions.assertTrue(history.getFootprintBytes() < 3_000_000, "Footprint " + history.getFootprintBytes());
+        long begin = System.nanoTime();
+        OccupancySeries year = history.query(SpotType.CAR, start, start + 365 * DAY, Resolution.HOUR);
+        long queryMillis = (System.nanoTime() - begin) / 1_000_000;
+        Assertions.assertEquals(365 * 24, year.size());
+        Assertions.assertTrue(queryMillis < 500, "Query took " + queryMillis + " ms");
+        for (int day = 0; day < 364; day += 73) {
+            Assertions.assertEquals(0, year.getPeak(day * 24 + 5));
+            Assertions.assertEquals(cars, year.getPeak(day * 24 + 10));
+            Assertions.assertEquals(cars, year.getMean(day * 24 + 12));
+        }
+        Assertions.assertEquals(40_000, year.getMean(364 * 24 + 12));
+        Assertions.assertEquals(0, year.getPeak(364 * 24 + 13));
+
+        // And: the last month is still there minute by minute
+        OccupancySeries lastDay = history.query(SpotType.CAR, clock.get() - DAY, clock.get(), Resolution.MINUTE);
+        Assertions.assertEquals(24 * 60, lastDay.size());
+        Assertions.assertEquals(0, lastDay.getMean(12 * 60 - 1));
+        Assertions.assertEquals(40_000, lastDay.getMean(12 * 60));
+        Assertions.assertEquals(40_000, lastDay.getMean(13 * 60 - 1));
+        Assertions.assertEquals(0, lastDay.getMean(13 * 60));
+        Assertions.assertEquals(0, history.query(SpotType.CAR, start + 30 * DAY, start + 31 * DAY,
+                Resolution.MINUTE).size(), "Older minutes are dropped");
+    }
+}
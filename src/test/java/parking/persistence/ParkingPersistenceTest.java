@@ -0,0 +1,202 @@
+package parking.persistence;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.ParkingSpot;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Van;
+import org.example.parking.persistence.ParkingPersistence;
+import org.example.parking.service.ParkingService;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the journal/snapshot persistence of a Parking.
+ */
+public class ParkingPersistenceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * testRecoverFromJournal:
+     * After a restart, every vehicle is back on the very spots it held.
+     */
+    @Test
+    public void testRecoverFromJournal() throws IOException {
+        // Given
+        Path directory = folder.getRoot().toPath();
+        Parking parking = new Parking(1, 5, 0);
+        ParkingService service = new ParkingService();
+        try (ParkingPersistence persistence = ParkingPersistence.open(directory, parking, service)) {
+            service.parkVehicle(parking, new Moto("MOTO-1"));
+            service.parkVehicle(parking, new Car("CAR-1"));
+            service.parkVehicle(parking, new Van("VAN-1"));
+            service.parkVehicle(parking, new Moto("MOTO-2")); // falls back on a car spot
+            service.unparkByPlate("CAR-1");
+            persistence.sync();
+        }
+
+        // When
+        Parking restarted = new Parking(1, 5, 0);
+        ParkingService restartedService = new ParkingService();
+        try (ParkingPersistence persistence = ParkingPersistence.open(directory, restarted, restartedService)) {
+            // Then
+            Assertions.assertEquals(3, persistence.getRecoveredVehicles());
+            assertSameSpots(service, restartedService, "MOTO-1", "VAN-1", "MOTO-2");
+            Assertions.assertFalse(restartedService.isParked("CAR-1"));
+            Assertions.assertEquals(parking.getFreeSpotsCount(), restarted.getFreeSpotsCount());
+            Assertions.assertEquals(3, restartedService.getNumberOfSpotsOccupiedByVans());
+        }
+    }
+
+    /**
+     * testRecoverFromSnapshotAndJournal:
+     * Moves made after a snapshot are replayed on top of it,
+     * and the journal segments it covers are deleted.
+     */
+    @Test
+    public void testRecoverFromSnapshotAndJournal() throws IOException {
+        // Given
+        Path directory = folder.getRoot().toPath();
+        Parking parking = new Parking(0, 10, 2);
+        ParkingService service = new ParkingService();
+        try (ParkingPersistence persistence = ParkingPersistence.open(directory, parking, service)) {
+            for (int i = 0; i < 6; i++) {
+                service.parkVehicle(parking, new Car("CAR-" + i));
+            }
+            persistence.snapshot();
+            service.unparkByPlate("CAR-2");
+            service.parkVehicle(parking, new Car("CAR-6")); // takes the spot of CAR-2
+            service.parkVehicle(parking, new Van("VAN-1"));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // Only the segment written since the snapshot is left
+            Assertions.assertEquals(1, files.filter(file -> file.toString().endsWith(".log")).count());
+        }
+
+        // When
+        Parking restarted = new Parking(0, 10, 2);
+        ParkingService restartedService = new ParkingService();
+        try (ParkingPersistence persistence = ParkingPersistence.open(directory, restarted, restartedService)) {
+            // Then
+            Assertions.assertEquals(7, persistence.getRecoveredVehicles());
+            assertSameSpots(service, restartedService, "CAR-0", "CAR-1", "CAR-3", "CAR-6", "VAN-1");
+            Assertions.assertFalse(restartedService.isParked("CAR-2"));
+            Assertions.assertEquals(parking.getFreeSpotsCount(), restarted.getFreeSpotsCount());
+        }
+    }
+
+    /**
+     * testTornTailIsIgnored:
+     * A record half written when the process died is skipped on recovery.
+     */
+    @Test
+    public void testTornTailIsIgnored() throws IOException {
+        // Given
+        Path directory = folder.getRoot().toPath();
+        Parking parking = new Parking(0, 3, 0);
+        ParkingService service = new ParkingService();
+        try (ParkingPersistence persistence = ParkingPersistence.open(directory, parking, service)) {
+            service.parkVehicle(parking, new Car("CAR-1"));
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[]{0, 0, 0, 20, 1, 2}, StandardOpenOption.APPEND);
+
+        // When
+        Parking restarted = new Parking(0, 3, 0);
+        ParkingService restartedService = new ParkingService();
+        try (ParkingPersistence persistence = ParkingPersistence.open(directory, restarted, restartedService)) {
+            // Then
+            Assertions.assertEquals(1, persistence.getRecoveredVehicles());
+            Assertions.assertTrue(restartedService.isParked("CAR-1"));
+            Assertions.assertTrue(restartedService.parkVehicle(restarted, new Car("CAR-2")));
+        }
+    }
+
+    /**
+     * testRecoveredRunsCanBeParkedOn:
+     * Recovery rebuilds the free runs once at the end; a van then finds the
+     * only run of free car spots left in a large lot.
+     */
+    @Test
+    public void testRecoveredRunsCanBeParkedOn() throws IOException {
+        // Given
+        Path directory = folder.getRoot().toPath();
+        int spots = 100_000;
+        Parking parking = new Parking(0, spots, 0);
+        ParkingService service = new ParkingService();
+        try (ParkingPersistence persistence = ParkingPersistence.open(directory, parking, service)) {
+            for (int i = 0; i < spots; i++) {
+                service.parkVehicle(parking, new Car("CAR-" + i));
+            }
+            persistence.snapshot();
+            for (int i = 50_000; i < 50_003; i++) {
+                service.unparkByPlate("CAR-" + i);
+            }
+            persistence.sync();
+        }
+
+        // When
+        Parking restarted = new Parking(0, spots, 0);
+        ParkingService restartedService = new ParkingService();
+        try (ParkingPersistence persistence = ParkingPersistence.open(directory, restarted, restartedService)) {
+            // Then
+            Assertions.assertEquals(spots - 3, persistence.getRecoveredVehicles());
+            Assertions.assertEquals(50_000, restarted.findFreeRun(SpotType.CAR, 3));
+            Assertions.assertTrue(restartedService.parkVehicle(restarted, new Van("VAN-1")));
+            Assertions.assertEquals(0, restarted.getFreeSpotsCount());
+        }
+    }
+
+    /**
+     * testJournalFailureIsReported:
+     * An event that cannot be journaled does not undo the park or fail the
+     * gate; the failure is reported by the persistence instead.
+     */
+    @Test
+    public void testJournalFailureIsReported() throws IOException {
+        // Given: a persistence whose journal is closed, still listening to the service
+        Path directory = folder.getRoot().toPath();
+        Parking parking = new Parking(1, 5, 0);
+        ParkingService service = new ParkingService();
+        ParkingPersistence persistence = ParkingPersistence.open(directory, parking, service);
+        persistence.close();
+        service.addListener(persistence);
+
+        // When
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR-1")));
+        Assertions.assertTrue(service.unparkByPlate("CAR-1"));
+
+        // Then
+        Assertions.assertInstanceOf(IllegalStateException.class, persistence.getJournalFailure());
+        Assertions.assertEquals(2, persistence.getLostEventCount());
+        IOException error = Assertions.assertThrows(IOException.class, persistence::sync);
+        Assertions.assertSame(persistence.getJournalFailure(), error.getCause());
+        Assertions.assertTrue(parking.isEmpty());
+    }
+
+    private static void assertSameSpots(ParkingService expected, ParkingService actual, String... plates) {
+        for (String plate : plates) {
+            List<ParkingSpot> before = expected.findSpotsByPlate(plate);
+            List<ParkingSpot> after = actual.findSpotsByPlate(plate);
+            Assertions.assertEquals(before.size(), after.size(), plate);
+            for (int i = 0; i < before.size(); i++) {
+                Assertions.assertEquals(before.get(i).getId(), after.get(i).getId(), plate);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Van;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.AllocationPlan;
+import org.example.parking.service.AllocationStrategy;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingService;
+import org.example.parking.service.RelocationSuggestion;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the allocation strategies over a synthetic 24h arrival trace.
+ */
+public class AllocationStrategySimulationTest {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * testBestFitAcceptsMoreVehiclesOverADay:
+     * Several days of arrivals and departures are replayed with FIRST_FIT
+     * and BEST_FIT. Best fit keeps runs of car spots free for vans, so each
+     * day it takes in more vans, and never turns away more vehicles.
+     */
+    @Test
+    public void testBestFitAcceptsMoreVehiclesOverADay() {
+        for (long seed = 1; seed <= 5; seed++) {
+            // Given: one day of arrivals, busier during the day than at night
+            List<Arrival> trace = generateTrace(seed);
+
+            // When: it is replayed with each strategy
+            int[] firstFit = replay(trace, AllocationStrategy.FIRST_FIT);
+            int[] bestFit = replay(trace, AllocationStrategy.BEST_FIT);
+
+            // Then
+            Assertions.assertTrue(bestFit[0] >= firstFit[0], "Best fit accepted fewer vehicles on day " + seed);
+            Assertions.assertTrue(bestFit[1] > firstFit[1], "Best fit accepted no more vans on day " + seed);
+        }
+    }
+
+    /**
+     * testRelocationBackToPreferredClass:
+     * A car left on the big spot is sent back to a car spot once one is free.
+     */
+    @Test
+    public void testRelocationBackToPreferredClass() {
+        // Given: two car spots and a big spot, all taken by cars
+        Parking parking = new Parking(0, 2, 1);
+        ParkingService service = new ParkingService(ConcurrencyMode.STRIPED);
+        for (String plate : new String[]{"CAR-0", "CAR-1", "CAR-2"}) {
+            Assertions.assertTrue(service.parkVehicle(parking, new Car(plate)));
+        }
+        Assertions.assertEquals(SpotType.BIG, service.findSpotsByPlate("CAR-2").get(0).getType());
+
+        // When: a car spot frees up
+        service.unparkByPlate("CAR-0");
+        List<RelocationSuggestion> suggestions = service.suggestRelocations(parking, 10);
+
+        // Then: the car on the big spot is asked to move there
+        Assertions.assertEquals(1, suggestions.size(), suggestions.toString());
+        RelocationSuggestion suggestion = suggestions.get(0);
+        Assertions.assertEquals("CAR-2", suggestion.getPlate());
+        Assertions.assertEquals(RelocationSuggestion.Reason.BACK_TO_PREFERRED_CLASS, suggestion.getReason());
+        Assertions.assertEquals(SpotType.CAR, suggestion.getToType());
+        Assertions.assertEquals(0, suggestion.getToIndex());
+
+        // And: once it has moved, the big spot takes a van
+        Assertions.assertTrue(service.relocate("CAR-2", suggestion.getToType(), suggestion.getToIndex()));
+        Assertions.assertEquals(SpotType.CAR, service.findSpotsByPlate("CAR-2").get(0).getType());
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-1")));
+        Assertions.assertTrue(service.suggestRelocations(parking, 10).isEmpty());
+    }
+
+    /**
+     * testRelocationJoinsFreeRun:
+     * A moto splitting two free car spots is sent to an isolated hole,
+     * which leaves 3 free car spots in a row for a van.
+     */
+    @Test
+    public void testRelocationJoinsFreeRun() {
+        // Given: car spots [car, free, moto, free, car, car, car, free]
+        Parking parking = new Parking(0, 8, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.GLOBAL_LOCK);
+        String[] plates = {"CAR-0", "GONE-1", "MOTO-2", "GONE-3", "CAR-4", "CAR-5", "CAR-6", "GONE-7"};
+        for (String plate : plates) {
+            Vehicle vehicle = plate.startsWith("MOTO") ? new Moto(plate) : new Car(plate);
+            Assertions.assertTrue(service.parkVehicle(parking, vehicle));
+        }
+        for (String plate : new String[]{"GONE-1", "GONE-3", "GONE-7"}) {
+            service.unparkByPlate(plate);
+        }
+        Assertions.assertFalse(service.parkVehicle(parking, new Van("VAN-0")));
+
+        // When
+        List<RelocationSuggestion> suggestions = service.suggestRelocations(parking, 10);
+
+        // Then: the moto is asked to move to the last spot
+        Assertions.assertEquals(1, suggestions.size(), suggestions.toString());
+        RelocationSuggestion suggestion = suggestions.get(0);
+        Assertions.assertEquals("MOTO-2", suggestion.getPlate());
+        Assertions.assertEquals(RelocationSuggestion.Reason.JOIN_FREE_RUN, suggestion.getReason());
+        Assertions.assertEquals(SpotType.CAR, suggestion.getToType());
+        Assertions.assertEquals(7, suggestion.getToIndex());
+
+        // And: once it has moved, the van fits on spots 1..3
+        Assertions.assertTrue(service.relocate("MOTO-2", SpotType.CAR, 7));
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-0")));
+        Assertions.assertEquals(6, service.getParkedVehicleCount());
+
+        // And: a move to a spot that is no longer free is refused
+        Assertions.assertFalse(service.relocate("CAR-0", SpotType.CAR, 7));
+        Assertions.assertEquals(SpotType.CAR, service.findSpotsByPlate("CAR-0").get(0).getType());
+    }
+
+    /**
+     * testRelocationFollowsPlan:
+     * A vehicle is only moved to a class its plan takes, one spot at a time.
+     */
+    @Test
+    public void testRelocationFollowsPlan() {
+        // Given: a car and a moto; cars never park on moto spots, buses take 2 big spots
+        Parking parking = new Parking(2, 2, 2);
+        ParkingService service = new ParkingService(ConcurrencyMode.STRIPED);
+        service.getAllocationPlans().register(Car.class, AllocationPlan.of(SpotType.CAR).then(SpotType.BIG, 2));
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR-0")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Moto("MOTO-0")));
+
+        // When / Then: the car cannot go to a moto spot, nor to a single big spot
+        Assertions.assertFalse(service.relocate("CAR-0", SpotType.MOTO, 1));
+        Assertions.assertFalse(service.relocate("CAR-0", SpotType.BIG, 0));
+        Assertions.assertEquals(SpotType.CAR, service.findSpotsByPlate("CAR-0").get(0).getType());
+
+        // And: the moto can go anywhere its plan allows
+        Assertions.assertTrue(service.relocate("MOTO-0", SpotType.BIG, 1));
+        Assertions.assertEquals(SpotType.BIG, service.findSpotsByPlate("MOTO-0").get(0).getType());
+        Assertions.assertEquals(2, service.getParkedVehicleCount());
+    }
+
+    private static final class Arrival {
+        final int minute;
+        final Vehicle vehicle;
+        final int dwellMinutes;
+
+        Arrival(int minute, Vehicle vehicle, int dwellMinutes) {
+            this.minute = minute;
+            this.vehicle = vehicle;
+            this.dwellMinutes = dwellMinutes;
+        }
+    }
+
+    private static final class Departure implements Comparable<Departure> {
+        final int minute;
+        final Vehicle vehicle;
+
+        Departure(int minute, Vehicle vehicle) {
+            this.minute = minute;
+            this.vehicle = vehicle;
+        }
+
+        @Override
+        public int compareTo(Departure other) {
+            return Integer.compare(minute, other.minute);
+        }
+    }
+
+    // 15% motos, 55% cars, 30% vans; up to 3 arrivals a minute between 7:00 and 19:00, 1 at night
+    private static List<Arrival> generateTrace(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Arrival> trace = new ArrayList<>();
+        for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+            int hour = minute / 60;
+            int arrivals = hour >= 7 && hour < 19 ? random.nextInt(4) : random.nextInt(2);
+            for (int i = 0; i < arrivals; i++) {
+                String plate = "V-" + trace.size();
+                int roll = random.nextInt(100);
+                Vehicle vehicle = roll < 15 ? new Moto(plate) : roll < 70 ? new Car(plate) : new Van(plate);
+                // Exponential dwell time, 2h on average
+                int dwell = 1 + (int) (-120 * Math.log(1 - random.nextDouble()));
+                trace.add(new Arrival(minute, vehicle, dwell));
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Returns the accepted vehicles and the accepted vans.
+     */
+    private static int[] replay(List<Arrival> trace, AllocationStrategy strategy) {
+        Parking parking = new Parking(20, 240, 10);
+        ParkingService service = new ParkingService();
+        service.setAllocationStrategy(strategy);
+        PriorityQueue<Departure> departures = new PriorityQueue<>();
+        int accepted = 0;
+        int vans = 0;
+        for (Arrival arrival : trace) {
+            while (!departures.isEmpty() && departures.peek().minute <= arrival.minute) {
+                service.unparkVehicle(departures.poll().vehicle);
+            }
+            if (service.parkVehicle(parking, arrival.vehicle)) {
+                accepted++;
+                if (arrival.vehicle instanceof Van) {
+                    vans++;
+                }
+                departures.add(new Departure(arrival.minute + arrival.dwellMinutes, arrival.vehicle));
+            }
+        }
+        return new int[]{accepted, vans};
+    }
+}
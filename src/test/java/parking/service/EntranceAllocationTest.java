@@ -0,0 +1,219 @@
+package parking.service;
+
+import org.example.parking.domain.Entrance;
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.SpotLocation;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Van;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingService;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit tests for spot locations and entrance-aware allocation.
+ */
+public class EntranceAllocationTest {
+
+    /**
+     * testClosestSpotFromEachEntrance:
+     * Each entrance gets the free spots closest to it, vans included, and a
+     * spot freed near an entrance is handed out again first.
+     */
+    @Test
+    public void testClosestSpotFromEachEntrance() {
+        // Given: 40 car spots in rows of 10, two rows per level, an entrance at each end
+        Parking parking = new Parking(0, 40, 0);
+        parking.layOutInRows(10, 2);
+        Entrance north = parking.addEntrance("north", new SpotLocation(0, 0, 0));
+        Entrance south = parking.addEntrance("south", new SpotLocation(1, 1, 9));
+        ParkingService service = new ParkingService();
+        Assertions.assertEquals(new SpotLocation(1, 1, 9), parking.getLocation(SpotType.CAR, 39));
+        Assertions.assertEquals(Entrance.DEFAULT_LEVEL_COST + Entrance.DEFAULT_ROW_COST + 9,
+                north.distanceTo(SpotType.CAR, 39));
+
+        // When: cars come in through both entrances
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("N-1"), north));
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("S-1"), south));
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("S-2"), south));
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("ANY"), null));
+
+        // Then: each one is sent to the closest free spot of its entrance
+        Assertions.assertEquals("C-0", service.findSpotsByPlate("N-1").get(0).getId());
+        Assertions.assertEquals("C-39", service.findSpotsByPlate("S-1").get(0).getId());
+        Assertions.assertEquals("C-38", service.findSpotsByPlate("S-2").get(0).getId());
+        Assertions.assertEquals("C-1", service.findSpotsByPlate("ANY").get(0).getId());
+
+        // When: the closest spot is freed, and a van needing 3 adjacent spots arrives
+        service.unparkByPlate("S-1");
+        Assertions.assertEquals(39, south.nearestFreeSpotIndex(SpotType.CAR));
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("S-3"), south));
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN"), south));
+
+        // Then: the car gets the freed spot, the van the closest run of 3 (37 alone is too short)
+        Assertions.assertEquals("C-39", service.findSpotsByPlate("S-3").get(0).getId());
+        Assertions.assertEquals("C-35", service.findSpotsByPlate("VAN").get(0).getId());
+        Assertions.assertEquals(34, south.nearestFreeSpotIndex(SpotType.CAR));
+
+        // And: the layout is fixed once entrances exist, and entrances belong to one parking
+        Assertions.assertThrows(IllegalStateException.class, () -> parking.layOutInRows(20, 2));
+        Parking other = new Parking(0, 40, 0);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> service.parkVehicle(other, new Car("LOST"), north));
+    }
+
+    /**
+     * testOffHeapParkingAndReservations:
+     * Off-heap spots and reserved spots are kept in the entrance index too.
+     */
+    @Test
+    public void testOffHeapParkingAndReservations() {
+        // Given: 1000 car spots in a single row (default layout), an entrance facing spot 500
+        Parking parking = Parking.offHeap(0, 1_000, 0);
+        Entrance middle = parking.addEntrance("middle", new SpotLocation(0, SpotType.CAR.ordinal(), 500));
+        ParkingService service = new ParkingService(ConcurrencyMode.LOCK_FREE);
+
+        // When
+        Assertions.assertTrue(service.reserve(parking, new Car("BOOKED"), Duration.ofMinutes(10)));
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR-" + i), middle));
+        }
+
+        // Then: the closest spots first, the lowest index among equals; the reserved spot 0 is taken
+        Assertions.assertEquals("C-500", service.findSpotsByPlate("CAR-0").get(0).getId());
+        Assertions.assertEquals("C-499", service.findSpotsByPlate("CAR-1").get(0).getId());
+        Assertions.assertEquals("C-501", service.findSpotsByPlate("CAR-2").get(0).getId());
+        Assertions.assertEquals(498, middle.nearestFreeSpotIndex(SpotType.CAR));
+
+        // When: the reservation is cancelled and the middle spot freed
+        Assertions.assertTrue(service.cancelReservation("BOOKED"));
+        service.unparkByPlate("CAR-0");
+
+        // Then
+        Assertions.assertEquals(500, middle.nearestFreeSpotIndex(SpotType.CAR));
+        int free = 0;
+        for (int rank = middle.nextFreeRank(SpotType.CAR, 0); rank >= 0;
+             rank = middle.nextFreeRank(SpotType.CAR, rank + 1)) {
+            free++;
+        }
+        Assertions.assertEquals(parking.getFreeSpotsCount(SpotType.CAR), free);
+    }
+
+    /**
+     * testConcurrentGates:
+     * After lock-free gates park and leave through several entrances, each
+     * entrance index still holds exactly the free spots, closest first.
+     */
+    @Test
+    public void testConcurrentGates() throws InterruptedException {
+        // Given: 3 levels of 4 rows of 50 car spots, one entrance per level
+        Parking parking = new Parking(0, 600, 0);
+        parking.layOutInRows(50, 4);
+        Entrance[] entrances = new Entrance[3];
+        for (int level = 0; level < entrances.length; level++) {
+            entrances[level] = parking.addEntrance("L" + level, new SpotLocation(level, 0, 25));
+        }
+        ParkingService service = new ParkingService(ConcurrencyMode.LOCK_FREE);
+
+        // When
+        Thread[] gates = new Thread[4];
+        for (int g = 0; g < gates.length; g++) {
+            int gate = g;
+            gates[g] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    String plate = "G" + gate + "-" + (i % 150);
+                    if (!service.unparkByPlate(plate)) {
+                        Entrance entrance = entrances[(gate + i) % entrances.length];
+                        service.parkVehicle(parking, i % 7 == 0 ? new Van(plate) : new Car(plate), entrance);
+                    }
+                }
+            });
+            gates[g].start();
+        }
+        for (Thread gate : gates) {
+            gate.join();
+        }
+
+        // Then: the nearest free spot of each entrance is the one a full scan finds
+        for (Entrance entrance : entrances) {
+            int expected = -1;
+            long best = Long.MAX_VALUE;
+            int free = 0;
+            for (int i = 0; i < 600; i++) {
+                if (parking.getCarSpots().get(i).isFree()) {
+                    free++;
+                    if (entrance.distanceTo(SpotType.CAR, i) < best) {
+                        best = entrance.distanceTo(SpotType.CAR, i);
+                        expected = i;
+                    }
+                }
+            }
+            Assertions.assertEquals(expected, entrance.nearestFreeSpotIndex(SpotType.CAR), entrance.getName());
+            int listed = 0;
+            for (int rank = entrance.nextFreeRank(SpotType.CAR, 0); rank >= 0;
+                 rank = entrance.nextFreeRank(SpotType.CAR, rank + 1)) {
+                Assertions.assertTrue(parking.getCarSpots().get(entrance.spotAt(SpotType.CAR, rank)).isFree());
+                listed++;
+            }
+            Assertions.assertEquals(free, listed, entrance.getName());
+        }
+    }
+
+    /**
+     * testEntranceAddedWhileGatesRun:
+     * An entrance added while gates park and leave may miss spots freed
+     * meanwhile in its ranking, yet it still fills the whole parking.
+     */
+    @Test
+    public void testEntranceAddedWhileGatesRun() throws InterruptedException {
+        // Given: gates churning through 200 car spots
+        Parking parking = new Parking(0, 200, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.LOCK_FREE);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] gates = new Thread[4];
+        for (int g = 0; g < gates.length; g++) {
+            int gate = g;
+            gates[g] = new Thread(() -> {
+                for (int i = 0; running.get(); i++) {
+                    String plate = "G" + gate + "-" + (i % 60);
+                    if (!service.unparkByPlate(plate)) {
+                        service.parkVehicle(parking, new Car(plate));
+                    }
+                }
+            });
+            gates[g].start();
+        }
+
+        // When: entrances are added meanwhile, then everybody leaves
+        List<Entrance> entrances = new ArrayList<>();
+        for (int e = 0; e < 20; e++) {
+            entrances.add(parking.addEntrance("E" + e, new SpotLocation(0, SpotType.CAR.ordinal(), e * 10)));
+        }
+        running.set(false);
+        for (Thread gate : gates) {
+            gate.join();
+        }
+        for (int g = 0; g < gates.length; g++) {
+            for (int i = 0; i < 60; i++) {
+                service.unparkByPlate("G" + g + "-" + i);
+            }
+        }
+
+        // Then: each entrance still hands out every spot
+        for (Entrance entrance : entrances) {
+            for (int i = 0; i < 200; i++) {
+                Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR-" + i), entrance), entrance.getName());
+            }
+            Assertions.assertFalse(service.parkVehicle(parking, new Car("CAR-200"), entrance));
+            for (int i = 0; i < 200; i++) {
+                service.unparkByPlate("CAR-" + i);
+            }
+        }
+    }
+}
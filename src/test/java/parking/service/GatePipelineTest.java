@@ -0,0 +1,240 @@
+package parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.Van;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.BatchResult;
+import org.example.parking.service.GatePipeline;
+import org.example.parking.service.ParkingService;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Unit tests for the asynchronous GatePipeline.
+ */
+public class GatePipelineTest {
+
+    /**
+     * testRequestsAppliedInOrder:
+     * Requests of one gate are applied in the order they were submitted,
+     * even when parks and unparks of the same plate are interleaved.
+     */
+    @Test
+    public void testRequestsAppliedInOrder() {
+        // Given
+        Parking parking = new Parking(0, 1, 0);
+        ParkingService service = new ParkingService();
+        Vehicle first = new Car("CAR-1");
+        Vehicle second = new Car("CAR-2");
+
+        try (GatePipeline pipeline = new GatePipeline(service)) {
+            // When: CAR-1 parks, CAR-2 finds the lot full, CAR-1 leaves, CAR-2 parks
+            CompletableFuture<Boolean> park1 = pipeline.parkAsync(parking, first);
+            CompletableFuture<Boolean> park2 = pipeline.parkAsync(parking, second);
+            CompletableFuture<Boolean> unpark1 = pipeline.unparkAsync(first);
+            CompletableFuture<Boolean> retry2 = pipeline.parkAsync(parking, second);
+
+            // Then
+            Assertions.assertTrue(park1.join());
+            Assertions.assertFalse(park2.join());
+            Assertions.assertTrue(unpark1.join());
+            Assertions.assertTrue(retry2.join());
+            Assertions.assertTrue(service.isParked("CAR-2"));
+        }
+    }
+
+    /**
+     * testManyVirtualThreadGates:
+     * Thousands of gate sessions on virtual threads share one pipeline;
+     * every vehicle that got in also gets out, and the lot ends up empty.
+     */
+    @Test
+    public void testManyVirtualThreadGates() throws Exception {
+        // Given
+        Parking parking = new Parking(20, 60, 10);
+        ParkingService service = new ParkingService();
+        int gates = 2_000;
+
+        try (GatePipeline pipeline = new GatePipeline(service);
+             ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Boolean>> departures = new ArrayList<>();
+            for (int g = 0; g < gates; g++) {
+                Vehicle vehicle = switch (g % 3) {
+                    case 0 -> new Moto("MOTO-" + g);
+                    case 1 -> new Car("CAR-" + g);
+                    default -> new Van("VAN-" + g);
+                };
+                departures.add(CompletableFuture.supplyAsync(() -> {
+                    boolean parked = pipeline.parkAsync(parking, vehicle).join();
+                    return parked && pipeline.unparkAsync(vehicle).join();
+                }, sessions));
+            }
+
+            // When
+            int visits = 0;
+            for (CompletableFuture<Boolean> departure : departures) {
+                visits += departure.get() ? 1 : 0;
+            }
+
+            // Then
+            Assertions.assertTrue(visits > 0);
+            Assertions.assertTrue(parking.isEmpty());
+            Assertions.assertEquals(0, service.getParkedVehicleCount());
+        }
+    }
+
+    /**
+     * testFullQueueRejectsRequests:
+     * When the writer falls behind and the queue is full, new requests fail
+     * right away instead of waiting; accepted ones are still applied.
+     */
+    @Test
+    public void testFullQueueRejectsRequests() throws Exception {
+        // Given: a service whose first batch blocks until released
+        CountDownLatch inFirstBatch = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ParkingService service = new ParkingService() {
+            @Override
+            public BatchResult parkAll(Parking parking, Collection<? extends Vehicle> vehicles) {
+                inFirstBatch.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.parkAll(parking, vehicles);
+            }
+        };
+        Parking parking = new Parking(0, 10, 0);
+        GatePipeline pipeline = new GatePipeline(service, 4, 16, Runnable::run);
+        CompletableFuture<Boolean> blocked = pipeline.parkAsync(parking, new Car("CAR-0"));
+        inFirstBatch.await();
+
+        // When: 4 requests fill the queue, the 5th does not fit
+        List<CompletableFuture<Boolean>> accepted = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            accepted.add(pipeline.parkAsync(parking, new Car("CAR-" + i)));
+        }
+        CompletableFuture<Boolean> rejected = pipeline.parkAsync(parking, new Car("CAR-5"));
+
+        // Then
+        CompletionException error = Assertions.assertThrows(CompletionException.class, rejected::join);
+        Assertions.assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        release.countDown();
+        pipeline.close();
+        Assertions.assertTrue(blocked.join());
+        for (CompletableFuture<Boolean> future : accepted) {
+            Assertions.assertTrue(future.join());
+        }
+        Assertions.assertEquals(5, parking.getFreeSpotsCount());
+        Assertions.assertThrows(CompletionException.class, () -> pipeline.parkAsync(parking, new Car("LATE")).join());
+    }
+
+    /**
+     * testInvalidRequestFailsAlone:
+     * A request without a plate number fails on its own; the requests it
+     * would have been batched with are applied as usual.
+     */
+    @Test
+    public void testInvalidRequestFailsAlone() {
+        // Given
+        Parking parking = new Parking(0, 100, 0);
+        ParkingService service = new ParkingService();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        try (GatePipeline pipeline = new GatePipeline(service)) {
+            // When: 50 parks, one of them without a plate number
+            for (int i = 0; i < 50; i++) {
+                futures.add(pipeline.parkAsync(parking, new Car(i == 25 ? null : "CAR-" + i)));
+            }
+
+            // Then
+            CompletionException error = Assertions.assertThrows(CompletionException.class, futures.get(25)::join);
+            Assertions.assertInstanceOf(IllegalArgumentException.class, error.getCause());
+            for (int i = 0; i < 50; i++) {
+                if (i != 25) {
+                    Assertions.assertTrue(futures.get(i).join());
+                }
+            }
+            Assertions.assertEquals(51, parking.getFreeSpotsCount());
+            Assertions.assertThrows(CompletionException.class, () -> pipeline.unparkAsync(null).join());
+        }
+    }
+
+    /**
+     * testFuturesCompleteInOrder:
+     * Futures complete in the order their requests were applied, even when
+     * the executor runs completion tasks concurrently and late.
+     */
+    @Test
+    public void testFuturesCompleteInOrder() {
+        // Given: one request per batch, completion tasks delayed at random
+        Parking parking = new Parking(0, 200, 0);
+        ParkingService service = new ParkingService();
+        Executor lateExecutor = task -> Thread.ofVirtual().start(() -> {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(1_000_000));
+            task.run();
+        });
+        List<Integer> completed = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        // When
+        try (GatePipeline pipeline = new GatePipeline(service, 256, 1, lateExecutor)) {
+            for (int i = 0; i < 200; i++) {
+                int order = i;
+                futures.add(pipeline.parkAsync(parking, new Car("CAR-" + i))
+                        .whenComplete((parked, error) -> completed.add(order)));
+            }
+            futures.forEach(CompletableFuture::join);
+        }
+
+        // Then
+        for (int i = 0; i < 200; i++) {
+            Assertions.assertEquals(i, completed.get(i));
+        }
+    }
+
+    /**
+     * testRejectingExecutorFailsFutures:
+     * When the completion executor rejects the work, the futures fail with
+     * its exception instead of hanging, and the writer keeps applying requests.
+     */
+    @Test
+    public void testRejectingExecutorFailsFutures() {
+        // Given
+        Parking parking = new Parking(0, 2, 0);
+        ParkingService service = new ParkingService();
+        Executor rejecting = task -> {
+            throw new RejectedExecutionException("Executor shut down");
+        };
+
+        try (GatePipeline pipeline = new GatePipeline(service, 16, 16, rejecting)) {
+            // When
+            CompletableFuture<Boolean> first = pipeline.parkAsync(parking, new Car("CAR-1"));
+            CompletionException error = Assertions.assertThrows(CompletionException.class, first::join);
+            CompletableFuture<Boolean> second = pipeline.parkAsync(parking, new Car("CAR-2"));
+
+            // Then
+            Assertions.assertInstanceOf(RejectedExecutionException.class, error.getCause());
+            Assertions.assertThrows(CompletionException.class, second::join);
+            Assertions.assertTrue(service.isParked("CAR-1"));
+            Assertions.assertTrue(service.isParked("CAR-2"));
+        }
+    }
+}
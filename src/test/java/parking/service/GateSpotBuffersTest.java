@@ -0,0 +1,342 @@
+package parking.service;
+
+import org.example.parking.domain.OccupancySnapshot;
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Van;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.AllocationStrategy;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.GateSpotBuffers;
+import org.example.parking.service.OccupancyEvent;
+import org.example.parking.service.OccupancyFeed;
+import org.example.parking.service.ParkingService;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the per-gate buffers of pre-claimed spots.
+ */
+public class GateSpotBuffersTest {
+
+    /**
+     * testGatesParkFromTheirOwnBuffers:
+     * Each gate holds a batch of spots on its first park, then parks on
+     * them; the buffered spots still count as free until they are used.
+     */
+    @Test
+    public void testGatesParkFromTheirOwnBuffers() throws InterruptedException {
+        // Given
+        Parking parking = new Parking(0, 100, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.STRIPED);
+        GateSpotBuffers buffers = service.enableGateBuffers(8);
+        Assertions.assertSame(buffers, service.enableGateBuffers(16));
+
+        // When: this gate parks two cars, another gate one
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("A-1")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("A-2")));
+        runGates(1, 1, (gate, i) -> Assertions.assertTrue(service.parkVehicle(parking, new Car("B-1"))));
+
+        // Then: each gate parks on its own batch
+        Assertions.assertEquals("C-0", service.findSpotsByPlate("A-1").get(0).getId());
+        Assertions.assertEquals("C-1", service.findSpotsByPlate("A-2").get(0).getId());
+        Assertions.assertEquals("C-8", service.findSpotsByPlate("B-1").get(0).getId());
+        Assertions.assertEquals(2, buffers.getRefillCount());
+        Assertions.assertEquals(6 + 7, buffers.getBufferedSpotCount());
+        OccupancySnapshot counts = parking.getOccupancySnapshot();
+        Assertions.assertEquals(3, counts.getOccupied(SpotType.CAR));
+        Assertions.assertEquals(97, counts.getFree(SpotType.CAR));
+        Assertions.assertEquals(13, counts.getHeld(SpotType.CAR));
+        Assertions.assertEquals(0, counts.getReserved(SpotType.CAR));
+
+        // And: a van needing 3 adjacent car spots is not buffered, yet its try for a big spot
+        // gives back the spots of the other gate, which ended; the rest go back on demand
+        Assertions.assertTrue(service.parkVehicle(new Parking(0, 3, 0), new Van("VAN")));
+        Assertions.assertEquals(7, buffers.getReturnedSpotCount());
+        Assertions.assertEquals(6, buffers.returnAll(parking));
+        Assertions.assertEquals(97, parking.getFreeSpotsCount(SpotType.CAR));
+        Assertions.assertEquals(0, parking.getHeldSpotsCount(SpotType.CAR));
+        Assertions.assertEquals(0, buffers.getBufferedSpotCount());
+    }
+
+    /**
+     * testBufferedSpotsShowAsFree:
+     * The occupancy feed counts the spots held by gate buffers as free.
+     */
+    @Test
+    public void testBufferedSpotsShowAsFree() throws InterruptedException {
+        // Given
+        Parking parking = new Parking(0, 100, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.STRIPED);
+        service.enableGateBuffers(8);
+        OccupancyFeed.Subscription subscription = service.openOccupancyFeed(parking, 16).subscribe();
+
+        // When: a car parks from a fresh buffer of 8 spots
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("A-1")));
+
+        // Then: only the car's spot is taken
+        Assertions.assertEquals(OccupancyEvent.Kind.COUNTS, subscription.poll(1, TimeUnit.SECONDS).getKind());
+        OccupancyEvent event = subscription.poll(1, TimeUnit.SECONDS);
+        Assertions.assertEquals(OccupancyEvent.Kind.PARKED, event.getKind());
+        Assertions.assertEquals(99, event.getFreeSpots());
+        Assertions.assertFalse(parking.isFull());
+    }
+
+    /**
+     * testClassRunningLowReturnsBuffers:
+     * A gate that cannot refill because the class runs low gives back the
+     * spots other gates still buffer, without waiting for a failed park.
+     */
+    @Test
+    public void testClassRunningLowReturnsBuffers() throws InterruptedException {
+        // Given: 20 car spots, this gate buffers 7 of them
+        Parking parking = new Parking(0, 20, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.STRIPED);
+        GateSpotBuffers buffers = service.enableGateBuffers(8);
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("A-1")));
+        Assertions.assertEquals(7, buffers.getBufferedSpotCount());
+
+        // When: a second gate finds 12 unheld spots, less than 8 for each of 2 buffers
+        CountDownLatch parked = new CountDownLatch(1);
+        CountDownLatch leave = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            service.parkVehicle(parking, new Car("B-1"));
+            parked.countDown();
+            try {
+                leave.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        other.start();
+        try {
+            Assertions.assertTrue(parked.await(10, TimeUnit.SECONDS));
+
+            // Then: this gate's spots went back, and the second gate parked on the first of them
+            Assertions.assertEquals(7, buffers.getReturnedSpotCount());
+            Assertions.assertEquals(0, buffers.getBufferedSpotCount());
+            Assertions.assertEquals(0, parking.getHeldSpotsCount(SpotType.CAR));
+            Assertions.assertEquals("C-1", service.findSpotsByPlate("B-1").get(0).getId());
+            Assertions.assertEquals(1, buffers.getRefillCount());
+        } finally {
+            leave.countDown();
+            other.join();
+        }
+    }
+
+    /**
+     * testEndedGatesArePruned:
+     * The spots buffered by a gate thread that ended go back to the shared
+     * pool on the next refill, and its buffer no longer counts.
+     */
+    @Test
+    public void testEndedGatesArePruned() throws InterruptedException {
+        // Given: a gate thread that parked one car and ended
+        Parking parking = new Parking(0, 20, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.LOCK_FREE);
+        GateSpotBuffers buffers = service.enableGateBuffers(8);
+        runGates(1, 1, (gate, i) -> Assertions.assertTrue(service.parkVehicle(parking, new Car("B-1"))));
+        Assertions.assertEquals(7, parking.getHeldSpotsCount(SpotType.CAR));
+
+        // When: this gate parks
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("A-1")));
+
+        // Then: the ended gate's spots went back, and this gate could refill from them
+        Assertions.assertEquals(7, buffers.getReturnedSpotCount());
+        Assertions.assertEquals(2, buffers.getRefillCount());
+        Assertions.assertEquals("C-1", service.findSpotsByPlate("A-1").get(0).getId());
+        Assertions.assertEquals(7, buffers.getBufferedSpotCount());
+        Assertions.assertEquals(18, parking.getFreeSpotsCount(SpotType.CAR));
+    }
+
+    /**
+     * testVehicleWithoutSpotClass:
+     * A vehicle that accepts no spot class is refused, as without buffers.
+     */
+    @Test
+    public void testVehicleWithoutSpotClass() {
+        // Given
+        Parking parking = new Parking(10, 10, 10);
+        ParkingService service = new ParkingService(ConcurrencyMode.STRIPED);
+        GateSpotBuffers buffers = service.enableGateBuffers(4);
+
+        // When / Then
+        Assertions.assertFalse(service.parkVehicle(parking, new Trailer("TRAILER")));
+        Assertions.assertEquals(0, buffers.getRefillCount());
+        Assertions.assertEquals(30, parking.getFreeSpotsCount());
+    }
+
+    /**
+     * testBestFitSkipsBuffers:
+     * Under BEST_FIT, classes some vehicle needs a run of are not buffered,
+     * so cars fill the holes left by departures; moto spots still are.
+     */
+    @Test
+    public void testBestFitSkipsBuffers() {
+        // Given: free car spots 0-1, a hole at 3, and 5-9
+        Parking parking = new Parking(10, 10, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.STRIPED);
+        service.setAllocationStrategy(AllocationStrategy.BEST_FIT);
+        GateSpotBuffers buffers = service.enableGateBuffers(4);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(parking.tryOccupy(SpotType.CAR, i));
+        }
+        parking.free(SpotType.CAR, 0);
+        parking.free(SpotType.CAR, 1);
+        parking.free(SpotType.CAR, 3);
+
+        // When: a van shows that car spots are needed in runs, then a car and a moto park
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-1")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR-1")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Moto("MOTO-1")));
+
+        // Then: the van and the car took the best fits, the moto came from a buffer
+        Assertions.assertEquals("C-5", service.findSpotsByPlate("VAN-1").get(0).getId());
+        Assertions.assertEquals("C-3", service.findSpotsByPlate("CAR-1").get(0).getId());
+        Assertions.assertEquals(0, parking.getHeldSpotsCount(SpotType.CAR));
+        Assertions.assertEquals(1, buffers.getRefillCount());
+        Assertions.assertEquals(3, parking.getHeldSpotsCount(SpotType.MOTO));
+    }
+
+    /**
+     * testNearlyFullLotFillsUp:
+     * Buffers stop refilling when a class runs low, and the spots still held
+     * by gates that ended are given back, so every spot can be used.
+     */
+    @Test
+    public void testNearlyFullLotFillsUp() throws InterruptedException {
+        // Given: 20 car spots, buffers of 8
+        Parking parking = new Parking(0, 20, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.LOCK_FREE);
+        GateSpotBuffers buffers = service.enableGateBuffers(8);
+
+        // When: 4 gates park 5 cars each, one after the other
+        for (int g = 0; g < 4; g++) {
+            String prefix = "G" + g + "-";
+            runGates(1, 5, (gate, i) -> Assertions.assertTrue(service.parkVehicle(parking, new Car(prefix + i))));
+        }
+
+        // Then: each gate took the 3 leftovers of the one before, and the last one found too few to refill
+        Assertions.assertEquals(3, buffers.getRefillCount());
+        Assertions.assertEquals(9, buffers.getReturnedSpotCount());
+        Assertions.assertTrue(parking.isFull());
+        Assertions.assertEquals(0, parking.getReservedSpotsCount(SpotType.CAR));
+        Assertions.assertEquals(20, service.getParkedVehicleCount());
+        Assertions.assertFalse(service.parkVehicle(parking, new Car("ONE-TOO-MANY")));
+    }
+
+    /**
+     * testConcurrentGates:
+     * In every concurrency mode, gates parking and leaving through their
+     * buffers never use a spot twice, and no spot is lost.
+     */
+    @Test
+    public void testConcurrentGates() throws InterruptedException {
+        for (ConcurrencyMode mode : ConcurrencyMode.values()) {
+            // Given: a small lot, so classes keep running low
+            Parking parking = new Parking(30, 60, 10);
+            ParkingService service = new ParkingService(mode);
+            GateSpotBuffers buffers = service.enableGateBuffers(4);
+            AtomicInteger rejected = new AtomicInteger();
+
+            // When
+            runGates(4, 20_000, (gate, i) -> {
+                String plate = "G" + gate + "-" + (i % 40);
+                if (!service.unparkByPlate(plate)) {
+                    Vehicle vehicle = switch (i % 3) {
+                        case 0 -> new Moto(plate);
+                        case 1 -> new Car(plate);
+                        default -> new Van(plate);
+                    };
+                    if (!service.parkVehicle(parking, vehicle)) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            });
+
+            // Then: the spots held by vehicles are exactly the occupied ones
+            int held = 0;
+            for (int g = 0; g < 4; g++) {
+                for (int i = 0; i < 40; i++) {
+                    held += service.findSpotsByPlate("G" + g + "-" + i).size();
+                }
+            }
+            OccupancySnapshot counts = parking.getOccupancySnapshot();
+            int occupied = counts.getOccupied(SpotType.MOTO) + counts.getOccupied(SpotType.CAR)
+                    + counts.getOccupied(SpotType.BIG);
+            Assertions.assertEquals(held, occupied, mode.name());
+            Assertions.assertTrue(rejected.get() > 0, mode + ": the lot should have been full at times");
+
+            // And: every other spot is free once the buffers are given back
+            buffers.returnAll(parking);
+            Assertions.assertEquals(parking.getTotalSpots() - occupied, parking.getFreeSpotsCount(), mode.name());
+        }
+    }
+
+    // A vehicle that accepts no spot class
+    private static class Trailer extends Vehicle {
+        Trailer(String plateNumber) {
+            super(plateNumber);
+        }
+
+        @Override
+        public int getRequiredCarSpots() {
+            return 1;
+        }
+
+        @Override
+        public boolean canParkOnMotoSpot() {
+            return false;
+        }
+
+        @Override
+        public boolean canParkOnBigSpot() {
+            return false;
+        }
+
+        @Override
+        public boolean canParkOnCarSpot() {
+            return false;
+        }
+    }
+
+    private interface GateRound {
+        void run(int gate, int round);
+    }
+
+    // Runs the gates together and waits for them; rethrows the first failure of a gate
+    private static void runGates(int gates, int rounds, GateRound round) throws InterruptedException {
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        Thread[] threads = new Thread[gates];
+        for (int g = 0; g < gates; g++) {
+            int gate = g;
+            threads[g] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < rounds; i++) {
+                        round.run(gate, i);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            threads[g].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Throwable first = failures.poll();
+        if (first != null) {
+            AssertionError error = new AssertionError("A gate failed: " + first, first);
+            failures.forEach(error::addSuppressed);
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Van;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.OccupancyEvent;
+import org.example.parking.service.OccupancyFeed;
+import org.example.parking.service.ParkingService;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit tests for the OccupancyFeed change feed.
+ */
+public class OccupancyFeedTest {
+
+    /**
+     * testEventsInOrder:
+     * A subscriber first gets the current counts, then every park / unpark
+     * in order, with the free count of the spot class after the change.
+     */
+    @Test
+    public void testEventsInOrder() {
+        // Given: a parking with one car already parked before subscribing
+        Parking parking = new Parking(1, 4, 1);
+        ParkingService service = new ParkingService();
+        OccupancyFeed feed = service.openOccupancyFeed(parking, 16);
+        service.parkVehicle(parking, new Car("CAR-1"));
+        OccupancyFeed.Subscription subscription = feed.subscribe();
+
+        // When
+        service.parkVehicle(parking, new Van("VAN-1"));
+        service.parkVehicle(parking, new Moto("MOTO-1"));
+        service.unparkByPlate("CAR-1");
+
+        // Then: the counts as of subscribing
+        OccupancyEvent counts = subscription.poll();
+        Assertions.assertEquals(OccupancyEvent.Kind.COUNTS, counts.getKind());
+        Assertions.assertEquals(3, counts.getCounts().getFree(SpotType.CAR));
+        Assertions.assertEquals(0, counts.getSkippedEvents());
+
+        // And: the events published since, in order
+        OccupancyEvent van = subscription.poll();
+        Assertions.assertEquals(OccupancyEvent.Kind.PARKED, van.getKind());
+        Assertions.assertEquals("VAN-1", van.getPlate());
+        Assertions.assertEquals(Van.class, van.getVehicleType());
+        Assertions.assertEquals(SpotType.BIG, van.getSpotType());
+        Assertions.assertEquals(0, van.getFreeSpots());
+        Assertions.assertEquals("MOTO-1", subscription.poll().getPlate());
+        OccupancyEvent car = subscription.poll();
+        Assertions.assertEquals(OccupancyEvent.Kind.UNPARKED, car.getKind());
+        Assertions.assertEquals(SpotType.CAR, car.getSpotType());
+        Assertions.assertEquals(4, car.getFreeSpots());
+        Assertions.assertEquals(counts.getSequence() + 2, car.getSequence());
+        Assertions.assertNull(subscription.poll());
+        Assertions.assertEquals(0, subscription.getLag());
+
+        // And: a closed feed publishes nothing more
+        feed.close();
+        service.parkVehicle(parking, new Car("CAR-2"));
+        Assertions.assertNull(subscription.poll());
+    }
+
+    /**
+     * testSlowSubscriberGetsCoalescedCounts:
+     * A subscriber lapped by the ring receives the latest counts instead of
+     * the events it missed, then follows the feed again.
+     */
+    @Test
+    public void testSlowSubscriberGetsCoalescedCounts() {
+        // Given: a ring of 8 events and a subscriber that stopped reading
+        Parking parking = new Parking(0, 100, 0);
+        ParkingService service = new ParkingService();
+        OccupancyFeed feed = service.openOccupancyFeed(parking, 5);
+        Assertions.assertEquals(8, feed.getCapacity());
+        OccupancyFeed.Subscription slow = feed.subscribe();
+        Assertions.assertEquals(OccupancyEvent.Kind.COUNTS, slow.poll().getKind());
+
+        // When: 20 cars arrive
+        for (int i = 0; i < 20; i++) {
+            service.parkVehicle(parking, new Car("CAR-" + i));
+        }
+
+        // Then: one COUNTS item replaces the 20 events
+        Assertions.assertEquals(20, slow.getLag());
+        OccupancyEvent counts = slow.poll();
+        Assertions.assertEquals(OccupancyEvent.Kind.COUNTS, counts.getKind());
+        Assertions.assertEquals(20, counts.getSkippedEvents());
+        Assertions.assertEquals(80, counts.getCounts().getFree(SpotType.CAR));
+        Assertions.assertNull(slow.poll());
+
+        // And: the next event is delivered normally
+        service.unparkByPlate("CAR-3");
+        OccupancyEvent next = slow.poll();
+        Assertions.assertEquals("CAR-3", next.getPlate());
+        Assertions.assertEquals(20, next.getSequence());
+    }
+
+    /**
+     * testConcurrentGates:
+     * Under concurrent gates, a subscriber sees every plate's events in
+     * order and in sequence, except where a COUNTS item replaces a gap.
+     */
+    @Test
+    public void testConcurrentGates() throws InterruptedException {
+        // Given
+        Parking parking = new Parking(10, 50, 5);
+        ParkingService service = new ParkingService(ConcurrencyMode.LOCK_FREE);
+        OccupancyFeed feed = service.openOccupancyFeed(parking, 64);
+        OccupancyFeed.Subscription subscription = feed.subscribe();
+        AtomicBoolean running = new AtomicBoolean(true);
+        int gates = 4;
+        CountDownLatch done = new CountDownLatch(gates);
+
+        // When: gates park and unpark their own plates while the subscriber reads
+        for (int g = 0; g < gates; g++) {
+            int gate = g;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    String plate = "G" + gate + "-" + (i % 20);
+                    if (!service.unparkByPlate(plate)) {
+                        service.parkVehicle(parking, i % 3 == 0 ? new Moto(plate) : new Car(plate));
+                    }
+                }
+                done.countDown();
+            });
+            thread.start();
+        }
+        Thread stopper = new Thread(() -> {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.set(false);
+        });
+        stopper.start();
+
+        Map<String, OccupancyEvent.Kind> lastKind = new HashMap<>();
+        long expected = -1;
+        long received = 0;
+        while (running.get() || subscription.getLag() > 0) {
+            OccupancyEvent event = subscription.poll(10, TimeUnit.MILLISECONDS);
+            if (event == null) {
+                continue;
+            }
+            if (event.getKind() == OccupancyEvent.Kind.COUNTS) {
+                // A gap: plates may have moved meanwhile
+                lastKind.clear();
+                expected = event.getSequence();
+                continue;
+            }
+            // Then: no event is skipped or repeated outside of COUNTS, and a plate alternates park / unpark
+            Assertions.assertEquals(expected, event.getSequence());
+            expected++;
+            received++;
+            OccupancyEvent.Kind previous = lastKind.put(event.getPlate(), event.getKind());
+            Assertions.assertNotEquals(event.getKind(), previous, event.toString());
+        }
+
+        // And: the feed published one event per park and unpark
+        Assertions.assertTrue(received > 0);
+        Assertions.assertEquals(expected, feed.getPublishedCount());
+        Assertions.assertEquals(0, subscription.getLag());
+    }
+}
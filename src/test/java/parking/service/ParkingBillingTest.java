@@ -0,0 +1,171 @@
+package parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Van;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingService;
+import org.example.parking.service.ParkingSession;
+import org.example.parking.service.ParkingSessions;
+import org.example.parking.service.Tariff;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for parking sessions and billing, driven by a fake clock.
+ */
+public class ParkingBillingTest {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    private static final Tariff TARIFF = Tariff.perPeriod(Duration.ofHours(1))
+            .withSpotRate(SpotType.MOTO, 100)
+            .withSpotRate(SpotType.CAR, 250)
+            .withSpotRate(SpotType.BIG, 400)
+            .withVehicleRate(Van.class, SpotType.CAR, 600)
+            .withGracePeriod(Duration.ofMinutes(15))
+            .withDailyCap(2_000);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    /**
+     * testTariff:
+     * Every started period is billed at the rate of the spots held, after
+     * the grace period and up to the daily cap.
+     */
+    @Test
+    public void testTariff() {
+        // Free during the grace period, then per started hour
+        Assertions.assertEquals(0, TARIFF.price(Car.class, SpotType.CAR, 1, 15 * MINUTE));
+        Assertions.assertEquals(250, TARIFF.price(Car.class, SpotType.CAR, 1, 16 * MINUTE));
+        Assertions.assertEquals(500, TARIFF.price(Car.class, SpotType.CAR, 1, HOUR + 1));
+
+        // A van pays its own rate on car spots, the spot rate on a big spot
+        Assertions.assertEquals(1_200, TARIFF.price(Van.class, SpotType.CAR, 3, 2 * HOUR));
+        Assertions.assertEquals(800, TARIFF.price(Van.class, SpotType.BIG, 1, 2 * HOUR));
+        // Without a vehicle rate, every spot held is paid
+        Assertions.assertEquals(750, Tariff.perPeriod(Duration.ofHours(1)).withSpotRate(SpotType.CAR, 250)
+                .price(Van.class, SpotType.CAR, 3, HOUR));
+
+        // Each day costs at most the cap: 2 days capped + 3 hours
+        Assertions.assertEquals(2 * 2_000 + 750, TARIFF.price(Car.class, SpotType.CAR, 1, 51 * HOUR));
+        Assertions.assertEquals(2_000, TARIFF.price(Van.class, SpotType.CAR, 3, 10 * HOUR));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TARIFF.withSpotRate(SpotType.CAR, -1));
+    }
+
+    /**
+     * testSessionsAreBilledOnUnpark:
+     * Leaving closes the session, bills it and updates the totals right
+     * away; relocating a vehicle keeps its session open.
+     */
+    @Test
+    public void testSessionsAreBilledOnUnpark() {
+        // Given: a car parked before billing is enabled
+        Parking parking = new Parking(1, 4, 1);
+        ParkingService service = new ParkingService(ConcurrencyMode.GLOBAL_LOCK, clock::get);
+        service.parkVehicle(parking, new Car("CAR-OLD"));
+        ParkingSessions sessions = service.enableBilling(TARIFF);
+        Assertions.assertSame(sessions, service.enableBilling(TARIFF));
+        long entry = clock.get();
+
+        // When: a moto, a car and a van arrive
+        service.parkVehicle(parking, new Moto("MOTO-1"));
+        service.parkVehicle(parking, new Car("CAR-1"));
+        service.parkVehicle(parking, new Van("VAN-1"));
+
+        // Then: their sessions are open
+        Assertions.assertEquals(3, sessions.getOpenSessionCount());
+        Assertions.assertEquals(entry, sessions.getEntryMillis("CAR-1"));
+        Assertions.assertEquals(-1, sessions.getEntryMillis("CAR-OLD"));
+        clock.addAndGet(90 * MINUTE);
+        Assertions.assertEquals(500, sessions.quote("CAR-1"));
+
+        // When: the car is moved to the big spot freed by the van, and everybody leaves
+        service.unparkByPlate("VAN-1");
+        Assertions.assertTrue(service.relocate("CAR-1", SpotType.BIG, 0));
+        Assertions.assertEquals(500, sessions.quote("CAR-1"));
+        clock.addAndGet(60 * MINUTE);
+        service.unparkByPlate("CAR-1");
+        service.unparkByPlate("MOTO-1");
+        service.unparkByPlate("CAR-OLD");
+
+        // Then: each session is billed once, the car at the car spot rate it entered on (3 started hours)
+        Assertions.assertEquals(0, sessions.getOpenSessionCount());
+        Assertions.assertEquals(3, sessions.getClosedSessionCount());
+        Assertions.assertEquals(1, sessions.getUntrackedDepartureCount());
+        Assertions.assertEquals(800, sessions.getRevenueCents(SpotType.BIG));
+        Assertions.assertEquals(750, sessions.getRevenueCents(SpotType.CAR));
+        Assertions.assertEquals(750, sessions.getRevenueCents(Car.class));
+        Assertions.assertEquals(300, sessions.getRevenueCents(Moto.class));
+        Assertions.assertEquals(800 + 750 + 300, sessions.getRevenueCents());
+        Assertions.assertEquals((90 + 150 + 150) * MINUTE / 3, sessions.getAverageDwellMillis());
+        Assertions.assertEquals(150 * MINUTE, sessions.getAverageDwellMillis(Car.class));
+
+        // And: the closed sessions are kept with their entry and exit times
+        List<ParkingSession> recent = sessions.recentSessions(10);
+        Assertions.assertEquals(3, recent.size());
+        ParkingSession van = recent.get(0);
+        Assertions.assertEquals("VAN-1", van.getPlate());
+        Assertions.assertEquals(SpotType.BIG, van.getSpotType());
+        Assertions.assertEquals(entry, van.getEntryMillis());
+        Assertions.assertEquals(90 * MINUTE, van.getDwellMillis());
+        Assertions.assertEquals(800, van.getAmountCents());
+        Assertions.assertEquals("MOTO-1", sessions.recentSessions(1).get(0).getPlate());
+    }
+
+    /**
+     * testConcurrentGates:
+     * Totals stay exact when gates park and unpark concurrently.
+     */
+    @Test
+    public void testConcurrentGates() throws InterruptedException {
+        // Given: every spot costs 1 per hour, and the clock moves a millisecond per request
+        Parking parking = Parking.offHeap(50, 200, 20);
+        ParkingService service = new ParkingService(ConcurrencyMode.LOCK_FREE, clock::get);
+        ParkingSessions sessions = service.enableBilling(Tariff.perPeriod(Duration.ofHours(1))
+                .withSpotRate(SpotType.MOTO, 1).withSpotRate(SpotType.CAR, 1).withSpotRate(SpotType.BIG, 1));
+
+        // When
+        Thread[] gates = new Thread[4];
+        long[] departures = new long[gates.length];
+        for (int g = 0; g < gates.length; g++) {
+            int gate = g;
+            gates[g] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    clock.incrementAndGet();
+                    String plate = "G" + gate + "-" + (i % 50);
+                    if (service.unparkByPlate(plate)) {
+                        departures[gate]++;
+                    } else {
+                        service.parkVehicle(parking, i % 2 == 0 ? new Moto(plate) : new Car(plate));
+                    }
+                }
+            });
+            gates[g].start();
+        }
+        for (Thread gate : gates) {
+            gate.join();
+        }
+
+        // Then
+        long total = 0;
+        for (long count : departures) {
+            total += count;
+        }
+        Assertions.assertEquals(total, sessions.getClosedSessionCount());
+        Assertions.assertEquals(total, sessions.getRevenueCents());
+        Assertions.assertEquals(service.getParkedVehicleCount(), sessions.getOpenSessionCount());
+        Assertions.assertEquals(sessions.getRevenueCents(Moto.class) + sessions.getRevenueCents(Car.class),
+                sessions.getRevenueCents());
+        Assertions.assertEquals(sessions.getRevenueCents(SpotType.MOTO) + sessions.getRevenueCents(SpotType.CAR)
+                + sessions.getRevenueCents(SpotType.BIG), sessions.getRevenueCents());
+    }
+}
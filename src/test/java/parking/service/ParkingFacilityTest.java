@@ -0,0 +1,110 @@
+package parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Van;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.ParkingFacility;
+import org.example.parking.service.ParkingZone;
+import org.example.parking.service.ZoneRoutingPolicy;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the multi-zone ParkingFacility.
+ */
+public class ParkingFacilityTest {
+
+    private static List<ParkingZone> threeLevels() {
+        return List.of(
+                new ParkingZone("L0", new Parking(2, 10, 1)),
+                new ParkingZone("L1", new Parking(2, 10, 1)),
+                new ParkingZone("L2", new Parking(2, 10, 1)));
+    }
+
+    /**
+     * testLeastLoadedSpreadsArrivals:
+     * Arrivals are spread over the zones, and the aggregates add them up.
+     */
+    @Test
+    public void testLeastLoadedSpreadsArrivals() {
+        // Given
+        ParkingFacility facility = new ParkingFacility(threeLevels(), ZoneRoutingPolicy.LEAST_LOADED);
+
+        // When: 9 cars arrive
+        for (int i = 0; i < 9; i++) {
+            Assertions.assertTrue(facility.parkVehicle(new Car("CAR-" + i)));
+        }
+
+        // Then: each level got 3 of them
+        for (ParkingZone zone : facility.getZones()) {
+            Assertions.assertEquals(3, zone.getService().getParkedVehicleCount(), zone.getName());
+        }
+        Assertions.assertEquals(39, facility.getTotalSpots());
+        Assertions.assertEquals(30, facility.getFreeSpotsCount());
+        Assertions.assertEquals(21, facility.getFreeSpotsCount(SpotType.CAR));
+        Assertions.assertEquals(9, facility.getOccupancyByVehicleType().get(Car.class).getParkedVehicles());
+    }
+
+    /**
+     * testUnparkGoesToOwningZone:
+     * A departure frees the spots of the zone the vehicle was parked in.
+     */
+    @Test
+    public void testUnparkGoesToOwningZone() {
+        // Given
+        ParkingFacility facility = new ParkingFacility(threeLevels());
+        Vehicle van = new Van("VAN-Z");
+        Assertions.assertTrue(facility.parkVehicle(van));
+        ParkingZone zone = facility.findZone("VAN-Z");
+        Assertions.assertNotNull(zone);
+        Assertions.assertTrue(zone.getService().isParked("VAN-Z"));
+        Assertions.assertFalse(facility.parkVehicle(new Van("VAN-Z")), "Same plate cannot park twice");
+
+        // When
+        Assertions.assertTrue(facility.unparkByPlate("VAN-Z"));
+
+        // Then
+        Assertions.assertTrue(zone.getParking().isEmpty());
+        Assertions.assertNull(facility.findZone("VAN-Z"));
+        Assertions.assertFalse(facility.unparkByPlate("VAN-Z"));
+    }
+
+    /**
+     * testFallsBackWhenZonesFillUp:
+     * Every spot of the facility gets used before arrivals are rejected.
+     */
+    @Test
+    public void testFallsBackWhenZonesFillUp() {
+        // Given: 3 zones with 1 moto spot each
+        ParkingFacility facility = new ParkingFacility(List.of(
+                new ParkingZone("A", new Parking(1, 0, 0)),
+                new ParkingZone("B", new Parking(1, 0, 0)),
+                new ParkingZone("C", new Parking(1, 0, 0))));
+        List<Vehicle> motos = new ArrayList<>();
+
+        // When: 4 motos arrive
+        for (int i = 0; i < 4; i++) {
+            Vehicle moto = new Moto("MOTO-" + i);
+            if (facility.parkVehicle(moto)) {
+                motos.add(moto);
+            }
+        }
+
+        // Then: the first 3 got a spot, the 4th was rejected
+        Assertions.assertEquals(3, motos.size());
+        Assertions.assertTrue(facility.isFull());
+
+        // And: once everybody left, the facility is empty
+        for (Vehicle moto : motos) {
+            facility.unparkVehicle(moto);
+        }
+        Assertions.assertTrue(facility.isEmpty());
+        Assertions.assertEquals(0, facility.getParkedVehicleCount());
+    }
+}
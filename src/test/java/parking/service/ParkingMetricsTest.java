@@ -0,0 +1,138 @@
+package parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.Van;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingMetrics;
+import org.example.parking.service.ParkingService;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for the ParkingService metrics.
+ */
+public class ParkingMetricsTest {
+
+    /**
+     * testOutcomesAreCounted:
+     * Every park is recorded under its vehicle type and outcome
+     * (primary spot, fallback, rejection), every unpark under its vehicle type.
+     */
+    @Test
+    public void testOutcomesAreCounted() {
+        // Given: a parking with 1 spot of each class, and metrics on
+        Parking parking = new Parking(1, 1, 1);
+        ParkingService service = new ParkingService();
+        ParkingMetrics metrics = service.enableMetrics();
+        Assertions.assertSame(metrics, service.enableMetrics());
+
+        // When: motos fill the moto, car and big spots, then a car is turned away
+        service.parkVehicle(parking, new Moto("MOTO-1"));
+        service.parkVehicle(parking, new Moto("MOTO-2"));
+        service.parkVehicle(parking, new Moto("MOTO-3"));
+        service.parkVehicle(parking, new Car("CAR-1"));
+        service.unparkByPlate("MOTO-3");
+        service.unparkByPlate("NOBODY");
+
+        // Then
+        Map<String, Long> counts = metrics.getParkCounts();
+        Assertions.assertEquals(1L, counts.get("Moto/PRIMARY"));
+        Assertions.assertEquals(1L, counts.get("Moto/FALLBACK_CAR"));
+        Assertions.assertEquals(1L, counts.get("Moto/FALLBACK_BIG"));
+        Assertions.assertEquals(1L, counts.get("Car/REJECTED"));
+        Assertions.assertEquals(4, metrics.getParkCount());
+        Assertions.assertEquals(2, metrics.getFallbackParkCount());
+        Assertions.assertEquals(1, metrics.getRejectedParkCount());
+        Assertions.assertEquals(2, metrics.getUnparkCount());
+        // Latencies are sampled, so there may be none yet
+        Assertions.assertTrue(metrics.getParkLatencyP99Nanos() >= metrics.getParkLatencyP50Nanos());
+
+        // And: the Prometheus dump has one counter and one summary per type and outcome
+        String text = metrics.toPrometheusText();
+        Assertions.assertTrue(text.contains("# TYPE parking_park_duration_seconds summary"));
+        Assertions.assertTrue(text.contains("parking_parks_total{vehicle=\"Moto\",outcome=\"fallback_big\"} 1"), text);
+        Assertions.assertTrue(text.contains("parking_unparks_total{vehicle=\"unknown\"} 1"), text);
+        Assertions.assertTrue(text.contains("parking_lock_wait_seconds_count{lock=\"global\"}"), text);
+
+        // When: the metrics are reset
+        metrics.reset();
+
+        // Then
+        Assertions.assertEquals(0, metrics.getParkCount());
+    }
+
+    /**
+     * testResetWhileGatesRun:
+     * A reset while gates park neither loses the parks that follow it nor
+     * keeps the ones before it.
+     */
+    @Test
+    public void testResetWhileGatesRun() throws InterruptedException {
+        for (int run = 0; run < 20; run++) {
+            // Given: gates parking and leaving on a lot that never fills up
+            Parking parking = new Parking(0, 1000, 0);
+            ParkingService service = new ParkingService(ConcurrencyMode.LOCK_FREE);
+            ParkingMetrics metrics = service.enableMetrics();
+            AtomicLong parked = new AtomicLong();
+            Thread[] gates = new Thread[4];
+            for (int g = 0; g < gates.length; g++) {
+                int gate = g;
+                gates[g] = new Thread(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        String plate = "G" + gate + "-" + (i % 20);
+                        if (!service.unparkByPlate(plate) && service.parkVehicle(parking, new Car(plate))) {
+                            parked.incrementAndGet();
+                        }
+                    }
+                });
+                gates[g].start();
+            }
+
+            // When: the metrics are reset in the middle of it
+            while (parked.get() < 1000) {
+                Thread.onSpinWait();
+            }
+            long before = parked.get();
+            metrics.reset();
+            long after = parked.get();
+            for (Thread gate : gates) {
+                gate.join();
+            }
+
+            // Then: the count covers the parks after the reset, give or take those in flight
+            long total = parked.get();
+            Assertions.assertTrue(metrics.getParkCount() <= total - before, "A park survived the reset");
+            Assertions.assertTrue(metrics.getParkCount() >= total - after - gates.length, "A park was lost");
+        }
+    }
+
+    /**
+     * testMetricsThroughJmx:
+     * The metrics can be read as MBean attributes.
+     */
+    @Test
+    public void testMetricsThroughJmx() throws Exception {
+        // Given: a striped service whose metrics are registered
+        ParkingService service = new ParkingService(ConcurrencyMode.STRIPED);
+        ObjectName name = service.enableMetrics().registerMBean("jmx-test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            // When: a van parks on car spots
+            service.parkVehicle(new Parking(0, 3, 0), new Van("VAN-1"));
+
+            // Then
+            Assertions.assertEquals(1L, server.getAttribute(name, "ParkCount"));
+            Assertions.assertEquals(1L, server.getAttribute(name, "FallbackParkCount"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
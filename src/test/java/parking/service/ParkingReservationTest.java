@@ -0,0 +1,172 @@
+package parking.service;
+
+import org.example.parking.domain.OccupancySnapshot;
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Van;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingService;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for spot reservations, driven by a fake clock.
+ * The background ticker may expire a reservation before the test calls
+ * expireReservations() itself, so the tests check the resulting state
+ * rather than what one call returned.
+ */
+public class ParkingReservationTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    /**
+     * testReserveThenClaim:
+     * A reserved spot is held for its vehicle only, then becomes occupied once it arrives.
+     */
+    @Test
+    public void testReserveThenClaim() {
+        // Given: a parking with a single car spot
+        Parking parking = new Parking(0, 1, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.GLOBAL_LOCK, clock::get);
+
+        // When: a car books it
+        Assertions.assertTrue(service.reserve(parking, new Car("CAR-APP"), Duration.ofMinutes(15)));
+
+        // Then: nobody else can park there
+        Assertions.assertFalse(service.parkVehicle(parking, new Car("CAR-WALKIN")));
+        Assertions.assertTrue(parking.getCarSpots().get(0).isReserved());
+        OccupancySnapshot snapshot = parking.getOccupancySnapshot();
+        Assertions.assertEquals(1, snapshot.getReserved(SpotType.CAR));
+        Assertions.assertEquals(0, snapshot.getOccupied(SpotType.CAR));
+        Assertions.assertEquals(0, snapshot.getFree(SpotType.CAR));
+
+        // And: a vehicle of another type cannot use the reservation
+        Assertions.assertFalse(service.claimReservation(new Moto("CAR-APP")));
+
+        // When: the booked car arrives
+        Assertions.assertTrue(service.claimReservation(new Car("CAR-APP")));
+
+        // Then: the spot is occupied by it
+        Assertions.assertTrue(service.isParked("CAR-APP"));
+        Assertions.assertTrue(parking.getCarSpots().get(0).isOccupied());
+        Assertions.assertEquals(0, parking.getReservedSpotsCount(SpotType.CAR));
+        Assertions.assertEquals(0, service.getReservationCount());
+        Assertions.assertFalse(service.claimReservation(new Car("CAR-APP")), "A reservation is claimed once");
+    }
+
+    /**
+     * testCancelAndExpiry:
+     * Cancelled or expired reservations give their spots back; expiry
+     * happens after the ttl, never before.
+     */
+    @Test
+    public void testCancelAndExpiry() {
+        // Given: a van booking 3 car spots and a car booking for 2 hours
+        Parking parking = new Parking(0, 4, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.LOCK_FREE, clock::get);
+        Assertions.assertTrue(service.reserve(parking, new Van("VAN-APP"), Duration.ofMinutes(10)));
+        Assertions.assertTrue(service.reserve(parking, new Car("CAR-APP"), Duration.ofHours(2)));
+        Assertions.assertEquals(4, parking.getReservedSpotsCount(SpotType.CAR));
+
+        // When: the van booking is cancelled
+        Assertions.assertTrue(service.cancelReservation("VAN-APP"));
+
+        // Then: its 3 spots are free again
+        Assertions.assertEquals(3, parking.getFreeSpotsCount());
+        Assertions.assertFalse(service.cancelReservation("VAN-APP"));
+
+        // When: time goes by, just short of the ttl
+        clock.addAndGet(Duration.ofHours(2).toMillis() - 1);
+        Assertions.assertEquals(0, service.expireReservations());
+        Assertions.assertTrue(service.hasReservation("CAR-APP"));
+
+        // Then: the reservation expires once the ttl has elapsed
+        clock.addAndGet(ParkingService.RESERVATION_TICK_MILLIS);
+        service.expireReservations();
+        Assertions.assertFalse(service.hasReservation("CAR-APP"));
+        Assertions.assertFalse(service.claimReservation(new Car("CAR-APP")));
+        Assertions.assertTrue(parking.isEmpty());
+    }
+
+    /**
+     * testManyReservationsExpireInDeadlineOrder:
+     * Thousands of reservations with spread ttls expire tick by tick,
+     * each one exactly when its ttl elapses.
+     */
+    @Test
+    public void testManyReservationsExpireInDeadlineOrder() {
+        // Given: 5000 reservations, one per second over about 83 minutes
+        int count = 5_000;
+        Parking parking = Parking.offHeap(0, count, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.STRIPED, clock::get);
+        for (int i = 0; i < count; i++) {
+            Assertions.assertTrue(service.reserve(parking, new Car("CAR-" + i), Duration.ofSeconds(i + 1)));
+        }
+        Assertions.assertEquals(count, parking.getReservedSpotsCount(SpotType.CAR));
+
+        // When: the clock moves second by second
+        for (int i = 0; i < count; i++) {
+            clock.addAndGet(1_000);
+
+            // Then: exactly one reservation expires each second
+            service.expireReservations();
+            Assertions.assertFalse(service.hasReservation("CAR-" + i));
+            Assertions.assertEquals(count - i - 1, service.getReservationCount());
+        }
+        Assertions.assertEquals(0, service.getReservationCount());
+        Assertions.assertEquals(count, parking.getFreeSpotsCount());
+    }
+
+    /**
+     * testParkingWithReservationUsesIt:
+     * A vehicle parking through the regular path while it holds a
+     * reservation parks on its reserved spots; a reservation for another
+     * vehicle type is cancelled instead of staying held.
+     */
+    @Test
+    public void testParkingWithReservationUsesIt() {
+        // Given
+        Parking parking = new Parking(0, 3, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.STRIPED, clock::get);
+        Assertions.assertTrue(service.reserve(parking, new Car("CAR-APP"), Duration.ofMinutes(15)));
+        Assertions.assertTrue(service.reserve(parking, new Car("MOTO-APP"), Duration.ofMinutes(15)));
+
+        // When
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR-APP")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Moto("MOTO-APP")));
+
+        // Then: the car took its reserved spot, the moto the spot left
+        Assertions.assertEquals(0, service.getReservationCount());
+        Assertions.assertEquals(0, parking.getReservedSpotsCount(SpotType.CAR));
+        Assertions.assertEquals(1, parking.getFreeSpotsCount());
+        Assertions.assertEquals("C-0", service.findSpotsByPlate("CAR-APP").get(0).getId());
+    }
+
+    /**
+     * testClaimOfReleasedReservationFails:
+     * If a reserved spot was released behind the service's back, claiming the
+     * reservation fails and leaves none of its spots occupied or reserved.
+     */
+    @Test
+    public void testClaimOfReleasedReservationFails() {
+        // Given: a van booking 3 car spots, one of them then released directly
+        Parking parking = Parking.offHeap(0, 3, 0);
+        ParkingService service = new ParkingService(ConcurrencyMode.GLOBAL_LOCK, clock::get);
+        Assertions.assertTrue(service.reserve(parking, new Van("VAN-APP"), Duration.ofMinutes(15)));
+        Assertions.assertTrue(parking.cancelReservation(SpotType.CAR, 1));
+
+        // When
+        boolean claimed = service.claimReservation(new Van("VAN-APP"));
+
+        // Then
+        Assertions.assertFalse(claimed);
+        Assertions.assertFalse(service.isParked("VAN-APP"));
+        Assertions.assertEquals(3, parking.getFreeSpotsCount());
+        Assertions.assertEquals(0, parking.getReservedSpotsCount(SpotType.CAR));
+    }
+}
@@ -0,0 +1,80 @@
+package parking.service;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.Van;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.BatchResult;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingService;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the batch park/unpark API.
+ */
+public class ParkingServiceBatchTest {
+
+    /**
+     * testParkAllFollowsFallbackRules:
+     * A burst gets the same placement as parking each vehicle in turn.
+     */
+    @Test
+    public void testParkAllFollowsFallbackRules() {
+        for (ConcurrencyMode mode : ConcurrencyMode.values()) {
+            // Given: 1 moto spot, 3 car spots, 1 big spot
+            Parking parking = new Parking(1, 3, 1);
+            ParkingService service = new ParkingService(mode);
+            List<Vehicle> burst = List.of(
+                    new Moto("MOTO-1"),  // moto spot
+                    new Moto("MOTO-2"),  // falls back on a car spot
+                    new Van("VAN-1"),    // big spot
+                    new Van("VAN-2"),    // only 2 car spots left => rejected
+                    new Car("CAR-1"),    // car spot
+                    new Car("CAR-2"),    // car spot
+                    new Car("CAR-3"));   // everything is full => rejected
+
+            // When
+            BatchResult result = service.parkAll(parking, burst);
+
+            // Then
+            Assertions.assertEquals(7, result.size());
+            Assertions.assertEquals(5, result.getSuccessCount(), "Mode " + mode);
+            Assertions.assertEquals(2, result.getFailureCount());
+            Assertions.assertFalse(result.isSuccess(3), "The second van should not fit");
+            Assertions.assertFalse(result.isSuccess(6), "The last car should not fit");
+            Assertions.assertTrue(parking.isFull());
+        }
+    }
+
+    /**
+     * testUnparkAllReportsUnknownVehicles:
+     * Vehicles that were never parked are reported as failures.
+     */
+    @Test
+    public void testUnparkAllReportsUnknownVehicles() {
+        // Given: 200 cars parked in one burst
+        Parking parking = new Parking(0, 150, 60);
+        ParkingService service = new ParkingService();
+        List<Vehicle> cars = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            cars.add(new Car("CAR-" + i));
+        }
+        Assertions.assertEquals(200, service.parkAll(parking, cars).getSuccessCount());
+        Assertions.assertEquals(10, parking.getFreeSpotsCount());
+
+        // When: they all leave, together with a car that never came in
+        List<Vehicle> leaving = new ArrayList<>(cars);
+        leaving.add(new Car("CAR-GHOST"));
+        BatchResult result = service.unparkAll(leaving);
+
+        // Then
+        Assertions.assertEquals(200, result.getSuccessCount());
+        Assertions.assertFalse(result.isSuccess(200));
+        Assertions.assertTrue(parking.isEmpty());
+    }
+}
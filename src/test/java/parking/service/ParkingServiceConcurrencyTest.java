@@ -0,0 +1,219 @@
+package parking.service;
+
+import org.example.parking.domain.LotSnapshot;
+import org.example.parking.domain.OccupancySnapshot;
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.model.SpotType;
+import org.example.parking.model.Van;
+import org.example.parking.model.Vehicle;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingService;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Multi-threaded tests for the ParkingService concurrency modes.
+ */
+public class ParkingServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 2_000;
+
+    /**
+     * testStripedModeKeepsCountsConsistent:
+     * Many gates park and unpark motos, cars and vans at the same time.
+     * Whatever the interleaving, no spot may be handed out twice and
+     * everything must be free again at the end.
+     */
+    @Test
+    public void testStripedModeKeepsCountsConsistent() throws Exception {
+        runGates(new ParkingService(ConcurrencyMode.STRIPED));
+    }
+
+    /**
+     * testLockFreeModeKeepsCountsConsistent:
+     * Same scenario, spots being claimed with compare-and-set only.
+     */
+    @Test
+    public void testLockFreeModeKeepsCountsConsistent() throws Exception {
+        runGates(new ParkingService(ConcurrencyMode.LOCK_FREE));
+    }
+
+    /**
+     * testGlobalModeKeepsCountsConsistent:
+     * Same scenario with the default global lock.
+     */
+    @Test
+    public void testGlobalModeKeepsCountsConsistent() throws Exception {
+        runGates(new ParkingService());
+    }
+
+    /**
+     * testOffHeapLockFreeModeKeepsCountsConsistent:
+     * Same scenario on an off-heap parking, where spots are claimed
+     * with atomic bit operations on the off-heap bitmap.
+     */
+    @Test
+    public void testOffHeapLockFreeModeKeepsCountsConsistent() throws Exception {
+        runGates(new ParkingService(ConcurrencyMode.LOCK_FREE), Parking.offHeap(4, 12, 2));
+    }
+
+    /**
+     * testLotSnapshotsAreConsistentUnderLoad:
+     * While gates park, unpark, reserve and cancel, every lot snapshot
+     * agrees with its own counts and versions never go backwards.
+     */
+    @Test
+    public void testLotSnapshotsAreConsistentUnderLoad() throws Exception {
+        checkSnapshotsUnderLoad(new Parking(4, 12, 2));
+        checkSnapshotsUnderLoad(Parking.offHeap(4, 12, 2));
+    }
+
+    private void checkSnapshotsUnderLoad(Parking parking) throws Exception {
+        // Given: gates churning in the background, one of them booking spots
+        ParkingService service = new ParkingService(ConcurrencyMode.LOCK_FREE);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> gates = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int gate = t;
+            gates.add(new Thread(() -> {
+                for (int i = 0; running.get(); i++) {
+                    Vehicle vehicle = switch ((gate + i) % 3) {
+                        case 0 -> new Moto("MOTO-" + gate + "-" + i);
+                        case 1 -> new Car("CAR-" + gate + "-" + i);
+                        default -> new Van("VAN-" + gate + "-" + i);
+                    };
+                    if (gate == 0) {
+                        if (service.reserve(parking, vehicle, Duration.ofMinutes(5))) {
+                            service.cancelReservation(vehicle.getPlateNumber());
+                        }
+                    } else if (service.parkVehicle(parking, vehicle)) {
+                        service.unparkVehicle(vehicle);
+                    }
+                }
+            }));
+        }
+        gates.forEach(Thread::start);
+
+        // When: a dashboard keeps taking snapshots
+        long lastVersion = -1;
+        int consistent = 0;
+        for (int n = 0; n < 2_000; n++) {
+            LotSnapshot snapshot = parking.getLotSnapshot();
+
+            // Then: the spot states of a consistent snapshot add up to its counts
+            Assertions.assertTrue(snapshot.getVersion() >= lastVersion, "Versions must not go backwards");
+            lastVersion = snapshot.getVersion();
+            if (!snapshot.isConsistent()) {
+                continue;
+            }
+            consistent++;
+            OccupancySnapshot counts = snapshot.getCounts();
+            for (SpotType type : SpotType.values()) {
+                int free = 0;
+                int reserved = 0;
+                for (int i = 0; i < snapshot.getSpotCount(type); i++) {
+                    free += snapshot.isFree(type, i) ? 1 : 0;
+                    reserved += snapshot.isReserved(type, i) ? 1 : 0;
+                }
+                Assertions.assertEquals(counts.getFree(type), free, snapshot.toString());
+                Assertions.assertEquals(counts.getReserved(type), reserved, snapshot.toString());
+                Assertions.assertEquals(counts.getOccupied(type), snapshot.getOccupiedSpotIndexes(type).length);
+            }
+        }
+        running.set(false);
+        for (Thread gate : gates) {
+            gate.join();
+        }
+        Assertions.assertTrue(consistent > 0, "No consistent snapshot");
+
+        // And: once everybody left, the snapshot shows an empty lot
+        LotSnapshot last = parking.getLotSnapshot();
+        Assertions.assertTrue(last.isConsistent());
+        Assertions.assertTrue(last.getVersion() > lastVersion);
+        Assertions.assertEquals(parking.getTotalSpots(), last.getCounts().getFreeSpotsCount());
+        Assertions.assertEquals(0, last.getOccupiedSpotIndexes(SpotType.CAR).length);
+    }
+
+    private void runGates(ParkingService service) throws Exception {
+        // Given: a small parking, so gates keep fighting for the same spots
+        runGates(service, new Parking(4, 12, 2));
+    }
+
+    private void runGates(ParkingService service, Parking parking) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<List<Vehicle>> parkedPerGate = new ArrayList<>();
+        List<Thread> gates = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            int gate = t;
+            List<Vehicle> parked = new ArrayList<>();
+            parkedPerGate.add(parked);
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < ROUNDS; i++) {
+                    Vehicle vehicle = switch ((gate + i) % 3) {
+                        case 0 -> new Moto("MOTO-" + gate + "-" + i);
+                        case 1 -> new Car("CAR-" + gate + "-" + i);
+                        default -> new Van("VAN-" + gate + "-" + i);
+                    };
+                    if (service.parkVehicle(parking, vehicle)) {
+                        parked.add(vehicle);
+                    }
+                    // Each gate keeps at most 3 vehicles parked
+                    if (parked.size() > 3) {
+                        service.unparkVehicle(parked.remove(0));
+                    }
+                }
+            });
+            gates.add(thread);
+            thread.start();
+        }
+
+        // When: all gates run together
+        start.countDown();
+        for (Thread thread : gates) {
+            thread.join();
+        }
+
+        // Then: every occupied spot belongs to exactly one parked vehicle
+        int nonVans = 0;
+        for (List<Vehicle> parked : parkedPerGate) {
+            for (Vehicle vehicle : parked) {
+                if (!(vehicle instanceof Van)) {
+                    nonVans++;
+                }
+            }
+        }
+        int occupied = parking.getTotalSpots() - parking.getFreeSpotsCount();
+        Assertions.assertEquals(nonVans + service.getNumberOfSpotsOccupiedByVans(), occupied,
+                "A spot was handed out twice");
+
+        // And: the parking is empty again once everybody left
+        for (List<Vehicle> parked : parkedPerGate) {
+            for (Vehicle vehicle : parked) {
+                service.unparkVehicle(vehicle);
+            }
+        }
+        Assertions.assertTrue(parking.isEmpty(), "Every spot should be free after all unparks");
+        Assertions.assertEquals(0, service.getNumberOfSpotsOccupiedByVans());
+        Assertions.assertTrue(parking.getCarSpots().stream().noneMatch(s -> s.isOccupied()));
+
+        // And: the free-spot index and the run tree are not left stale
+        Assertions.assertEquals(0, parking.findFreeRun(SpotType.CAR, 12));
+        Assertions.assertEquals(0, parking.findFreeRun(SpotType.MOTO, 4));
+    }
+}
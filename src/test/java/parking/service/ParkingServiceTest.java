@@ -1,14 +1,24 @@
 package parking.service;
 
+import org.example.parking.domain.OccupancySnapshot;
 import org.example.parking.domain.Parking;
 import org.example.parking.model.Car;
 import org.example.parking.model.Moto;
+import org.example.parking.model.SpotType;
 import org.example.parking.model.Van;
 import org.example.parking.model.Vehicle;
+import org.example.parking.service.AllocationPlan;
 import org.example.parking.service.ParkingService;
+import org.example.parking.service.VehicleTypeOccupancy;
 import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Extended Unit tests for ParkingService.
  */
@@ -305,4 +315,431 @@ public class ParkingServiceTest {
                 "After unparking the van, the previously occupied spots should be free");
     }
 
+    /**
+     * testFreedSpotIsReusedFirst:
+     * Ensures that the free-spot index hands back a spot freed in the middle
+     * of an almost full class before any spot further down the list.
+     */
+    @Test
+    public void testFreedSpotIsReusedFirst() {
+        // Given: 200 car spots (several bitset words), 150 of them taken
+        Parking parking = new Parking(0, 200, 0);
+        ParkingService service = new ParkingService();
+        Vehicle[] cars = new Vehicle[150];
+        for (int i = 0; i < cars.length; i++) {
+            cars[i] = new Car("CAR-" + i);
+            Assertions.assertTrue(service.parkVehicle(parking, cars[i]));
+        }
+
+        // When: the car on spot C-70 leaves and a new car arrives
+        service.unparkVehicle(cars[70]);
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR-NEW")));
+
+        // Then: the new car took C-70 back, and C-150 is still the next free spot
+        Assertions.assertTrue(parking.getCarSpots().get(70).isOccupied(),
+                "The freed spot should be reused first");
+        Assertions.assertEquals("C-150", parking.findFreeSpot(SpotType.CAR).getId());
+        Assertions.assertEquals(50, parking.getFreeSpotsCount());
+    }
+
+    /**
+     * testOccupancySnapshot:
+     * Checks that the per-class counters follow park/unpark transitions.
+     */
+    @Test
+    public void testOccupancySnapshot() {
+        // Given: 2 moto, 4 car, 1 big
+        Parking parking = new Parking(2, 4, 1);
+        ParkingService service = new ParkingService();
+        Vehicle van = new Van("VAN-SNAP");
+
+        // When: a moto, a car and two vans arrive (the second van takes 3 car spots)
+        Assertions.assertTrue(service.parkVehicle(parking, new Moto("MOTO-SNAP")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR-SNAP")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-BIG")));
+        Assertions.assertTrue(service.parkVehicle(parking, van));
+
+        // Then
+        OccupancySnapshot snapshot = parking.getOccupancySnapshot();
+        Assertions.assertEquals(1, snapshot.getFree(SpotType.MOTO));
+        Assertions.assertEquals(0, snapshot.getFree(SpotType.CAR));
+        Assertions.assertEquals(4, snapshot.getOccupied(SpotType.CAR));
+        Assertions.assertEquals(1, snapshot.getOccupied(SpotType.BIG));
+        Assertions.assertEquals(1, snapshot.getFreeSpotsCount());
+        Assertions.assertTrue(parking.areCarSpotsFull());
+        Assertions.assertTrue(parking.areBigSpotsFull());
+        Assertions.assertFalse(parking.areMotoSpotsFull());
+
+        // When: the van on car spots leaves
+        service.unparkVehicle(van);
+
+        // Then: its 3 car spots are counted as free again
+        Assertions.assertEquals(3, parking.getFreeSpotsCount(SpotType.CAR));
+        Assertions.assertEquals(4, parking.getFreeSpotsCount());
+    }
+
+    /**
+     * testVanNeedsAdjacentCarSpots:
+     * Ensures that a Van only takes a run of adjacent car spots,
+     * never 3 scattered ones.
+     */
+    @Test
+    public void testVanNeedsAdjacentCarSpots() {
+        // Given: 7 car spots, cars on C-1, C-3 and C-5 => free spots are scattered
+        Parking parking = new Parking(0, 7, 0);
+        ParkingService service = new ParkingService();
+        Vehicle[] cars = new Vehicle[7];
+        for (int i = 0; i < cars.length; i++) {
+            cars[i] = new Car("CAR-" + i);
+            Assertions.assertTrue(service.parkVehicle(parking, cars[i]));
+        }
+        for (int i = 0; i < cars.length; i += 2) {
+            service.unparkVehicle(cars[i]);
+        }
+
+        // Then: 4 free spots, but no 3 adjacent ones => the van is rejected
+        Assertions.assertEquals(4, parking.getFreeSpotsCount());
+        Assertions.assertFalse(service.parkVehicle(parking, new Van("VAN-SCATTERED")),
+                "A van should not be split over non-adjacent car spots");
+
+        // When: the cars on C-3 and C-5 leave, C-2..C-6 become a free run
+        service.unparkVehicle(cars[3]);
+        service.unparkVehicle(cars[5]);
+
+        // Then: the van parks on the leftmost run of 3 adjacent spots (C-2, C-3, C-4)
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-RUN")));
+        Assertions.assertFalse(parking.getCarSpots().get(0).isOccupied());
+        Assertions.assertTrue(parking.getCarSpots().get(2).isOccupied());
+        Assertions.assertTrue(parking.getCarSpots().get(3).isOccupied());
+        Assertions.assertTrue(parking.getCarSpots().get(4).isOccupied());
+        Assertions.assertFalse(parking.getCarSpots().get(5).isOccupied());
+        Assertions.assertEquals(3, service.getNumberOfSpotsOccupiedByVans());
+    }
+
+    /**
+     * testUnparkByPlate:
+     * Ensures a gate can look up and unpark a vehicle knowing only its plate.
+     */
+    @Test
+    public void testUnparkByPlate() {
+        // Given: a van parked on 3 car spots
+        Parking parking = new Parking(0, 3, 0);
+        ParkingService service = new ParkingService();
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-PLATE")));
+
+        // Then: the plate resolves to the 3 spots
+        Assertions.assertTrue(service.isParked("VAN-PLATE"));
+        Assertions.assertEquals(3, service.findSpotsByPlate("VAN-PLATE").size());
+        Assertions.assertEquals("C-0", service.findSpotsByPlate("VAN-PLATE").get(0).getId());
+        Assertions.assertTrue(service.findSpotsByPlate("UNKNOWN").isEmpty());
+
+        // When: the exit gate reads the plate
+        Assertions.assertTrue(service.unparkByPlate("VAN-PLATE"));
+
+        // Then: the spots are free, and a second unpark finds nothing
+        Assertions.assertTrue(parking.isEmpty());
+        Assertions.assertFalse(service.isParked("VAN-PLATE"));
+        Assertions.assertFalse(service.unparkByPlate("VAN-PLATE"));
+    }
+
+    /**
+     * testSamePlateCannotParkTwice:
+     * A plate already parked is rejected, without leaking any spot.
+     */
+    @Test
+    public void testSamePlateCannotParkTwice() {
+        // Given
+        Parking parking = new Parking(1, 1, 1);
+        ParkingService service = new ParkingService();
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR-DUP")));
+
+        // When: another vehicle object shows up with the same plate
+        boolean parked = service.parkVehicle(parking, new Car("CAR-DUP"));
+
+        // Then
+        Assertions.assertFalse(parked, "A plate can only be parked once");
+        Assertions.assertEquals(2, parking.getFreeSpotsCount(),
+                "The spot claimed for the duplicate must be given back");
+        Assertions.assertEquals(1, service.getParkedVehicleCount());
+    }
+
+    /**
+     * testMissingPlateIsRejected:
+     * A vehicle without a plate number is rejected at the service API with
+     * a clear error, and nothing is parked.
+     */
+    @Test
+    public void testMissingPlateIsRejected() {
+        // Given
+        Parking parking = new Parking(1, 1, 1);
+        ParkingService service = new ParkingService();
+
+        // When / Then
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.parkVehicle(parking, new Car(null)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> service.parkAll(parking, List.of(new Car("CAR-1"), new Moto(null))));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.unparkByPlate(null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.findSpotsByPlate(null));
+        Assertions.assertEquals(3, parking.getFreeSpotsCount());
+        Assertions.assertEquals(0, service.getParkedVehicleCount());
+    }
+
+    /**
+     * testPlateTableFootprint:
+     * The plate table keeps a parked vehicle in about 30 bytes of heap (a
+     * plate reference and a packed allocation per slot), well below a map
+     * entry with a list of spots per vehicle.
+     */
+    @Test
+    public void testPlateTableFootprint() {
+        // Given: an off-heap lot, so spots take no heap, and the plates created up front
+        int count = 200_000;
+        Parking parking = Parking.offHeap(0, count, 0);
+        Car[] cars = new Car[count];
+        for (int i = 0; i < count; i++) {
+            cars[i] = new Car("CAR-" + i);
+        }
+        long before = usedHeapAfterGc();
+
+        // When
+        ParkingService service = new ParkingService();
+        for (Car car : cars) {
+            Assertions.assertTrue(service.parkVehicle(parking, car));
+        }
+        long after = usedHeapAfterGc();
+
+        // Then: measured at about 30 bytes per vehicle
+        double perVehicle = (after - before) / (double) count;
+        Assertions.assertEquals(count, service.getParkedVehicleCount());
+        Assertions.assertTrue(perVehicle < 48, "Heap per parked vehicle: " + perVehicle + " bytes");
+    }
+
+    /**
+     * testOffHeapParkingHeapCost:
+     * An off-heap lot keeps its spots outside the heap: building 10M spots
+     * and parking on them allocates a few KB of heap, where an on-heap lot
+     * allocates over 100 bytes per spot.
+     */
+    @Test
+    public void testOffHeapParkingHeapCost() {
+        // Given: the classes loaded and the code paths run once
+        Parking.offHeap(0, 1_000, 0).tryOccupy(SpotType.CAR, 0);
+        new Parking(0, 1_000, 0).tryOccupy(SpotType.CAR, 0);
+
+        // When
+        long start = allocatedBytes();
+        Parking offHeap = Parking.offHeap(0, 10_000_000, 0);
+        for (int i = 0; i < 10_000_000; i += 1_000_000) {
+            Assertions.assertTrue(offHeap.tryOccupy(SpotType.CAR, i));
+        }
+        long offHeapBytes = allocatedBytes() - start;
+        start = allocatedBytes();
+        Parking onHeap = new Parking(0, 100_000, 0);
+        long onHeapBytes = allocatedBytes() - start;
+
+        // Then: measured at about 3 KB off heap, 125 bytes per spot on heap
+        Assertions.assertEquals(10_000_000 - 10, offHeap.getFreeSpotsCount());
+        Assertions.assertEquals(100_000, onHeap.getFreeSpotsCount());
+        Assertions.assertTrue(offHeapBytes < 64 * 1024, "Heap allocated for 10M off-heap spots: " + offHeapBytes);
+        Assertions.assertTrue(onHeapBytes > 100 * 100_000, "Heap allocated for 100k on-heap spots: " + onHeapBytes);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * testOccupancyByVehicleType:
+     * Checks the per vehicle type counters through park and unpark.
+     */
+    @Test
+    public void testOccupancyByVehicleType() {
+        // Given: 2 motos, 1 car, 1 van on a big spot and 1 van on 3 car spots
+        Parking parking = new Parking(2, 4, 1);
+        ParkingService service = new ParkingService();
+        Vehicle vanOnCarSpots = new Van("VAN-2");
+        Assertions.assertTrue(service.parkVehicle(parking, new Moto("MOTO-1")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Moto("MOTO-2")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Car("CAR-1")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-1")));
+        Assertions.assertTrue(service.parkVehicle(parking, vanOnCarSpots));
+
+        // Then
+        Map<Class<? extends Vehicle>, VehicleTypeOccupancy> occupancy = service.getOccupancyByVehicleType();
+        Assertions.assertEquals(2, occupancy.get(Moto.class).getParkedVehicles());
+        Assertions.assertEquals(2, occupancy.get(Moto.class).getOccupiedSpots());
+        Assertions.assertEquals(1, occupancy.get(Car.class).getParkedVehicles());
+        Assertions.assertEquals(2, occupancy.get(Van.class).getParkedVehicles());
+        Assertions.assertEquals(4, occupancy.get(Van.class).getOccupiedSpots());
+        Assertions.assertEquals(4, service.getNumberOfSpotsOccupiedByVans());
+
+        // When: the van on car spots leaves
+        service.unparkVehicle(vanOnCarSpots);
+
+        // Then
+        occupancy = service.getOccupancyByVehicleType();
+        Assertions.assertEquals(1, occupancy.get(Van.class).getParkedVehicles());
+        Assertions.assertEquals(1, occupancy.get(Van.class).getOccupiedSpots());
+        Assertions.assertEquals(1, service.getNumberOfSpotsOccupiedByVans());
+    }
+
+    /**
+     * testOffHeapParkingKeepsSemantics:
+     * An off-heap parking follows the same rules as the on-heap one:
+     * fallback order, vans on adjacent car spots, derived spot ids.
+     */
+    @Test
+    public void testOffHeapParkingKeepsSemantics() {
+        // Given: 1 moto spot, 70 car spots with every other one taken, 1 big spot
+        Parking parking = Parking.offHeap(1, 70, 1);
+        ParkingService service = new ParkingService();
+        Assertions.assertTrue(parking.isOffHeap());
+        Vehicle[] cars = new Vehicle[70];
+        for (int i = 0; i < cars.length; i++) {
+            cars[i] = new Car("CAR-" + i);
+            Assertions.assertTrue(service.parkVehicle(parking, cars[i]));
+        }
+        for (int i = 0; i < cars.length; i += 2) {
+            service.unparkVehicle(cars[i]);
+        }
+
+        // When: two motos arrive, then two vans
+        Assertions.assertTrue(service.parkVehicle(parking, new Moto("MOTO-1")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Moto("MOTO-2")));
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-BIG")));
+        Assertions.assertFalse(service.parkVehicle(parking, new Van("VAN-SCATTERED")),
+                "A van should not be split over non-adjacent car spots");
+
+        // Then: the second moto fell back on the first free car spot, the van took the big spot
+        Assertions.assertEquals("M-0", service.findSpotsByPlate("MOTO-1").get(0).getId());
+        Assertions.assertEquals("C-0", service.findSpotsByPlate("MOTO-2").get(0).getId());
+        Assertions.assertEquals("B-0", service.findSpotsByPlate("VAN-BIG").get(0).getId());
+
+        // When: C-63 and C-65 leave, C-62..C-66 become a free run crossing a 64-spot word
+        service.unparkVehicle(cars[63]);
+        service.unparkVehicle(cars[65]);
+
+        // Then
+        Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-RUN")));
+        Assertions.assertEquals("C-62", service.findSpotsByPlate("VAN-RUN").get(0).getId());
+        Assertions.assertTrue(parking.getCarSpots().get(64).isOccupied());
+        Assertions.assertEquals(33, parking.getFreeSpotsCount());
+
+        service.unparkByPlate("VAN-RUN");
+        Assertions.assertFalse(parking.getCarSpots().get(64).isOccupied());
+        Assertions.assertEquals(36, parking.getFreeSpotsCount(SpotType.CAR));
+    }
+
+    /**
+     * testMappedParking:
+     * A parking whose spot state lives in a memory-mapped file.
+     */
+    @Test
+    public void testMappedParking() throws Exception {
+        // Given
+        Path file = Files.createTempFile("parking", ".map");
+        try {
+            Parking parking = Parking.mapped(file, 2, 3, 0);
+            ParkingService service = new ParkingService();
+
+            // When
+            Assertions.assertTrue(service.parkVehicle(parking, new Van("VAN-1")));
+            Assertions.assertTrue(service.parkVehicle(parking, new Moto("MOTO-1")));
+
+            // Then
+            Assertions.assertTrue(parking.areCarSpotsFull());
+            Assertions.assertEquals(1, parking.getFreeSpotsCount());
+            Assertions.assertTrue(Files.size(file) > 0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * testNewVehicleTypeFromPlan:
+     * A new vehicle type is parked according to the plan registered for it,
+     * without any change to the service; built-in types keep their fallback rules.
+     */
+    @Test
+    public void testNewVehicleTypeFromPlan() {
+        // Given: buses need 2 adjacent big spots, or else 4 adjacent car spots
+        Parking parking = new Parking(0, 4, 3);
+        ParkingService service = new ParkingService();
+        service.getAllocationPlans().register(Bus.class,
+                AllocationPlan.of(SpotType.BIG, 2).then(SpotType.CAR, 4));
+        Assertions.assertEquals(AllocationPlan.of(SpotType.BIG).then(SpotType.CAR, 3),
+                service.getAllocationPlans().planFor(new Van("VAN-0")));
+
+        // When: two buses arrive
+        boolean first = service.parkVehicle(parking, new Bus("BUS-1"));
+        boolean second = service.parkVehicle(parking, new Bus("BUS-2"));
+
+        // Then: the first takes 2 big spots, the second falls back on the car spots
+        Assertions.assertTrue(first);
+        Assertions.assertTrue(second);
+        Assertions.assertEquals(2, service.findSpotsByPlate("BUS-1").size());
+        Assertions.assertEquals(SpotType.BIG, service.findSpotsByPlate("BUS-1").get(0).getType());
+        Assertions.assertEquals(4, service.findSpotsByPlate("BUS-2").size());
+        Assertions.assertEquals(1, parking.getFreeSpotsCount());
+
+        // And: a third bus cannot fit on the last big spot
+        Assertions.assertFalse(service.parkVehicle(parking, new Bus("BUS-3")));
+    }
+
+    /**
+     * testPlanForEveryVehicle:
+     * A plan registered for Vehicle applies to every type without a closer plan.
+     */
+    @Test
+    public void testPlanForEveryVehicle() {
+        // Given: every vehicle goes to big spots, except motos that keep their own plan
+        ParkingService service = new ParkingService();
+        service.getAllocationPlans()
+                .register(Vehicle.class, AllocationPlan.of(SpotType.BIG))
+                .register(Moto.class, AllocationPlan.of(SpotType.MOTO));
+
+        // When / Then: cars and vans use the Vehicle plan, motos their own
+        Assertions.assertEquals(AllocationPlan.of(SpotType.BIG),
+                service.getAllocationPlans().planFor(new Car("CAR-0")));
+        Assertions.assertEquals(AllocationPlan.of(SpotType.BIG),
+                service.getAllocationPlans().planFor(new Van("VAN-0")));
+        Assertions.assertEquals(AllocationPlan.of(SpotType.MOTO),
+                service.getAllocationPlans().planFor(new Moto("MOTO-0")));
+    }
+
+    // A vehicle type unknown to the service
+    private static class Bus extends Vehicle {
+        Bus(String plateNumber) {
+            super(plateNumber);
+        }
+
+        @Override
+        public int getRequiredCarSpots() {
+            return 4;
+        }
+
+        @Override
+        public boolean canParkOnMotoSpot() {
+            return false;
+        }
+
+        @Override
+        public boolean canParkOnBigSpot() {
+            return true;
+        }
+
+        @Override
+        public boolean canParkOnCarSpot() {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,160 @@
+package parking.simulation;
+
+import org.example.parking.domain.Parking;
+import org.example.parking.model.Car;
+import org.example.parking.model.Moto;
+import org.example.parking.service.ConcurrencyMode;
+import org.example.parking.service.ParkingService;
+import org.example.parking.simulation.DwellTimeDistribution;
+import org.example.parking.simulation.EventSource;
+import org.example.parking.simulation.OccupancySample;
+import org.example.parking.simulation.Simulation;
+import org.example.parking.simulation.SimulationReport;
+import org.example.parking.simulation.SyntheticTrace;
+import org.example.parking.simulation.TraceEvent;
+import org.example.parking.simulation.TraceFile;
+import org.example.parking.simulation.VehicleMix;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Unit tests for the discrete-event load simulator.
+ */
+public class SimulationTest {
+
+    private static final long DAY = Duration.ofDays(1).toMillis();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * testSyntheticTraceSingleThreaded:
+     * A day of synthetic traffic is played in time order, every accepted
+     * vehicle leaves, and the same seed gives the same outcome.
+     */
+    @Test
+    public void testSyntheticTraceSingleThreaded() throws IOException {
+        // Given: a small lot, busy enough to turn vehicles away at peak hours
+        SyntheticTrace trace = newTrace(7);
+        Parking parking = new Parking(10, 100, 5);
+
+        // When
+        SimulationReport report = new Simulation(parking, new ParkingService()).run(trace);
+
+        // Then: one departure per arrival, the rejected ones being ignored
+        Assertions.assertEquals(2 * trace.getArrivalCount(), report.getEventCount());
+        Assertions.assertEquals(trace.getArrivalCount(), report.getArrivalCount());
+        Assertions.assertTrue(report.getRejectedCount() > 0, "The lot should fill up at peak hours");
+        Assertions.assertEquals(report.getAcceptedCount(), report.getDepartureCount());
+        Assertions.assertEquals(report.getRejectedCount(), report.getIgnoredDepartureCount());
+        Assertions.assertTrue(report.getRejectionRate("Van") > report.getRejectionRate("Moto"));
+        Assertions.assertTrue(report.getParkLatencyNanos(0.99) > 0);
+
+        // And: hourly samples, from an empty lot to a full one and back
+        List<OccupancySample> occupancy = report.getOccupancy();
+        Assertions.assertTrue(occupancy.size() > 24);
+        Assertions.assertEquals(0, occupancy.get(0).getParkedVehicles());
+        Assertions.assertTrue(report.getPeakOccupancyRate() > 0.9);
+        Assertions.assertEquals(0, occupancy.get(occupancy.size() - 1).getParkedVehicles());
+        Assertions.assertTrue(parking.isEmpty());
+
+        // And: the run is reproducible
+        SimulationReport again = new Simulation(new Parking(10, 100, 5), new ParkingService()).run(newTrace(7));
+        Assertions.assertEquals(report.getRejectedCount(), again.getRejectedCount());
+    }
+
+    /**
+     * testGateThreads:
+     * With concurrent gate threads, every event is still played once and
+     * no vehicle is left behind.
+     */
+    @Test
+    public void testGateThreads() throws IOException {
+        // Given
+        Parking parking = Parking.offHeap(10, 100, 5);
+        Simulation simulation = new Simulation(parking, new ParkingService(ConcurrencyMode.LOCK_FREE));
+        simulation.setGateThreads(4);
+        simulation.setSampleEveryMillis(Duration.ofMinutes(10).toMillis());
+        SyntheticTrace trace = newTrace(11);
+
+        // When
+        SimulationReport report = simulation.run(trace);
+
+        // Then
+        Assertions.assertEquals(4, report.getGateThreads());
+        Assertions.assertEquals(2 * trace.getArrivalCount(), report.getEventCount());
+        Assertions.assertEquals(report.getAcceptedCount(), report.getDepartureCount());
+        Assertions.assertEquals(report.getRejectedCount(), report.getIgnoredDepartureCount());
+        Assertions.assertTrue(report.getOccupancy().size() > 24 * 6);
+        Assertions.assertTrue(parking.isEmpty());
+    }
+
+    /**
+     * testReplaySavedTrace:
+     * A synthetic trace written to a file replays with the same outcome.
+     */
+    @Test
+    public void testReplaySavedTrace() throws IOException {
+        // Given
+        Path file = folder.getRoot().toPath().resolve("trace.csv");
+        long events = TraceFile.write(newTrace(3), file);
+
+        // When
+        SimulationReport direct = new Simulation(new Parking(10, 100, 5), new ParkingService()).run(newTrace(3));
+        SimulationReport replayed;
+        try (EventSource source = TraceFile.open(file)) {
+            replayed = new Simulation(new Parking(10, 100, 5), new ParkingService()).run(source);
+        }
+
+        // Then
+        Assertions.assertEquals(events, replayed.getEventCount());
+        Assertions.assertEquals(direct.getAcceptedCount(), replayed.getAcceptedCount());
+        Assertions.assertEquals(direct.getRejectionRate("Van"), replayed.getRejectionRate("Van"));
+
+        // And: the events come back as written
+        try (EventSource source = TraceFile.open(file)) {
+            TraceEvent first = source.next();
+            Assertions.assertTrue(first.isArrival());
+            Assertions.assertEquals("SIM-0", first.getPlate());
+        }
+    }
+
+    /**
+     * testGatesFollowTraceTime:
+     * Gate threads play the events of a window only once every gate is done
+     * with the earlier windows, even with no occupancy sampling, so the
+     * outcome is the one of the trace order whichever gate runs first.
+     */
+    @Test
+    public void testGatesFollowTraceTime() throws IOException {
+        // Given: a single spot; CAR-1 and CAR-3 play on the first of 2 gates, MOTO-1 on the second
+        Iterator<TraceEvent> events = List.of(
+                TraceEvent.arrival(0, new Car("CAR-1")),
+                TraceEvent.departure(Duration.ofSeconds(30).toMillis(), "CAR-1"),
+                TraceEvent.arrival(Duration.ofMinutes(1).toMillis(), new Moto("MOTO-1")),
+                TraceEvent.arrival(Duration.ofMinutes(2).toMillis(), new Car("CAR-3"))).iterator();
+        Simulation simulation = new Simulation(new Parking(0, 1, 0), new ParkingService(ConcurrencyMode.LOCK_FREE));
+        simulation.setGateThreads(2);
+        simulation.setSampleEveryMillis(0);
+
+        // When
+        SimulationReport report = simulation.run(() -> events.hasNext() ? events.next() : null);
+
+        // Then: the moto took the spot CAR-1 left, and CAR-3 found it taken
+        Assertions.assertEquals(0.0, report.getRejectionRate("Moto"));
+        Assertions.assertEquals(0.5, report.getRejectionRate("Car"));
+    }
+
+    private static SyntheticTrace newTrace(long seed) {
+        return new SyntheticTrace(seed, DAY, SyntheticTrace.dailyProfile(120),
+                VehicleMix.parse("moto=20,car=50,van=30"), DwellTimeDistribution.parse("lognormal:90m:0.8"));
+    }
+}